@@ -0,0 +1,100 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.skife.jdbi.v2.Foreman;
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.StatementContext;
+import org.skife.jdbi.v2.tweak.Argument;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.UUID;
+
+/**
+ * Argument creation through {@link Foreman#createArgument(Class, Object, StatementContext)}, which
+ * is called for every value bound via <code>bind(String, Object)</code> and by sql objects.
+ */
+@State(Scope.Thread)
+public class ArgumentBenchmark
+{
+    private Handle handle;
+    private Foreman foreman;
+    private StatementContext context;
+
+    private final String string = "a string";
+    private final Integer integer = 42;
+    private final Long aLong = 42L;
+    private final BigDecimal decimal = new BigDecimal("42.42");
+    private final Timestamp timestamp = new Timestamp(0);
+    private final UUID uuid = UUID.randomUUID();
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        handle = Database.H2.dbi().open();
+        context = handle.createQuery("select 1").getContext();
+        foreman = context.getForeman();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        handle.close();
+    }
+
+    @Benchmark
+    public Argument string()
+    {
+        return foreman.createArgument(String.class, string, context);
+    }
+
+    @Benchmark
+    public Argument integer()
+    {
+        return foreman.createArgument(Integer.class, integer, context);
+    }
+
+    @Benchmark
+    public Argument longAsObject()
+    {
+        // sql objects bind by declared parameter type, fluent binding of Objects by runtime type
+        return foreman.createArgument(Object.class, aLong, context);
+    }
+
+    @Benchmark
+    public Argument bigDecimal()
+    {
+        return foreman.createArgument(BigDecimal.class, decimal, context);
+    }
+
+    @Benchmark
+    public Argument timestamp()
+    {
+        return foreman.createArgument(Timestamp.class, timestamp, context);
+    }
+
+    @Benchmark
+    public Argument unknownType()
+    {
+        // falls through all factories to the ObjectArgument fallback
+        return foreman.createArgument(UUID.class, uuid, context);
+    }
+}
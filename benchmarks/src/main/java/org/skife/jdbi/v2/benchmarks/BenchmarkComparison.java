@@ -0,0 +1,150 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares two JMH result files written with <code>-rf csv</code>, typically one from a baseline
+ * commit and one from a candidate change. For every benchmark (and parameter combination) present
+ * in both files the scores and the relative change are printed. Changes larger than the combined
+ * error margins are flagged as regressions or improvements, taking into account whether higher or
+ * lower scores are better for the benchmark mode and metric.
+ * <p/>
+ * Usage: <code>java -cp target/benchmarks.jar org.skife.jdbi.v2.benchmarks.BenchmarkComparison baseline.csv candidate.csv</code>
+ * <p/>
+ * Exits with status 1 if any benchmark regressed.
+ */
+public final class BenchmarkComparison
+{
+    private BenchmarkComparison()
+    {
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length != 2) {
+            System.err.println("usage: BenchmarkComparison <baseline.csv> <candidate.csv>");
+            System.exit(2);
+        }
+
+        final Map<String, Result> baseline = read(args[0]);
+        final Map<String, Result> candidate = read(args[1]);
+
+        boolean regressed = false;
+        System.out.println(String.format("%-80s %14s %14s %9s", "benchmark", "baseline", "candidate", "change"));
+        for (Map.Entry<String, Result> entry : candidate.entrySet()) {
+            final Result before = baseline.get(entry.getKey());
+            if (before == null) {
+                continue;
+            }
+            final Result after = entry.getValue();
+            final double change = (after.score - before.score) / before.score * 100.0;
+            final boolean significant = Math.abs(after.score - before.score) > before.error + after.error;
+            String verdict = "";
+            if (significant) {
+                final boolean better = after.higherIsBetter() == (after.score > before.score);
+                verdict = better ? "improved" : "REGRESSED";
+                regressed |= !better;
+            }
+            System.out.println(String.format("%-80s %14.3f %14.3f %+8.1f%% %s %s",
+                                             entry.getKey(), before.score, after.score, change, after.unit, verdict));
+        }
+        System.exit(regressed ? 1 : 0);
+    }
+
+    private static Map<String, Result> read(String file) throws IOException
+    {
+        final Map<String, Result> results = new LinkedHashMap<String, Result>();
+        final BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            final List<String> header = parseLine(in.readLine());
+            String line;
+            while ((line = in.readLine()) != null) {
+                final List<String> fields = parseLine(line);
+                final StringBuilder key = new StringBuilder(fields.get(0));
+                for (int i = 7; i < fields.size() && i < header.size(); i++) {
+                    key.append(' ').append(header.get(i).replace("Param: ", "")).append('=').append(fields.get(i));
+                }
+                results.put(key.toString(), new Result(fields.get(0),
+                                                       fields.get(1),
+                                                       parseDouble(fields.get(4)),
+                                                       parseDouble(fields.get(5)),
+                                                       fields.get(6)));
+            }
+        }
+        finally {
+            in.close();
+        }
+        return results;
+    }
+
+    private static double parseDouble(String value)
+    {
+        return value.isEmpty() || "NaN".equals(value) ? 0.0 : Double.parseDouble(value);
+    }
+
+    private static List<String> parseLine(String line)
+    {
+        final List<String> fields = new ArrayList<String>();
+        final StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            final char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            }
+            else if (c == ',' && !quoted) {
+                fields.add(field.toString());
+                field.setLength(0);
+            }
+            else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static final class Result
+    {
+        private final String benchmark;
+        private final String mode;
+        private final double score;
+        private final double error;
+        private final String unit;
+
+        Result(String benchmark, String mode, double score, double error, String unit)
+        {
+            this.benchmark = benchmark;
+            this.mode = mode;
+            this.score = score;
+            this.error = error;
+            this.unit = unit;
+        }
+
+        boolean higherIsBetter()
+        {
+            // secondary results, like the gc profiler's allocation rates, are better when lower
+            return "thrpt".equals(mode) && !benchmark.contains(":");
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2.benchmarks;
+
+import org.skife.jdbi.v2.DBI;
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.PreparedBatch;
+
+/**
+ * The in-memory databases the benchmarks run against.
+ */
+public enum Database
+{
+    H2("jdbc:h2:mem:jdbi-bench;DB_CLOSE_DELAY=-1"),
+    HSQLDB("jdbc:hsqldb:mem:jdbi-bench");
+
+    private final String url;
+
+    Database(String url)
+    {
+        this.url = url;
+    }
+
+    public DBI dbi()
+    {
+        return new DBI(url, "sa", "");
+    }
+
+    /**
+     * (Re)create the <code>something</code> table and fill it with <code>rows</code> rows.
+     */
+    public void createSomething(DBI dbi, int rows)
+    {
+        Handle h = dbi.open();
+        try {
+            h.execute("drop table something if exists");
+            h.execute("create table something (id integer primary key, name varchar(100), " +
+                      "integer_value integer, int_value integer)");
+            PreparedBatch batch = h.prepareBatch("insert into something (id, name, integer_value, int_value) " +
+                                                 "values (:id, :name, :id, :id)");
+            for (int i = 0; i < rows; i++) {
+                batch.add().bind("id", i).bind("name", "name-" + i);
+            }
+            batch.execute();
+        }
+        finally {
+            h.close();
+        }
+    }
+}
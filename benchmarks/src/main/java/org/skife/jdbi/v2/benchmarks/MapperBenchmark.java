@@ -0,0 +1,85 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.skife.jdbi.v2.BeanMapper;
+import org.skife.jdbi.v2.DBI;
+import org.skife.jdbi.v2.DefaultMapper;
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.ReflectionBeanMapper;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Row mapping cost of the built in mappers.
+ */
+@State(Scope.Thread)
+public class MapperBenchmark
+{
+    private static final String SELECT = "select id, name, integer_value, int_value from something order by id";
+
+    @Param({"H2", "HSQLDB"})
+    public Database database;
+
+    @Param({"1", "100", "1000"})
+    public int rows;
+
+    private Handle handle;
+    private BeanMapper<Something> beanMapper;
+    private ReflectionBeanMapper<Something> reflectionBeanMapper;
+    private DefaultMapper defaultMapper;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        DBI dbi = database.dbi();
+        database.createSomething(dbi, rows);
+        handle = dbi.open();
+        beanMapper = new BeanMapper<Something>(Something.class);
+        reflectionBeanMapper = new ReflectionBeanMapper<Something>(Something.class);
+        defaultMapper = new DefaultMapper();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        handle.close();
+    }
+
+    @Benchmark
+    public List<Something> beanMapper()
+    {
+        return handle.createQuery(SELECT).map(beanMapper).list();
+    }
+
+    @Benchmark
+    public List<Something> reflectionBeanMapper()
+    {
+        return handle.createQuery(SELECT).map(reflectionBeanMapper).list();
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> defaultMapper()
+    {
+        return handle.createQuery(SELECT).map(defaultMapper).list();
+    }
+}
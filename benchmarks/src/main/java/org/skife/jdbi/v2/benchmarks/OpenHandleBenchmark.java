@@ -0,0 +1,65 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.skife.jdbi.v2.DBI;
+import org.skife.jdbi.v2.Handle;
+
+import java.sql.Connection;
+
+/**
+ * The cost of {@link DBI#open()} on top of obtaining the connection. A single connection is kept
+ * open, so the database itself stays alive and its setup is not measured.
+ */
+@State(Scope.Thread)
+public class OpenHandleBenchmark
+{
+    @Param({"H2", "HSQLDB"})
+    public Database database;
+
+    private DBI dbi;
+    private Handle keepAlive;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        dbi = database.dbi();
+        keepAlive = dbi.open();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        keepAlive.close();
+    }
+
+    @Benchmark
+    public Connection openAndClose()
+    {
+        Handle h = dbi.open();
+        try {
+            return h.getConnection();
+        }
+        finally {
+            h.close();
+        }
+    }
+}
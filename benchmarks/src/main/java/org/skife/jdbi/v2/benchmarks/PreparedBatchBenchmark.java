@@ -0,0 +1,76 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.skife.jdbi.v2.DBI;
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.PreparedBatch;
+
+/**
+ * Prepared batch inserts of various sizes. Every invocation runs in a transaction which is
+ * rolled back, so the table does not grow.
+ */
+@State(Scope.Thread)
+public class PreparedBatchBenchmark
+{
+    @Param({"H2", "HSQLDB"})
+    public Database database;
+
+    @Param({"1", "10", "100", "1000"})
+    public int size;
+
+    private Handle handle;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        DBI dbi = database.dbi();
+        database.createSomething(dbi, 0);
+        handle = dbi.open();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        handle.close();
+    }
+
+    @Benchmark
+    public int[] insert()
+    {
+        handle.begin();
+        try {
+            PreparedBatch batch = handle.prepareBatch("insert into something (id, name, integer_value, int_value) " +
+                                                      "values (:id, :name, :integerValue, :intValue)");
+            for (int i = 0; i < size; i++) {
+                batch.add()
+                     .bind("id", i)
+                     .bind("name", "name")
+                     .bind("integerValue", i)
+                     .bind("intValue", i);
+            }
+            return batch.execute();
+        }
+        finally {
+            handle.rollback();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import org.skife.jdbi.v2.DBI;
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.ResultIterator;
+
+import java.util.List;
+
+/**
+ * Eager versus streaming consumption of query results, and the fixed cost of a single row lookup.
+ */
+@State(Scope.Thread)
+public class QueryBenchmark
+{
+    private static final String SELECT = "select id, name, integer_value, int_value from something order by id";
+
+    @Param({"H2", "HSQLDB"})
+    public Database database;
+
+    @Param({"1", "100", "10000"})
+    public int rows;
+
+    private Handle handle;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        DBI dbi = database.dbi();
+        database.createSomething(dbi, rows);
+        handle = dbi.open();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        handle.close();
+    }
+
+    @Benchmark
+    public List<Something> list()
+    {
+        return handle.createQuery(SELECT).map(Something.class).list();
+    }
+
+    @Benchmark
+    public void iterator(Blackhole blackhole)
+    {
+        ResultIterator<Something> it = handle.createQuery(SELECT).map(Something.class).iterator();
+        try {
+            while (it.hasNext()) {
+                blackhole.consume(it.next());
+            }
+        }
+        finally {
+            it.close();
+        }
+    }
+
+    @Benchmark
+    public Something first()
+    {
+        return handle.createQuery("select id, name, integer_value, int_value from something where id = :id")
+                     .bind("id", 0)
+                     .map(Something.class)
+                     .first();
+    }
+}
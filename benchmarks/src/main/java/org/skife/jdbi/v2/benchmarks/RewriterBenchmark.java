@@ -0,0 +1,104 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.skife.jdbi.v2.ColonPrefixNamedParamStatementRewriter;
+import org.skife.jdbi.v2.DBI;
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.Query;
+import org.skife.jdbi.v2.StatementContext;
+import org.skife.jdbi.v2.tweak.RewrittenStatement;
+import org.skife.jdbi.v2.tweak.StatementRewriter;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * Parsing and binding of named parameters by the default statement rewriter.
+ */
+@State(Scope.Thread)
+public class RewriterBenchmark
+{
+    private static final String SMALL = "select * from something where id = :id";
+    private static final String LARGE = "select s.id, s.name, s.integer_value, s.int_value from something s " +
+                                        "where s.id = :id and s.name = :name and s.integer_value = :integerValue " +
+                                        "and s.int_value = :intValue and s.name <> 'it''s :not_a_param'";
+
+    @Param({"small", "large"})
+    public String shape;
+
+    private String sql;
+    private Handle handle;
+    private StatementRewriter cachingRewriter;
+    private Query<Map<String, Object>> query;
+    private RewrittenStatement rewritten;
+    private PreparedStatement statement;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException
+    {
+        sql = "small".equals(shape) ? SMALL : LARGE;
+        DBI dbi = Database.H2.dbi();
+        Database.H2.createSomething(dbi, 0);
+        handle = dbi.open();
+        cachingRewriter = new ColonPrefixNamedParamStatementRewriter();
+        query = handle.createQuery(sql)
+                      .bind("id", 1)
+                      .bind("name", "name-1")
+                      .bind("integerValue", 1)
+                      .bind("intValue", 1);
+        rewritten = cachingRewriter.rewrite(sql, query.getContext().getBinding(), query.getContext());
+        statement = handle.getConnection().prepareStatement(rewritten.getSql());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException
+    {
+        statement.close();
+        handle.close();
+    }
+
+    @Benchmark
+    public RewrittenStatement parse()
+    {
+        // a fresh rewriter has an empty parse cache
+        return new ColonPrefixNamedParamStatementRewriter().rewrite(sql, query.getContext().getBinding(), context());
+    }
+
+    @Benchmark
+    public RewrittenStatement parseCached()
+    {
+        return cachingRewriter.rewrite(sql, query.getContext().getBinding(), context());
+    }
+
+    @Benchmark
+    public PreparedStatement bind() throws SQLException
+    {
+        rewritten.bind(query.getContext().getBinding(), statement);
+        return statement;
+    }
+
+    private StatementContext context()
+    {
+        return query.getContext();
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.skife.jdbi.v2.DBI;
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.sqlobject.Bind;
+import org.skife.jdbi.v2.sqlobject.SqlQuery;
+import org.skife.jdbi.v2.sqlobject.SqlUpdate;
+import org.skife.jdbi.v2.sqlobject.customizers.RegisterMapperFactory;
+import org.skife.jdbi.v2.tweak.BeanMapperFactory;
+
+/**
+ * Sql object method dispatch, comparing on-demand sql objects, which open a handle per call,
+ * with sql objects attached to an open handle.
+ */
+@State(Scope.Thread)
+public class SqlObjectBenchmark
+{
+    @RegisterMapperFactory(BeanMapperFactory.class)
+    public interface SomethingDao
+    {
+        @SqlQuery("select id, name, integer_value, int_value from something where id = :id")
+        Something findById(@Bind("id") int id);
+
+        @SqlUpdate("update something set name = :name where id = :id")
+        int rename(@Bind("id") int id, @Bind("name") String name);
+    }
+
+    @Param({"H2", "HSQLDB"})
+    public Database database;
+
+    private Handle handle;
+    private SomethingDao onDemand;
+    private SomethingDao attached;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        DBI dbi = database.dbi();
+        database.createSomething(dbi, 100);
+        handle = dbi.open();
+        onDemand = dbi.onDemand(SomethingDao.class);
+        attached = handle.attach(SomethingDao.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        handle.close();
+    }
+
+    @Benchmark
+    public Something onDemandQuery()
+    {
+        return onDemand.findById(42);
+    }
+
+    @Benchmark
+    public Something attachedQuery()
+    {
+        return attached.findById(42);
+    }
+
+    @Benchmark
+    public int onDemandUpdate()
+    {
+        return onDemand.rename(42, "renamed");
+    }
+
+    @Benchmark
+    public int attachedUpdate()
+    {
+        return attached.rename(42, "renamed");
+    }
+}
@@ -0,0 +1,410 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.skife.jdbi.v2.tweak.BaseStatementCustomizer;
+
+import java.lang.reflect.Method;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Chooses the fetch size of {@link Query#adaptFetchSize() adaptive} queries from the rows earlier
+ * executions of the same statement returned. Statements are identified by their sql object method, or
+ * else by their rewritten sql with literals replaced by placeholders, so that statements differing only in
+ * inlined values share statistics. Statistics are kept for a bounded number of the most recently executed
+ * statements. The fetch size is the mean number of rows per execution plus one, limited
+ * so that a fetch of rows of the estimated row width fits the memory budget, and kept within the
+ * configured bounds. The first execution of a statement uses the driver's default.
+ * <p>
+ * Queries use the instance defined as the {@link #ATTRIBUTE} statement attribute, or {@link #getDefault()}.
+ */
+public class AdaptiveFetchSize
+{
+    /**
+     * The statement attribute under which the instance to use is looked up
+     */
+    public static final String ATTRIBUTE = AdaptiveFetchSize.class.getName();
+
+    private static final AdaptiveFetchSize DEFAULT = new AdaptiveFetchSize();
+
+    /**
+     * The weight of the latest execution in the mean number of rows
+     */
+    private static final double WEIGHT = 0.25;
+
+    private static final Pattern IN_LIST = Pattern.compile("\\(\\?(, \\?)+\\)");
+
+    private final Map<String, Statistics> statistics;
+    private final long memoryBudget;
+    private final int  minFetchSize;
+    private final int  maxFetchSize;
+
+    /**
+     * A budget of 4MB per fetch and fetch sizes from 1 to 10000
+     */
+    public AdaptiveFetchSize()
+    {
+        this(4 * 1024 * 1024, 1, 10000);
+    }
+
+    /**
+     * Keeps statistics for up to 1000 statements
+     *
+     * @param memoryBudget the bytes the rows of one fetch may take
+     * @param minFetchSize the smallest fetch size to use
+     * @param maxFetchSize the largest fetch size to use
+     */
+    public AdaptiveFetchSize(long memoryBudget, int minFetchSize, int maxFetchSize)
+    {
+        this(memoryBudget, minFetchSize, maxFetchSize, 1000);
+    }
+
+    /**
+     * @param memoryBudget  the bytes the rows of one fetch may take
+     * @param minFetchSize  the smallest fetch size to use
+     * @param maxFetchSize  the largest fetch size to use
+     * @param maxStatements the number of statements to keep statistics for, dropping the least recently executed
+     */
+    public AdaptiveFetchSize(long memoryBudget, int minFetchSize, int maxFetchSize, final int maxStatements)
+    {
+        if (minFetchSize < 1 || maxFetchSize < minFetchSize) {
+            throw new IllegalArgumentException("fetch sizes must satisfy 1 <= min <= max");
+        }
+        if (maxStatements < 1) {
+            throw new IllegalArgumentException("maxStatements must be positive");
+        }
+        this.statistics = new LinkedHashMap<String, Statistics>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Statistics> eldest)
+            {
+                return size() > maxStatements;
+            }
+        };
+        this.memoryBudget = memoryBudget;
+        this.minFetchSize = minFetchSize;
+        this.maxFetchSize = maxFetchSize;
+    }
+
+    public static AdaptiveFetchSize getDefault()
+    {
+        return DEFAULT;
+    }
+
+    static AdaptiveFetchSize forContext(StatementContext ctx)
+    {
+        Object tuner = ctx.getAttribute(ATTRIBUTE);
+        return tuner instanceof AdaptiveFetchSize ? (AdaptiveFetchSize) tuner : DEFAULT;
+    }
+
+    /**
+     * @return the statistics and current fetch size of each statement seen, by statement identity
+     */
+    public synchronized Map<String, Statistics> getStatistics()
+    {
+        return Collections.<String, Statistics>unmodifiableMap(new HashMap<String, Statistics>(statistics));
+    }
+
+    private synchronized Statistics statisticsFor(String identity)
+    {
+        Statistics s = statistics.get(identity);
+        if (s == null) {
+            s = new Statistics();
+            statistics.put(identity, s);
+        }
+        return s;
+    }
+
+    private int decide(double meanRows, int rowWidth)
+    {
+        long byRows = (long) Math.ceil(meanRows) + 1;
+        long byMemory = Math.max(1, memoryBudget / Math.max(1, rowWidth));
+        return (int) Math.max(minFetchSize, Math.min(maxFetchSize, Math.min(byRows, byMemory)));
+    }
+
+    static String identify(StatementContext ctx)
+    {
+        Method method = ctx.getSqlObjectMethod();
+        return method != null ? method.toGenericString() : fingerprint(ctx.getRewrittenSql());
+    }
+
+    /**
+     * Replace the string and numeric literals of the sql with placeholders, collapse whitespace, and reduce
+     * lists of placeholders in parentheses to a single one
+     */
+    static String fingerprint(String sql)
+    {
+        StringBuilder b = new StringBuilder(sql.length());
+        int i = 0;
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            if (c == '\'') {
+                i++;
+                while (i < sql.length()) {
+                    if (sql.charAt(i) == '\'') {
+                        if (i + 1 < sql.length() && sql.charAt(i + 1) == '\'') {
+                            i += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    i++;
+                }
+                b.append('?');
+                i++;
+            }
+            else if (c == '"') {
+                int end = sql.indexOf('"', i + 1);
+                end = end < 0 ? sql.length() : end + 1;
+                b.append(sql, i, end);
+                i = end;
+            }
+            else if (Character.isDigit(c) && !isIdentifierPart(b)) {
+                i++;
+                while (i < sql.length()) {
+                    char d = sql.charAt(i);
+                    if (Character.isLetterOrDigit(d) || d == '.'
+                        || ((d == '+' || d == '-') && (sql.charAt(i - 1) == 'e' || sql.charAt(i - 1) == 'E'))) {
+                        i++;
+                    }
+                    else {
+                        break;
+                    }
+                }
+                b.append('?');
+            }
+            else if (Character.isWhitespace(c)) {
+                while (i < sql.length() && Character.isWhitespace(sql.charAt(i))) {
+                    i++;
+                }
+                if (b.length() > 0 && i < sql.length()) {
+                    b.append(' ');
+                }
+            }
+            else {
+                b.append(c);
+                i++;
+            }
+        }
+        String normalized = b.toString().replace("( ", "(").replace(" )", ")").replace(" ,", ",").replace(",?", ", ?");
+        return IN_LIST.matcher(normalized).replaceAll("(?)");
+    }
+
+    private static boolean isIdentifierPart(StringBuilder b)
+    {
+        if (b.length() == 0) {
+            return false;
+        }
+        char last = b.charAt(b.length() - 1);
+        return Character.isLetterOrDigit(last) || last == '_' || last == '$' || last == '?';
+    }
+
+    /**
+     * Estimate the bytes a row takes from the result set's column types
+     */
+    static int estimateRowWidth(ResultSetMetaData md) throws SQLException
+    {
+        int width = 0;
+        for (int i = 1; i <= md.getColumnCount(); i++) {
+            switch (md.getColumnType(i)) {
+                case Types.BIT:
+                case Types.BOOLEAN:
+                case Types.TINYINT:
+                    width += 1;
+                    break;
+                case Types.SMALLINT:
+                    width += 2;
+                    break;
+                case Types.INTEGER:
+                case Types.REAL:
+                case Types.DATE:
+                    width += 4;
+                    break;
+                case Types.BIGINT:
+                case Types.DOUBLE:
+                case Types.FLOAT:
+                case Types.TIME:
+                case Types.TIMESTAMP:
+                    width += 8;
+                    break;
+                case Types.BLOB:
+                case Types.CLOB:
+                case Types.NCLOB:
+                case Types.LONGVARBINARY:
+                case Types.LONGVARCHAR:
+                case Types.LONGNVARCHAR:
+                    width += 8192;
+                    break;
+                default:
+                    width += Math.min(Math.max(md.getColumnDisplaySize(i), 1), 4096) * 2;
+            }
+        }
+        return width;
+    }
+
+    /**
+     * Observed rows and the resulting fetch size of one statement
+     */
+    public static final class Statistics
+    {
+        private long executions;
+        private double meanRows;
+        private int rowWidth;
+        private int fetchSize;
+
+        private synchronized void record(long rows, int width)
+        {
+            meanRows = executions == 0 ? rows : meanRows + WEIGHT * (rows - meanRows);
+            if (width > 0) {
+                rowWidth = width;
+            }
+            executions++;
+        }
+
+        public synchronized long getExecutions()
+        {
+            return executions;
+        }
+
+        /**
+         * @return the mean number of rows per execution, weighted towards recent executions
+         */
+        public synchronized double getMeanRows()
+        {
+            return meanRows;
+        }
+
+        /**
+         * @return the estimated bytes per row
+         */
+        public synchronized int getRowWidth()
+        {
+            return rowWidth;
+        }
+
+        /**
+         * @return the fetch size last chosen, or 0 if the driver default was used
+         */
+        public synchronized int getFetchSize()
+        {
+            return fetchSize;
+        }
+
+        private synchronized int chooseFetchSize(AdaptiveFetchSize tuner)
+        {
+            fetchSize = executions == 0 ? 0 : tuner.decide(meanRows, rowWidth);
+            return fetchSize;
+        }
+
+        @Override
+        public synchronized String toString()
+        {
+            return String.format("{executions: %d, mean rows: %.1f, row width: %d, fetch size: %d}",
+                                 executions, meanRows, rowWidth, fetchSize);
+        }
+    }
+
+    /**
+     * Counts the rows of one execution of an adaptive query, as they are read by
+     * {@link ResultSetResultIterator} or {@link QueryResultSetMunger#advance(ResultSet)}
+     */
+    static final class Observation
+    {
+        private final Statistics statistics;
+        private boolean started;
+        private long rows;
+        private int rowWidth;
+
+        private Observation(Statistics statistics)
+        {
+            this.statistics = statistics;
+        }
+
+        private void start(ResultSet rs) throws SQLException
+        {
+            rowWidth = estimateRowWidth(rs.getMetaData());
+            started = true;
+        }
+
+        void row()
+        {
+            rows++;
+        }
+
+        void finish()
+        {
+            if (started) {
+                statistics.record(rows, rowWidth);
+                started = false;
+            }
+        }
+    }
+
+    /**
+     * @return the observation counting the rows of the result set, or null if the statement is not adaptive
+     */
+    static Observation observe(ResultSet rs, StatementContext ctx) throws SQLException
+    {
+        if (rs != null && ctx instanceof ConcreteStatementContext) {
+            Observation observation = ((ConcreteStatementContext) ctx).getFetchObservation();
+            if (observation != null) {
+                observation.start(rs);
+                return observation;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sets the fetch size chosen for the statement and observes its execution
+     */
+    static final class Customizer extends BaseStatementCustomizer
+    {
+        @Override
+        public void beforeExecution(PreparedStatement stmt, StatementContext ctx) throws SQLException
+        {
+            AdaptiveFetchSize tuner = forContext(ctx);
+            Statistics s = tuner.statisticsFor(identify(ctx));
+            int fetchSize = s.chooseFetchSize(tuner);
+            if (fetchSize > 0) {
+                stmt.setFetchSize(fetchSize);
+            }
+            if (ctx instanceof ConcreteStatementContext) {
+                ((ConcreteStatementContext) ctx).setFetchObservation(new Observation(s));
+            }
+        }
+
+        @Override
+        public void cleanup(StatementContext ctx) throws SQLException
+        {
+            if (ctx instanceof ConcreteStatementContext) {
+                ConcreteStatementContext c = (ConcreteStatementContext) ctx;
+                Observation observation = c.getFetchObservation();
+                if (observation != null) {
+                    observation.finish();
+                    c.setFetchObservation(null);
+                }
+            }
+        }
+    }
+}
@@ -96,16 +96,34 @@ abstract class BaseStatement
 
     protected final void cleanup()
     {
-        for (StatementCustomizer customizer : customizers) {
-            try {
-                customizer.cleanup(context);
+        final StatementPhaseTimings timings = getConcreteContext().getPhaseTimings();
+        final long start = timings == null ? 0L : System.nanoTime();
+        try {
+            for (StatementCustomizer customizer : customizers) {
+                try {
+                    customizer.cleanup(context);
+                }
+                catch (SQLException e) {
+                    throw new UnableToExecuteStatementException("Could not clean up", e, context);
+                }
             }
-            catch (SQLException e) {
-                throw new UnableToExecuteStatementException("Could not clean up", e, context);
+        }
+        finally {
+            if (timings != null && timings.isPending()) {
+                timings.lap(StatementPhase.CLEANUP, start);
+                timings.finish();
+                collectPhaseTimings(timings);
             }
         }
     }
 
+    /**
+     * Called once per execution after cleanup if phase timing is enabled for this statement.
+     */
+    protected void collectPhaseTimings(final StatementPhaseTimings timings)
+    {
+    }
+
     protected void addCleanable(final Cleanable cleanable)
     {
         this.context.getCleanables().add(cleanable);
@@ -17,7 +17,9 @@ import org.skife.jdbi.v2.exceptions.UnableToCloseResourceException;
 import org.skife.jdbi.v2.exceptions.UnableToManipulateTransactionIsolationLevelException;
 import org.skife.jdbi.v2.sqlobject.SqlObjectBuilder;
 import org.skife.jdbi.v2.tweak.ArgumentFactory;
+import org.skife.jdbi.v2.tweak.ConnectionFactory;
 import org.skife.jdbi.v2.tweak.ContainerFactory;
+import org.skife.jdbi.v2.tweak.MemoizingTransactionHandler;
 import org.skife.jdbi.v2.tweak.ResultColumnMapper;
 import org.skife.jdbi.v2.tweak.ResultSetMapper;
 import org.skife.jdbi.v2.tweak.SQLLog;
@@ -29,12 +31,13 @@ import org.skife.jdbi.v2.tweak.TransactionHandler;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-class BasicHandle implements Handle
+class BasicHandle implements ExtendedHandle
 {
 
     private StatementRewriter statementRewriter;
@@ -45,7 +48,13 @@ class BasicHandle implements Handle
 
     private boolean closed = false;
 
-    private final Map<String, Object>      globalStatementAttributes;
+    private volatile Map<String, Object>   globalStatementAttributes;
+    private volatile Deadline              deadline;
+    private ConcurrencyLimiter.Permit      permit;
+    private DBI                            dbi;
+    private final List<Runnable>           afterTransaction = new ArrayList<Runnable>();
+    private Object                         databaseIdentity;
+    private ConnectionFactory              connectionFactory;
     private final MappingRegistry          mappingRegistry;
     private final ContainerFactoryRegistry containerFactoryRegistry;
     private final Foreman                  foreman;
@@ -74,8 +83,8 @@ class BasicHandle implements Handle
         this.timingCollector = timingCollector;
         this.mappingRegistry = mappingRegistry;
         this.foreman = foreman;
-        this.globalStatementAttributes = new HashMap<String, Object>();
-        this.globalStatementAttributes.putAll(globalStatementAttributes);
+        // never changed, only replaced by define(), so statements can read through it without copying
+        this.globalStatementAttributes = globalStatementAttributes;
         this.containerFactoryRegistry = containerFactoryRegistry.createChild();
     }
 
@@ -90,7 +99,7 @@ class BasicHandle implements Handle
                                               this,
                                               statementBuilder,
                                               sql,
-                                              new ConcreteStatementContext(globalStatementAttributes, queryRegistry),
+                                              newContext(queryRegistry),
                                               log,
                                               timingCollector,
                                               Collections.<StatementCustomizer>emptyList(),
@@ -126,11 +135,75 @@ class BasicHandle implements Handle
                 finally {
                     log.logReleaseHandle(this);
                     closed = true;
+                    if (permit != null) {
+                        permit.cleanup();
+                    }
                 }
             }
         }
     }
 
+    /**
+     * The permit of the {@link ConcurrencyLimiter} the handle was opened under, released once it is closed
+     */
+    void setPermit(ConcurrencyLimiter.Permit permit)
+    {
+        this.permit = permit;
+    }
+
+    /**
+     * Report how long a statement of the handle took to execute to the {@link ConcurrencyLimiter} it was
+     * opened under, if any
+     */
+    static void executed(Handle handle, long elapsedNanos)
+    {
+        if (handle instanceof BasicHandle) {
+            final ConcurrencyLimiter.Permit permit = ((BasicHandle) handle).permit;
+            if (permit != null) {
+                permit.observe(elapsedNanos);
+            }
+        }
+    }
+
+    /**
+     * Remember where the handle came from, so that {@link #openSibling()} can open another one like it
+     */
+    void setSource(DBI dbi, ConnectionFactory connectionFactory)
+    {
+        this.dbi = dbi;
+        this.connectionFactory = connectionFactory;
+    }
+
+    /**
+     * @return identifies the database the handle is connected to: the DBI and connection factory it was opened
+     *         from, or else the url and user of its connection; null if that is unknown
+     */
+    Object getDatabaseIdentity()
+    {
+        if (databaseIdentity == null) {
+            databaseIdentity = dbi != null
+                               ? Arrays.asList(dbi, connectionFactory)
+                               : BoundStatementKey.databaseOf(connection);
+        }
+        return databaseIdentity;
+    }
+
+    boolean hasSiblings()
+    {
+        return connectionFactory != null;
+    }
+
+    /**
+     * @return a new handle from the DBI and connection factory this one was opened from
+     */
+    Handle openSibling()
+    {
+        if (connectionFactory == null) {
+            throw new IllegalStateException("Handle was not opened from a DBI");
+        }
+        return dbi.open(connectionFactory, true);
+    }
+
     boolean isClosed()
     {
         return closed;
@@ -139,7 +212,26 @@ class BasicHandle implements Handle
     @Override
     public void define(String key, Object value)
     {
-        this.globalStatementAttributes.put(key, value);
+        this.globalStatementAttributes = StatementAttributes.with(globalStatementAttributes, key, value);
+    }
+
+    @Override
+    public Object getAttribute(String key)
+    {
+        final Object value = globalStatementAttributes.get(key);
+        return value == null && dbi != null ? dbi.getAttributeDefault(key) : value;
+    }
+
+    @Override
+    public void setDeadline(Deadline deadline)
+    {
+        this.deadline = deadline;
+    }
+
+    @Override
+    public Deadline getDeadline()
+    {
+        return deadline;
     }
 
     /**
@@ -160,7 +252,12 @@ class BasicHandle implements Handle
     public Handle commit()
     {
         final long start = System.nanoTime();
-        transactions.commit(this);
+        try {
+            transactions.commit(this);
+        }
+        finally {
+            runAfterTransaction();
+        }
         log.logCommitTransaction((System.nanoTime() - start) / 1000000L, this);
         return this;
     }
@@ -172,7 +269,12 @@ class BasicHandle implements Handle
     public Handle rollback()
     {
         final long start = System.nanoTime();
-        transactions.rollback(this);
+        try {
+            transactions.rollback(this);
+        }
+        finally {
+            runAfterTransaction();
+        }
         log.logRollbackTransaction((System.nanoTime() - start) / 1000000L, this);
         return this;
     }
@@ -249,6 +351,47 @@ class BasicHandle implements Handle
         return transactions.isInTransaction(this);
     }
 
+    @Override
+    public void afterTransaction(Runnable callback)
+    {
+        if (isInTransaction()) {
+            afterTransaction.add(callback);
+        }
+        else {
+            callback.run();
+        }
+    }
+
+    private void runAfterTransaction()
+    {
+        if (afterTransaction.isEmpty()) {
+            return;
+        }
+        final List<Runnable> callbacks = new ArrayList<Runnable>(afterTransaction);
+        afterTransaction.clear();
+        for (Runnable callback : callbacks) {
+            callback.run();
+        }
+    }
+
+    private ConcreteStatementContext newContext(MappingRegistry registry)
+    {
+        final ConcreteStatementContext ctx = new ConcreteStatementContext(globalStatementAttributes, registry);
+        ctx.setDBI(dbi);
+        return ctx;
+    }
+
+    /**
+     * @return the memo of the current transaction, if the transaction handler keeps one
+     */
+    QueryMemo getQueryMemo()
+    {
+        if (transactions instanceof MemoizingTransactionHandler) {
+            return ((MemoizingTransactionHandler) transactions).getQueryMemo(this);
+        }
+        return null;
+    }
+
     @Override
     public Update createStatement(String sql)
     {
@@ -257,7 +400,7 @@ class BasicHandle implements Handle
                           statementRewriter,
                           statementBuilder,
                           sql,
-                          new ConcreteStatementContext(globalStatementAttributes, new MappingRegistry(mappingRegistry)),
+                          newContext(new MappingRegistry(mappingRegistry)),
                           log,
                           timingCollector,
                           foreman,
@@ -272,7 +415,7 @@ class BasicHandle implements Handle
                         statementRewriter,
                         statementBuilder,
                         sql,
-                        new ConcreteStatementContext(globalStatementAttributes, new MappingRegistry(mappingRegistry)),
+                        newContext(new MappingRegistry(mappingRegistry)),
                         log,
                         timingCollector,
                         Collections.<StatementCustomizer>emptyList(),
@@ -305,7 +448,7 @@ class BasicHandle implements Handle
                                  this,
                                  statementBuilder,
                                  sql,
-                                 new ConcreteStatementContext(globalStatementAttributes, new MappingRegistry(mappingRegistry)),
+                                 newContext(new MappingRegistry(mappingRegistry)),
                                  log,
                                  timingCollector,
                                  Collections.<StatementCustomizer>emptyList(),
@@ -313,12 +456,47 @@ class BasicHandle implements Handle
                                  containerFactoryRegistry);
     }
 
+    @Override
+    public PreparedQuery<Map<String, Object>> prepareQuery(String sql)
+    {
+        return prepareQuery(sql, new DefaultMapper());
+    }
+
+    @Override
+    public <T> PreparedQuery<T> prepareQuery(String sql, ResultSetMapper<T> mapper)
+    {
+        return new PreparedQuery<T>(this,
+                                    statementLocator,
+                                    statementRewriter,
+                                    statementBuilder,
+                                    log,
+                                    timingCollector,
+                                    foreman.createChild(),
+                                    newContext(new MappingRegistry(mappingRegistry)),
+                                    sql,
+                                    mapper);
+    }
+
+    @Override
+    public PreparedUpdate prepareUpdate(String sql)
+    {
+        return new PreparedUpdate(this,
+                                  statementLocator,
+                                  statementRewriter,
+                                  statementBuilder,
+                                  log,
+                                  timingCollector,
+                                  foreman.createChild(),
+                                  newContext(new MappingRegistry(mappingRegistry)),
+                                  sql);
+    }
+
     @Override
     public Batch createBatch()
     {
         return new Batch(this.statementRewriter,
-                         this.connection,
-                         new ConcreteStatementContext(globalStatementAttributes, new MappingRegistry(mappingRegistry)),
+                         this,
+                         newContext(new MappingRegistry(mappingRegistry)),
                          log,
                          timingCollector,
                          foreman.createChild());
@@ -406,7 +584,7 @@ class BasicHandle implements Handle
     @Override
     public Script createScript(String name)
     {
-        return new Script(this, statementLocator, name, new ConcreteStatementContext(globalStatementAttributes, new MappingRegistry(mappingRegistry)));
+        return new Script(this, statementLocator, name, newContext(new MappingRegistry(mappingRegistry)));
     }
 
     @Override
@@ -31,12 +31,13 @@ public class Batch extends BaseStatement
 {
     private List<String> parts = new ArrayList<String>();
     private final StatementRewriter rewriter;
+    private final Handle handle;
     private final Connection connection;
     private final SQLLog log;
     private final TimingCollector timingCollector;
 
     Batch(StatementRewriter rewriter,
-          Connection connection,
+          Handle handle,
           ConcreteStatementContext statementContext,
           SQLLog log,
           TimingCollector timingCollector,
@@ -44,7 +45,8 @@ public class Batch extends BaseStatement
     {
         super(statementContext, foreman);
         this.rewriter = rewriter;
-        this.connection = connection;
+        this.handle = handle;
+        this.connection = handle.getConnection();
         this.log = log;
         this.timingCollector = timingCollector;
     }
@@ -83,6 +85,10 @@ public class Batch extends BaseStatement
             return new int[] {};
         }
 
+        QueryMemo.invalidate(handle);
+        final Deadline deadline = DeadlineTimer.deadlineOf(handle);
+        DeadlineTimer.check(deadline, getContext());
+
         Binding empty = new Binding();
         Statement stmt = null;
         try
@@ -112,6 +118,10 @@ public class Batch extends BaseStatement
                 throw new UnableToExecuteStatementException("Unable to configure JDBC statement", e, getContext());
             }
 
+            final DeadlineTimer.Guard guard = DeadlineTimer.arm(deadline, stmt, getContext());
+            if (guard != null) {
+                addCleanable(guard);
+            }
             try
             {
                 final long start = System.nanoTime();
@@ -120,12 +130,13 @@ public class Batch extends BaseStatement
                 logger.log(elapsedTime / 1000000L);
                 // Null for statement, because for batches, we don't really have a good way to keep the sql around.
                 timingCollector.collect(elapsedTime, getContext());
+                BasicHandle.executed(handle, elapsedTime);
                 return rs;
 
             }
             catch (SQLException e)
             {
-                throw new UnableToExecuteStatementException(e, getContext());
+                throw DeadlineTimer.failure(guard, e, getContext(), new UnableToExecuteStatementException(e, getContext()));
             }
         }
         finally {
@@ -0,0 +1,231 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.skife.jdbi.v2.tweak.ResultSetMapper;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Collects point lookups by key and answers them with one <code>IN</code> list query per batch, to avoid
+ * issuing one query per key. The query names the key list with a named parameter which is bound with
+ * {@link SQLStatement#bindList(String, Collection)}, for example
+ * <pre>
+ * BatchLoader&lt;Integer, Something&gt; loader = new BatchLoader&lt;Integer, Something&gt;(handle,
+ *     "select id, name from something where id in (:ids)", "ids", new SomethingMapper(),
+ *     new BatchLoader.KeyFunction&lt;Integer, Something&gt;() {
+ *         public Integer keyOf(Something s) { return s.getId(); }
+ *     });
+ * List&lt;BatchLoader.Value&lt;Something&gt;&gt; values = ...; // loader.load(id) for each id
+ * loader.dispatch();
+ * </pre>
+ * Keys are queued by {@link #load(Object)} and queried when {@link #dispatch()} is called, when a queued
+ * value is first read, or when {@link #setMaxBatchSize(int) a batch} worth of keys is queued. Large key
+ * sets are split into several queries of at most that many keys. Results, including keys without a row,
+ * are kept for the life of the loader, so create a loader per unit of work. Like the handle it uses, a
+ * loader must not be used by several threads at once.
+ */
+public class BatchLoader<K, V>
+{
+    /**
+     * The default largest number of keys queried at once
+     */
+    public static final int DEFAULT_MAX_BATCH_SIZE = 500;
+
+    private final Handle             handle;
+    private final String             sql;
+    private final String             keysName;
+    private final ResultSetMapper<V> mapper;
+    private final KeyFunction<K, V>  keyFunction;
+
+    private final Map<K, V> loaded = new HashMap<K, V>();
+    private final Set<K>    queued = new LinkedHashSet<K>();
+    private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+    private int queryCount;
+
+    /**
+     * @param handle      the handle to query with
+     * @param sql         the query, selecting the rows whose keys are in the list named <code>keysName</code>
+     * @param keysName    the name of the named parameter standing for the key list
+     * @param mapper      maps a row to a value
+     * @param keyFunction the key of a mapped value, used to hand values to the lookups asking for them
+     */
+    public BatchLoader(Handle handle,
+                       String sql,
+                       String keysName,
+                       ResultSetMapper<V> mapper,
+                       KeyFunction<K, V> keyFunction)
+    {
+        this.handle = handle;
+        this.sql = sql;
+        this.keysName = keysName;
+        this.mapper = mapper;
+        this.keyFunction = keyFunction;
+        if (!Pattern.compile("[:#]" + Pattern.quote(keysName) + "(?![\\w])").matcher(sql).find()) {
+            throw new IllegalArgumentException("query does not contain the key list :" + keysName);
+        }
+    }
+
+    /**
+     * Set the largest number of keys queried at once
+     */
+    public BatchLoader<K, V> setMaxBatchSize(int maxBatchSize)
+    {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("batch size must be positive");
+        }
+        this.maxBatchSize = maxBatchSize;
+        return this;
+    }
+
+    /**
+     * Queue a lookup of <code>key</code>.
+     *
+     * @return the value for the key, which is loaded when it is first read if it has not been yet
+     */
+    public Value load(K key)
+    {
+        if (!loaded.containsKey(key) && queued.add(key) && queued.size() >= maxBatchSize) {
+            dispatch();
+        }
+        return new Value(key);
+    }
+
+    /**
+     * Look up a single key, together with any queued lookups.
+     *
+     * @return the value for the key, or null if there is no row for it
+     */
+    public V get(K key)
+    {
+        return load(key).get();
+    }
+
+    /**
+     * Look up many keys at once.
+     *
+     * @return the values found, in the order of the keys. Keys without a row are left out.
+     */
+    public Map<K, V> getAll(Collection<? extends K> keys)
+    {
+        for (K key : keys) {
+            load(key);
+        }
+        dispatch();
+
+        Map<K, V> values = new LinkedHashMap<K, V>();
+        for (K key : keys) {
+            V value = loaded.get(key);
+            if (value != null) {
+                values.put(key, value);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Query all queued keys
+     */
+    public void dispatch()
+    {
+        while (!queued.isEmpty()) {
+            List<K> keys = new ArrayList<K>(Math.min(queued.size(), maxBatchSize));
+            for (Iterator<K> it = queued.iterator(); it.hasNext() && keys.size() < maxBatchSize; ) {
+                keys.add(it.next());
+                it.remove();
+            }
+            fetch(keys);
+        }
+    }
+
+    /**
+     * Forget all loaded values, so that they are queried again when next asked for
+     */
+    public void clear()
+    {
+        loaded.clear();
+    }
+
+    /**
+     * @return the number of queries issued so far
+     */
+    public int getQueryCount()
+    {
+        return queryCount;
+    }
+
+    private void fetch(List<K> keys)
+    {
+        Query<Map<String, Object>> q = handle.createQuery(sql).bindList(keysName, keys);
+        queryCount++;
+
+        for (K key : keys) {
+            loaded.put(key, null);
+        }
+        for (V value : q.map(mapper).list()) {
+            K key = keyFunction.keyOf(value);
+            if (loaded.get(key) == null) {
+                loaded.put(key, value);
+            }
+        }
+    }
+
+    /**
+     * The result of a lookup queued with {@link BatchLoader#load(Object)}
+     */
+    public final class Value
+    {
+        private final K key;
+
+        private Value(K key)
+        {
+            this.key = key;
+        }
+
+        public K getKey()
+        {
+            return key;
+        }
+
+        /**
+         * @return the value for the key, or null if there is no row for it. Queued lookups are
+         *         dispatched first if this one has not been loaded yet.
+         */
+        public V get()
+        {
+            if (!loaded.containsKey(key)) {
+                queued.add(key);
+                dispatch();
+            }
+            return loaded.get(key);
+        }
+    }
+
+    /**
+     * Gives the key of a loaded value
+     */
+    public interface KeyFunction<K, V>
+    {
+        K keyOf(V value);
+    }
+}
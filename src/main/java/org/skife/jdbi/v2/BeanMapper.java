@@ -107,5 +107,15 @@ public class BeanMapper<T> implements ResultSetMapper<T>
         return bean;
     }
 
-}
+    @Override
+    public boolean equals(Object o)
+    {
+        return o != null && o.getClass() == getClass() && type.equals(((BeanMapper<?>) o).type);
+    }
 
+    @Override
+    public int hashCode()
+    {
+        return type.hashCode();
+    }
+}
@@ -17,9 +17,11 @@ import org.skife.jdbi.v2.tweak.Argument;
 import org.skife.jdbi.v2.tweak.NamedArgumentFinder;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Represents the arguments bound to a particular statement
@@ -30,6 +32,8 @@ public class Binding
     private Map<String, Argument> named = new HashMap<String, Argument>();
     private List<NamedArgumentFinder> namedArgumentFinder = new ArrayList<NamedArgumentFinder>();
 
+    private static final String REDACTED = "***";
+
     void addPositional(int position, Argument parameter) {
         positionals.put(position, parameter);
     }
@@ -71,12 +75,46 @@ public class Binding
         this.named.put(name, argument);
     }
 
+    /**
+     * @return the name of a bound list which is longer than its maximum size, or null
+     */
+    String getOversizedList() {
+        for (Map.Entry<String, Argument> entry : named.entrySet()) {
+            if (entry.getValue() instanceof ListArgument && ((ListArgument) entry.getValue()).isOversized()) {
+                return entry.getKey();
+            }
+        }
+        return null;
+    }
+
+    int getOversizedListCount() {
+        int count = 0;
+        for (Argument argument : named.values()) {
+            if (argument instanceof ListArgument && ((ListArgument) argument).isOversized()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
     void addNamedArgumentFinder(NamedArgumentFinder args) {
         namedArgumentFinder.add(args);
     }
 
     @Override
     public String toString() {
+        return toString(Collections.<String>emptySet());
+    }
+
+    /**
+     * Render the bound arguments like {@link #toString()}, but mask the values of the
+     * named arguments listed in <code>redactedNames</code>.
+     *
+     * @param redactedNames names of the arguments whose values should not be rendered
+     *
+     * @return the rendered arguments
+     */
+    public String toString(Set<String> redactedNames) {
         boolean wrote = false;
         StringBuilder b = new StringBuilder();
         b.append("{ positional:{");
@@ -93,7 +131,14 @@ public class Binding
         b.append(", named:{");
         for (Map.Entry<String, Argument> entry : named.entrySet()) {
             wrote = true;
-            b.append(entry.getKey()).append(":").append(entry.getValue()).append(",");
+            b.append(entry.getKey()).append(":");
+            if (redactedNames.contains(entry.getKey())) {
+                b.append(REDACTED);
+            }
+            else {
+                b.append(entry.getValue());
+            }
+            b.append(",");
         }
         if (wrote) {
             wrote = false;
@@ -104,7 +149,14 @@ public class Binding
         b.append(", finder:[");
         for (NamedArgumentFinder argument : namedArgumentFinder) {
             wrote = true;
-            b.append(argument).append(",");
+            if (redactedNames.isEmpty()) {
+                b.append(argument);
+            }
+            else {
+                // finders can not be enumerated, so the redacted names can not be masked selectively
+                b.append(argument.getClass().getSimpleName()).append("(").append(REDACTED).append(")");
+            }
+            b.append(",");
         }
         if (wrote) {
             b.deleteCharAt(b.length() - 1);
@@ -115,6 +167,18 @@ public class Binding
         return b.toString();
     }
 
+    /**
+     * @return a binding with the same arguments, which can be added to independently of this one
+     */
+    Binding copy()
+    {
+        Binding copy = new Binding();
+        copy.positionals.putAll(positionals);
+        copy.named.putAll(named);
+        copy.namedArgumentFinder.addAll(namedArgumentFinder);
+        return copy;
+    }
+
     public void clear()
     {
         positionals.clear();
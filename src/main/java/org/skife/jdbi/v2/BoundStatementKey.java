@@ -0,0 +1,179 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.skife.jdbi.v2.tweak.Argument;
+import org.skife.jdbi.v2.tweak.RewrittenStatement;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Identifies a query by its rewritten SQL and the values it binds, as recorded from the calls
+ * binding them would make on a prepared statement. Only queries binding nothing but plain values
+ * have a key: other arguments, such as streams, files and LOBs, may have side effects or be
+ * consumed when applied, and are not applied to record them.
+ */
+final class BoundStatementKey
+{
+    private static final Set<Class<?>> VALUE_ARGUMENTS = new HashSet<Class<?>>(Arrays.<Class<?>>asList(
+        BigDecimalArgument.class,
+        BooleanArgument.class,
+        BooleanIntegerArgument.class,
+        ByteArgument.class,
+        ByteArrayArgument.class,
+        CharacterArgument.class,
+        DoubleArgument.class,
+        EnumArgument.class,
+        FloatArgument.class,
+        IntegerArgument.class,
+        JavaDateArgument.class,
+        LongArgument.class,
+        NullArgument.class,
+        ShortArgument.class,
+        SqlDateArgument.class,
+        StringArgument.class,
+        TimeArgument.class,
+        TimestampArgument.class,
+        URLArgument.class));
+
+    private final Object[] parts;
+
+    private BoundStatementKey(Object... parts)
+    {
+        this.parts = parts;
+    }
+
+    /**
+     * @param variant anything else determining the result, such as the mapper
+     * @return a key for a query, or null if it binds arguments which are not plain values
+     */
+    static Object of(RewrittenStatement rewritten, Binding params, Object variant)
+    {
+        final List<Object> bound = new ArrayList<Object>();
+        PreparedStatement recorder = (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                                                                                new Class<?>[]{PreparedStatement.class},
+                                                                                new InvocationHandler()
+        {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+            {
+                if (!method.getName().startsWith("set")) {
+                    throw new UnsupportedOperationException(method.getName());
+                }
+                bound.add(method.getName());
+                bound.add(new BoundStatementKey(args));
+                return null;
+            }
+        });
+        try {
+            rewritten.bind(new ValueBinding(params), recorder);
+        }
+        catch (Exception e) {
+            return null;
+        }
+        return new BoundStatementKey(rewritten.getSql(), new BoundStatementKey(bound.toArray()), variant);
+    }
+
+    /**
+     * @return the key qualified by the database the handle is connected to, or null if that is unknown
+     */
+    static Object forDatabase(Handle handle, Object key)
+    {
+        final Object database = handle instanceof BasicHandle ? ((BasicHandle) handle).getDatabaseIdentity() : null;
+        return database == null ? null : new BoundStatementKey(database, key);
+    }
+
+    /**
+     * @return the url and user of the connection, or null if they are unknown
+     */
+    static Object databaseOf(Connection connection)
+    {
+        try {
+            DatabaseMetaData md = connection.getMetaData();
+            return new BoundStatementKey(md.getURL(), md.getUserName());
+        }
+        catch (SQLException e) {
+            return null;
+        }
+    }
+
+    private static boolean isValue(Argument argument)
+    {
+        if (argument instanceof ListArgument) {
+            for (Argument element : ((ListArgument) argument).getElements()) {
+                if (!isValue(element)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return argument == null || VALUE_ARGUMENTS.contains(argument.getClass());
+    }
+
+    /**
+     * Hands out the arguments of a binding, refusing those which are not plain values
+     */
+    private static final class ValueBinding extends Binding
+    {
+        private final Binding params;
+
+        ValueBinding(Binding params)
+        {
+            this.params = params;
+        }
+
+        @Override
+        public Argument forName(String name)
+        {
+            return value(params.forName(name));
+        }
+
+        @Override
+        public Argument forPosition(int position)
+        {
+            return value(params.forPosition(position));
+        }
+
+        private static Argument value(Argument argument)
+        {
+            if (!isValue(argument)) {
+                throw new IllegalArgumentException("not a plain value: " + argument.getClass().getName());
+            }
+            return argument;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        return o instanceof BoundStatementKey && Arrays.deepEquals(parts, ((BoundStatementKey) o).parts);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Arrays.deepHashCode(parts);
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.skife.jdbi.v2.tweak.Argument;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Streams the remaining bytes of a buffer to the driver without copying them into a new array. The
+ * buffer's position is left unchanged.
+ */
+class ByteBufferArgument implements Argument
+{
+    private final ByteBuffer value;
+
+    ByteBufferArgument(ByteBuffer value)
+    {
+        this.value = value;
+    }
+
+    @Override
+    public void apply(int position, PreparedStatement statement, StatementContext ctx) throws SQLException
+    {
+        if (value == null) {
+            statement.setNull(position, Types.LONGVARBINARY);
+        }
+        else if (value.hasArray()) {
+            statement.setBinaryStream(position,
+                                      new ByteArrayInputStream(value.array(),
+                                                               value.arrayOffset() + value.position(),
+                                                               value.remaining()),
+                                      value.remaining());
+        }
+        else {
+            statement.setBinaryStream(position, new ByteBufferInputStream(value.duplicate()), value.remaining());
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.valueOf(value);
+    }
+}
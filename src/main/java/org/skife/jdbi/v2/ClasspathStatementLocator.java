@@ -25,6 +25,8 @@ import java.io.InputStream;
 import java.util.Collections;
 import java.util.Map;
 import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Matcher;
 
 /**
@@ -32,7 +34,42 @@ import java.util.regex.Matcher;
  */
 public class ClasspathStatementLocator implements StatementLocator
 {
-    private final Map<String, String> found = Collections.synchronizedMap(new WeakHashMap<String, String>());
+    private final ConcurrentMap<String, ConcurrentMap<String, SqlResourceIndex.Resource>> found =
+        new ConcurrentHashMap<String, ConcurrentMap<String, SqlResourceIndex.Resource>>();
+    private final Map<String, String> missing = Collections.synchronizedMap(new WeakHashMap<String, String>());
+    private final SqlResourceIndex index;
+
+    public ClasspathStatementLocator()
+    {
+        this(null);
+    }
+
+    private ClasspathStatementLocator(SqlResourceIndex index)
+    {
+        this.index = index;
+    }
+
+    /**
+     * Reads every <code>.sql</code> resource beneath the given classpath roots up front, so that
+     * statements found there never search the classpath. Names not found in the roots are still
+     * looked up as usual.
+     *
+     * @param roots resource paths such as <code>com/example/dao</code>. With none, every classpath
+     *              directory is scanned, but not jars.
+     */
+    public static ClasspathStatementLocator preload(String... roots)
+    {
+        return new ClasspathStatementLocator(SqlResourceIndex.scan(selectClassLoader(), false, roots));
+    }
+
+    /**
+     * Like {@link #preload(String...)}, and re-reads a resource loaded from a directory once its file
+     * changes. Meant for development.
+     */
+    public static ClasspathStatementLocator preloadAndWatch(String... roots)
+    {
+        return new ClasspathStatementLocator(SqlResourceIndex.scan(selectClassLoader(), true, roots));
+    }
 
     /**
      * Very basic sanity test to see if a string looks like it might be sql
@@ -74,6 +111,31 @@ public class ClasspathStatementLocator implements StatementLocator
     @SuppressFBWarnings("DM_STRING_CTOR")
     public String locate(String name, StatementContext ctx)
     {
+        final ConcurrentMap<String, SqlResourceIndex.Resource> found_for_type = foundFor(ctx.getSqlObjectType());
+        SqlResourceIndex.Resource resource = found_for_type.get(name);
+        if (resource != null) {
+            return resource.getSql();
+        }
+
+        if (looksLikeSql(name)) {
+            // No need to cache individual SQL statements that don't cause us to search the classpath
+            return name;
+        }
+
+        if (index != null) {
+            resource = index.get(name);
+            if (resource == null) {
+                resource = index.get(name + ".sql");
+            }
+            if (resource == null && ctx.getSqlObjectType() != null) {
+                resource = index.get(mungify(ctx.getSqlObjectType().getName() + '.' + name) + ".sql");
+            }
+            if (resource != null) {
+                found_for_type.putIfAbsent(name, resource);
+                return resource.getSql();
+            }
+        }
+
         final String cache_key;
         if (ctx.getSqlObjectType() != null) {
             cache_key = '/' + mungify(ctx.getSqlObjectType().getName() + '.' + name) + ".sql";
@@ -82,12 +144,7 @@ public class ClasspathStatementLocator implements StatementLocator
             cache_key = name;
         }
 
-        if (found.containsKey(cache_key)) {
-            return found.get(cache_key);
-        }
-
-        if (looksLikeSql(name)) {
-            // No need to cache individual SQL statements that don't cause us to search the classpath
+        if (missing.containsKey(cache_key)) {
             return name;
         }
         final ClassLoader loader = selectClassLoader();
@@ -109,17 +166,17 @@ public class ClasspathStatementLocator implements StatementLocator
             if (in_stream == null) {
                 // Ensure we don't store an identity map entry which has a hard reference
                 // to the key (through the value) by copying the value, avoids potential memory leak.
-                found.put(cache_key, name == cache_key ? new String(name) : name);
+                missing.put(cache_key, name == cache_key ? new String(name) : name);
                 return name;
             }
             String sql;
             try {
-                sql = SQL_SCRIPT_PARSER.parse(new ANTLRInputStream(in_stream));
+                sql = parse(in_stream);
             } catch (IOException e) {
                 throw new UnableToCreateStatementException(e.getMessage(), e, ctx);
             }
 
-            found.put(cache_key, sql);
+            found_for_type.putIfAbsent(name, new SqlResourceIndex.Resource(sql, null));
             return sql;
         }
         finally {
@@ -134,6 +191,26 @@ public class ClasspathStatementLocator implements StatementLocator
         }
     }
 
+    private ConcurrentMap<String, SqlResourceIndex.Resource> foundFor(Class<?> sqlObjectType)
+    {
+        // keyed on the type name rather than the type, so we hold no reference to its class loader
+        final String type = sqlObjectType == null ? "" : sqlObjectType.getName();
+        ConcurrentMap<String, SqlResourceIndex.Resource> found_for_type = found.get(type);
+        if (found_for_type == null) {
+            found_for_type = new ConcurrentHashMap<String, SqlResourceIndex.Resource>();
+            final ConcurrentMap<String, SqlResourceIndex.Resource> existing = found.putIfAbsent(type, found_for_type);
+            if (existing != null) {
+                found_for_type = existing;
+            }
+        }
+        return found_for_type;
+    }
+
+    static String parse(InputStream in) throws IOException
+    {
+        return SQL_SCRIPT_PARSER.parse(new ANTLRInputStream(in));
+    }
+
     /**
      * There *must* be a better place to put this without creating a helpers class just for it
      */
@@ -18,7 +18,6 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
@@ -28,7 +27,7 @@ import org.skife.jdbi.v2.tweak.ResultColumnMapper;
 public final class ConcreteStatementContext implements StatementContext
 {
     private final Set<Cleanable> cleanables = new LinkedHashSet<Cleanable>();
-    private final Map<String, Object>        attributes = new HashMap<String, Object>();
+    private final Map<String, Object>        attributes;
     private final MappingRegistry mappingRegistry;
 
     private String            rawSql;
@@ -43,10 +42,13 @@ public final class ConcreteStatementContext implements StatementContext
     private boolean           concurrentUpdatable;
     private String[]          generatedKeysColumnNames;
     private Foreman           foreman;
+    private StatementPhaseTimings phaseTimings;
+    private AdaptiveFetchSize.Observation fetchObservation;
+    private DBI               dbi;
 
     ConcreteStatementContext(Map<String, Object> globalAttributes, MappingRegistry mappingRegistry)
     {
-        attributes.putAll(globalAttributes);
+        this.attributes = new StatementAttributes(globalAttributes);
         this.mappingRegistry = mappingRegistry;
     }
 
@@ -69,12 +71,14 @@ public final class ConcreteStatementContext implements StatementContext
      *
      * @param key The name of the attribute
      *
-     * @return the value of the attribute
+     * @return the value of the attribute or else, for attributes jdbi itself looks up, the default of the
+     *         DBI the handle was opened from
      */
     @Override
     public Object getAttribute(String key)
     {
-        return this.attributes.get(key);
+        final Object value = this.attributes.get(key);
+        return value == null && dbi != null ? dbi.getAttributeDefault(key) : value;
     }
 
     /**
@@ -192,6 +196,19 @@ public final class ConcreteStatementContext implements StatementContext
         return binding;
     }
 
+    void setDBI(DBI dbi)
+    {
+        this.dbi = dbi;
+    }
+
+    /**
+     * @return the DBI the handle of the statement was opened from
+     */
+    DBI getDBI()
+    {
+        return dbi;
+    }
+
     public void setSqlObjectType(Class<?> sqlObjectType)
     {
         this.sqlObjectType = sqlObjectType;
@@ -284,4 +301,28 @@ public final class ConcreteStatementContext implements StatementContext
     void setForeman(Foreman foreman) {
         this.foreman = foreman;
     }
+
+    /**
+     * @return the time spent in each phase of the current or last execution, or null unless the timing
+     *         collector is a {@link PhaseTimingCollector}
+     */
+    StatementPhaseTimings getPhaseTimings()
+    {
+        return phaseTimings;
+    }
+
+    void setPhaseTimings(StatementPhaseTimings phaseTimings)
+    {
+        this.phaseTimings = phaseTimings;
+    }
+
+    AdaptiveFetchSize.Observation getFetchObservation()
+    {
+        return fetchObservation;
+    }
+
+    void setFetchObservation(AdaptiveFetchSize.Observation fetchObservation)
+    {
+        this.fetchObservation = fetchObservation;
+    }
 }
@@ -0,0 +1,283 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.skife.jdbi.v2.exceptions.ConcurrencyLimitExceededException;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the number of handles a {@link DBI} has open at once, and sheds load once the limit is reached.
+ * <p>
+ * The limit adapts to statement latency (additive increase, multiplicative decrease): while statements
+ * run within the target latency and the limit is in use, it grows slowly; when they take longer it is cut
+ * back, at most once per target latency. Opening a handle beyond the limit waits up to the maximum wait
+ * for another handle to be closed, and then fails with a {@link ConcurrencyLimitExceededException}.
+ * <p>
+ * Handles opened inside {@link #callInPartition(String, Callable)} count against a named partition as well.
+ * A partition may only use its share of the limit, so low priority work is shed before the rest.
+ * <p>
+ * Each open handle holds a permit until it is closed. A handle opened by a thread which already holds one
+ * (for example an on-demand sql object called inside {@link IDBI#withHandle}) needs a permit of its own,
+ * so with a small limit it may wait for, or be rejected because of, the caller's own handles: reuse the
+ * open handle in such code, or allow for the nesting in the minimum limit. Handles jdbi opens to assist
+ * an open handle, such as the background handle of a {@link KeysetPagination}, are admitted without
+ * waiting; they still count as open.
+ */
+public class ConcurrencyLimiter
+{
+    private static final double BACKOFF = 0.9;
+
+    private static final ThreadLocal<String> currentPartition = new ThreadLocal<String>();
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long targetLatencyNanos;
+    private final long maxWaitNanos;
+
+    private final Map<String, Double> shares = new HashMap<String, Double>();
+    private final Map<String, Integer> partitionInFlight = new HashMap<String, Integer>();
+
+    // the limit is adjusted on every statement, so it is kept in atomics rather than guarded by the monitor
+    private final AtomicLong limit;
+    private final AtomicLong lastDecrease;
+
+    private volatile int inFlight;
+    private long rejected;
+
+    /**
+     * @param initialLimit the number of handles which may be open at first
+     * @param minLimit the limit never drops below this
+     * @param maxLimit the limit never grows beyond this
+     * @param targetLatencyMillis statements slower than this reduce the limit
+     * @param maxWaitMillis how long to wait for a handle once the limit is reached, 0 to fail at once
+     */
+    public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, long targetLatencyMillis, long maxWaitMillis)
+    {
+        if (minLimit < 1 || minLimit > maxLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("limits must satisfy 1 <= min <= initial <= max");
+        }
+        if (targetLatencyMillis <= 0 || maxWaitMillis < 0) {
+            throw new IllegalArgumentException("target latency must be positive and max wait non-negative");
+        }
+        this.limit = new AtomicLong(Double.doubleToLongBits(initialLimit));
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMillis);
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        this.lastDecrease = new AtomicLong(System.nanoTime() - targetLatencyNanos);
+    }
+
+    /**
+     * Declare a partition which may use at most the given share of the limit (but always at least one handle).
+     * Handles opened outside any partition may use the whole limit.
+     *
+     * @param name name of the partition
+     * @param share fraction of the limit, between 0 and 1
+     * @return this limiter
+     */
+    public synchronized ConcurrencyLimiter partition(String name, double share)
+    {
+        if (share <= 0 || share > 1) {
+            throw new IllegalArgumentException("share must be in (0, 1]");
+        }
+        shares.put(name, share);
+        return this;
+    }
+
+    /**
+     * Run the callable with handles opened by the current thread counting against the named partition.
+     */
+    public static <T> T callInPartition(String name, Callable<T> callable) throws Exception
+    {
+        final String previous = currentPartition.get();
+        currentPartition.set(name);
+        try {
+            return callable.call();
+        }
+        finally {
+            if (previous == null) {
+                currentPartition.remove();
+            }
+            else {
+                currentPartition.set(previous);
+            }
+        }
+    }
+
+    /**
+     * @return the current limit on open handles
+     */
+    public int getLimit()
+    {
+        return (int) limit();
+    }
+
+    /**
+     * @return the number of handles currently open
+     */
+    public int getInFlight()
+    {
+        return inFlight;
+    }
+
+    /**
+     * @return the number of handles currently open in the named partition
+     */
+    public synchronized int getInFlight(String partition)
+    {
+        final Integer count = partitionInFlight.get(partition);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * @return the number of handles which could not be opened because of the limit
+     */
+    public synchronized long getRejectedCount()
+    {
+        return rejected;
+    }
+
+    Permit acquire()
+    {
+        return acquire(false);
+    }
+
+    /**
+     * @param assisting true if the handle assists another handle which holds a permit, and may not wait
+     */
+    Permit acquire(boolean assisting)
+    {
+        final String partition = currentPartition.get();
+        final long deadline = System.nanoTime() + maxWaitNanos;
+        synchronized (this) {
+            while (!assisting && !admits(partition)) {
+                final long wait = deadline - System.nanoTime();
+                if (wait <= 0) {
+                    throw reject(partition);
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(this, wait);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw reject(partition);
+                }
+            }
+            inFlight++;
+            if (partition != null) {
+                partitionInFlight.put(partition, getInFlight(partition) + 1);
+            }
+        }
+        return new Permit(partition);
+    }
+
+    void observe(long elapsedNanos)
+    {
+        if (elapsedNanos > targetLatencyNanos) {
+            final long now = System.nanoTime();
+            final long last = lastDecrease.get();
+            if (now - last >= targetLatencyNanos && lastDecrease.compareAndSet(last, now)) {
+                double current;
+                do {
+                    current = limit();
+                }
+                while (!limit.compareAndSet(Double.doubleToLongBits(current),
+                                            Double.doubleToLongBits(Math.max(minLimit, current * BACKOFF))));
+            }
+        }
+        else {
+            // an increase lost to a concurrent update is dropped, like an unsampled statement
+            final double current = limit();
+            if (inFlight * 2 >= current && current < maxLimit) {
+                final double next = Math.min(maxLimit, current + 1 / current);
+                if (limit.compareAndSet(Double.doubleToLongBits(current), Double.doubleToLongBits(next))
+                    && (int) next > (int) current) {
+                    synchronized (this) {
+                        notifyAll();
+                    }
+                }
+            }
+        }
+    }
+
+    private double limit()
+    {
+        return Double.longBitsToDouble(limit.get());
+    }
+
+    private synchronized void release(String partition)
+    {
+        inFlight--;
+        if (partition != null) {
+            partitionInFlight.put(partition, getInFlight(partition) - 1);
+        }
+        notifyAll();
+    }
+
+    private boolean admits(String partition)
+    {
+        final int current = (int) limit();
+        if (inFlight >= current) {
+            return false;
+        }
+        final Double share = partition == null ? null : shares.get(partition);
+        return share == null || getInFlight(partition) < Math.max(1, (int) (current * share));
+    }
+
+    private ConcurrencyLimitExceededException reject(String partition)
+    {
+        rejected++;
+        return new ConcurrencyLimitExceededException(String.format("Concurrency limit of %d reached%s", getLimit(),
+                                                                   partition == null ? "" : " in partition " + partition));
+    }
+
+    /**
+     * A slot taken by an open handle, given back when the handle is closed.
+     */
+    final class Permit implements Cleanable
+    {
+        private final String partition;
+        private boolean released;
+
+        private Permit(String partition)
+        {
+            this.partition = partition;
+        }
+
+        @Override
+        public void cleanup()
+        {
+            synchronized (ConcurrencyLimiter.this) {
+                if (released) {
+                    return;
+                }
+                released = true;
+            }
+            release(partition);
+        }
+
+        /**
+         * Adjust the limit to the latency of a statement run on the permit's handle
+         */
+        void observe(long elapsedNanos)
+        {
+            ConcurrencyLimiter.this.observe(elapsedNanos);
+        }
+    }
+}
@@ -16,6 +16,8 @@ package org.skife.jdbi.v2;
 import org.skife.jdbi.v2.exceptions.CallbackFailedException;
 import org.skife.jdbi.v2.exceptions.UnableToObtainConnectionException;
 import org.skife.jdbi.v2.logging.NoOpLog;
+import org.skife.jdbi.v2.sqlobject.InMemoryResultCache;
+import org.skife.jdbi.v2.sqlobject.ResultCache;
 import org.skife.jdbi.v2.sqlobject.SqlObjectBuilder;
 import org.skife.jdbi.v2.tweak.ArgumentFactory;
 import org.skife.jdbi.v2.tweak.ConnectionFactory;
@@ -37,9 +39,11 @@ import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -48,7 +52,7 @@ import java.util.concurrent.atomic.AtomicReference;
  */
 public class DBI implements IDBI
 {
-    private final Map<String, Object> globalStatementAttributes = new ConcurrentHashMap<String, Object>();
+    private volatile Map<String, Object> globalStatementAttributes = Collections.emptyMap();
     private final MappingRegistry mappingRegistry = new MappingRegistry();
     private final ContainerFactoryRegistry containerFactoryRegistry = new ContainerFactoryRegistry();
     private final Foreman foreman = new Foreman();
@@ -61,6 +65,8 @@ public class DBI implements IDBI
     private AtomicReference<StatementBuilderFactory> statementBuilderFactory = new AtomicReference<StatementBuilderFactory>(new DefaultStatementBuilderFactory());
     private AtomicReference<SQLLog> log = new AtomicReference<SQLLog>(new NoOpLog());
     private AtomicReference<TimingCollector> timingCollector = new AtomicReference<TimingCollector>(TimingCollector.NOP_TIMING_COLLECTOR);
+    private volatile ConcurrencyLimiter concurrencyLimiter;
+    private final ConcurrentMap<String, Object> attributeDefaults = new ConcurrentHashMap<String, Object>();
 
     /**
      * Constructor for use with a DataSource which will provide
@@ -206,28 +212,57 @@ public class DBI implements IDBI
     @Override
     public Handle open()
     {
+        return open(connectionFactory);
+    }
+
+    /**
+     * Obtain a Handle to a connection from the given factory, configured as any other
+     * handle from this DBI instance.
+     */
+    Handle open(ConnectionFactory connectionFactory)
+    {
+        return open(connectionFactory, false);
+    }
+
+    /**
+     * @param assisting true if the handle assists another open handle, so that it is not held back by the
+     *                  {@link ConcurrencyLimiter}
+     */
+    Handle open(ConnectionFactory connectionFactory, boolean assisting)
+    {
+        final ConcurrencyLimiter limiter = concurrencyLimiter;
+        final ConcurrencyLimiter.Permit permit = limiter == null ? null : limiter.acquire(assisting);
+        boolean opened = false;
         try {
             final long start = System.nanoTime();
             Connection conn = connectionFactory.openConnection();
             final long stop = System.nanoTime();
             StatementBuilder cache = statementBuilderFactory.get().createStatementBuilder(conn);
-            Handle h = new BasicHandle(transactionhandler.get(),
-                                       statementLocator.get(),
-                                       cache,
-                                       statementRewriter.get(),
-                                       conn,
-                                       globalStatementAttributes,
-                                       log.get(),
-                                       timingCollector.get(),
-                                       new MappingRegistry(mappingRegistry),
-                                       foreman.createChild(),
-                                       containerFactoryRegistry.createChild());
+            BasicHandle h = new BasicHandle(transactionhandler.get(),
+                                            statementLocator.get(),
+                                            cache,
+                                            statementRewriter.get(),
+                                            conn,
+                                            globalStatementAttributes,
+                                            log.get(),
+                                            timingCollector.get(),
+                                            new MappingRegistry(mappingRegistry),
+                                            foreman.createChild(),
+                                            containerFactoryRegistry.createChild());
+            h.setPermit(permit);
+            h.setSource(this, connectionFactory);
+            opened = true;
             log.get().logObtainHandle((stop - start) / 1000000L, h);
             return h;
         }
         catch (SQLException e) {
             throw new UnableToObtainConnectionException(e);
         }
+        finally {
+            if (permit != null && !opened) {
+                permit.cleanup();
+            }
+        }
     }
 
     /**
@@ -274,9 +309,49 @@ public class DBI implements IDBI
      * @param value the value for the attribute
      */
     @Override
-    public void define(String key, Object value)
+    public synchronized void define(String key, Object value)
+    {
+        this.globalStatementAttributes = StatementAttributes.with(globalStatementAttributes, key, value);
+    }
+
+    /**
+     * @return the statement attribute defined on this DBI, or else this DBI's default for an attribute jdbi
+     *         itself looks up, or null
+     */
+    Object getStatementAttribute(String key)
     {
-        this.globalStatementAttributes.put(key, value);
+        final Object value = globalStatementAttributes.get(key);
+        return value == null ? getAttributeDefault(key) : value;
+    }
+
+    /**
+     * @return this DBI's default for an attribute jdbi itself looks up, created on first use, or null
+     */
+    Object getAttributeDefault(String key)
+    {
+        Object value = attributeDefaults.get(key);
+        if (value == null) {
+            final Object created = createAttributeDefault(key);
+            if (created == null) {
+                return null;
+            }
+            value = attributeDefaults.putIfAbsent(key, created);
+            if (value == null) {
+                value = created;
+            }
+        }
+        return value;
+    }
+
+    private static Object createAttributeDefault(String key)
+    {
+        if (ResultCache.ATTRIBUTE.equals(key)) {
+            return new InMemoryResultCache();
+        }
+        if (QueryCoalescer.ATTRIBUTE.equals(key)) {
+            return new QueryCoalescer();
+        }
+        return null;
     }
 
     /**
@@ -455,14 +530,18 @@ public class DBI implements IDBI
     public static Handle open(final Connection connection)
     {
         assert connection != null;
-        return new DBI(new ConnectionFactory()
+        DBI dbi = new DBI(new ConnectionFactory()
         {
             @Override
             public Connection openConnection()
             {
                 return connection;
             }
-        }).open();
+        });
+        BasicHandle h = (BasicHandle) dbi.open();
+        // every handle from that DBI would share the one connection
+        h.setSource(dbi, null);
+        return h;
     }
 
     /**
@@ -555,6 +634,21 @@ public class DBI implements IDBI
         return this.timingCollector.get();
     }
 
+    /**
+     * Limit the number of handles open from this DBI at once, see {@link ConcurrencyLimiter}.
+     *
+     * @param concurrencyLimiter the limiter, or null to open handles without limit
+     */
+    public void setConcurrencyLimiter(ConcurrencyLimiter concurrencyLimiter)
+    {
+        this.concurrencyLimiter = concurrencyLimiter;
+    }
+
+    public ConcurrencyLimiter getConcurrencyLimiter()
+    {
+        return concurrencyLimiter;
+    }
+
     public void registerArgumentFactory(ArgumentFactory<?> argumentFactory)
     {
         foreman.register(argumentFactory);
@@ -0,0 +1,63 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A point in time by which statements must have finished, see {@link ExtendedHandle#setDeadline(Deadline)}. Statements
+ * executed under a deadline get a query timeout of the time remaining, are cancelled once it passes, and are not
+ * prepared at all once it has passed.
+ */
+public final class Deadline
+{
+    private final long expiresNanos;
+
+    private Deadline(long expiresNanos)
+    {
+        this.expiresNanos = expiresNanos;
+    }
+
+    /**
+     * @return a deadline <code>timeout</code> from now
+     */
+    public static Deadline after(long timeout, TimeUnit unit)
+    {
+        return new Deadline(System.nanoTime() + unit.toNanos(timeout));
+    }
+
+    /**
+     * @return the time left until the deadline, negative once it has passed
+     */
+    public long remaining(TimeUnit unit)
+    {
+        return unit.convert(expiresNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    public boolean isExpired()
+    {
+        return expiresNanos - System.nanoTime() <= 0;
+    }
+
+    long getExpiresNanos()
+    {
+        return expiresNanos;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Deadline in " + remaining(TimeUnit.MILLISECONDS) + "ms";
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.skife.jdbi.v2.exceptions.DeadlineExceededException;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Cancels statements still running at their {@link Deadline}. A single daemon thread turns a hashed wheel of
+ * buckets, one per tick; a statement waits in the bucket of the tick its deadline falls in, and is looked at
+ * again every turn of the wheel until its deadline passes or it finishes.
+ */
+final class DeadlineTimer implements Runnable
+{
+    static final DeadlineTimer SHARED = new DeadlineTimer(TimeUnit.MILLISECONDS.toNanos(10), 512);
+
+    private final long tickNanos;
+    private final List<Queue<Guard>> wheel;
+    private final long origin = System.nanoTime();
+    private final AtomicBoolean started = new AtomicBoolean();
+    private volatile long processedTick;
+
+    DeadlineTimer(long tickNanos, int buckets)
+    {
+        this.tickNanos = tickNanos;
+        this.wheel = new ArrayList<Queue<Guard>>(buckets);
+        for (int i = 0; i < buckets; i++) {
+            wheel.add(new ConcurrentLinkedQueue<Guard>());
+        }
+    }
+
+    /**
+     * @return the deadline set on the handle, or null
+     */
+    static Deadline deadlineOf(Handle handle)
+    {
+        return handle instanceof ExtendedHandle ? ((ExtendedHandle) handle).getDeadline() : null;
+    }
+
+    /**
+     * Fails if the deadline has passed, so the statement is not even prepared.
+     */
+    static void check(Deadline deadline, StatementContext ctx)
+    {
+        if (deadline != null && deadline.isExpired()) {
+            throw new DeadlineExceededException("Deadline passed before the statement was prepared", ctx);
+        }
+    }
+
+    /**
+     * Caps the query timeout of <code>stmt</code> at the time remaining and schedules its cancellation.
+     *
+     * @return the guard to release once the statement is done, or null without a deadline
+     */
+    static Guard arm(Deadline deadline, Statement stmt, StatementContext ctx)
+    {
+        if (deadline == null) {
+            return null;
+        }
+        check(deadline, ctx);
+
+        final Guard guard = new Guard(stmt, deadline.getExpiresNanos());
+        try {
+            guard.previousTimeout = stmt.getQueryTimeout();
+            final long remaining = deadline.remaining(TimeUnit.MILLISECONDS);
+            final int seconds = (int) Math.max(1, Math.min(Integer.MAX_VALUE, (remaining + 999) / 1000));
+            if (guard.previousTimeout == 0 || guard.previousTimeout > seconds) {
+                stmt.setQueryTimeout(seconds);
+            }
+        }
+        catch (SQLException e) {
+            throw new DeadlineExceededException("Unable to apply deadline to statement", e, ctx);
+        }
+        SHARED.schedule(guard);
+        return guard;
+    }
+
+    /**
+     * @return the exception for a statement which failed, blaming the deadline if it cancelled the statement
+     */
+    static RuntimeException failure(Guard guard, SQLException e, StatementContext ctx, RuntimeException otherwise)
+    {
+        if (guard != null && guard.hasFired()) {
+            return new DeadlineExceededException("Statement cancelled at its deadline", e, ctx);
+        }
+        return otherwise;
+    }
+
+    void schedule(Guard guard)
+    {
+        if (started.compareAndSet(false, true)) {
+            final Thread thread = new Thread(this, "jdbi-deadline-timer");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        // never into a bucket the timer has already passed this turn
+        final long tick = Math.max(tickOf(guard.expiresNanos), processedTick + 1);
+        wheel.get((int) (tick % wheel.size())).add(guard);
+    }
+
+    private long tickOf(long nanos)
+    {
+        return (nanos - origin) / tickNanos;
+    }
+
+    @Override
+    public void run()
+    {
+        processedTick = tickOf(System.nanoTime());
+        while (true) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(tickNanos);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            final long now = System.nanoTime();
+            final long current = tickOf(now);
+            for (long tick = processedTick + 1; tick <= current; tick++) {
+                expire(wheel.get((int) (tick % wheel.size())), now);
+                processedTick = tick;
+            }
+        }
+    }
+
+    private static void expire(Queue<Guard> bucket, long now)
+    {
+        for (Iterator<Guard> it = bucket.iterator(); it.hasNext(); ) {
+            final Guard guard = it.next();
+            if (guard.released) {
+                it.remove();
+            }
+            else if (guard.expiresNanos - now <= 0) {
+                it.remove();
+                guard.fire();
+            }
+        }
+    }
+
+    /**
+     * A statement running under a deadline, released by {@link #cleanup()} as well.
+     */
+    static final class Guard implements Cleanable
+    {
+        private final Statement stmt;
+        private final long expiresNanos;
+        private int previousTimeout;
+        private volatile boolean released;
+        private volatile boolean fired;
+
+        Guard(Statement stmt, long expiresNanos)
+        {
+            this.stmt = stmt;
+            this.expiresNanos = expiresNanos;
+        }
+
+        boolean hasFired()
+        {
+            return fired;
+        }
+
+        @SuppressWarnings("PMD.EmptyCatchBlock")
+        private synchronized void fire()
+        {
+            if (released) {
+                return;
+            }
+            fired = true;
+            try {
+                stmt.cancel();
+            }
+            catch (SQLException e) {
+                // the query timeout still applies, nothing more we can do
+            }
+        }
+
+        /**
+         * Stops the pending cancellation and restores the query timeout, as the statement may be reused.
+         */
+        @SuppressWarnings("PMD.EmptyCatchBlock")
+        synchronized void release()
+        {
+            if (released) {
+                return;
+            }
+            released = true;
+            try {
+                stmt.setQueryTimeout(previousTimeout);
+            }
+            catch (SQLException e) {
+                // the statement has most likely been closed already
+            }
+        }
+
+        @Override
+        public void cleanup()
+        {
+            release();
+        }
+    }
+}
@@ -16,18 +16,55 @@ package org.skife.jdbi.v2;
 import org.skife.jdbi.v2.exceptions.ResultSetException;
 import org.skife.jdbi.v2.tweak.ResultSetMapper;
 
+import java.io.Serializable;
+import java.lang.ref.WeakReference;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
+/**
+ * Maps each row to a map from lower cased column label to value. Rows of the same result set share one
+ * column index, and each row holds only its values.
+ */
 public class DefaultMapper implements ResultSetMapper<Map<String, Object>>
 {
+    private volatile CachedColumns cached;
+
     @Override
     public Map<String, Object> map(int index, ResultSet r, StatementContext ctx)
     {
-        Map<String, Object> row = new DefaultResultMap();
+        Columns columns = columnsFor(index, r, ctx);
+        Object[] values = new Object[columns.positions.length];
+        try
+        {
+            for (int i = 0; i < values.length; i ++)
+            {
+                values[i] = r.getObject(columns.positions[i]);
+            }
+        }
+        catch (SQLException e)
+        {
+            throw new ResultSetException("Unable to access specific metadata from " +
+                                         "result set metadata", e, ctx);
+        }
+        return new DefaultResultMap(columns, values);
+    }
+
+    private Columns columnsFor(int index, ResultSet r, StatementContext ctx)
+    {
+        CachedColumns c = cached;
+        if (index > 0 && c != null && c.results.get() == r) {
+            return c.columns;
+        }
+
         ResultSetMetaData m;
         try
         {
@@ -38,44 +75,193 @@ public class DefaultMapper implements ResultSetMapper<Map<String, Object>>
             throw new ResultSetException("Unable to obtain metadata from result set", e, ctx);
         }
 
+        Columns columns;
         try
         {
+            columns = new Columns(m);
+        }
+        catch (SQLException e)
+        {
+            throw new ResultSetException("Unable to access specific metadata from " +
+                                         "result set metadata", e, ctx);
+        }
+        cached = new CachedColumns(r, columns);
+        return columns;
+    }
+
+    private static final class CachedColumns
+    {
+        private final WeakReference<ResultSet> results;
+        private final Columns columns;
+
+        CachedColumns(ResultSet results, Columns columns)
+        {
+            this.results = new WeakReference<ResultSet>(results);
+            this.columns = columns;
+        }
+    }
+
+    /**
+     * The lower cased labels of a result set's columns. A label used by several columns stands for the last.
+     */
+    private static final class Columns implements Serializable
+    {
+        public static final long serialVersionUID = 1L;
+
+        private final String[] names;
+        private final int[] positions;
+        private final Map<String, Integer> slots = new HashMap<String, Integer>();
+
+        Columns(ResultSetMetaData m) throws SQLException
+        {
+            Map<String, Integer> byName = new LinkedHashMap<String, Integer>();
             for (int i = 1; i <= m.getColumnCount(); i ++)
             {
                 String key = m.getColumnName(i);
                 String alias = m.getColumnLabel(i);
-                Object value = r.getObject(i);
-                row.put(alias != null ? alias : key, value);
+                byName.put((alias != null ? alias : key).toLowerCase(), i);
+            }
+            names = new String[byName.size()];
+            positions = new int[byName.size()];
+            int slot = 0;
+            for (Map.Entry<String, Integer> entry : byName.entrySet())
+            {
+                names[slot] = entry.getKey();
+                positions[slot] = entry.getValue();
+                slots.put(entry.getKey(), slot++);
             }
         }
-        catch (SQLException e)
+
+        int slotOf(Object key)
         {
-            throw new ResultSetException("Unable to access specific metadata from " +
-                                         "result set metadata", e, ctx);
+            if (!(key instanceof String)) {
+                return -1;
+            }
+            Integer slot = slots.get(key);
+            if (slot == null) {
+                slot = slots.get(((String) key).toLowerCase());
+            }
+            return slot == null ? -1 : slot;
         }
-        return row;
     }
 
-    private static class DefaultResultMap extends HashMap<String, Object>
+    /**
+     * A row of values over shared {@link Columns}. Lookups ignore case. The row is copied into a
+     * hash map the first time it is modified.
+     */
+    private static class DefaultResultMap extends AbstractMap<String, Object> implements Serializable
     {
-        public static final long serialVersionUID = 1L;
+        public static final long serialVersionUID = 2L;
+
+        private final Columns columns;
+        private final Object[] values;
+        private HashMap<String, Object> modified;
+
+        DefaultResultMap(Columns columns, Object[] values)
+        {
+            this.columns = columns;
+            this.values = values;
+        }
 
         @Override
         public Object get(Object o)
         {
-            return super.get(((String)o).toLowerCase());
+            if (modified != null) {
+                return modified.get(((String) o).toLowerCase());
+            }
+            int slot = columns.slotOf(o);
+            return slot < 0 ? null : values[slot];
+        }
+
+        @Override
+        public boolean containsKey(Object key)
+        {
+            if (modified != null) {
+                return modified.containsKey(((String) key).toLowerCase());
+            }
+            return columns.slotOf(key) >= 0;
+        }
+
+        @Override
+        public int size()
+        {
+            return modified != null ? modified.size() : values.length;
         }
 
         @Override
         public Object put(String key, Object value)
         {
-            return super.put(key.toLowerCase(), value);
+            return modifiable().put(key.toLowerCase(), value);
         }
 
         @Override
-        public boolean containsKey(Object key)
+        public Object remove(Object key)
+        {
+            return modifiable().remove(((String) key).toLowerCase());
+        }
+
+        @Override
+        public void clear()
         {
-            return super.containsKey(((String)key).toLowerCase());
+            modifiable().clear();
+        }
+
+        private Map<String, Object> modifiable()
+        {
+            if (modified == null) {
+                modified = new HashMap<String, Object>();
+                for (int i = 0; i < values.length; i ++) {
+                    modified.put(columns.names[i], values[i]);
+                }
+            }
+            return modified;
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet()
+        {
+            if (modified != null) {
+                return modified.entrySet();
+            }
+            return new AbstractSet<Entry<String, Object>>()
+            {
+                @Override
+                public Iterator<Entry<String, Object>> iterator()
+                {
+                    return new Iterator<Entry<String, Object>>()
+                    {
+                        private int next = 0;
+
+                        @Override
+                        public boolean hasNext()
+                        {
+                            return modified == null ? next < values.length : false;
+                        }
+
+                        @Override
+                        public Entry<String, Object> next()
+                        {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            final int slot = next++;
+                            return new SimpleImmutableEntry<String, Object>(columns.names[slot], values[slot]);
+                        }
+
+                        @Override
+                        public void remove()
+                        {
+                            throw new UnsupportedOperationException("use Map.remove to remove columns");
+                        }
+                    };
+                }
+
+                @Override
+                public int size()
+                {
+                    return values.length;
+                }
+            };
         }
     }
 }
@@ -0,0 +1,77 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.skife.jdbi.v2.tweak.ResultSetMapper;
+
+import java.util.Map;
+
+/**
+ * Operations of the handles opened by a {@link DBI} which are not part of {@link Handle}, so that
+ * other implementations of that interface keep compiling. Cast a handle to use them.
+ */
+public interface ExtendedHandle extends Handle
+{
+    /**
+     * Obtain the value statements created by this handle see for an attribute: the one defined on the
+     * handle or its DBI or else, for attributes jdbi itself looks up, the default of the DBI.
+     *
+     * @param key The name of the attribute
+     *
+     * @return the value of the attribute, or null
+     */
+    Object getAttribute(String key);
+
+    /**
+     * Run the callback once the current transaction is committed or rolled back, or straight away if the
+     * handle is not in a transaction.
+     *
+     * @param callback run after the transaction ends
+     */
+    void afterTransaction(Runnable callback);
+
+    /**
+     * Prepare a query once, to be executed repeatedly with different values bound, as long as this handle
+     * remains open. Rows are mapped as by {@link Handle#createQuery(String)}.
+     * @param sql the select sql
+     */
+    PreparedQuery<Map<String, Object>> prepareQuery(String sql);
+
+    /**
+     * Prepare a query once, to be executed repeatedly with different values bound, as long as this handle
+     * remains open.
+     * @param sql the select sql
+     * @param mapper maps each row
+     */
+    <T> PreparedQuery<T> prepareQuery(String sql, ResultSetMapper<T> mapper);
+
+    /**
+     * Prepare an insert, update or delete once, to be executed repeatedly with different values bound, as
+     * long as this handle remains open.
+     * @param sql the statement sql
+     */
+    PreparedUpdate prepareUpdate(String sql);
+
+    /**
+     * Bound the time every statement executed on this handle may take, until the deadline is replaced or cleared.
+     * Statements are refused once it has passed, and cancelled when it passes while they run.
+     * @param deadline the deadline, or null to clear it
+     */
+    void setDeadline(Deadline deadline);
+
+    /**
+     * @return the deadline set on this handle, or null
+     */
+    Deadline getDeadline();
+}
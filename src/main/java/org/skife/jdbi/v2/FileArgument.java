@@ -0,0 +1,77 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.skife.jdbi.v2.tweak.Argument;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Streams the contents of a file to the driver. The file is opened when the argument is applied and
+ * closed when the statement is cleaned up.
+ */
+class FileArgument implements Argument
+{
+    private final File file;
+
+    FileArgument(File file)
+    {
+        this.file = file;
+    }
+
+    @Override
+    public void apply(int position, PreparedStatement statement, StatementContext ctx) throws SQLException
+    {
+        if (file == null) {
+            statement.setNull(position, Types.LONGVARBINARY);
+            return;
+        }
+
+        final InputStream in;
+        try {
+            in = new FileInputStream(file);
+        }
+        catch (IOException e) {
+            throw new SQLException("unable to open " + file, e);
+        }
+        if (ctx instanceof ConcreteStatementContext) {
+            ((ConcreteStatementContext) ctx).getCleanables().add(new Cleanable()
+            {
+                @Override
+                public void cleanup() throws SQLException
+                {
+                    try {
+                        in.close();
+                    }
+                    catch (IOException e) {
+                        throw new SQLException("unable to close " + file, e);
+                    }
+                }
+            });
+        }
+        statement.setBinaryStream(position, in, file.length());
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.valueOf(file);
+    }
+}
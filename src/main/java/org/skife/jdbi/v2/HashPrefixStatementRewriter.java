@@ -68,7 +68,7 @@ public class HashPrefixStatementRewriter implements StatementRewriter
                 throw new UnableToCreateStatementException("Exception parsing for named parameter replacement", e, ctx);
             }
         }
-        return new MyRewrittenStatement(stmt, ctx);
+        return new MyRewrittenStatement(stmt, ListArgument.expand(stmt.sql, stmt.offsets, stmt.params, params), ctx);
     }
 
     ParsedStatement parseString(final String sql) throws IllegalArgumentException
@@ -83,7 +83,7 @@ public class HashPrefixStatementRewriter implements StatementRewriter
                     b.append(t.getText());
                     break;
                 case NAMED_PARAM:
-                    stmt.addNamedParamAt(t.getText().substring(1, t.getText().length()));
+                    stmt.addNamedParamAt(t.getText().substring(1, t.getText().length()), b.length());
                     b.append("?");
                     break;
                 case QUOTED_TEXT:
@@ -93,8 +93,8 @@ public class HashPrefixStatementRewriter implements StatementRewriter
                     b.append(t.getText());
                     break;
                 case POSITIONAL_PARAM:
+                    stmt.addPositionalParamAt(b.length());
                     b.append("?");
-                    stmt.addPositionalParamAt();
                     break;
                 case ESCAPED_TEXT:
                     b.append(t.getText().substring(1));
@@ -111,12 +111,14 @@ public class HashPrefixStatementRewriter implements StatementRewriter
     private static class MyRewrittenStatement implements RewrittenStatement
     {
         private final ParsedStatement stmt;
+        private final String sql;
         private final StatementContext context;
 
-        MyRewrittenStatement(ParsedStatement stmt, StatementContext ctx)
+        MyRewrittenStatement(ParsedStatement stmt, String sql, StatementContext ctx)
         {
             this.context = ctx;
             this.stmt = stmt;
+            this.sql = sql;
         }
 
         @Override
@@ -169,7 +171,7 @@ public class HashPrefixStatementRewriter implements StatementRewriter
                         throw new UnableToCreateStatementException(String.format("Exception while binding '%s'",
                                                                                  named_param), e, context);
                     }
-                    i++;
+                    i += a instanceof ListArgument ? ((ListArgument) a).getPlaceholderCount() : 1;
                 }
             }
         }
@@ -177,7 +179,7 @@ public class HashPrefixStatementRewriter implements StatementRewriter
         @Override
         public String getSql()
         {
-            return stmt.getParsedSql();
+            return sql;
         }
     }
 
@@ -186,16 +188,19 @@ public class HashPrefixStatementRewriter implements StatementRewriter
         private String sql;
         private boolean positionalOnly = true;
         private List<String> params = new ArrayList<String>();
+        private List<Integer> offsets = new ArrayList<Integer>();
 
-        public void addNamedParamAt(String name)
+        public void addNamedParamAt(String name, int offset)
         {
             positionalOnly = false;
             params.add(name);
+            offsets.add(offset);
         }
 
-        public void addPositionalParamAt()
+        public void addPositionalParamAt(int offset)
         {
             params.add("*");
+            offsets.add(offset);
         }
 
         public String getParsedSql()
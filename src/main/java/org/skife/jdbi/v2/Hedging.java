@@ -0,0 +1,316 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hedges slow {@link Query#hedged() hedged} queries: when a query has not returned within a delay, a duplicate
+ * is issued against a replica, the first result wins and the loser is cancelled. Only use it for idempotent
+ * reads which the replica can answer as well as the primary.
+ * <p>
+ * The delay is the configured percentile of recent query latencies, but never less than the minimum delay.
+ * The budget limits hedges to a fraction of queries, so a slow database does not get twice the load.
+ * <p>
+ * Queries use the hedging defined as the {@link #ATTRIBUTE} statement attribute, unless given one.
+ */
+public class Hedging implements Closeable
+{
+    /**
+     * The statement attribute under which the hedging to use is looked up
+     */
+    public static final String ATTRIBUTE = Hedging.class.getName();
+
+    private static final int SAMPLES = 1024;
+    private static final int MIN_SAMPLES = 100;
+    private static final double MAX_TOKENS = 10;
+
+    private final IDBI replica;
+    private final long minDelayMillis;
+    private final double percentile;
+    private final double budget;
+    private final ScheduledExecutorService executor;
+    private final boolean ownsExecutor;
+
+    private final AtomicLong queries = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong wins = new AtomicLong();
+
+    private final long[] latencies = new long[SAMPLES];
+    private int sampled;
+    private int next;
+    private double tokens = 1;
+
+    /**
+     * Hedge up to one in ten queries on <code>replica</code> after a fixed delay, on a pool of its own.
+     */
+    public Hedging(IDBI replica, long delayMillis)
+    {
+        this(replica, delayMillis, 0, 0.1, null);
+    }
+
+    /**
+     * @param replica        the database to send duplicates to
+     * @param minDelayMillis the least time to wait before hedging
+     * @param percentile     the latency percentile to wait for before hedging, such as 0.95, or 0 for the
+     *                       minimum delay only
+     * @param budget         the largest fraction of queries to hedge
+     * @param executor       runs the duplicates; if null a pool is created and released by {@link #close()}
+     */
+    public Hedging(IDBI replica, long minDelayMillis, double percentile, double budget, ScheduledExecutorService executor)
+    {
+        if (percentile < 0 || percentile >= 1) {
+            throw new IllegalArgumentException("percentile must be at least 0 and less than 1");
+        }
+        this.replica = replica;
+        this.minDelayMillis = minDelayMillis;
+        this.percentile = percentile;
+        this.budget = budget;
+        this.ownsExecutor = executor == null;
+        this.executor = executor == null ? Executors.newScheduledThreadPool(4, new HedgeThreadFactory()) : executor;
+    }
+
+    static Hedging forContext(StatementContext ctx)
+    {
+        Object hedging = ctx.getAttribute(ATTRIBUTE);
+        return hedging instanceof Hedging ? (Hedging) hedging : null;
+    }
+
+    /**
+     * @return the number of hedged queries executed
+     */
+    public long getQueryCount()
+    {
+        return queries.get();
+    }
+
+    /**
+     * @return the number of duplicates sent to the replica
+     */
+    public long getHedgeCount()
+    {
+        return hedges.get();
+    }
+
+    /**
+     * @return the number of duplicates which returned before the original query
+     */
+    public long getWinCount()
+    {
+        return wins.get();
+    }
+
+    /**
+     * @return the fraction of queries which were hedged
+     */
+    public double getHedgeRate()
+    {
+        long q = queries.get();
+        return q == 0 ? 0 : (double) hedges.get() / q;
+    }
+
+    /**
+     * @return the fraction of duplicates which returned before the original query
+     */
+    public double getWinRate()
+    {
+        long h = hedges.get();
+        return h == 0 ? 0 : (double) wins.get() / h;
+    }
+
+    /**
+     * @return the largest fraction of queries to hedge
+     */
+    public double getBudget()
+    {
+        return budget;
+    }
+
+    /**
+     * @return the delay after which a query is currently hedged
+     */
+    public synchronized long getDelayMillis()
+    {
+        if (percentile == 0 || sampled < MIN_SAMPLES) {
+            return minDelayMillis;
+        }
+        final long[] sorted = Arrays.copyOf(latencies, sampled);
+        Arrays.sort(sorted);
+        return Math.max(minDelayMillis, sorted[(int) (percentile * sampled)]);
+    }
+
+    /**
+     * Releases the pool, if this hedging created it.
+     */
+    @Override
+    public void close()
+    {
+        if (ownsExecutor) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * One hedged execution, run once on the original handle and possibly once on a replica handle.
+     */
+    interface Execution<T>
+    {
+        List<T> runPrimary();
+
+        List<T> runHedge(Handle replica);
+
+        void cancelPrimary();
+
+        void cancelHedge();
+    }
+
+    /**
+     * @param delayMillis the delay for this query, or a negative number for {@link #getDelayMillis()}
+     */
+    <T> List<T> execute(final Execution<T> execution, long delayMillis)
+    {
+        queries.incrementAndGet();
+        earn();
+
+        final Race<T> race = new Race<T>();
+        final ScheduledFuture<?> hedge = executor.schedule(new Runnable()
+        {
+            @Override
+            @SuppressWarnings("PMD.EmptyCatchBlock")
+            public void run()
+            {
+                if (race.isDecided() || !spend()) {
+                    return;
+                }
+                hedges.incrementAndGet();
+                final Handle h = replica.open();
+                try {
+                    final List<T> rows = execution.runHedge(h);
+                    if (race.hedgeWins(rows)) {
+                        wins.incrementAndGet();
+                        execution.cancelPrimary();
+                    }
+                }
+                catch (RuntimeException e) {
+                    // the original query may still succeed; if it fails, its own exception is reported
+                }
+                finally {
+                    h.close();
+                }
+            }
+        }, delayMillis < 0 ? getDelayMillis() : delayMillis, TimeUnit.MILLISECONDS);
+
+        final long start = System.nanoTime();
+        try {
+            final List<T> rows = execution.runPrimary();
+            if (race.primaryWins()) {
+                // a primary which lost may have been cut short by its cancellation, so only winners are sampled
+                record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                hedge.cancel(false);
+                execution.cancelHedge();
+                return rows;
+            }
+            return race.getHedgeRows();
+        }
+        catch (RuntimeException e) {
+            if (race.isHedgeWinner()) {
+                return race.getHedgeRows();
+            }
+            hedge.cancel(false);
+            execution.cancelHedge();
+            throw e;
+        }
+    }
+
+    private synchronized void earn()
+    {
+        tokens = Math.min(MAX_TOKENS, tokens + budget);
+    }
+
+    private synchronized boolean spend()
+    {
+        if (tokens < 1) {
+            return false;
+        }
+        tokens -= 1;
+        return true;
+    }
+
+    private synchronized void record(long millis)
+    {
+        latencies[next] = millis;
+        next = (next + 1) % SAMPLES;
+        if (sampled < SAMPLES) {
+            sampled++;
+        }
+    }
+
+    private static final class Race<T>
+    {
+        private static final int UNDECIDED = 0;
+        private static final int PRIMARY = 1;
+        private static final int HEDGE = 2;
+
+        private final AtomicInteger winner = new AtomicInteger(UNDECIDED);
+        private volatile List<T> hedgeRows;
+
+        boolean isDecided()
+        {
+            return winner.get() != UNDECIDED;
+        }
+
+        boolean isHedgeWinner()
+        {
+            return winner.get() == HEDGE;
+        }
+
+        boolean primaryWins()
+        {
+            return winner.compareAndSet(UNDECIDED, PRIMARY);
+        }
+
+        boolean hedgeWins(List<T> rows)
+        {
+            hedgeRows = rows;
+            return winner.compareAndSet(UNDECIDED, HEDGE);
+        }
+
+        List<T> getHedgeRows()
+        {
+            return hedgeRows;
+        }
+    }
+
+    private static class HedgeThreadFactory implements ThreadFactory
+    {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r)
+        {
+            Thread t = new Thread(r, "jdbi-hedge-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
@@ -0,0 +1,465 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.skife.jdbi.v2.exceptions.ResultSetException;
+import org.skife.jdbi.v2.exceptions.UnableToExecuteStatementException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Iterates over the rows of a {@link Query#paginateByKey(int, String...) keyset paginated} query, one page at
+ * a time. Each page is selected by the rows which come after the last key of the previous page, so late pages
+ * are as fast as early ones, and only the page being consumed is held in memory.
+ * <p>
+ * While a page is consumed the next one is prefetched on a second handle from the same {@link DBI}, if one can be
+ * opened and the query's handle is not in a transaction, whose changes the second handle would not see; otherwise
+ * pages are fetched on the query's own handle as they are needed. The iterator must be closed
+ * unless it is consumed to the end.
+ * <p>
+ * {@link #getCursor()} describes the position after the last returned row, and
+ * {@link #resumeFrom(String)} continues a new pagination from it. Cursors hold the key values tagged with their
+ * type, and only support key columns of string, numeric, boolean, date, time and timestamp types.
+ */
+public class KeysetPagination<ResultType> implements ResultIterator<ResultType>
+{
+    private static final byte CURSOR_VERSION = 1;
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte INTEGER = 2;
+    private static final byte LONG = 3;
+    private static final byte SHORT = 4;
+    private static final byte BYTE = 5;
+    private static final byte BOOLEAN = 6;
+    private static final byte DOUBLE = 7;
+    private static final byte FLOAT = 8;
+    private static final byte BIG_DECIMAL = 9;
+    private static final byte BIG_INTEGER = 10;
+    private static final byte TIMESTAMP = 11;
+    private static final byte DATE = 12;
+    private static final byte TIME = 13;
+
+    private final Handle handle;
+    private final PageSource<ResultType> source;
+    private final int pageSize;
+
+    private ExecutorService prefetcher;
+    private Handle background;
+    private Future<Page<ResultType>> next;
+    private volatile boolean noBackground;
+
+    private Page<ResultType> page;
+    private int position;
+    private Object[] lastKey;
+    private boolean started;
+    private boolean closed;
+
+    KeysetPagination(Handle handle, PageSource<ResultType> source, int pageSize)
+    {
+        this.handle = handle;
+        this.source = source;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Continue after the row the cursor was taken at, instead of from the first row.
+     *
+     * @param cursor a value returned by {@link #getCursor()} of a pagination over the same query
+     *
+     * @return this pagination
+     */
+    public KeysetPagination<ResultType> resumeFrom(String cursor)
+    {
+        if (started) {
+            throw new IllegalStateException("pagination has already started");
+        }
+        this.lastKey = cursor == null ? null : decode(cursor);
+        return this;
+    }
+
+    /**
+     * @return the position after the last row returned by {@link #next()}, to be passed to {@link #resumeFrom(String)}
+     */
+    public String getCursor()
+    {
+        return lastKey == null ? null : encode(lastKey);
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        if (closed) {
+            return false;
+        }
+        if (!started) {
+            started = true;
+            advance(source.fetch(handle, lastKey));
+        }
+        while (position == page.size()) {
+            if (page.size() < pageSize) {
+                close();
+                return false;
+            }
+            advance(nextPage());
+        }
+        return true;
+    }
+
+    @Override
+    public ResultType next()
+    {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final ResultType row = page.rows.get(position);
+        lastKey = page.keys.get(position);
+        // let go of consumed rows straight away
+        page.rows.set(position, null);
+        position++;
+        return row;
+    }
+
+    @Override
+    public void remove()
+    {
+        throw new UnsupportedOperationException("Deleting from a result set iterator is not yet supported");
+    }
+
+    @Override
+    public void close()
+    {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        page = null;
+        if (prefetcher != null) {
+            if (next != null) {
+                next.cancel(false);
+            }
+            // closing on the prefetch thread waits for a page which is still being fetched
+            prefetcher.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    if (background != null) {
+                        background.close();
+                    }
+                }
+            });
+            prefetcher.shutdown();
+        }
+    }
+
+    private void advance(Page<ResultType> fetched)
+    {
+        page = fetched;
+        position = 0;
+        next = null;
+        if (fetched.size() == pageSize) {
+            prefetch(fetched.keys.get(pageSize - 1));
+        }
+    }
+
+    private void prefetch(final Object[] after)
+    {
+        if (noBackground || handle.isInTransaction()) {
+            return;
+        }
+        if (prefetcher == null) {
+            if (!(handle instanceof BasicHandle) || !((BasicHandle) handle).hasSiblings()) {
+                return;
+            }
+            prefetcher = Executors.newSingleThreadExecutor(new PrefetchThreadFactory());
+        }
+        next = prefetcher.submit(new Callable<Page<ResultType>>()
+        {
+            @Override
+            public Page<ResultType> call() throws Exception
+            {
+                if (background == null) {
+                    try {
+                        background = ((BasicHandle) handle).openSibling();
+                    }
+                    catch (RuntimeException e) {
+                        // no second handle to be had, fetch on the query's own handle instead
+                        noBackground = true;
+                        return null;
+                    }
+                }
+                return source.fetch(background, after);
+            }
+        });
+    }
+
+    private Page<ResultType> nextPage()
+    {
+        final Object[] after = page.keys.get(pageSize - 1);
+        if (next != null) {
+            try {
+                final Page<ResultType> prefetched = next.get();
+                if (prefetched != null) {
+                    return prefetched;
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                close();
+                throw new UnableToExecuteStatementException("Interrupted while waiting for the next page", e);
+            }
+            catch (ExecutionException e) {
+                close();
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new UnableToExecuteStatementException("Unable to fetch the next page", e.getCause());
+            }
+        }
+        return source.fetch(handle, after);
+    }
+
+    private static String encode(Object[] key)
+    {
+        try {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(CURSOR_VERSION);
+            out.writeInt(key.length);
+            for (Object value : key) {
+                writeValue(value, out);
+            }
+            out.flush();
+            final StringBuilder b = new StringBuilder();
+            for (byte octet : bytes.toByteArray()) {
+                b.append(Character.forDigit((octet >> 4) & 0xf, 16)).append(Character.forDigit(octet & 0xf, 16));
+            }
+            return b.toString();
+        }
+        catch (IOException e) {
+            throw new ResultSetException("Unable to encode cursor", e);
+        }
+    }
+
+    private static Object[] decode(String cursor)
+    {
+        if (cursor.length() % 2 != 0) {
+            throw new IllegalArgumentException("not a pagination cursor: " + cursor);
+        }
+        final byte[] bytes = new byte[cursor.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            final int high = Character.digit(cursor.charAt(2 * i), 16);
+            final int low = Character.digit(cursor.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0) {
+                throw new IllegalArgumentException("not a pagination cursor: " + cursor);
+            }
+            bytes[i] = (byte) ((high << 4) | low);
+        }
+        try {
+            final DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            if (in.readByte() != CURSOR_VERSION) {
+                throw new IllegalArgumentException("not a pagination cursor: " + cursor);
+            }
+            final int length = in.readInt();
+            if (length < 1 || length > bytes.length) {
+                throw new IllegalArgumentException("not a pagination cursor: " + cursor);
+            }
+            final Object[] key = new Object[length];
+            for (int i = 0; i < length; i++) {
+                key[i] = readValue(in);
+            }
+            if (in.available() > 0) {
+                throw new IllegalArgumentException("not a pagination cursor: " + cursor);
+            }
+            return key;
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException("not a pagination cursor: " + cursor, e);
+        }
+    }
+
+    /**
+     * Writes a key value tagged with its type. Only plain JDBC scalar types are supported, so that reading a
+     * cursor handed back by a client can never instantiate anything else.
+     */
+    private static void writeValue(Object value, DataOutputStream out) throws IOException
+    {
+        if (value == null) {
+            out.writeByte(NULL);
+        }
+        else if (value instanceof String) {
+            out.writeByte(STRING);
+            out.writeUTF((String) value);
+        }
+        else if (value instanceof Integer) {
+            out.writeByte(INTEGER);
+            out.writeInt((Integer) value);
+        }
+        else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        }
+        else if (value instanceof Short) {
+            out.writeByte(SHORT);
+            out.writeShort((Short) value);
+        }
+        else if (value instanceof Byte) {
+            out.writeByte(BYTE);
+            out.writeByte((Byte) value);
+        }
+        else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        }
+        else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        }
+        else if (value instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) value);
+        }
+        else if (value instanceof BigDecimal) {
+            out.writeByte(BIG_DECIMAL);
+            out.writeUTF(value.toString());
+        }
+        else if (value instanceof BigInteger) {
+            out.writeByte(BIG_INTEGER);
+            out.writeUTF(value.toString());
+        }
+        else if (value instanceof Timestamp) {
+            out.writeByte(TIMESTAMP);
+            out.writeLong(((Timestamp) value).getTime());
+            out.writeInt(((Timestamp) value).getNanos());
+        }
+        else if (value instanceof java.sql.Date) {
+            out.writeByte(DATE);
+            out.writeLong(((java.sql.Date) value).getTime());
+        }
+        else if (value instanceof Time) {
+            out.writeByte(TIME);
+            out.writeLong(((Time) value).getTime());
+        }
+        else {
+            throw new IOException("unsupported key column type " + value.getClass().getName());
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException
+    {
+        final byte tag = in.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+                return in.readUTF();
+            case INTEGER:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case SHORT:
+                return in.readShort();
+            case BYTE:
+                return in.readByte();
+            case BOOLEAN:
+                return in.readBoolean();
+            case DOUBLE:
+                return in.readDouble();
+            case FLOAT:
+                return in.readFloat();
+            case BIG_DECIMAL:
+                try {
+                    return new BigDecimal(in.readUTF());
+                }
+                catch (NumberFormatException e) {
+                    throw new IOException("malformed decimal", e);
+                }
+            case BIG_INTEGER:
+                try {
+                    return new BigInteger(in.readUTF());
+                }
+                catch (NumberFormatException e) {
+                    throw new IOException("malformed integer", e);
+                }
+            case TIMESTAMP:
+                final Timestamp timestamp = new Timestamp(in.readLong());
+                try {
+                    timestamp.setNanos(in.readInt());
+                }
+                catch (IllegalArgumentException e) {
+                    throw new IOException("malformed timestamp", e);
+                }
+                return timestamp;
+            case DATE:
+                return new java.sql.Date(in.readLong());
+            case TIME:
+                return new Time(in.readLong());
+            default:
+                throw new IOException("unknown key type " + tag);
+        }
+    }
+
+    /**
+     * Fetches the page of rows after a key, or the first page if the key is null
+     */
+    interface PageSource<ResultType>
+    {
+        Page<ResultType> fetch(Handle handle, Object[] after);
+    }
+
+    static final class Page<ResultType>
+    {
+        private final List<ResultType> rows;
+        private final List<Object[]> keys;
+
+        Page(List<ResultType> rows, List<Object[]> keys)
+        {
+            this.rows = rows;
+            this.keys = keys;
+        }
+
+        int size()
+        {
+            return rows.size();
+        }
+    }
+
+    private static class PrefetchThreadFactory implements ThreadFactory
+    {
+        @Override
+        public Thread newThread(Runnable r)
+        {
+            Thread t = new Thread(r, "jdbi-keyset-prefetch");
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.skife.jdbi.v2.tweak.Argument;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * A collection bound with {@link SQLStatement#bindList(String, java.util.Collection)}. Statement rewriters
+ * expand its named parameter into one placeholder per element. The number of placeholders is rounded up
+ * to a power of two, capped at the maximum list size, so that lists of similar lengths share a statement
+ * shape; the extra placeholders repeat the last element. An empty list is rendered as <code>NULL</code>.
+ */
+class ListArgument implements Argument
+{
+    private final List<Argument> elements;
+    private final int            maxSize;
+    private final int            placeholders;
+
+    ListArgument(List<Argument> elements, int maxSize)
+    {
+        this.elements = elements;
+        this.maxSize = maxSize;
+        this.placeholders = placeholders(elements.size(), maxSize);
+    }
+
+    static int placeholders(int size, int maxSize)
+    {
+        if (size <= 1 || size >= maxSize) {
+            return size;
+        }
+        return Math.min(Integer.highestOneBit(size - 1) << 1, maxSize);
+    }
+
+    List<Argument> getElements()
+    {
+        return elements;
+    }
+
+    int size()
+    {
+        return elements.size();
+    }
+
+    boolean isOversized()
+    {
+        return elements.size() > maxSize;
+    }
+
+    /**
+     * @return the elements from <code>from</code>, inclusive, to <code>to</code>, exclusive
+     */
+    ListArgument slice(int from, int to)
+    {
+        return new ListArgument(elements.subList(from, to), maxSize);
+    }
+
+    /**
+     * @return the sql standing for this list, which replaces its named parameter
+     */
+    String render()
+    {
+        if (placeholders == 0) {
+            return "NULL";
+        }
+        StringBuilder b = new StringBuilder(placeholders * 3);
+        for (int i = 0; i < placeholders; i++) {
+            if (i > 0) {
+                b.append(", ");
+            }
+            b.append('?');
+        }
+        return b.toString();
+    }
+
+    /**
+     * @return the number of statement parameters bound by {@link #apply(int, PreparedStatement, StatementContext)}
+     */
+    int getPlaceholderCount()
+    {
+        return placeholders;
+    }
+
+    @Override
+    public void apply(int position, PreparedStatement statement, StatementContext ctx) throws SQLException
+    {
+        for (int i = 0; i < placeholders; i++) {
+            elements.get(Math.min(i, elements.size() - 1)).apply(position + i, statement, ctx);
+        }
+    }
+
+    /**
+     * Expand the placeholders of the list arguments bound to a parsed statement.
+     *
+     * @param sql     the parsed sql, with a <code>?</code> for each parameter
+     * @param offsets the offset of each parameter's <code>?</code> in <code>sql</code>
+     * @param names   the name of each parameter, or <code>*</code> for positional ones
+     * @param params  the arguments bound to the statement
+     *
+     * @return the sql to prepare
+     */
+    static String expand(String sql, List<Integer> offsets, List<String> names, Binding params)
+    {
+        StringBuilder b = null;
+        int copied = 0;
+        for (int i = 0; i < names.size(); i++) {
+            String name = names.get(i);
+            Argument a = "*".equals(name) ? null : params.forName(name);
+            if (a instanceof ListArgument) {
+                if (b == null) {
+                    b = new StringBuilder(sql.length() + 64);
+                }
+                int offset = offsets.get(i);
+                b.append(sql, copied, offset).append(((ListArgument) a).render());
+                copied = offset + 1;
+            }
+        }
+        if (b == null) {
+            return sql;
+        }
+        return b.append(sql, copied, sql.length()).toString();
+    }
+
+    @Override
+    public String toString()
+    {
+        return elements.toString();
+    }
+}
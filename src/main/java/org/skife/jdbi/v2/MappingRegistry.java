@@ -48,6 +48,15 @@ class MappingRegistry
 
     }
 
+    /**
+     * @return true if both registries would pick mappers from the same factories
+     */
+    boolean hasSameMappers(MappingRegistry other)
+    {
+        return this == other
+               || (rowFactories.equals(other.rowFactories) && columnFactories.equals(other.columnFactories));
+    }
+
     public void addMapper(ResultSetMapper mapper)
     {
         this.addMapper(new InferredMapperFactory(mapper));
@@ -0,0 +1,535 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.skife.jdbi.v2.exceptions.ResultSetException;
+import org.skife.jdbi.v2.tweak.HandleCallback;
+import org.skife.jdbi.v2.tweak.ResultSetMapper;
+
+import java.math.BigInteger;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Scans a large result in parallel, by splitting it into ranges of an integral partitioning column.
+ * <p>
+ * The select must restrict the partitioning column with the named parameters <code>:lo</code> and
+ * <code>:hi</code>, both inclusive, e.g. <code>select * from something where id &gt;= :lo and id &lt;= :hi</code>,
+ * so that the partitions together cover every value of the column from {@link Long#MIN_VALUE} to
+ * {@link Long#MAX_VALUE}.
+ * The range between the minimum and maximum of the column is split into equal partitions, unless split points
+ * are given. Each partition is selected on its own handle, and the rows of all of them are returned by one
+ * iterator, either as they arrive or partition by partition. Each partition buffers a bounded number of rows,
+ * so a slow consumer holds back the scan rather than filling the heap.
+ * <p>
+ * A scan can be iterated once. {@link #getPartitions()} reports the progress of each partition meanwhile.
+ */
+public class ParallelScan<ResultType>
+{
+    private static final Object END = new Object();
+    private static final Object NULL = new Object();
+
+    private final IDBI dbi;
+    private final String sql;
+    private final String column;
+    private final ResultSetMapper<ResultType> mapper;
+    private final Map<String, Object> bindings = new HashMap<String, Object>();
+
+    private int partitionCount = Runtime.getRuntime().availableProcessors();
+    private long[] splitPoints;
+    private int parallelism;
+    private ExecutorService executor;
+    private int bufferSize = 1000;
+    private boolean ordered;
+
+    private volatile List<Partition> partitions = Collections.emptyList();
+    private boolean started;
+
+    /**
+     * @param dbi    source of the handles partitions are selected on
+     * @param sql    select restricting the partitioning column by <code>:lo</code> and <code>:hi</code>
+     * @param column the partitioning column
+     * @param mapper maps the rows of the select
+     */
+    public ParallelScan(IDBI dbi, String sql, String column, ResultSetMapper<ResultType> mapper)
+    {
+        this.dbi = dbi;
+        this.sql = sql;
+        this.column = column;
+        this.mapper = mapper;
+    }
+
+    /**
+     * Bind a named parameter of the select other than <code>:lo</code> and <code>:hi</code>
+     */
+    public ParallelScan<ResultType> bind(String name, Object value)
+    {
+        bindings.put(name, value);
+        return this;
+    }
+
+    /**
+     * Split the range of the partitioning column into this many equal partitions, the number of
+     * processors by default
+     */
+    public ParallelScan<ResultType> partitions(int count)
+    {
+        if (count < 1) {
+            throw new IllegalArgumentException("partition count must be positive");
+        }
+        this.partitionCount = count;
+        this.splitPoints = null;
+        return this;
+    }
+
+    /**
+     * Split the range of the partitioning column at these values rather than into equal partitions, for
+     * columns whose values are unevenly spread
+     */
+    public ParallelScan<ResultType> splitAt(long... points)
+    {
+        final long[] sorted = points.clone();
+        Arrays.sort(sorted);
+        this.splitPoints = sorted;
+        return this;
+    }
+
+    /**
+     * Select at most this many partitions at once, as many as there are partitions by default
+     */
+    public ParallelScan<ResultType> parallelism(int threads)
+    {
+        if (threads < 1) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        this.parallelism = threads;
+        return this;
+    }
+
+    /**
+     * Select partitions on this executor rather than on threads of the scan's own
+     */
+    public ParallelScan<ResultType> executor(ExecutorService executor)
+    {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Buffer at most this many rows of each partition which have not been consumed yet, 1000 by default
+     */
+    public ParallelScan<ResultType> bufferSize(int rows)
+    {
+        if (rows < 1) {
+            throw new IllegalArgumentException("buffer size must be positive");
+        }
+        this.bufferSize = rows;
+        return this;
+    }
+
+    /**
+     * Return all rows of a partition before those of the next one, rather than rows as they arrive. Together
+     * with a select ordered by the partitioning column this returns rows in order.
+     */
+    public ParallelScan<ResultType> ordered()
+    {
+        this.ordered = true;
+        return this;
+    }
+
+    /**
+     * @return the partitions of the running scan, in key order
+     */
+    public List<Partition> getPartitions()
+    {
+        return partitions;
+    }
+
+    /**
+     * Start the scan. The iterator must be closed unless it is consumed to the end.
+     */
+    public synchronized ResultIterator<ResultType> iterator()
+    {
+        if (started) {
+            throw new IllegalStateException("scan has already been started");
+        }
+        started = true;
+        final List<Partition> split = split();
+        partitions = split;
+        return new Scan(split);
+    }
+
+    private List<Partition> split()
+    {
+        final List<Partition> split = new ArrayList<Partition>();
+        if (splitPoints != null) {
+            long lo = Long.MIN_VALUE;
+            for (long point : splitPoints) {
+                if (point > lo) {
+                    split.add(new Partition(split.size(), lo, point - 1));
+                    lo = point;
+                }
+            }
+            split.add(new Partition(split.size(), lo, Long.MAX_VALUE));
+            return Collections.unmodifiableList(split);
+        }
+
+        final long[] bounds = dbi.withHandle(new HandleCallback<long[]>()
+        {
+            @Override
+            public long[] withHandle(Handle handle) throws Exception
+            {
+                final Query<Map<String, Object>> query =
+                    handle.createQuery("select min(" + column + "), max(" + column + ") from (" + sql + ") jdbi_scan");
+                bindAll(query).bind("lo", Long.MIN_VALUE).bind("hi", Long.MAX_VALUE);
+                return query.map(new ResultSetMapper<long[]>()
+                {
+                    @Override
+                    public long[] map(int index, ResultSet r, StatementContext ctx) throws SQLException
+                    {
+                        final long min = r.getLong(1);
+                        return r.wasNull() ? null : new long[]{min, r.getLong(2)};
+                    }
+                }).first();
+            }
+        });
+        if (bounds == null) {
+            return Collections.emptyList();
+        }
+
+        // split [min, max] evenly, but into no more partitions than there are values
+        final BigInteger min = BigInteger.valueOf(bounds[0]);
+        final BigInteger size = BigInteger.valueOf(bounds[1]).subtract(min).add(BigInteger.ONE);
+        final int count = size.min(BigInteger.valueOf(partitionCount)).intValue();
+        long lo = bounds[0];
+        for (int i = 1; i <= count; i++) {
+            final long hi = i == count
+                            ? bounds[1]
+                            : min.add(size.multiply(BigInteger.valueOf(i)).divide(BigInteger.valueOf(count))).longValue() - 1;
+            split.add(new Partition(split.size(), lo, hi));
+            lo = hi + 1;
+        }
+        return Collections.unmodifiableList(split);
+    }
+
+    private <Q extends SQLStatement<?>> Q bindAll(Q query)
+    {
+        for (Map.Entry<String, Object> binding : bindings.entrySet()) {
+            query.bind(binding.getKey(), binding.getValue());
+        }
+        return query;
+    }
+
+    /**
+     * Progress of the scan of one range of the partitioning column
+     */
+    public static final class Partition
+    {
+        private final int index;
+        private final long lo;
+        private final long hi;
+        private final AtomicLong rows = new AtomicLong();
+        private volatile long startNanos;
+        private volatile long finishNanos;
+
+        private Partition(int index, long lo, long hi)
+        {
+            this.index = index;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        public int getIndex()
+        {
+            return index;
+        }
+
+        /**
+         * @return the least value of the partitioning column in this partition
+         */
+        public long getLow()
+        {
+            return lo;
+        }
+
+        /**
+         * @return the greatest value of the partitioning column in this partition
+         */
+        public long getHigh()
+        {
+            return hi;
+        }
+
+        /**
+         * @return the number of rows read so far
+         */
+        public long getRowCount()
+        {
+            return rows.get();
+        }
+
+        public boolean isStarted()
+        {
+            return startNanos != 0;
+        }
+
+        public boolean isFinished()
+        {
+            return finishNanos != 0;
+        }
+
+        /**
+         * @return rows read per second since the partition was started, until it finished
+         */
+        public double getRowsPerSecond()
+        {
+            final long start = startNanos;
+            if (start == 0) {
+                return 0;
+            }
+            final long end = finishNanos != 0 ? finishNanos : System.nanoTime();
+            return end > start ? rows.get() * 1e9 / (end - start) : 0;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("[%d, %d]: %d rows", lo, hi, rows.get());
+        }
+    }
+
+    private static final class Failure
+    {
+        private final Throwable cause;
+
+        Failure(Throwable cause)
+        {
+            this.cause = cause;
+        }
+
+        RuntimeException raise()
+        {
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            return (RuntimeException) cause;
+        }
+    }
+
+    private class Scan implements ResultIterator<ResultType>
+    {
+        private final List<BlockingQueue<Object>> queues = new ArrayList<BlockingQueue<Object>>();
+        private final List<Future<?>> futures = new ArrayList<Future<?>>();
+        private final ExecutorService pool;
+        private final boolean ownsPool;
+        private volatile boolean closed;
+
+        private int current;
+        private int remaining;
+        private Object next;
+
+        Scan(List<Partition> split)
+        {
+            this.remaining = split.size();
+            this.ownsPool = executor == null && !split.isEmpty();
+            this.pool = ownsPool
+                        ? Executors.newFixedThreadPool(parallelism > 0 ? parallelism : split.size(), new ScanThreadFactory())
+                        : executor;
+
+            // unordered scans share one queue with room for each partition's buffer and end marker
+            final BlockingQueue<Object> shared = ordered ? null : new ArrayBlockingQueue<Object>(bufferSize * Math.max(1, split.size()) + split.size());
+            for (final Partition partition : split) {
+                final BlockingQueue<Object> queue = ordered ? new ArrayBlockingQueue<Object>(bufferSize + 1) : shared;
+                queues.add(queue);
+                futures.add(pool.submit(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        scan(partition, queue);
+                    }
+                }));
+            }
+            if (ownsPool) {
+                pool.shutdown();
+            }
+        }
+
+        private void scan(Partition partition, BlockingQueue<Object> queue)
+        {
+            partition.startNanos = System.nanoTime();
+            Object last = END;
+            try {
+                final Handle handle = dbi.open();
+                try {
+                    final Query<Map<String, Object>> query = handle.createQuery(sql);
+                    bindAll(query).bind("lo", partition.lo).bind("hi", partition.hi);
+                    final ResultIterator<ResultType> rows = query.map(mapper).iterator();
+                    try {
+                        while (!closed && rows.hasNext()) {
+                            final ResultType row = rows.next();
+                            put(queue, row == null ? NULL : row);
+                            partition.rows.incrementAndGet();
+                        }
+                    }
+                    finally {
+                        rows.close();
+                    }
+                }
+                finally {
+                    handle.close();
+                }
+            }
+            catch (RuntimeException e) {
+                last = new Failure(e);
+            }
+            catch (InterruptedException e) {
+                last = new Failure(new ResultSetException("Interrupted while scanning " + partition, e));
+            }
+            catch (Error e) {
+                last = new Failure(e);
+                throw e;
+            }
+            finally {
+                partition.finishNanos = System.nanoTime();
+                finish(queue, last);
+            }
+        }
+
+        /**
+         * Enqueue the end marker or failure of a partition, which the consumer waits for, even if interrupted
+         */
+        private void finish(BlockingQueue<Object> queue, Object last)
+        {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    put(queue, last);
+                    break;
+                }
+                catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void put(BlockingQueue<Object> queue, Object item) throws InterruptedException
+        {
+            while (!closed) {
+                if (queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            while (next == null && remaining > 0 && !closed) {
+                final Object item;
+                try {
+                    item = queues.get(current).take();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    close();
+                    throw new ResultSetException("Interrupted while waiting for rows", e);
+                }
+                if (item == END) {
+                    remaining--;
+                    if (ordered) {
+                        current++;
+                    }
+                }
+                else if (item instanceof Failure) {
+                    close();
+                    throw ((Failure) item).raise();
+                }
+                else {
+                    next = item;
+                }
+            }
+            if (next == null) {
+                close();
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public ResultType next()
+        {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final Object row = next;
+            next = null;
+            return row == NULL ? null : (ResultType) row;
+        }
+
+        @Override
+        public void remove()
+        {
+            throw new UnsupportedOperationException("Deleting from a result set iterator is not yet supported");
+        }
+
+        @Override
+        public void close()
+        {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            for (Future<?> future : futures) {
+                future.cancel(false);
+            }
+            for (BlockingQueue<Object> queue : queues) {
+                queue.clear();
+            }
+        }
+    }
+
+    private static class ScanThreadFactory implements ThreadFactory
+    {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r)
+        {
+            Thread t = new Thread(r, "jdbi-scan-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
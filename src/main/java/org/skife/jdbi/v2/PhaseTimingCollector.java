@@ -0,0 +1,33 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+/**
+ * A {@link TimingCollector} which is also interested in the time spent in each
+ * {@link StatementPhase} of a statement execution. If the timing collector installed
+ * on a DBI or Handle implements this interface, jDBI records per-phase timings on the
+ * {@link StatementContext} of every statement; otherwise no phase timing takes place.
+ */
+public interface PhaseTimingCollector extends TimingCollector
+{
+    /**
+     * Called once per statement execution, after the statement has been cleaned up.
+     *
+     * @param timings the time spent in each phase of the execution. The instance is reused
+     * for subsequent executions of the same statement, so do not hold on to it.
+     * @param ctx The Statement Context, which contains additional information about the
+     * statement that just ran.
+     */
+    void collectPhases(StatementPhaseTimings timings, StatementContext ctx);
+}
@@ -15,6 +15,7 @@ package org.skife.jdbi.v2;
 
 import org.skife.jdbi.v2.exceptions.UnableToCreateStatementException;
 import org.skife.jdbi.v2.exceptions.UnableToExecuteStatementException;
+import org.skife.jdbi.v2.tweak.ContextualSQLLog;
 import org.skife.jdbi.v2.tweak.ResultColumnMapper;
 import org.skife.jdbi.v2.tweak.ResultSetMapper;
 import org.skife.jdbi.v2.tweak.RewrittenStatement;
@@ -149,6 +150,15 @@ public class PreparedBatch extends SQLStatement<PreparedBatch>
             return new int[]{};
         }
 
+        QueryMemo.invalidate(getHandle());
+
+        final StatementPhaseTimings timings = getConcreteContext().getPhaseTimings();
+        long mark = 0L;
+        if (timings != null) {
+            timings.start();
+            mark = System.nanoTime();
+        }
+
         PreparedBatchPart current = parts.get(0);
         final String my_sql ;
         try {
@@ -158,7 +168,13 @@ public class PreparedBatch extends SQLStatement<PreparedBatch>
             throw new UnableToCreateStatementException(String.format("Exception while locating statement for [%s]",
                                                                      getSql()), e, getContext());
         }
+        getConcreteContext().setLocatedSql(my_sql);
+        mark = lap(timings, StatementPhase.LOCATE, mark);
         final RewrittenStatement rewritten = getRewriter().rewrite(my_sql, current.getParams(), getContext());
+        getConcreteContext().setRewrittenSql(rewritten.getSql());
+        mark = lap(timings, StatementPhase.REWRITE, mark);
+        final Deadline deadline = DeadlineTimer.deadlineOf(getHandle());
+        DeadlineTimer.check(deadline, getContext());
         PreparedStatement stmt = null;
         try {
             try {
@@ -177,7 +193,7 @@ public class PreparedBatch extends SQLStatement<PreparedBatch>
             catch (SQLException e) {
                 throw new UnableToCreateStatementException(e, getContext());
             }
-
+            mark = lap(timings, StatementPhase.PREPARE, mark);
 
             try {
                 for (PreparedBatchPart part : parts) {
@@ -188,22 +204,45 @@ public class PreparedBatch extends SQLStatement<PreparedBatch>
             catch (SQLException e) {
                 throw new UnableToExecuteStatementException("Exception while binding parameters", e, getContext());
             }
+            mark = lap(timings, StatementPhase.BIND, mark);
 
             beforeExecution(stmt);
+            mark = lap(timings, StatementPhase.CUSTOMIZE, mark);
 
+            final DeadlineTimer.Guard guard = DeadlineTimer.arm(deadline, stmt, getContext());
+            if (guard != null) {
+                // released on cleanup, which for generated keys is when they are closed
+                addCleanable(guard);
+            }
             try {
                 final long start = System.nanoTime();
                 final int[] rs =  stmt.executeBatch();
                 final long elapsedTime = System.nanoTime() - start;
-                getLog().logPreparedBatch(elapsedTime / 1000000L, rewritten.getSql(), parts.size());
+                if (getLog() instanceof ContextualSQLLog) {
+                    ((ContextualSQLLog) getLog()).logBatchStatement(elapsedTime, getContext(), parts.size());
+                }
+                else {
+                    getLog().logPreparedBatch(elapsedTime / 1000000L, rewritten.getSql(), parts.size());
+                }
                 getTimingCollector().collect(elapsedTime, getContext());
+                BasicHandle.executed(getHandle(), elapsedTime);
+                mark = lap(timings, StatementPhase.EXECUTE, mark);
 
                 afterExecution(stmt);
+                mark = lap(timings, StatementPhase.CUSTOMIZE, mark);
 
-                return generateKeys ? munger.munge(stmt) : rs;
+                if (!generateKeys) {
+                    return rs;
+                }
+                try {
+                    return munger.munge(stmt);
+                }
+                finally {
+                    lap(timings, StatementPhase.MAP, mark);
+                }
             }
             catch (SQLException e) {
-                throw new UnableToExecuteStatementException(e, getContext());
+                throw DeadlineTimer.failure(guard, e, getContext(), new UnableToExecuteStatementException(e, getContext()));
             }
         }
         finally {
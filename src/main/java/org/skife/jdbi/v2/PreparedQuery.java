@@ -0,0 +1,114 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.skife.jdbi.v2.exceptions.ResultSetException;
+import org.skife.jdbi.v2.tweak.ResultSetMapper;
+import org.skife.jdbi.v2.tweak.SQLLog;
+import org.skife.jdbi.v2.tweak.StatementBuilder;
+import org.skife.jdbi.v2.tweak.StatementLocator;
+import org.skife.jdbi.v2.tweak.StatementRewriter;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A query prepared once and executed as often as needed, see {@link ExtendedHandle#prepareQuery(String)}. Unlike a
+ * {@link Query}, executing it does not locate, rewrite or prepare the statement again, nor apply statement
+ * customizers.
+ */
+public class PreparedQuery<ResultType> extends PreparedTemplate<PreparedQuery<ResultType>>
+{
+    private final ResultSetMapper<ResultType> mapper;
+
+    PreparedQuery(Handle handle,
+                  StatementLocator locator,
+                  StatementRewriter rewriter,
+                  StatementBuilder statementBuilder,
+                  SQLLog log,
+                  TimingCollector timingCollector,
+                  Foreman foreman,
+                  ConcreteStatementContext context,
+                  String sql,
+                  ResultSetMapper<ResultType> mapper)
+    {
+        super(handle, locator, rewriter, statementBuilder, log, timingCollector, foreman, context, sql);
+        this.mapper = mapper;
+    }
+
+    /**
+     * Executes the query with the currently bound values.
+     *
+     * @return all mapped rows
+     */
+    public List<ResultType> list()
+    {
+        final List<ResultType> rows = new ArrayList<ResultType>();
+        final ResultSet rs = resultSet();
+        try {
+            int index = 0;
+            while (rs.next()) {
+                rows.add(mapper.map(index++, rs, getContext()));
+            }
+        }
+        catch (SQLException e) {
+            throw new ResultSetException("Exception thrown while attempting to traverse the result set", e, getContext());
+        }
+        finally {
+            close(rs);
+        }
+        return rows;
+    }
+
+    /**
+     * Executes the query with the currently bound values.
+     *
+     * @return the first mapped row, or null if there is none
+     */
+    public ResultType first()
+    {
+        final ResultSet rs = resultSet();
+        try {
+            return rs.next() ? mapper.map(0, rs, getContext()) : null;
+        }
+        catch (SQLException e) {
+            throw new ResultSetException("Exception thrown while attempting to traverse the result set", e, getContext());
+        }
+        finally {
+            close(rs);
+        }
+    }
+
+    private ResultSet resultSet()
+    {
+        try {
+            return executeStatement().getResultSet();
+        }
+        catch (SQLException e) {
+            throw new ResultSetException("Exception thrown while attempting to obtain the result set", e, getContext());
+        }
+    }
+
+    private void close(ResultSet rs)
+    {
+        try {
+            rs.close();
+        }
+        catch (SQLException e) {
+            throw new ResultSetException("Unable to close result set", e, getContext());
+        }
+    }
+}
@@ -0,0 +1,343 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.skife.jdbi.v2.exceptions.UnableToCloseResourceException;
+import org.skife.jdbi.v2.exceptions.UnableToCreateStatementException;
+import org.skife.jdbi.v2.exceptions.UnableToExecuteStatementException;
+import org.skife.jdbi.v2.tweak.Argument;
+import org.skife.jdbi.v2.tweak.ContextualSQLLog;
+import org.skife.jdbi.v2.tweak.RewrittenStatement;
+import org.skife.jdbi.v2.tweak.SQLLog;
+import org.skife.jdbi.v2.tweak.StatementBuilder;
+import org.skife.jdbi.v2.tweak.StatementLocator;
+import org.skife.jdbi.v2.tweak.StatementRewriter;
+
+import java.io.Closeable;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Common base of {@link PreparedQuery} and {@link PreparedUpdate}: a statement located, rewritten and prepared
+ * once, executed as often as needed while its handle is open. Bound values stay bound until rebound.
+ */
+abstract class PreparedTemplate<SelfType extends PreparedTemplate<SelfType>> implements Closeable
+{
+    private final Handle handle;
+    private final StatementBuilder statementBuilder;
+    private final SQLLog log;
+    private final TimingCollector timingCollector;
+    private final Foreman foreman;
+    private final ConcreteStatementContext context;
+    private final String sql;
+    private final RewrittenStatement rewritten;
+    private final PreparedStatement stmt;
+    private final Binding params = new Binding();
+    private final Map<String, Slot> named = new HashMap<String, Slot>();
+    private final Map<Integer, Slot> positional = new HashMap<Integer, Slot>();
+    private boolean closed;
+
+    PreparedTemplate(Handle handle,
+                     StatementLocator locator,
+                     StatementRewriter rewriter,
+                     StatementBuilder statementBuilder,
+                     SQLLog log,
+                     TimingCollector timingCollector,
+                     Foreman foreman,
+                     ConcreteStatementContext context,
+                     String sql)
+    {
+        this.handle = handle;
+        this.statementBuilder = statementBuilder;
+        this.log = log;
+        this.timingCollector = timingCollector;
+        this.foreman = foreman;
+        this.context = context;
+        this.sql = sql;
+
+        context.setForeman(foreman);
+        context.setConnection(handle.getConnection());
+        context.setRawSql(sql);
+        context.setBinding(params);
+
+        final String located;
+        try {
+            located = locator.locate(sql, context);
+        }
+        catch (Exception e) {
+            throw new UnableToCreateStatementException("Exception thrown while looking for statement", e, context);
+        }
+        context.setLocatedSql(located);
+        rewritten = rewriter.rewrite(located, params, context);
+        context.setRewrittenSql(rewritten.getSql());
+
+        try {
+            stmt = statementBuilder.create(handle.getConnection(), rewritten.getSql(), context);
+        }
+        catch (SQLException e) {
+            throw new UnableToCreateStatementException(e, context);
+        }
+        context.setStatement(stmt);
+    }
+
+    public StatementContext getContext()
+    {
+        return context;
+    }
+
+    Handle getHandle()
+    {
+        return handle;
+    }
+
+    @SuppressWarnings("unchecked")
+    public SelfType bind(String name, Object value)
+    {
+        slot(name).set(foreman.createArgument(value != null ? value.getClass() : Object.class, value, context));
+        return (SelfType) this;
+    }
+
+    @SuppressWarnings("unchecked")
+    public SelfType bind(int position, Object value)
+    {
+        slot(position).set(foreman.createArgument(value != null ? value.getClass() : Object.class, value, context));
+        return (SelfType) this;
+    }
+
+    /**
+     * Binds an int without allocating an argument, once <code>name</code> has been bound before.
+     */
+    @SuppressWarnings("unchecked")
+    public SelfType bind(String name, int value)
+    {
+        slot(name).set(value);
+        return (SelfType) this;
+    }
+
+    @SuppressWarnings("unchecked")
+    public SelfType bind(int position, int value)
+    {
+        slot(position).set(value);
+        return (SelfType) this;
+    }
+
+    @SuppressWarnings("unchecked")
+    public SelfType bind(String name, long value)
+    {
+        slot(name).set(value);
+        return (SelfType) this;
+    }
+
+    @SuppressWarnings("unchecked")
+    public SelfType bind(int position, long value)
+    {
+        slot(position).set(value);
+        return (SelfType) this;
+    }
+
+    @SuppressWarnings("unchecked")
+    public SelfType bind(String name, double value)
+    {
+        slot(name).set(value);
+        return (SelfType) this;
+    }
+
+    @SuppressWarnings("unchecked")
+    public SelfType bind(int position, double value)
+    {
+        slot(position).set(value);
+        return (SelfType) this;
+    }
+
+    @SuppressWarnings("unchecked")
+    public SelfType bind(String name, boolean value)
+    {
+        slot(name).set(value);
+        return (SelfType) this;
+    }
+
+    @SuppressWarnings("unchecked")
+    public SelfType bind(int position, boolean value)
+    {
+        slot(position).set(value);
+        return (SelfType) this;
+    }
+
+    /**
+     * Closes the prepared statement. The handle remains open.
+     */
+    @Override
+    public void close()
+    {
+        if (!closed) {
+            closed = true;
+            try {
+                statementBuilder.close(handle.getConnection(), sql, stmt);
+            }
+            catch (SQLException e) {
+                throw new UnableToCloseResourceException("Unable to close prepared statement", e);
+            }
+        }
+    }
+
+    /**
+     * Binds the current values and executes the statement.
+     */
+    PreparedStatement executeStatement()
+    {
+        if (closed) {
+            throw new IllegalStateException("prepared statement " + sql + " has been closed");
+        }
+        final Deadline deadline = DeadlineTimer.deadlineOf(handle);
+        DeadlineTimer.check(deadline, context);
+
+        try {
+            rewritten.bind(params, stmt);
+        }
+        catch (SQLException e) {
+            throw new UnableToExecuteStatementException("Unable to bind parameters to query", e, context);
+        }
+
+        final DeadlineTimer.Guard guard = DeadlineTimer.arm(deadline, stmt, context);
+        try {
+            final long start = System.nanoTime();
+            stmt.execute();
+            final long elapsedTime = System.nanoTime() - start;
+            if (log instanceof ContextualSQLLog) {
+                ((ContextualSQLLog) log).logStatement(elapsedTime, context);
+            }
+            else {
+                log.logSQL(elapsedTime / 1000000L, rewritten.getSql());
+            }
+            timingCollector.collect(elapsedTime, context);
+            BasicHandle.executed(handle, elapsedTime);
+        }
+        catch (SQLException e) {
+            throw DeadlineTimer.failure(guard, e, context, new UnableToExecuteStatementException(e, context));
+        }
+        finally {
+            if (guard != null) {
+                guard.release();
+            }
+        }
+        return stmt;
+    }
+
+    private Slot slot(String name)
+    {
+        Slot slot = named.get(name);
+        if (slot == null) {
+            slot = new Slot();
+            named.put(name, slot);
+            params.addNamed(name, slot);
+        }
+        return slot;
+    }
+
+    private Slot slot(int position)
+    {
+        Slot slot = positional.get(position);
+        if (slot == null) {
+            slot = new Slot();
+            positional.put(position, slot);
+            params.addPositional(position, slot);
+        }
+        return slot;
+    }
+
+    /**
+     * A rebindable argument holding either a primitive or an argument created by the {@link Foreman}.
+     */
+    private static final class Slot implements Argument
+    {
+        private int type;
+        private long longValue;
+        private double doubleValue;
+        private Argument argument;
+
+        void set(Argument argument)
+        {
+            this.type = Types.OTHER;
+            this.argument = argument;
+        }
+
+        void set(int value)
+        {
+            this.type = Types.INTEGER;
+            this.longValue = value;
+            this.argument = null;
+        }
+
+        void set(long value)
+        {
+            this.type = Types.BIGINT;
+            this.longValue = value;
+            this.argument = null;
+        }
+
+        void set(double value)
+        {
+            this.type = Types.DOUBLE;
+            this.doubleValue = value;
+            this.argument = null;
+        }
+
+        void set(boolean value)
+        {
+            this.type = Types.BOOLEAN;
+            this.longValue = value ? 1 : 0;
+            this.argument = null;
+        }
+
+        @Override
+        public void apply(int position, PreparedStatement statement, StatementContext ctx) throws SQLException
+        {
+            switch (type) {
+                case Types.INTEGER:
+                    statement.setInt(position, (int) longValue);
+                    break;
+                case Types.BIGINT:
+                    statement.setLong(position, longValue);
+                    break;
+                case Types.DOUBLE:
+                    statement.setDouble(position, doubleValue);
+                    break;
+                case Types.BOOLEAN:
+                    statement.setBoolean(position, longValue != 0);
+                    break;
+                default:
+                    argument.apply(position, statement, ctx);
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            switch (type) {
+                case Types.INTEGER:
+                case Types.BIGINT:
+                    return String.valueOf(longValue);
+                case Types.DOUBLE:
+                    return String.valueOf(doubleValue);
+                case Types.BOOLEAN:
+                    return String.valueOf(longValue != 0);
+                default:
+                    return String.valueOf(argument);
+            }
+        }
+    }
+}
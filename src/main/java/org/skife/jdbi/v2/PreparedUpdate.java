@@ -0,0 +1,59 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.skife.jdbi.v2.exceptions.UnableToExecuteStatementException;
+import org.skife.jdbi.v2.tweak.SQLLog;
+import org.skife.jdbi.v2.tweak.StatementBuilder;
+import org.skife.jdbi.v2.tweak.StatementLocator;
+import org.skife.jdbi.v2.tweak.StatementRewriter;
+
+import java.sql.SQLException;
+
+/**
+ * An insert, update or delete prepared once and executed as often as needed, see
+ * {@link ExtendedHandle#prepareUpdate(String)}. Unlike an {@link Update}, executing it does not locate, rewrite or
+ * prepare the statement again, nor apply statement customizers.
+ */
+public class PreparedUpdate extends PreparedTemplate<PreparedUpdate>
+{
+    PreparedUpdate(Handle handle,
+                   StatementLocator locator,
+                   StatementRewriter rewriter,
+                   StatementBuilder statementBuilder,
+                   SQLLog log,
+                   TimingCollector timingCollector,
+                   Foreman foreman,
+                   ConcreteStatementContext context,
+                   String sql)
+    {
+        super(handle, locator, rewriter, statementBuilder, log, timingCollector, foreman, context, sql);
+    }
+
+    /**
+     * Executes the statement with the currently bound values.
+     *
+     * @return the number of rows modified
+     */
+    public int execute()
+    {
+        QueryMemo.invalidate(getHandle());
+        try {
+            return executeStatement().getUpdateCount();
+        }
+        catch (SQLException e) {
+            throw new UnableToExecuteStatementException("Could not get update count", e, getContext());
+        }
+    }
+}
@@ -13,8 +13,11 @@
  */
 package org.skife.jdbi.v2;
 
+import org.skife.jdbi.v2.exceptions.ResultSetException;
 import org.skife.jdbi.v2.tweak.ResultColumnMapper;
+import org.skife.jdbi.v2.tweak.ResultCopier;
 import org.skife.jdbi.v2.tweak.ResultSetMapper;
+import org.skife.jdbi.v2.tweak.RowCodec;
 import org.skife.jdbi.v2.tweak.SQLLog;
 import org.skife.jdbi.v2.tweak.StatementBuilder;
 import org.skife.jdbi.v2.tweak.StatementCustomizer;
@@ -22,11 +25,14 @@ import org.skife.jdbi.v2.tweak.StatementLocator;
 import org.skife.jdbi.v2.tweak.StatementRewriter;
 import org.skife.jdbi.v2.util.SingleColumnMapper;
 
+import java.io.IOException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -38,6 +44,11 @@ public class Query<ResultType> extends SQLStatement<Query<ResultType>> implement
     private final ResultSetMapper<ResultType> mapper;
     private final MappingRegistry             mappingRegistry;
 
+    private boolean                  coalesced = false;
+    private ResultCopier<ResultType> copier    = null;
+    private Hedging                  hedging   = null;
+    private long                     hedgeDelayMillis = -1;
+
     Query(Binding params,
           ResultSetMapper<ResultType> mapper,
           StatementLocator locator,
@@ -79,6 +90,29 @@ public class Query<ResultType> extends SQLStatement<Query<ResultType>> implement
     public <ContainerType> ContainerType list(Class<ContainerType> containerType)
     {
         ContainerBuilder<ContainerType> builder = getContainerMapperRegistry().createBuilderFor(containerType);
+        String oversized = getOversizedList();
+        if (oversized != null) {
+            List<List<ResultType>> parts = executeInListParts(oversized, new ListPartExecution<List<ResultType>>()
+            {
+                @Override
+                public List<ResultType> execute()
+                {
+                    return list();
+                }
+            });
+            for (List<ResultType> part : parts) {
+                for (ResultType row : part) {
+                    builder.add(row);
+                }
+            }
+            return builder.build();
+        }
+        if (isCollectingRows()) {
+            for (ResultType row : mappedRows(Integer.MAX_VALUE)) {
+                builder.add(row);
+            }
+            return builder.build();
+        }
         return fold(builder, new Folder3<ContainerBuilder<ContainerType>, ResultType>()
         {
             @Override
@@ -110,6 +144,9 @@ public class Query<ResultType> extends SQLStatement<Query<ResultType>> implement
     @Override
     public List<ResultType> list(final int maxRows)
     {
+        if (isCollectingRows()) {
+            return new ArrayList<ResultType>(mappedRows(maxRows));
+        }
         try {
             return this.internalExecute(new QueryResultSetMunger<List<ResultType>>(this)
             {
@@ -118,7 +155,7 @@ public class Query<ResultType> extends SQLStatement<Query<ResultType>> implement
                 {
                     List<ResultType> result_list = new ArrayList<ResultType>();
                     int index = 0;
-                    while (rs.next() && index < maxRows) {
+                    while (advance(rs) && index < maxRows) {
                         result_list.add(mapper.map(index++, rs, getContext()));
                     }
                     return result_list;
@@ -130,6 +167,61 @@ public class Query<ResultType> extends SQLStatement<Query<ResultType>> implement
         }
     }
 
+    /**
+     * Like {@link #spillingList(int, RowCodec)}, for rows which are {@link java.io.Serializable}
+     */
+    public SpillingList<ResultType> spillingList(int maxRowsInMemory)
+    {
+        return spillingList(maxRowsInMemory, new SerializingRowCodec<ResultType>());
+    }
+
+    /**
+     * Executes the select, keeping up to <code>maxRowsInMemory</code> mapped rows in memory and
+     * writing the remaining ones to a temporary file with <code>codec</code>, so that unexpectedly
+     * large results do not exhaust the heap. The returned list must be closed to delete the file.
+     *
+     * @param maxRowsInMemory the number of rows to keep in memory
+     * @param codec           writes and reads back the rows beyond that
+     *
+     * @return the read only list of rows
+     */
+    public SpillingList<ResultType> spillingList(final int maxRowsInMemory, final RowCodec<ResultType> codec)
+    {
+        try {
+            return this.internalExecute(new QueryResultSetMunger<SpillingList<ResultType>>(this)
+            {
+                @Override
+                public SpillingList<ResultType> munge(ResultSet rs) throws SQLException
+                {
+                    SpillingList<ResultType> rows = new SpillingList<ResultType>(maxRowsInMemory, codec);
+                    try {
+                        int index = 0;
+                        while (advance(rs)) {
+                            rows.append(mapper.map(index++, rs, getContext()));
+                        }
+                        rows.finish();
+                        return rows;
+                    }
+                    catch (IOException e) {
+                        rows.close();
+                        throw new ResultSetException("Unable to spill rows to disk", e, getContext());
+                    }
+                    catch (RuntimeException e) {
+                        rows.close();
+                        throw e;
+                    }
+                    catch (SQLException e) {
+                        rows.close();
+                        throw e;
+                    }
+                }
+            });
+        }
+        finally {
+            cleanup();
+        }
+    }
+
     /**
      * Used to execute the query and traverse the result set with a accumulator.
      * <a href="http://en.wikipedia.org/wiki/Fold_(higher-order_function)">Folding</a> over the
@@ -153,7 +245,7 @@ public class Query<ResultType> extends SQLStatement<Query<ResultType>> implement
                 @Override
                 public Void munge(ResultSet rs) throws SQLException
                 {
-                    while (rs.next()) {
+                    while (advance(rs)) {
                         acc.set(folder.fold(acc.get(), rs, getContext()));
                     }
                     return null;
@@ -179,7 +271,7 @@ public class Query<ResultType> extends SQLStatement<Query<ResultType>> implement
                 protected AccumulatorType munge(ResultSet rs) throws SQLException
                 {
                     final FoldController ctl = new FoldController(rs);
-                    while (!ctl.isAborted() && rs.next()) {
+                    while (!ctl.isAborted() && advance(rs)) {
                         ResultType row_value = mapper.map(idx++, rs, getContext());
                         this.ac = folder.fold(ac, row_value, ctl, getContext());
                     }
@@ -217,7 +309,7 @@ public class Query<ResultType> extends SQLStatement<Query<ResultType>> implement
                 @Override
                 public Void munge(ResultSet rs) throws SQLException
                 {
-                    while (rs.next()) {
+                    while (advance(rs)) {
                         acc.set(folder.fold(acc.get(), rs));
                     }
                     return null;
@@ -250,6 +342,133 @@ public class Query<ResultType> extends SQLStatement<Query<ResultType>> implement
         });
     }
 
+    /**
+     * Iterate over the rows of the select page by page, using keyset pagination: each page is the rows
+     * ordered by the key columns which come after the last key of the previous page. The key columns must be
+     * columns of the result which together are unique and never null, and the select should not be ordered
+     * itself, as it is wrapped in an ordered select. Any parameters must be named ones.
+     * <p>
+     * The next page is prefetched on a second handle while the current one is consumed, unless the handle is
+     * in a transaction. The returned iterator must be closed unless it is consumed to the end.
+     *
+     * @param pageSize   the number of rows to select at a time
+     * @param keyColumns the columns to order and page by
+     *
+     * @return a lazy iterator over all rows
+     */
+    public KeysetPagination<ResultType> paginateByKey(int pageSize, String... keyColumns)
+    {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("page size must be positive");
+        }
+        if (keyColumns.length == 0) {
+            throw new IllegalArgumentException("at least one key column is required");
+        }
+        return new KeysetPagination<ResultType>(getHandle(), new KeysetPages(pageSize, keyColumns), pageSize);
+    }
+
+    private class KeysetPages implements KeysetPagination.PageSource<ResultType>
+    {
+        private final int pageSize;
+        private final String[] keyColumns;
+        private final String firstPage;
+        private final String nextPage;
+        // the page queries wrap the located sql, which must not be looked up again
+        private final StatementLocator located = new StatementLocator()
+        {
+            @Override
+            public String locate(String sql, StatementContext ctx)
+            {
+                return sql;
+            }
+        };
+
+        KeysetPages(int pageSize, String[] keyColumns)
+        {
+            this.pageSize = pageSize;
+            this.keyColumns = keyColumns.clone();
+
+            final StringBuilder order = new StringBuilder(" order by ");
+            final StringBuilder after = new StringBuilder(" where ");
+            for (int i = 0; i < keyColumns.length; i++) {
+                if (i > 0) {
+                    order.append(", ");
+                    after.append(" or ");
+                }
+                order.append(keyColumns[i]);
+                after.append("(");
+                for (int j = 0; j < i; j++) {
+                    after.append(keyColumns[j]).append(" = :jdbi_key").append(j).append(" and ");
+                }
+                after.append(keyColumns[i]).append(" > :jdbi_key").append(i).append(")");
+            }
+            final String select = "select * from (" + wrapLookup(getSql()) + ") jdbi_keyset";
+            this.firstPage = select + order;
+            this.nextPage = select + after + order;
+        }
+
+        @Override
+        public KeysetPagination.Page<ResultType> fetch(Handle handle, Object[] after)
+        {
+            final ConcreteStatementContext ctx =
+                new ConcreteStatementContext(new HashMap<String, Object>(getContext().getAttributes()),
+                                             new MappingRegistry(mappingRegistry));
+            ctx.setDBI(getConcreteContext().getDBI());
+            ctx.setSqlObjectType(getContext().getSqlObjectType());
+            ctx.setSqlObjectMethod(getContext().getSqlObjectMethod());
+
+            final Binding params = getParams().copy();
+            if (after != null) {
+                if (after.length != keyColumns.length) {
+                    throw new IllegalArgumentException("cursor does not match the key columns " + Arrays.asList(keyColumns));
+                }
+                for (int i = 0; i < after.length; i++) {
+                    params.addNamed("jdbi_key" + i,
+                                    getForeman().createArgument(after[i] != null ? after[i].getClass() : Object.class, after[i], ctx));
+                }
+            }
+
+            final List<Object[]> keys = new ArrayList<Object[]>(pageSize);
+            final Query<ResultType> page = new Query<ResultType>(params,
+                                                                 new KeyCapturingMapper(keys),
+                                                                 located,
+                                                                 getRewriter(),
+                                                                 handle,
+                                                                 handle == getHandle() ? getStatementBuilder() : new DefaultStatementBuilder(),
+                                                                 after == null ? firstPage : nextPage,
+                                                                 ctx,
+                                                                 getLog(),
+                                                                 getTimingCollector(),
+                                                                 getStatementCustomizers(),
+                                                                 mappingRegistry,
+                                                                 getForeman().createChild(),
+                                                                 getContainerMapperRegistry().createChild());
+            final List<ResultType> rows = page.setMaxRows(pageSize).list(pageSize);
+            return new KeysetPagination.Page<ResultType>(rows, keys);
+        }
+
+        private class KeyCapturingMapper implements ResultSetMapper<ResultType>
+        {
+            private final List<Object[]> keys;
+
+            KeyCapturingMapper(List<Object[]> keys)
+            {
+                this.keys = keys;
+            }
+
+            @Override
+            public ResultType map(int index, ResultSet r, StatementContext ctx) throws SQLException
+            {
+                final Object[] key = new Object[keyColumns.length];
+                for (int i = 0; i < key.length; i++) {
+                    key[i] = r.getObject(keyColumns[i]);
+                }
+                keys.add(key);
+                return mapper.map(index, r, ctx);
+            }
+        }
+    }
+
     /**
      * Executes the select.
      * <p/>
@@ -269,6 +488,12 @@ public class Query<ResultType> extends SQLStatement<Query<ResultType>> implement
     {
         addStatementCustomizer(StatementCustomizers.MAX_ROW_ONE);
         ContainerBuilder builder = getContainerMapperRegistry().createBuilderFor(containerType);
+        if (isCollectingRows()) {
+            for (ResultType row : mappedRows(1)) {
+                builder.add(row);
+            }
+            return (T) builder.build();
+        }
 
         return (T) this.fold(builder, new Folder3<ContainerBuilder, ResultType>()
         {
@@ -282,6 +507,236 @@ public class Query<ResultType> extends SQLStatement<Query<ResultType>> implement
         }).build();
     }
 
+    /**
+     * Share the execution of this query with identical concurrent queries, see {@link QueryCoalescer}.
+     * Callers arriving while another caller's identical query runs receive that query's mapped rows.
+     * Queries on a handle in a transaction are never coalesced. Only {@link #list()}, {@link #list(int)}
+     * and {@link #first()} and their container variants are coalesced.
+     *
+     * @return this query
+     */
+    public Query<ResultType> coalesced()
+    {
+        return coalesced(null);
+    }
+
+    /**
+     * Like {@link #coalesced()}, but callers receiving another caller's rows receive copies made by
+     * <code>copier</code>.
+     *
+     * @return this query
+     */
+    public Query<ResultType> coalesced(ResultCopier<ResultType> copier)
+    {
+        this.coalesced = true;
+        this.copier = copier;
+        return this;
+    }
+
+    /**
+     * Hedge this query with the {@link Hedging} defined as the {@link Hedging#ATTRIBUTE} statement attribute:
+     * if it has not returned after the hedging's delay, a duplicate is sent to the replica and the first
+     * result wins. Only {@link #list()}, {@link #list(int)} and {@link #first()} and their container variants
+     * are hedged, and queries on a handle in a transaction never are.
+     *
+     * @return this query
+     */
+    public Query<ResultType> hedged()
+    {
+        Hedging h = Hedging.forContext(getContext());
+        if (h == null) {
+            throw new IllegalStateException("no Hedging is defined as statement attribute " + Hedging.ATTRIBUTE);
+        }
+        return hedged(h);
+    }
+
+    /**
+     * Like {@link #hedged()}, hedging after <code>delayMillis</code> rather than the hedging's delay.
+     *
+     * @return this query
+     */
+    public Query<ResultType> hedged(long delayMillis)
+    {
+        hedged();
+        this.hedgeDelayMillis = delayMillis;
+        return this;
+    }
+
+    /**
+     * Like {@link #hedged()}, with the given hedging.
+     *
+     * @return this query
+     */
+    public Query<ResultType> hedged(Hedging hedging)
+    {
+        this.hedging = hedging;
+        return this;
+    }
+
+    private boolean isCollectingRows()
+    {
+        return coalesced || hedging != null || QueryMemo.forHandle(getHandle()) != null;
+    }
+
+    /**
+     * Map up to <code>maxRows</code> rows, or take them from the transaction's {@link QueryMemo}
+     * or a concurrent identical execution
+     */
+    private List<ResultType> mappedRows(final int maxRows)
+    {
+        // a replica cannot see the transaction's changes
+        if (hedging != null && !getHandle().isInTransaction()) {
+            return hedging.execute(new HedgedExecution(maxRows), hedgeDelayMillis);
+        }
+        try {
+            return this.internalExecute(new RowsMunger(maxRows));
+        }
+        finally {
+            cleanup();
+        }
+    }
+
+    private class RowsMunger extends QueryResultSetMunger<List<ResultType>> implements RowListMunger
+    {
+        private final int maxRows;
+
+        RowsMunger(int maxRows)
+        {
+            super(Query.this);
+            this.maxRows = maxRows;
+        }
+
+        @Override
+        public Object getVariant()
+        {
+            return Arrays.asList(mapper, maxRows);
+        }
+
+        @Override
+        public QueryCoalescer getCoalescer()
+        {
+            return coalesced ? QueryCoalescer.forContext(getContext()) : null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public ResultCopier<Object> getCopier()
+        {
+            return (ResultCopier<Object>) copier;
+        }
+
+        @Override
+        protected List<ResultType> munge(ResultSet rs) throws SQLException
+        {
+            List<ResultType> result_list = new ArrayList<ResultType>();
+            int index = 0;
+            while (index < maxRows && advance(rs)) {
+                result_list.add(mapper.map(index++, rs, getContext()));
+            }
+            return result_list;
+        }
+    }
+
+    /**
+     * Cancels the primary or the hedge only while it runs: the primary's statement may be a cached one which
+     * its handle reuses once the primary is done.
+     */
+    private class HedgedExecution implements Hedging.Execution<ResultType>
+    {
+        private final int maxRows;
+        private boolean primaryRunning;
+        private Query<ResultType> hedge;
+
+        HedgedExecution(int maxRows)
+        {
+            this.maxRows = maxRows;
+        }
+
+        @Override
+        public List<ResultType> runPrimary()
+        {
+            synchronized (this) {
+                // not the statement of an earlier execution
+                getConcreteContext().setStatement(null);
+                primaryRunning = true;
+            }
+            try {
+                return internalExecute(new RowsMunger(maxRows));
+            }
+            finally {
+                synchronized (this) {
+                    primaryRunning = false;
+                }
+                cleanup();
+            }
+        }
+
+        @Override
+        public List<ResultType> runHedge(Handle replica)
+        {
+            final ConcreteStatementContext ctx =
+                new ConcreteStatementContext(new HashMap<String, Object>(getContext().getAttributes()),
+                                             new MappingRegistry(mappingRegistry));
+            ctx.setDBI(getConcreteContext().getDBI());
+            ctx.setSqlObjectType(getContext().getSqlObjectType());
+            ctx.setSqlObjectMethod(getContext().getSqlObjectMethod());
+            final Query<ResultType> copy = new Query<ResultType>(getParams(),
+                                                                 mapper,
+                                                                 getStatementLocator(),
+                                                                 getRewriter(),
+                                                                 replica,
+                                                                 new DefaultStatementBuilder(),
+                                                                 getSql(),
+                                                                 ctx,
+                                                                 getLog(),
+                                                                 getTimingCollector(),
+                                                                 getStatementCustomizers(),
+                                                                 mappingRegistry,
+                                                                 getForeman().createChild(),
+                                                                 getContainerMapperRegistry().createChild());
+            synchronized (this) {
+                hedge = copy;
+            }
+            try {
+                return copy.mappedRows(maxRows);
+            }
+            finally {
+                synchronized (this) {
+                    hedge = null;
+                }
+            }
+        }
+
+        @Override
+        public synchronized void cancelPrimary()
+        {
+            if (primaryRunning) {
+                cancel(getContext().getStatement());
+            }
+        }
+
+        @Override
+        public synchronized void cancelHedge()
+        {
+            if (hedge != null) {
+                cancel(hedge.getContext().getStatement());
+            }
+        }
+
+        @SuppressWarnings("PMD.EmptyCatchBlock")
+        private void cancel(Statement stmt)
+        {
+            if (stmt != null) {
+                try {
+                    stmt.cancel();
+                }
+                catch (SQLException e) {
+                    // already finished or closed
+                }
+            }
+        }
+    }
+
     /**
      * Provide basic JavaBean mapping capabilities. Will instantiate an instance of resultType
      * for each row and set the JavaBean properties which match fields in the result set.
@@ -318,20 +773,25 @@ public class Query<ResultType> extends SQLStatement<Query<ResultType>> implement
 
     public <T> Query<T> map(ResultSetMapper<T> mapper)
     {
-        return new Query<T>(getParams(),
-                            mapper,
-                            getStatementLocator(),
-                            getRewriter(),
-                            getHandle(),
-                            getStatementBuilder(),
-                            getSql(),
-                            getConcreteContext(),
-                            getLog(),
-                            getTimingCollector(),
-                            getStatementCustomizers(),
-                            mappingRegistry,
-                            getForeman().createChild(),
-                            getContainerMapperRegistry().createChild());
+        Query<T> mapped = new Query<T>(getParams(),
+                                       mapper,
+                                       getStatementLocator(),
+                                       getRewriter(),
+                                       getHandle(),
+                                       getStatementBuilder(),
+                                       getSql(),
+                                       getConcreteContext(),
+                                       getLog(),
+                                       getTimingCollector(),
+                                       getStatementCustomizers(),
+                                       mappingRegistry,
+                                       getForeman().createChild(),
+                                       getContainerMapperRegistry().createChild());
+        // the copier applies to the old result type, so it does not carry over
+        mapped.coalesced = coalesced;
+        mapped.hedging = hedging;
+        mapped.hedgeDelayMillis = hedgeDelayMillis;
+        return mapped;
     }
 
     /**
@@ -350,6 +810,18 @@ public class Query<ResultType> extends SQLStatement<Query<ResultType>> implement
         return this;
     }
 
+    /**
+     * Choose the fetch size from the rows earlier executions of this statement returned, see
+     * {@link AdaptiveFetchSize}
+     *
+     * @return modified query
+     */
+    public Query<ResultType> adaptFetchSize()
+    {
+        this.addStatementCustomizer(new AdaptiveFetchSize.Customizer());
+        return this;
+    }
+
     /**
      * Specify the maimum number of rows the query is to return. This uses the underlying JDBC
      * {@link Statement#setMaxRows(int)}}.
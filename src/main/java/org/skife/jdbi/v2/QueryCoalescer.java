@@ -0,0 +1,160 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.skife.jdbi.v2.exceptions.CallbackFailedException;
+import org.skife.jdbi.v2.tweak.ResultCopier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lets concurrent executions of identical {@link Query#coalesced() coalesced} queries share a single
+ * database execution. The first caller runs the query; callers arriving while it runs wait for, and
+ * receive, its mapped rows. Queries are identical when they go to the same database and their rewritten
+ * SQL, bound values and mappers are equal; as for a {@link QueryMemo}, only queries binding plain values
+ * are coalesced, and mappers are compared with <code>equals</code>.
+ * <p>
+ * Such queries each need a handle of their own. Coalesced sql object methods called on demand, outside a
+ * transaction, instead join an identical call in flight before opening a handle, so that waiting callers do
+ * not hold connections.
+ * <p>
+ * Queries use the coalescer defined as the {@link #ATTRIBUTE} statement attribute, or else the one the DBI their
+ * handle was opened from creates on first use. Queries on handles not opened from a DBI are only coalesced when a
+ * coalescer is defined.
+ */
+public class QueryCoalescer
+{
+    /**
+     * The statement attribute under which the coalescer to use is looked up
+     */
+    public static final String ATTRIBUTE = QueryCoalescer.class.getName();
+
+    private final ConcurrentMap<Object, FutureTask<?>> inFlight = new ConcurrentHashMap<Object, FutureTask<?>>();
+    private final AtomicLong executions = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    static QueryCoalescer forContext(StatementContext ctx)
+    {
+        Object coalescer = ctx.getAttribute(ATTRIBUTE);
+        return coalescer instanceof QueryCoalescer ? (QueryCoalescer) coalescer : null;
+    }
+
+    /**
+     * @return the coalescer defined as the {@link #ATTRIBUTE} statement attribute on the DBI or else the DBI's own,
+     *         or null if the dbi is not a {@link DBI}
+     */
+    public static QueryCoalescer forDBI(IDBI dbi)
+    {
+        Object coalescer = dbi instanceof DBI ? ((DBI) dbi).getStatementAttribute(ATTRIBUTE) : null;
+        return coalescer instanceof QueryCoalescer ? (QueryCoalescer) coalescer : null;
+    }
+
+    /**
+     * @return the number of queries which went to the database
+     */
+    public long getExecutionCount()
+    {
+        return executions.get();
+    }
+
+    /**
+     * @return the number of queries which were answered with the rows of another execution
+     */
+    public long getCoalescedCount()
+    {
+        return coalesced.get();
+    }
+
+    List<?> execute(Object key, Callable<List<?>> query, ResultCopier<Object> copier)
+    {
+        return (List<?>) share(key, query, copier);
+    }
+
+    /**
+     * Run the call, unless an identical one is running: then wait for and return its result instead.
+     *
+     * @param key    identifies the call; implements equals and hashCode
+     * @param call   computes the result
+     * @param copier if not null, callers receiving another call's result receive a copy of each row of a list
+     *               result, or else of the result itself
+     */
+    @SuppressWarnings("unchecked")
+    public Object share(Object key, Callable<?> call, ResultCopier<Object> copier)
+    {
+        FutureTask<Object> task = new FutureTask<Object>((Callable<Object>) call);
+        FutureTask<?> leader = inFlight.putIfAbsent(key, task);
+        if (leader == null) {
+            executions.incrementAndGet();
+            try {
+                task.run();
+                return await(task);
+            }
+            finally {
+                inFlight.remove(key, task);
+            }
+        }
+
+        coalesced.incrementAndGet();
+        Object result = await(leader);
+        if (copier == null || result == null) {
+            return result;
+        }
+        if (!(result instanceof List)) {
+            return copier.copy(result);
+        }
+        List<?> rows = (List<?>) result;
+        List<Object> copies = new ArrayList<Object>(rows.size());
+        for (Object row : rows) {
+            copies.add(copier.copy(row));
+        }
+        return copies;
+    }
+
+    private static Object await(FutureTask<?> task)
+    {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return task.get();
+                }
+                catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new CallbackFailedException(cause);
+        }
+        finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.skife.jdbi.v2.tweak.MemoizingTransactionHandler;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remembers the mapped results of queries run within one transaction, so that running an identical
+ * query again on the same handle does not go to the database. Queries are identical when their
+ * rewritten SQL, the values bound to them and their mappers are equal. Any other statement executed
+ * on the handle forgets all results.
+ * <p>
+ * Queries binding anything but plain values, such as streams, files or LOBs, are never remembered.
+ * Mappers are compared with <code>equals</code>, which few implement: a query mapped by a new instance
+ * of a mapper, such as an anonymous one, is not identical to an earlier one unless the mapper is a
+ * {@link BeanMapper}, the {@link Query#mapTo(Class) registered mapper} or implements <code>equals</code>.
+ * <p>
+ * Only {@link Query#list()}, {@link Query#list(int)} and {@link Query#first()} and their container
+ * variants are memoized; remembered results are shared and must not be modified. Other executions of
+ * queries, such as iterating or folding them, forget all results as updates do, as the query may
+ * modify data.
+ *
+ * @see MemoizingTransactionHandler
+ */
+public final class QueryMemo
+{
+    private final Map<Object, List<?>> results = new HashMap<Object, List<?>>();
+    private long savedRoundTrips = 0;
+
+    /**
+     * @return the number of queries answered from this memo
+     */
+    public long getSavedRoundTrips()
+    {
+        return savedRoundTrips;
+    }
+
+    /**
+     * @return the number of distinct queries remembered
+     */
+    public int size()
+    {
+        return results.size();
+    }
+
+    /**
+     * Forget all remembered results
+     */
+    public void invalidate()
+    {
+        results.clear();
+    }
+
+    List<?> get(Object key)
+    {
+        List<?> rows = results.get(key);
+        if (rows != null) {
+            savedRoundTrips++;
+        }
+        return rows;
+    }
+
+    void put(Object key, List<?> rows)
+    {
+        results.put(key, rows);
+    }
+
+    static QueryMemo forHandle(Handle handle)
+    {
+        if (handle instanceof BasicHandle) {
+            return ((BasicHandle) handle).getQueryMemo();
+        }
+        return null;
+    }
+
+    static void invalidate(Handle handle)
+    {
+        QueryMemo memo = forHandle(handle);
+        if (memo != null) {
+            memo.invalidate();
+        }
+    }
+}
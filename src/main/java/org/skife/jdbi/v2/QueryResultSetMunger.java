@@ -22,6 +22,7 @@ import java.sql.Statement;
 abstract class QueryResultSetMunger<T> implements QueryResultMunger<T>
 {
     private BaseStatement stmt;
+    private AdaptiveFetchSize.Observation observation;
 
     QueryResultSetMunger(final BaseStatement stmt)
     {
@@ -38,9 +39,24 @@ abstract class QueryResultSetMunger<T> implements QueryResultMunger<T>
         }
 
         stmt.addCleanable(Cleanables.forResultSet(rs));
+        observation = AdaptiveFetchSize.observe(rs, stmt.getContext());
         return munge(rs);
     }
 
+    /**
+     * Move to the next row of the result set, counting it for {@link AdaptiveFetchSize}
+     */
+    protected final boolean advance(ResultSet rs) throws SQLException
+    {
+        if (rs.next()) {
+            if (observation != null) {
+                observation.row();
+            }
+            return true;
+        }
+        return false;
+    }
+
     protected abstract T munge(ResultSet rs)
             throws SQLException;
 }
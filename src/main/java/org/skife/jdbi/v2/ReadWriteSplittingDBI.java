@@ -0,0 +1,293 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.skife.jdbi.v2.exceptions.CallbackFailedException;
+import org.skife.jdbi.v2.tweak.ConnectionFactory;
+import org.skife.jdbi.v2.tweak.HandleCallback;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A DBI which sends writes to a primary database and read-only work to a set of replicas.
+ * <p>
+ * Handles obtained via {@link #open()}, {@link #withHandle(HandleCallback)} and the transaction
+ * methods always use the primary. Handles obtained via {@link #openReadOnly()},
+ * {@link #withReadOnlyHandle(HandleCallback)} and {@link #inReadOnlyTransaction(TransactionCallback)}
+ * use a replica, as do <code>@SqlQuery</code> methods on sql objects obtained from
+ * {@link #onDemand(Class)} when they are not called from within another sql object method.
+ * <p>
+ * As replicas usually lag behind the primary, reads may be kept on the primary after the
+ * current thread has used it, either for a fixed window (see {@link #setReadYourWritesWindow(long, TimeUnit)})
+ * or for the duration of a {@link #withReadYourWrites(Callable)} scope.
+ */
+public class ReadWriteSplittingDBI extends DBI
+{
+    /**
+     * How a replica is chosen for read-only work
+     */
+    public enum Selection
+    {
+        /**
+         * Use each replica in turn
+         */
+        ROUND_ROBIN,
+
+        /**
+         * Use the replica with the fewest open connections, in turn among equals
+         */
+        LEAST_OUTSTANDING
+    }
+
+    private final ThreadLocal<Long> lastPrimaryUse = new ThreadLocal<Long>();
+    private final ThreadLocal<AtomicBoolean> stickyScope = new ThreadLocal<AtomicBoolean>();
+    private final AtomicInteger next = new AtomicInteger();
+
+    private final List<Replica> replicas;
+    private final Selection selection;
+
+    private volatile long readYourWritesNanos = 0;
+
+    /**
+     * @param primary  connections for writes and transactions
+     * @param replicas connections for read-only work, the primary is used if empty
+     */
+    public ReadWriteSplittingDBI(ConnectionFactory primary, List<? extends ConnectionFactory> replicas)
+    {
+        this(primary, replicas, Selection.ROUND_ROBIN);
+    }
+
+    /**
+     * @param primary   connections for writes and transactions
+     * @param replicas  connections for read-only work, the primary is used if empty
+     * @param selection how to choose among the replicas
+     */
+    public ReadWriteSplittingDBI(ConnectionFactory primary, List<? extends ConnectionFactory> replicas, Selection selection)
+    {
+        super(primary);
+        if (selection == null) {
+            throw new IllegalArgumentException("selection must not be null");
+        }
+        List<Replica> rs = new ArrayList<Replica>(replicas.size());
+        for (ConnectionFactory replica : replicas) {
+            rs.add(new Replica(replica));
+        }
+        this.replicas = Collections.unmodifiableList(rs);
+        this.selection = selection;
+    }
+
+    /**
+     * Keep read-only work of a thread on the primary for the given time after that thread last
+     * obtained a handle to the primary. A window of zero, the default, disables this.
+     */
+    public void setReadYourWritesWindow(long window, TimeUnit unit)
+    {
+        if (window < 0) {
+            throw new IllegalArgumentException("window must not be negative");
+        }
+        this.readYourWritesNanos = unit.toNanos(window);
+    }
+
+    /**
+     * Obtain a Handle to the primary database
+     */
+    @Override
+    public Handle open()
+    {
+        AtomicBoolean scope = stickyScope.get();
+        if (scope != null) {
+            scope.set(true);
+        }
+        if (readYourWritesNanos > 0) {
+            lastPrimaryUse.set(System.nanoTime());
+        }
+        return super.open();
+    }
+
+    /**
+     * Obtain a Handle meant for read-only work. This will be connected to a replica unless the current
+     * thread is being kept on the primary to read its own writes, or there are no replicas.
+     */
+    public Handle openReadOnly()
+    {
+        if (replicas.isEmpty() || isStickyToPrimary()) {
+            return super.open();
+        }
+        return open(selectReplica());
+    }
+
+    /**
+     * Like {@link #withHandle(HandleCallback)} but with a handle from {@link #openReadOnly()}
+     */
+    public <ReturnType> ReturnType withReadOnlyHandle(HandleCallback<ReturnType> callback) throws CallbackFailedException
+    {
+        final Handle h = openReadOnly();
+        try {
+            return callback.withHandle(h);
+        }
+        catch (Exception e) {
+            throw new CallbackFailedException(e);
+        }
+        finally {
+            h.close();
+        }
+    }
+
+    /**
+     * Like {@link #inTransaction(TransactionCallback)} but with a handle from {@link #openReadOnly()}
+     * whose connection is marked read-only for the duration of the transaction.
+     */
+    public <ReturnType> ReturnType inReadOnlyTransaction(final TransactionCallback<ReturnType> callback) throws CallbackFailedException
+    {
+        return withReadOnlyHandle(new HandleCallback<ReturnType>()
+        {
+            @Override
+            public ReturnType withHandle(Handle handle) throws Exception
+            {
+                final Connection conn = handle.getConnection();
+                conn.setReadOnly(true);
+                try {
+                    return handle.inTransaction(callback);
+                }
+                finally {
+                    conn.setReadOnly(false);
+                }
+            }
+        });
+    }
+
+    /**
+     * Run the callback in a scope in which, once the current thread has obtained a handle to the
+     * primary, all read-only work of that thread goes to the primary as well.
+     */
+    public <ReturnType> ReturnType withReadYourWrites(Callable<ReturnType> callback) throws CallbackFailedException
+    {
+        if (stickyScope.get() != null) {
+            return call(callback);
+        }
+        stickyScope.set(new AtomicBoolean(false));
+        try {
+            return call(callback);
+        }
+        finally {
+            stickyScope.remove();
+        }
+    }
+
+    /**
+     * @return the number of connections currently open against each replica
+     */
+    public List<Integer> getOutstandingReplicaConnections()
+    {
+        List<Integer> outstanding = new ArrayList<Integer>(replicas.size());
+        for (Replica replica : replicas) {
+            outstanding.add(replica.outstanding.get());
+        }
+        return outstanding;
+    }
+
+    private static <ReturnType> ReturnType call(Callable<ReturnType> callback)
+    {
+        try {
+            return callback.call();
+        }
+        catch (Exception e) {
+            throw new CallbackFailedException(e);
+        }
+    }
+
+    private boolean isStickyToPrimary()
+    {
+        AtomicBoolean scope = stickyScope.get();
+        if (scope != null && scope.get()) {
+            return true;
+        }
+        Long last = lastPrimaryUse.get();
+        if (last == null) {
+            return false;
+        }
+        if (System.nanoTime() - last < readYourWritesNanos) {
+            return true;
+        }
+        lastPrimaryUse.remove();
+        return false;
+    }
+
+    private Replica selectReplica()
+    {
+        final int size = replicas.size();
+        final int start = (next.getAndIncrement() & Integer.MAX_VALUE) % size;
+        if (selection == Selection.ROUND_ROBIN) {
+            return replicas.get(start);
+        }
+        Replica best = null;
+        for (int i = 0; i < size; i++) {
+            Replica candidate = replicas.get((start + i) % size);
+            if (best == null || candidate.outstanding.get() < best.outstanding.get()) {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    private static class Replica implements ConnectionFactory
+    {
+        private final ConnectionFactory factory;
+        private final AtomicInteger outstanding = new AtomicInteger();
+
+        Replica(ConnectionFactory factory)
+        {
+            this.factory = factory;
+        }
+
+        @Override
+        public Connection openConnection() throws SQLException
+        {
+            final Connection conn = factory.openConnection();
+            outstanding.incrementAndGet();
+            final AtomicBoolean closed = new AtomicBoolean(false);
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                                                       new Class<?>[]{Connection.class},
+                                                       new InvocationHandler()
+            {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+                {
+                    if ("close".equals(method.getName()) && method.getParameterTypes().length == 0
+                        && closed.compareAndSet(false, true)) {
+                        outstanding.decrementAndGet();
+                    }
+                    try {
+                        return method.invoke(conn, args);
+                    }
+                    catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                }
+            });
+        }
+    }
+}
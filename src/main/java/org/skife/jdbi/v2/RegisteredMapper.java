@@ -34,4 +34,20 @@ class RegisteredMapper<T> implements ResultSetMapper<T>
     {
         return (T) registry.mapperFor(type, ctx).map(index, r, ctx);
     }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (!(o instanceof RegisteredMapper)) {
+            return false;
+        }
+        RegisteredMapper<?> that = (RegisteredMapper<?>) o;
+        return type.equals(that.type) && registry.hasSameMappers(that.registry);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return type.hashCode();
+    }
 }
@@ -26,6 +26,7 @@ class ResultSetResultIterator<Type> implements ResultIterator<Type>
     private final SQLStatement jdbiStatement;
     private final ResultSet results;
     private final StatementContext context;
+    private final AdaptiveFetchSize.Observation observation;
 
     private volatile boolean alreadyAdvanced = false;
     private volatile int count = 0;
@@ -42,6 +43,7 @@ class ResultSetResultIterator<Type> implements ResultIterator<Type>
         this.context = context;
         this.jdbiStatement = jdbiStatement;
         this.results = stmt.getResultSet();
+        this.observation = AdaptiveFetchSize.observe(results, context);
 
         this.jdbiStatement.addCleanable(Cleanables.forResultSet(results));
     }
@@ -114,7 +116,11 @@ class ResultSetResultIterator<Type> implements ResultIterator<Type>
     private boolean safeNext()
     {
         try {
-            return results.next();
+            boolean next = results.next();
+            if (next && observation != null) {
+                observation.row();
+            }
+            return next;
         }
         catch (SQLException e) {
             throw new ResultSetException("Unable to advance result set", e, context);
@@ -19,7 +19,9 @@ import org.skife.jdbi.v2.exceptions.UnableToExecuteStatementException;
 import org.skife.jdbi.v2.tweak.Argument;
 import org.skife.jdbi.v2.tweak.ArgumentFactory;
 import org.skife.jdbi.v2.tweak.ContainerFactory;
+import org.skife.jdbi.v2.tweak.ContextualSQLLog;
 import org.skife.jdbi.v2.tweak.NamedArgumentFinder;
+import org.skife.jdbi.v2.tweak.ResultCopier;
 import org.skife.jdbi.v2.tweak.RewrittenStatement;
 import org.skife.jdbi.v2.tweak.SQLLog;
 import org.skife.jdbi.v2.tweak.StatementBuilder;
@@ -27,10 +29,12 @@ import org.skife.jdbi.v2.tweak.StatementCustomizer;
 import org.skife.jdbi.v2.tweak.StatementLocator;
 import org.skife.jdbi.v2.tweak.StatementRewriter;
 
+import java.io.File;
 import java.io.InputStream;
 import java.io.Reader;
 import java.math.BigDecimal;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.sql.Blob;
 import java.sql.Clob;
 import java.sql.PreparedStatement;
@@ -40,7 +44,9 @@ import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 /**
  * This class provides the common functions between <code>Query</code> and
@@ -49,6 +55,17 @@ import java.util.Map;
  */
 public abstract class SQLStatement<SelfType extends SQLStatement<SelfType>> extends BaseStatement
 {
+    /**
+     * The statement attribute holding the largest number of elements a list bound with
+     * {@link #bindList(String, Collection)} is expanded to in one execution
+     */
+    public static final String MAX_LIST_SIZE_ATTRIBUTE = SQLStatement.class.getName() + ".maxListSize";
+
+    /**
+     * The default maximum list size, the limit on <code>IN</code> lists of some databases
+     */
+    public static final int DEFAULT_MAX_LIST_SIZE = 1000;
+
     private final Binding          params;
     private final Handle           handle;
     private final String           sql;
@@ -98,6 +115,9 @@ public abstract class SQLStatement<SelfType extends SQLStatement<SelfType>> exte
         ctx.setConnection(handle.getConnection());
         ctx.setRawSql(sql);
         ctx.setBinding(params);
+        if (timingCollector instanceof PhaseTimingCollector && ctx.getPhaseTimings() == null) {
+            ctx.setPhaseTimings(new StatementPhaseTimings());
+        }
     }
 
     protected ContainerFactoryRegistry getContainerMapperRegistry()
@@ -562,6 +582,60 @@ public abstract class SQLStatement<SelfType extends SQLStatement<SelfType>> exte
         return bind(name, new InputStreamArgument(value, length, false));
     }
 
+    /**
+     * Bind the contents of a file positionally, streaming it to the driver rather than reading it into
+     * memory. The file is closed when the statement is cleaned up.
+     *
+     * @param position position to bind the paramater at, starting at 0
+     * @param file     to bind the contents of
+     *
+     * @return the same Query instance
+     */
+    public final SelfType bindBinaryStream(int position, File file)
+    {
+        return bind(position, new FileArgument(file));
+    }
+
+    /**
+     * Bind the contents of a file by name, streaming it to the driver rather than reading it into
+     * memory. The file is closed when the statement is cleaned up.
+     *
+     * @param name token name to bind the paramater to
+     * @param file to bind the contents of
+     *
+     * @return the same Query instance
+     */
+    public final SelfType bindBinaryStream(String name, File file)
+    {
+        return bind(name, new FileArgument(file));
+    }
+
+    /**
+     * Bind the remaining bytes of a buffer positionally, without copying them into an array
+     *
+     * @param position position to bind the paramater at, starting at 0
+     * @param value    to bind
+     *
+     * @return the same Query instance
+     */
+    public final SelfType bindBinaryStream(int position, ByteBuffer value)
+    {
+        return bind(position, new ByteBufferArgument(value));
+    }
+
+    /**
+     * Bind the remaining bytes of a buffer by name, without copying them into an array
+     *
+     * @param name  token name to bind the paramater to
+     * @param value to bind
+     *
+     * @return the same Query instance
+     */
+    public final SelfType bindBinaryStream(String name, ByteBuffer value)
+    {
+        return bind(name, new ByteBufferArgument(value));
+    }
+
     /**
      * Bind an argument positionally
      *
@@ -1126,6 +1200,77 @@ public abstract class SQLStatement<SelfType extends SQLStatement<SelfType>> exte
         return bind(name, getForeman().createArgument(value != null ? value.getClass() : Object.class, value, getContext()));
     }
 
+    /**
+     * Bind a collection of values to a named parameter, typically in an <code>IN</code> clause such as
+     * <code>where id in (:ids)</code>. The parameter is expanded to one placeholder per value when the
+     * statement is rewritten. The number of placeholders is rounded up to a power of two, repeating the
+     * last value, so that lists of similar lengths share a prepared statement. An empty collection is
+     * rendered as <code>NULL</code>.
+     * <p>
+     * Lists longer than the {@link #MAX_LIST_SIZE_ATTRIBUTE maximum list size} are split, and the
+     * statement executed once per part, by {@link Query#list()} and {@link Update#execute()}, which merge
+     * the results. Other ways of executing the statement expand the whole list.
+     *
+     * @param name   token name to bind the values to
+     * @param values to bind
+     *
+     * @return the same Query instance
+     */
+    public final SelfType bindList(String name, Collection<?> values)
+    {
+        List<Argument> elements = new ArrayList<Argument>(values.size());
+        for (Object value : values) {
+            elements.add(getForeman().createArgument(value != null ? value.getClass() : Object.class, value, getContext()));
+        }
+        return bind(name, new ListArgument(elements, getMaxListSize()));
+    }
+
+    private int getMaxListSize()
+    {
+        Object max = getContext().getAttribute(MAX_LIST_SIZE_ATTRIBUTE);
+        return max instanceof Number ? ((Number) max).intValue() : DEFAULT_MAX_LIST_SIZE;
+    }
+
+    /**
+     * @return the name of the bound list which is longer than the maximum list size, or null if there is none
+     */
+    String getOversizedList()
+    {
+        String oversized = getParams().getOversizedList();
+        if (oversized != null && getParams().getOversizedListCount() > 1) {
+            throw new UnableToExecuteStatementException("only one bound list may be longer than the maximum list size",
+                                                        getContext());
+        }
+        return oversized;
+    }
+
+    /**
+     * Execute once per part of the oversized bound list <code>name</code>, with the part bound in its place
+     *
+     * @return the results of each execution
+     */
+    <T> List<T> executeInListParts(String name, ListPartExecution<T> execution)
+    {
+        ListArgument list = (ListArgument) getParams().forName(name);
+        int max = getMaxListSize();
+        List<T> results = new ArrayList<T>();
+        try {
+            for (int from = 0; from < list.size(); from += max) {
+                getParams().addNamed(name, list.slice(from, Math.min(from + max, list.size())));
+                results.add(execution.execute());
+            }
+        }
+        finally {
+            getParams().addNamed(name, list);
+        }
+        return results;
+    }
+
+    interface ListPartExecution<T>
+    {
+        T execute();
+    }
+
     /**
      * Bind an argument positionally
      *
@@ -1279,7 +1424,7 @@ public abstract class SQLStatement<SelfType extends SQLStatement<SelfType>> exte
         return (SelfType) this;
     }
 
-    private String wrapLookup(String sql)
+    String wrapLookup(String sql)
     {
         try {
             return locator.locate(sql, this.getContext());
@@ -1291,10 +1436,85 @@ public abstract class SQLStatement<SelfType extends SQLStatement<SelfType>> exte
 
     protected <Result> Result internalExecute(final QueryResultMunger<Result> munger)
     {
+        final StatementPhaseTimings timings = getConcreteContext().getPhaseTimings();
+        long mark = 0L;
+        if (timings != null) {
+            timings.start();
+            mark = System.nanoTime();
+        }
+
         final String located_sql = wrapLookup(sql);
         getConcreteContext().setLocatedSql(located_sql);
+        mark = lap(timings, StatementPhase.LOCATE, mark);
         rewritten = rewriter.rewrite(located_sql, getParams(), getContext());
         getConcreteContext().setRewrittenSql(rewritten.getSql());
+        mark = lap(timings, StatementPhase.REWRITE, mark);
+
+        final QueryMemo memo = QueryMemo.forHandle(handle);
+        if (munger instanceof RowListMunger) {
+            final RowListMunger rows = (RowListMunger) munger;
+            final QueryCoalescer coalescer = rows.getCoalescer();
+            if (memo != null || coalescer != null) {
+                final Object key = BoundStatementKey.of(rewritten, getParams(), rows.getVariant());
+                if (key != null) {
+                    return executeKeyed(munger, memo, coalescer, key, timings, mark);
+                }
+            }
+        }
+        if (memo != null) {
+            // any statement not answered by the memo may change data, queries such as "update ... returning" too
+            memo.invalidate();
+        }
+
+        return executeRewritten(munger, timings, mark);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <Result> Result executeKeyed(final QueryResultMunger<Result> munger,
+                                         final QueryMemo memo,
+                                         final QueryCoalescer coalescer,
+                                         final Object key,
+                                         final StatementPhaseTimings timings,
+                                         final long mark)
+    {
+        if (memo != null) {
+            List<?> rows = memo.get(key);
+            if (rows != null) {
+                return (Result) rows;
+            }
+        }
+
+        final Object sharedKey = coalescer != null && memo == null && !handle.isInTransaction()
+                                 ? BoundStatementKey.forDatabase(handle, key)
+                                 : null;
+        final Result result;
+        if (sharedKey != null) {
+            result = (Result) coalescer.execute(sharedKey, new Callable<List<?>>()
+            {
+                @Override
+                public List<?> call()
+                {
+                    return (List<?>) executeRewritten(munger, timings, mark);
+                }
+            }, ((RowListMunger) munger).getCopier());
+        }
+        else {
+            result = executeRewritten(munger, timings, mark);
+        }
+
+        if (memo != null) {
+            memo.put(key, (List<?>) result);
+        }
+        return result;
+    }
+
+    private <Result> Result executeRewritten(final QueryResultMunger<Result> munger,
+                                             final StatementPhaseTimings timings,
+                                             long mark)
+    {
+        final Deadline deadline = DeadlineTimer.deadlineOf(handle);
+        DeadlineTimer.check(deadline, getContext());
+
         try {
             if (getClass().isAssignableFrom(Call.class)) {
                 stmt = statementBuilder.createCall(handle.getConnection(), rewritten.getSql(), getContext());
@@ -1312,6 +1532,7 @@ public abstract class SQLStatement<SelfType extends SQLStatement<SelfType>> exte
         addCleanable(new Cleanables.StatementBuilderCleanable(statementBuilder, handle.getConnection(), sql, stmt));
 
         getConcreteContext().setStatement(stmt);
+        mark = lap(timings, StatementPhase.PREPARE, mark);
 
         try {
             rewritten.bind(getParams(), stmt);
@@ -1319,15 +1540,28 @@ public abstract class SQLStatement<SelfType extends SQLStatement<SelfType>> exte
         catch (SQLException e) {
             throw new UnableToExecuteStatementException("Unable to bind parameters to query", e, getContext());
         }
+        mark = lap(timings, StatementPhase.BIND, mark);
 
         beforeExecution(stmt);
+        mark = lap(timings, StatementPhase.CUSTOMIZE, mark);
 
+        final DeadlineTimer.Guard guard = DeadlineTimer.arm(deadline, stmt, getContext());
+        if (guard != null) {
+            // released on cleanup, which for a result iterator is when it is closed, so draining it stays bounded
+            addCleanable(guard);
+        }
         try {
             final long start = System.nanoTime();
             stmt.execute();
             final long elapsedTime = System.nanoTime() - start;
-            log.logSQL(elapsedTime / 1000000L, rewritten.getSql());
+            if (log instanceof ContextualSQLLog) {
+                ((ContextualSQLLog) log).logStatement(elapsedTime, getContext());
+            }
+            else {
+                log.logSQL(elapsedTime / 1000000L, rewritten.getSql());
+            }
             timingCollector.collect(elapsedTime, getContext());
+            BasicHandle.executed(handle, elapsedTime);
         }
         catch (SQLException e) {
             try {
@@ -1335,10 +1569,12 @@ public abstract class SQLStatement<SelfType extends SQLStatement<SelfType>> exte
             } catch (SQLException e1) {
                 e1.printStackTrace(); // TODO: we have nowhere to log this, and suppressed exceptions were added in Java 7...
             }
-            throw new UnableToExecuteStatementException(e, getContext());
+            throw DeadlineTimer.failure(guard, e, getContext(), new UnableToExecuteStatementException(e, getContext()));
         }
+        mark = lap(timings, StatementPhase.EXECUTE, mark);
 
         afterExecution(stmt);
+        mark = lap(timings, StatementPhase.CUSTOMIZE, mark);
 
         try {
             return munger.munge(stmt);
@@ -1349,7 +1585,51 @@ public abstract class SQLStatement<SelfType extends SQLStatement<SelfType>> exte
             } catch (SQLException e1) {
                 e1.printStackTrace(); // TODO: ditto above
             }
-            throw new ResultSetException("Exception thrown while attempting to traverse the result set", e, getContext());
+            throw DeadlineTimer.failure(guard, e, getContext(),
+                                        new ResultSetException("Exception thrown while attempting to traverse the result set", e, getContext()));
+        }
+        finally {
+            lap(timings, StatementPhase.MAP, mark);
+        }
+    }
+
+    /**
+     * A munger producing the complete list of mapped rows, which may be served from a {@link QueryMemo}
+     * or shared with concurrent identical queries
+     */
+    interface RowListMunger
+    {
+        /**
+         * @return what besides the SQL and arguments determines the rows, such as the mapper
+         */
+        Object getVariant();
+
+        /**
+         * @return the coalescer to share executions through, or null
+         */
+        QueryCoalescer getCoalescer();
+
+        /**
+         * @return the copier applied to rows handed to coalesced followers, or null
+         */
+        ResultCopier<Object> getCopier();
+    }
+
+    /**
+     * Record the time since <code>mark</code> against <code>phase</code>, if phase timing is enabled.
+     *
+     * @return the start of the next phase
+     */
+    static long lap(final StatementPhaseTimings timings, final StatementPhase phase, final long mark)
+    {
+        return timings == null ? 0L : timings.lap(phase, mark);
+    }
+
+    @Override
+    protected void collectPhaseTimings(final StatementPhaseTimings timings)
+    {
+        if (timingCollector instanceof PhaseTimingCollector) {
+            ((PhaseTimingCollector) timingCollector).collectPhases(timings, getContext());
         }
     }
 
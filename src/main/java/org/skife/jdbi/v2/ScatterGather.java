@@ -0,0 +1,232 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.skife.jdbi.v2.exceptions.CallbackFailedException;
+import org.skife.jdbi.v2.exceptions.DBIException;
+import org.skife.jdbi.v2.tweak.HandleCallback;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+
+/**
+ * A query to be run against many shards of a {@link ShardedDBI} in parallel, obtained from
+ * {@link ShardedDBI#scatter(HandleCallback)}. By default all shards are queried. The query is
+ * run when the results are requested via {@link #concat()}, {@link #mergeSorted(Comparator)}
+ * or {@link #fold(Object, ShardFolder)}; as soon as any shard fails, shard queries which have not
+ * started yet are cancelled and the failure is rethrown. Queries already running are not interrupted,
+ * as interrupting a thread in a JDBC driver may break its connection; they finish in the background.
+ */
+public class ScatterGather<T>
+{
+    private final ShardedDBI dbi;
+    private final HandleCallback<List<T>> query;
+    private SortedSet<Integer> targets;
+
+    ScatterGather(ShardedDBI dbi, HandleCallback<List<T>> query)
+    {
+        this.dbi = dbi;
+        this.query = query;
+    }
+
+    /**
+     * Only query the shards with the given indexes
+     */
+    public ScatterGather<T> onShards(Collection<Integer> shards)
+    {
+        SortedSet<Integer> ts = new TreeSet<Integer>();
+        for (Integer shard : shards) {
+            if (shard < 0 || shard >= dbi.getShardCount()) {
+                throw new IllegalArgumentException("no shard " + shard + ", there are " + dbi.getShardCount());
+            }
+            ts.add(shard);
+        }
+        this.targets = ts;
+        return this;
+    }
+
+    /**
+     * Only query the shards holding data for the given keys
+     */
+    public ScatterGather<T> onKeys(Collection<?> keys)
+    {
+        SortedSet<Integer> ts = new TreeSet<Integer>();
+        for (Object key : keys) {
+            ts.add(dbi.shardFor(key));
+        }
+        this.targets = ts;
+        return this;
+    }
+
+    /**
+     * @return the results of all shards, concatenated in shard order
+     */
+    public List<T> concat()
+    {
+        List<T> all = new ArrayList<T>();
+        for (List<T> results : execute()) {
+            all.addAll(results);
+        }
+        return all;
+    }
+
+    /**
+     * Merge the results of all shards, each of which must already be ordered by the comparator,
+     * into a single ordered list.
+     */
+    public List<T> mergeSorted(final Comparator<? super T> comparator)
+    {
+        final List<List<T>> results = execute();
+        int size = 0;
+        PriorityQueue<Cursor<T>> heads = new PriorityQueue<Cursor<T>>(Math.max(1, results.size()), new Comparator<Cursor<T>>()
+        {
+            @Override
+            public int compare(Cursor<T> a, Cursor<T> b)
+            {
+                int c = comparator.compare(a.head(), b.head());
+                return c != 0 ? c : a.order - b.order;
+            }
+        });
+        for (int i = 0; i < results.size(); i++) {
+            List<T> shardResults = results.get(i);
+            size += shardResults.size();
+            if (!shardResults.isEmpty()) {
+                heads.add(new Cursor<T>(i, shardResults));
+            }
+        }
+
+        List<T> merged = new ArrayList<T>(size);
+        while (!heads.isEmpty()) {
+            Cursor<T> cursor = heads.poll();
+            merged.add(cursor.head());
+            if (cursor.advance()) {
+                heads.add(cursor);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Fold the results of each shard, in shard order, into a single value
+     */
+    public <AccumulatorType> AccumulatorType fold(AccumulatorType accumulator, ShardFolder<AccumulatorType, T> folder)
+    {
+        final List<Integer> shards = shards();
+        final List<List<T>> results = execute(shards);
+        try {
+            for (int i = 0; i < shards.size(); i++) {
+                accumulator = folder.fold(accumulator, shards.get(i), results.get(i));
+            }
+        }
+        catch (Exception e) {
+            throw new CallbackFailedException(e);
+        }
+        return accumulator;
+    }
+
+    private List<Integer> shards()
+    {
+        if (targets != null) {
+            return new ArrayList<Integer>(targets);
+        }
+        List<Integer> all = new ArrayList<Integer>(dbi.getShardCount());
+        for (int i = 0; i < dbi.getShardCount(); i++) {
+            all.add(i);
+        }
+        return all;
+    }
+
+    private List<List<T>> execute()
+    {
+        return execute(shards());
+    }
+
+    private List<List<T>> execute(List<Integer> shards)
+    {
+        CompletionService<List<T>> completion = new ExecutorCompletionService<List<T>>(dbi.getExecutor());
+        List<Future<List<T>>> futures = new ArrayList<Future<List<T>>>(shards.size());
+        try {
+            for (final Integer shard : shards) {
+                futures.add(completion.submit(new Callable<List<T>>()
+                {
+                    @Override
+                    public List<T> call() throws Exception
+                    {
+                        return dbi.withShardHandle(shard, query);
+                    }
+                }));
+            }
+
+            // in order of completion, so that the first failure is seen without waiting for slower shards
+            for (int i = 0; i < futures.size(); i++) {
+                completion.take().get();
+            }
+
+            List<List<T>> results = new ArrayList<List<T>>(futures.size());
+            for (Future<List<T>> future : futures) {
+                List<T> result = future.get();
+                results.add(result == null ? new ArrayList<T>() : result);
+            }
+            return results;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CallbackFailedException("interrupted while waiting for shard results", e);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof DBIException) {
+                throw (DBIException) e.getCause();
+            }
+            throw new CallbackFailedException(e.getCause());
+        }
+        finally {
+            for (Future<List<T>> future : futures) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    private static class Cursor<T>
+    {
+        private final int order;
+        private final List<T> results;
+        private int position = 0;
+
+        Cursor(int order, List<T> results)
+        {
+            this.order = order;
+            this.results = results;
+        }
+
+        T head()
+        {
+            return results.get(position);
+        }
+
+        boolean advance()
+        {
+            return ++position < results.size();
+        }
+    }
+}
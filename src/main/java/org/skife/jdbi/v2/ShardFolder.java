@@ -0,0 +1,35 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import java.util.List;
+
+/**
+ * Combines the results from each shard of a {@link ScatterGather} query
+ */
+public interface ShardFolder<AccumulatorType, T>
+{
+    /**
+     * Invoked once per shard, in shard order.
+     *
+     * @param accumulator The initial value passed to {@link ScatterGather#fold(Object, ShardFolder)}
+     *                    for the first call, the return value from the previous call thereafter.
+     * @param shard       the index of the shard the results come from
+     * @param results     the results from that shard
+     * @return A value which will be passed to the next invocation of this function. The final
+     *         invocation will be returned from the {@link ScatterGather#fold(Object, ShardFolder)} call.
+     * @throws Exception will be wrapped and rethrown as a {@link org.skife.jdbi.v2.exceptions.CallbackFailedException}
+     */
+    AccumulatorType fold(AccumulatorType accumulator, int shard, List<T> results) throws Exception;
+}
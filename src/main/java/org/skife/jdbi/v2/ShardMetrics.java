@@ -0,0 +1,102 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Call counts and latencies of a single shard of a {@link ShardedDBI}
+ */
+public final class ShardMetrics
+{
+    private final int shard;
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    ShardMetrics(int shard)
+    {
+        this.shard = shard;
+    }
+
+    void record(long elapsedNanos, boolean failed)
+    {
+        calls.incrementAndGet();
+        if (failed) {
+            errors.incrementAndGet();
+        }
+        totalNanos.addAndGet(elapsedNanos);
+        long max = maxNanos.get();
+        while (elapsedNanos > max && !maxNanos.compareAndSet(max, elapsedNanos)) {
+            max = maxNanos.get();
+        }
+    }
+
+    /**
+     * @return the index of the shard
+     */
+    public int getShard()
+    {
+        return shard;
+    }
+
+    /**
+     * @return the number of calls made against the shard, including failed ones
+     */
+    public long getCalls()
+    {
+        return calls.get();
+    }
+
+    /**
+     * @return the number of calls against the shard which threw an exception
+     */
+    public long getErrors()
+    {
+        return errors.get();
+    }
+
+    /**
+     * @return the summed elapsed time of all calls, in nanoseconds
+     */
+    public long getTotalElapsedNanos()
+    {
+        return totalNanos.get();
+    }
+
+    /**
+     * @return the elapsed time of the slowest call, in nanoseconds
+     */
+    public long getMaxElapsedNanos()
+    {
+        return maxNanos.get();
+    }
+
+    /**
+     * @return the mean elapsed time of a call, in nanoseconds, or 0 if there were none
+     */
+    public long getMeanElapsedNanos()
+    {
+        long n = calls.get();
+        return n == 0 ? 0 : totalNanos.get() / n;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "shard " + shard + ": " + getCalls() + " calls, " + getErrors() + " errors, "
+               + getMeanElapsedNanos() + "ns mean, " + getMaxElapsedNanos() + "ns max";
+    }
+}
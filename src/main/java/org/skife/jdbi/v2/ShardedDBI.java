@@ -0,0 +1,357 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.skife.jdbi.v2.exceptions.CallbackFailedException;
+import org.skife.jdbi.v2.sqlobject.customizers.ShardKey;
+import org.skife.jdbi.v2.tweak.ArgumentFactory;
+import org.skife.jdbi.v2.tweak.ContainerFactory;
+import org.skife.jdbi.v2.tweak.HandleCallback;
+import org.skife.jdbi.v2.tweak.ResultColumnMapper;
+import org.skife.jdbi.v2.tweak.ResultSetMapper;
+import org.skife.jdbi.v2.tweak.SQLLog;
+import org.skife.jdbi.v2.tweak.ShardSelector;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Spreads work over a fixed list of DBI instances, one per shard. Work for a single key is
+ * routed to the shard chosen by a {@link ShardSelector}, and {@link #scatter(HandleCallback)}
+ * runs a query against many shards in parallel and merges the results.
+ */
+public class ShardedDBI
+{
+    /**
+     * Selects <code>abs(key.hashCode()) % shardCount</code>
+     */
+    public static final ShardSelector HASH_SELECTOR = new ShardSelector()
+    {
+        @Override
+        public int select(Object key, int shardCount)
+        {
+            return (key.hashCode() & Integer.MAX_VALUE) % shardCount;
+        }
+    };
+
+    private final List<DBI> shards;
+    private final List<ShardMetrics> metrics;
+    private final ShardSelector selector;
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+
+    /**
+     * Create a sharded DBI which uses {@link #HASH_SELECTOR} and runs scatter-gather queries on
+     * its own pool of one thread per shard. Call {@link #close()} to release the pool.
+     */
+    public ShardedDBI(List<? extends DBI> shards)
+    {
+        this(shards, HASH_SELECTOR, null);
+    }
+
+    /**
+     * @param shards   the shards, in shard index order
+     * @param selector chooses the shard for a key
+     * @param executor runs scatter-gather queries; if null a pool of one thread per shard is created
+     *                 and released by {@link #close()}
+     */
+    public ShardedDBI(List<? extends DBI> shards, ShardSelector selector, ExecutorService executor)
+    {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("at least one shard is required");
+        }
+        this.shards = Collections.unmodifiableList(new ArrayList<DBI>(shards));
+        List<ShardMetrics> ms = new ArrayList<ShardMetrics>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            ms.add(new ShardMetrics(i));
+        }
+        this.metrics = Collections.unmodifiableList(ms);
+        this.selector = selector;
+        this.ownsExecutor = executor == null;
+        this.executor = executor == null ? Executors.newFixedThreadPool(shards.size(), new ShardThreadFactory()) : executor;
+    }
+
+    /**
+     * @return the number of shards
+     */
+    public int getShardCount()
+    {
+        return shards.size();
+    }
+
+    /**
+     * @return the DBI for the shard with the given index
+     */
+    public DBI getShard(int shard)
+    {
+        return shards.get(shard);
+    }
+
+    /**
+     * @return the index of the shard holding data for the key
+     */
+    public int shardFor(Object key)
+    {
+        if (key == null) {
+            throw new IllegalArgumentException("shard key must not be null");
+        }
+        int shard = selector.select(key, shards.size());
+        if (shard < 0 || shard >= shards.size()) {
+            throw new IllegalStateException("shard selector chose shard " + shard + " of " + shards.size() + " for " + key);
+        }
+        return shard;
+    }
+
+    /**
+     * @return the call metrics of each shard, in shard order
+     */
+    public List<ShardMetrics> getMetrics()
+    {
+        return metrics;
+    }
+
+    /**
+     * Like {@link DBI#withHandle(HandleCallback)} against the shard holding data for the key
+     */
+    public <ReturnType> ReturnType withHandle(Object key, HandleCallback<ReturnType> callback) throws CallbackFailedException
+    {
+        return withShardHandle(shardFor(key), callback);
+    }
+
+    /**
+     * Like {@link DBI#inTransaction(TransactionCallback)} against the shard holding data for the key
+     */
+    public <ReturnType> ReturnType inTransaction(Object key, TransactionCallback<ReturnType> callback) throws CallbackFailedException
+    {
+        final int shard = shardFor(key);
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            ReturnType rt = shards.get(shard).inTransaction(callback);
+            failed = false;
+            return rt;
+        }
+        finally {
+            metrics.get(shard).record(System.nanoTime() - start, failed);
+        }
+    }
+
+    /**
+     * Create a sql object which sends each call to the shard holding data for the argument annotated with
+     * {@link ShardKey}. Methods without such an argument cannot be called. Each shard's part of the sql
+     * object is an {@link IDBI#onDemand(Class)} sql object, so only interfaces are supported.
+     */
+    public <SqlObjectType> SqlObjectType onDemand(Class<SqlObjectType> sqlObjectType)
+    {
+        if (!sqlObjectType.isInterface()) {
+            throw new IllegalArgumentException("sharded sql objects must be interfaces, " + sqlObjectType + " is not");
+        }
+        final List<Object> targets = new ArrayList<Object>(shards.size());
+        for (DBI shard : shards) {
+            targets.add(shard.onDemand(sqlObjectType));
+        }
+        return sqlObjectType.cast(Proxy.newProxyInstance(sqlObjectType.getClassLoader(),
+                                                         new Class<?>[]{sqlObjectType},
+                                                         new ShardRouter(targets)));
+    }
+
+    /**
+     * Prepare to run a query against all, or a subset, of the shards in parallel
+     *
+     * @param query run once against each shard, with a handle to that shard
+     */
+    public <T> ScatterGather<T> scatter(HandleCallback<List<T>> query)
+    {
+        return new ScatterGather<T>(this, query);
+    }
+
+    /**
+     * Release the scatter-gather thread pool, if it was created by this instance
+     */
+    public void close()
+    {
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+
+    ExecutorService getExecutor()
+    {
+        return executor;
+    }
+
+    <ReturnType> ReturnType withShardHandle(int shard, HandleCallback<ReturnType> callback)
+    {
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            ReturnType rt = shards.get(shard).withHandle(callback);
+            failed = false;
+            return rt;
+        }
+        finally {
+            metrics.get(shard).record(System.nanoTime() - start, failed);
+        }
+    }
+
+    public void registerMapper(ResultSetMapper mapper)
+    {
+        for (DBI shard : shards) {
+            shard.registerMapper(mapper);
+        }
+    }
+
+    public void registerMapper(ResultSetMapperFactory factory)
+    {
+        for (DBI shard : shards) {
+            shard.registerMapper(factory);
+        }
+    }
+
+    public void registerColumnMapper(ResultColumnMapper mapper)
+    {
+        for (DBI shard : shards) {
+            shard.registerColumnMapper(mapper);
+        }
+    }
+
+    public void registerColumnMapper(ResultColumnMapperFactory factory)
+    {
+        for (DBI shard : shards) {
+            shard.registerColumnMapper(factory);
+        }
+    }
+
+    public void registerArgumentFactory(ArgumentFactory<?> argumentFactory)
+    {
+        for (DBI shard : shards) {
+            shard.registerArgumentFactory(argumentFactory);
+        }
+    }
+
+    public void registerContainerFactory(ContainerFactory<?> factory)
+    {
+        for (DBI shard : shards) {
+            shard.registerContainerFactory(factory);
+        }
+    }
+
+    public void define(String key, Object value)
+    {
+        for (DBI shard : shards) {
+            shard.define(key, value);
+        }
+    }
+
+    public void setSQLLog(SQLLog log)
+    {
+        for (DBI shard : shards) {
+            shard.setSQLLog(log);
+        }
+    }
+
+    public void setTimingCollector(TimingCollector timingCollector)
+    {
+        for (DBI shard : shards) {
+            shard.setTimingCollector(timingCollector);
+        }
+    }
+
+    private class ShardRouter implements InvocationHandler
+    {
+        private final ConcurrentMap<Method, Integer> keyIndexes = new ConcurrentHashMap<Method, Integer>();
+        private final List<Object> targets;
+
+        ShardRouter(List<Object> targets)
+        {
+            this.targets = targets;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+        {
+            if (method.getDeclaringClass() == Object.class) {
+                if ("equals".equals(method.getName())) {
+                    return proxy == args[0];
+                }
+                if ("hashCode".equals(method.getName())) {
+                    return System.identityHashCode(proxy);
+                }
+                return "sharded sql object over " + shards.size() + " shards";
+            }
+
+            final int shard = shardFor(args[keyIndex(method)]);
+            final long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                Object rs = method.invoke(targets.get(shard), args);
+                failed = false;
+                return rs;
+            }
+            catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            finally {
+                metrics.get(shard).record(System.nanoTime() - start, failed);
+            }
+        }
+
+        private int keyIndex(Method method)
+        {
+            Integer index = keyIndexes.get(method);
+            if (index == null) {
+                index = -1;
+                Annotation[][] param_annotations = method.getParameterAnnotations();
+                for (int i = 0; i < param_annotations.length && index < 0; i++) {
+                    for (Annotation annotation : param_annotations[i]) {
+                        if (annotation instanceof ShardKey) {
+                            index = i;
+                            break;
+                        }
+                    }
+                }
+                keyIndexes.put(method, index);
+            }
+            if (index < 0) {
+                throw new UnsupportedOperationException(method + " has no @ShardKey parameter");
+            }
+            return index;
+        }
+    }
+
+    private static class ShardThreadFactory implements ThreadFactory
+    {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r)
+        {
+            Thread t = new Thread(r, "jdbi-shard-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.skife.jdbi.v2.exceptions.ResultSetException;
+import org.skife.jdbi.v2.tweak.RowCodec;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * The read only result of {@link Query#spillingList(int, RowCodec)}. Rows beyond the in memory limit are
+ * encoded into a temporary file, which is memory mapped for reading, so each access to such a row decodes
+ * it anew. {@link #close()} the list to delete the file.
+ */
+public class SpillingList<T> extends AbstractList<T> implements RandomAccess, Closeable
+{
+    private static final long SEGMENT_SIZE = 1L << 30;
+
+    private final int         maxRowsInMemory;
+    private final RowCodec<T> codec;
+    private final List<T>     inMemory = new ArrayList<T>();
+
+    private File               file;
+    private CountingStream     counter;
+    private DataOutputStream   out;
+    private long[]             offsets = new long[1];
+    private int                spilled;
+    private RandomAccessFile   raf;
+    private FileChannel        channel;
+    private MappedByteBuffer[] segments;
+    private volatile boolean   closed;
+
+    SpillingList(int maxRowsInMemory, RowCodec<T> codec)
+    {
+        this.maxRowsInMemory = maxRowsInMemory;
+        this.codec = codec;
+    }
+
+    void append(T row) throws IOException
+    {
+        if (inMemory.size() < maxRowsInMemory) {
+            inMemory.add(row);
+            return;
+        }
+        if (out == null) {
+            file = File.createTempFile("jdbi-spill", ".rows");
+            counter = new CountingStream(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+            out = new DataOutputStream(counter);
+        }
+        codec.write(row, out);
+        if (spilled + 2 > offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2 + 1);
+        }
+        offsets[++spilled] = counter.count;
+    }
+
+    void finish() throws IOException
+    {
+        if (out == null) {
+            return;
+        }
+        out.close();
+        out = null;
+        raf = new RandomAccessFile(file, "r");
+        channel = raf.getChannel();
+        long size = channel.size();
+        segments = new MappedByteBuffer[(int) ((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+        for (int i = 0; i < segments.length; i++) {
+            long start = i * SEGMENT_SIZE;
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, size - start));
+        }
+    }
+
+    @Override
+    public T get(int index)
+    {
+        if (closed) {
+            throw new IllegalStateException("list is closed");
+        }
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        if (index < inMemory.size()) {
+            return inMemory.get(index);
+        }
+
+        int row = index - inMemory.size();
+        long start = offsets[row];
+        long end = offsets[row + 1];
+        try {
+            ByteBuffer bytes;
+            int segment = (int) (start / SEGMENT_SIZE);
+            if ((end - 1) / SEGMENT_SIZE == segment) {
+                bytes = segments[segment].duplicate();
+                bytes.limit((int) (end - segment * SEGMENT_SIZE));
+                bytes.position((int) (start - segment * SEGMENT_SIZE));
+            }
+            else {
+                // spans two mappings, read it from the file instead
+                bytes = ByteBuffer.allocate((int) (end - start));
+                while (bytes.hasRemaining()) {
+                    if (channel.read(bytes, start + bytes.position()) < 0) {
+                        throw new IOException("unexpected end of file");
+                    }
+                }
+                bytes.flip();
+            }
+            return codec.read(new DataInputStream(new ByteBufferInputStream(bytes)));
+        }
+        catch (IOException e) {
+            throw new ResultSetException("unable to read spilled row " + index, e);
+        }
+    }
+
+    @Override
+    public int size()
+    {
+        return inMemory.size() + spilled;
+    }
+
+    /**
+     * @return true if some rows are held in the temporary file
+     */
+    public boolean isSpilled()
+    {
+        return spilled > 0;
+    }
+
+    /**
+     * @return the size of the temporary file
+     */
+    public long getSpilledBytes()
+    {
+        return offsets[spilled];
+    }
+
+    /**
+     * Delete the temporary file, after which the list can no longer be read
+     */
+    @Override
+    public void close()
+    {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        segments = null;
+        try {
+            if (out != null) {
+                out.close();
+            }
+            if (raf != null) {
+                raf.close();
+            }
+        }
+        catch (IOException e) {
+            // nothing more to be done with the file
+        }
+        finally {
+            if (file != null && !file.delete()) {
+                // still mapped on some platforms
+                file.deleteOnExit();
+            }
+        }
+    }
+
+    private static class CountingStream extends FilterOutputStream
+    {
+        private long count;
+
+        CountingStream(OutputStream out)
+        {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException
+        {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
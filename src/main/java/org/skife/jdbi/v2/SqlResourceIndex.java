@@ -0,0 +1,200 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * The parsed <code>.sql</code> resources found beneath some classpath roots, read once up front. Resources
+ * earlier on the classpath win, as they would for {@link ClassLoader#getResource(String)}.
+ */
+final class SqlResourceIndex
+{
+    static final long WATCH_INTERVAL_MILLIS = 1000;
+
+    private static final String SUFFIX = ".sql";
+
+    private final Map<String, Resource> resources;
+
+    private SqlResourceIndex(Map<String, Resource> resources)
+    {
+        this.resources = Collections.unmodifiableMap(resources);
+    }
+
+    /**
+     * @param roots resource paths such as <code>com/example/dao</code>; the empty path scans every
+     *              classpath directory, but not jars
+     * @param watch whether resources read from directories are re-read when their file changes
+     */
+    static SqlResourceIndex scan(ClassLoader loader, boolean watch, String... roots)
+    {
+        final Map<String, Resource> resources = new HashMap<String, Resource>();
+        for (String root : roots.length == 0 ? new String[] { "" } : roots) {
+            String prefix = root;
+            while (prefix.startsWith("/")) {
+                prefix = prefix.substring(1);
+            }
+            while (prefix.endsWith("/")) {
+                prefix = prefix.substring(0, prefix.length() - 1);
+            }
+
+            try {
+                final Enumeration<URL> urls = loader.getResources(prefix);
+                while (urls.hasMoreElements()) {
+                    final URL url = urls.nextElement();
+                    if ("file".equals(url.getProtocol())) {
+                        scanDirectory(new File(url.toURI()), prefix.length() == 0 ? "" : prefix + "/", watch, resources);
+                    }
+                    else if ("jar".equals(url.getProtocol())) {
+                        scanJar(url, prefix + "/", resources);
+                    }
+                }
+            }
+            catch (IOException e) {
+                throw new IllegalStateException("unable to scan classpath for sql beneath '" + prefix + "'", e);
+            }
+            catch (URISyntaxException e) {
+                throw new IllegalStateException("unable to scan classpath for sql beneath '" + prefix + "'", e);
+            }
+        }
+        return new SqlResourceIndex(resources);
+    }
+
+    /**
+     * @param path a resource path without a leading slash
+     * @return the resource, or null if it was not found when scanning
+     */
+    Resource get(String path)
+    {
+        return resources.get(path);
+    }
+
+    int size()
+    {
+        return resources.size();
+    }
+
+    private static void scanDirectory(File dir, String path, boolean watch, Map<String, Resource> resources)
+        throws IOException
+    {
+        final File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                scanDirectory(file, path + file.getName() + "/", watch, resources);
+            }
+            else if (file.getName().endsWith(SUFFIX) && !resources.containsKey(path + file.getName())) {
+                final long lastModified = file.lastModified();
+                final Resource resource = new Resource(read(new FileInputStream(file)), watch ? file : null);
+                resource.lastModified = lastModified;
+                resources.put(path + file.getName(), resource);
+            }
+        }
+    }
+
+    private static void scanJar(URL url, String prefix, Map<String, Resource> resources) throws IOException
+    {
+        final URLConnection connection = url.openConnection();
+        if (!(connection instanceof JarURLConnection)) {
+            return;
+        }
+        connection.setUseCaches(false);
+        final JarFile jar = ((JarURLConnection) connection).getJarFile();
+        try {
+            final Enumeration<JarEntry> entries = jar.entries();
+            while (entries.hasMoreElements()) {
+                final JarEntry entry = entries.nextElement();
+                final String name = entry.getName();
+                if (!entry.isDirectory() && name.startsWith(prefix) && name.endsWith(SUFFIX)
+                    && !resources.containsKey(name)) {
+                    resources.put(name, new Resource(read(jar.getInputStream(entry)), null));
+                }
+            }
+        }
+        finally {
+            jar.close();
+        }
+    }
+
+    private static String read(InputStream in) throws IOException
+    {
+        try {
+            return ClasspathStatementLocator.parse(in);
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    /**
+     * The sql of one resource. When watched, its file is checked for changes at most once per
+     * {@link #WATCH_INTERVAL_MILLIS}.
+     */
+    static final class Resource
+    {
+        private final File file;
+        private volatile String sql;
+        private volatile long lastModified;
+        private volatile long nextCheck;
+
+        Resource(String sql, File file)
+        {
+            this.sql = sql;
+            this.file = file;
+        }
+
+        String getSql()
+        {
+            if (file != null) {
+                final long now = System.currentTimeMillis();
+                if (now >= nextCheck) {
+                    nextCheck = now + WATCH_INTERVAL_MILLIS;
+                    reloadIfModified();
+                }
+            }
+            return sql;
+        }
+
+        private synchronized void reloadIfModified()
+        {
+            final long modified = file.lastModified();
+            if (modified == 0 || modified == lastModified) {
+                // unchanged, or removed; keep serving what we have
+                return;
+            }
+            try {
+                sql = read(new FileInputStream(file));
+                lastModified = modified;
+            }
+            catch (IOException e) {
+                throw new IllegalStateException("unable to reload sql from " + file, e);
+            }
+        }
+    }
+}
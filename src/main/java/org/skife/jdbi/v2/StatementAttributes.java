@@ -0,0 +1,112 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Statement attributes layered over the attributes defined on the handle and the {@link DBI}. The defaults are
+ * read through until the statement changes an attribute; only then are they copied.
+ * <p>
+ * Handles and DBI instances hold their defaults as a map which is never changed but replaced, see
+ * {@link #with(Map, String, Object)}, so a statement sees the defaults of the moment it was created.
+ */
+final class StatementAttributes extends AbstractMap<String, Object>
+{
+    private final Map<String, Object> defaults;
+    private Map<String, Object> own;
+
+    StatementAttributes(Map<String, Object> defaults)
+    {
+        this.defaults = defaults;
+    }
+
+    /**
+     * @return a copy of the unchanging map <code>defaults</code> with <code>key</code> set to <code>value</code>
+     */
+    static Map<String, Object> with(Map<String, Object> defaults, String key, Object value)
+    {
+        final Map<String, Object> copy = new HashMap<String, Object>(defaults);
+        copy.put(key, value);
+        return Collections.unmodifiableMap(copy);
+    }
+
+    private Map<String, Object> read()
+    {
+        return own != null ? own : defaults;
+    }
+
+    private Map<String, Object> write()
+    {
+        if (own == null) {
+            own = new HashMap<String, Object>(defaults);
+        }
+        return own;
+    }
+
+    @Override
+    public Object get(Object key)
+    {
+        return read().get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key)
+    {
+        return read().containsKey(key);
+    }
+
+    @Override
+    public int size()
+    {
+        return read().size();
+    }
+
+    @Override
+    public Object put(String key, Object value)
+    {
+        return write().put(key, value);
+    }
+
+    @Override
+    public void putAll(Map<? extends String, ?> values)
+    {
+        write().putAll(values);
+    }
+
+    @Override
+    public Object remove(Object key)
+    {
+        return write().remove(key);
+    }
+
+    @Override
+    public void clear()
+    {
+        write().clear();
+    }
+
+    /**
+     * Entries may only be removed through the iterator once the statement has changed an attribute.
+     */
+    @Override
+    public Set<Entry<String, Object>> entrySet()
+    {
+        return own != null ? own.entrySet() : Collections.unmodifiableMap(defaults).entrySet();
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+/**
+ * The phases a statement goes through when it is executed. Used by a
+ * {@link PhaseTimingCollector} to break down where the time of a statement
+ * execution was spent.
+ */
+public enum StatementPhase
+{
+    /**
+     * Looking up the sql via the {@link org.skife.jdbi.v2.tweak.StatementLocator}.
+     */
+    LOCATE,
+
+    /**
+     * Rewriting the located sql via the {@link org.skife.jdbi.v2.tweak.StatementRewriter}.
+     */
+    REWRITE,
+
+    /**
+     * Creating the JDBC statement via the {@link org.skife.jdbi.v2.tweak.StatementBuilder}.
+     */
+    PREPARE,
+
+    /**
+     * Binding the arguments to the JDBC statement.
+     */
+    BIND,
+
+    /**
+     * Running the before and after execution hooks of the statement customizers.
+     */
+    CUSTOMIZE,
+
+    /**
+     * Executing the statement against the database.
+     */
+    EXECUTE,
+
+    /**
+     * Traversing and mapping the results. For iterators this only covers the creation
+     * of the iterator, as rows are mapped lazily.
+     */
+    MAP,
+
+    /**
+     * Running the cleanables and the cleanup hooks of the statement customizers.
+     */
+    CLEANUP
+}
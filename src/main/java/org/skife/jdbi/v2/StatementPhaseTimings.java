@@ -0,0 +1,106 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+/**
+ * Elapsed time per {@link StatementPhase} for a single statement execution.
+ * Only available on the {@link StatementContext} if the timing collector in use
+ * is a {@link PhaseTimingCollector}.
+ */
+public final class StatementPhaseTimings
+{
+    private static final StatementPhase[] PHASES = StatementPhase.values();
+
+    private final long[] elapsed = new long[PHASES.length];
+    private boolean pending = false;
+
+    StatementPhaseTimings()
+    {
+    }
+
+    /**
+     * Obtain the time spent in a phase.
+     *
+     * @param phase the phase
+     *
+     * @return the elapsed time in nanoseconds, zero if the phase was not reached
+     */
+    public long getElapsedTime(StatementPhase phase)
+    {
+        return elapsed[phase.ordinal()];
+    }
+
+    /**
+     * Obtain the time spent in all phases together.
+     *
+     * @return the elapsed time in nanoseconds
+     */
+    public long getTotalElapsedTime()
+    {
+        long total = 0;
+        for (long time : elapsed) {
+            total += time;
+        }
+        return total;
+    }
+
+    /**
+     * Start timing a new execution, forgetting about the previous one.
+     */
+    void start()
+    {
+        for (int i = 0; i < elapsed.length; i++) {
+            elapsed[i] = 0;
+        }
+        pending = true;
+    }
+
+    /**
+     * Add the time passed since <code>since</code> to the given phase.
+     *
+     * @return the current time, to be used as start of the next phase
+     */
+    long lap(StatementPhase phase, long since)
+    {
+        final long now = System.nanoTime();
+        elapsed[phase.ordinal()] += now - since;
+        return now;
+    }
+
+    /**
+     * Mark the current execution as finished.
+     */
+    void finish()
+    {
+        pending = false;
+    }
+
+    boolean isPending()
+    {
+        return pending;
+    }
+
+    @Override
+    public String toString()
+    {
+        final StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < PHASES.length; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(PHASES[i].name().toLowerCase()).append('=').append(elapsed[i]);
+        }
+        return builder.append(']').toString();
+    }
+}
@@ -25,6 +25,7 @@ import org.skife.jdbi.v2.util.SingleColumnMapper;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -52,6 +53,22 @@ public class Update extends SQLStatement<Update>
      */
     public int execute()
     {
+        String oversized = getOversizedList();
+        if (oversized != null) {
+            List<Integer> parts = executeInListParts(oversized, new ListPartExecution<Integer>()
+            {
+                @Override
+                public Integer execute()
+                {
+                    return Update.this.execute();
+                }
+            });
+            int count = 0;
+            for (Integer part : parts) {
+                count += part;
+            }
+            return count;
+        }
         try {
             return this.internalExecute(new QueryResultMunger<Integer>() {
                 @Override
@@ -0,0 +1,28 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2.exceptions;
+
+/**
+ * Thrown when a handle cannot be opened because the {@link org.skife.jdbi.v2.ConcurrencyLimiter} is at its
+ * limit and no handle was released in time.
+ */
+public class ConcurrencyLimitExceededException extends DBIException
+{
+    private static final long serialVersionUID = 1L;
+
+    public ConcurrencyLimitExceededException(String message)
+    {
+        super(message);
+    }
+}
@@ -0,0 +1,342 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2.logging;
+
+import org.skife.jdbi.v2.Binding;
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.StatementContext;
+import org.skife.jdbi.v2.tweak.ContextualSQLLog;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A statement log which is cheap enough to leave enabled in production. Only statements which
+ * took at least a given threshold are logged, optionally along with one in every <i>n</i> of the
+ * faster statements. Selected statements are handed to a bounded buffer, and formatted and written
+ * to the underlying {@link FormattedLog} by a background thread, so the statement thread never
+ * blocks on log I/O. If the buffer is full the record is dropped and counted.
+ * <p/>
+ * The bound arguments can be included, with the values of sensitive named arguments masked. They
+ * are rendered on the statement thread, as the binding may change after the statement ran, but only
+ * for the statements which are actually logged.
+ * <p/>
+ * Transaction and handle lifecycle events are not logged. Call {@link #close()} to stop the
+ * background thread, records still in the buffer are written before it exits.
+ */
+public final class SlowQueryLog implements ContextualSQLLog
+{
+    private static final int DEFAULT_BUFFER_SIZE = 1024;
+
+    private final FormattedLog          out;
+    private final long                  thresholdNanos;
+    private final BlockingQueue<Record> buffer;
+    private final Thread                writer;
+
+    private final AtomicLong sampleCounter = new AtomicLong();
+    private final AtomicLong logged        = new AtomicLong();
+    private final AtomicLong dropped       = new AtomicLong();
+
+    private volatile int         sampleEvery   = 0;
+    private volatile boolean     logBindings   = false;
+    private volatile Set<String> redactedNames = Collections.emptySet();
+
+    /**
+     * @param out the log the selected statements are written to
+     * @param threshold statements taking at least this long are logged
+     * @param unit the unit of the threshold
+     */
+    public SlowQueryLog(FormattedLog out, long threshold, TimeUnit unit)
+    {
+        this(out, threshold, unit, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param out the log the selected statements are written to
+     * @param threshold statements taking at least this long are logged
+     * @param unit the unit of the threshold
+     * @param bufferSize the number of records which may wait to be written before new ones are dropped
+     */
+    public SlowQueryLog(FormattedLog out, long threshold, TimeUnit unit, int bufferSize)
+    {
+        this.out = out;
+        this.thresholdNanos = unit.toNanos(threshold);
+        this.buffer = new ArrayBlockingQueue<Record>(bufferSize);
+        this.writer = new Thread(new Writer(), "jdbi-slow-query-log");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Also log one in every <code>n</code> statements which are faster than the threshold.
+     *
+     * @param n the sampling interval, zero to disable sampling
+     */
+    public SlowQueryLog setSampleEvery(int n)
+    {
+        this.sampleEvery = n;
+        return this;
+    }
+
+    /**
+     * Include the bound arguments of the logged statements.
+     */
+    public SlowQueryLog setLogBindings(boolean logBindings)
+    {
+        this.logBindings = logBindings;
+        return this;
+    }
+
+    /**
+     * Mask the values of the given named arguments when logging bound arguments.
+     */
+    public SlowQueryLog setRedactedNames(String... names)
+    {
+        this.redactedNames = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(names)));
+        return this;
+    }
+
+    /**
+     * @return the number of statements written to the log
+     */
+    public long getLoggedCount()
+    {
+        return logged.get();
+    }
+
+    /**
+     * @return the number of selected statements which were dropped because the buffer was full
+     */
+    public long getDroppedCount()
+    {
+        return dropped.get();
+    }
+
+    /**
+     * Stop the background thread after writing out the records still in the buffer.
+     */
+    public void close()
+    {
+        writer.interrupt();
+        try {
+            writer.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void logStatement(long elapsedTime, StatementContext ctx)
+    {
+        if (isSelected(elapsedTime)) {
+            offer(new Record(elapsedTime, ctx.getRewrittenSql(), -1, renderBinding(ctx.getBinding()),
+                             ctx.getSqlObjectType(), ctx.getSqlObjectMethod()));
+        }
+    }
+
+    @Override
+    public void logBatchStatement(long elapsedTime, StatementContext ctx, int count)
+    {
+        if (isSelected(elapsedTime)) {
+            offer(new Record(elapsedTime, ctx.getRewrittenSql(), count, null,
+                             ctx.getSqlObjectType(), ctx.getSqlObjectMethod()));
+        }
+    }
+
+    @Override
+    public void logSQL(long time, String sql)
+    {
+        final long elapsedTime = TimeUnit.MILLISECONDS.toNanos(time);
+        if (isSelected(elapsedTime)) {
+            offer(new Record(elapsedTime, sql, -1, null, null, null));
+        }
+    }
+
+    @Override
+    public void logPreparedBatch(long time, String sql, int count)
+    {
+        final long elapsedTime = TimeUnit.MILLISECONDS.toNanos(time);
+        if (isSelected(elapsedTime)) {
+            offer(new Record(elapsedTime, sql, count, null, null, null));
+        }
+    }
+
+    @Override
+    public BatchLogger logBatch()
+    {
+        return new BatchLogger()
+        {
+            private final StringBuilder builder = new StringBuilder();
+
+            @Override
+            public void add(String sql)
+            {
+                if (builder.length() > 0) {
+                    builder.append("], [");
+                }
+                builder.append(sql);
+            }
+
+            @Override
+            public void log(long time)
+            {
+                logSQL(time, builder.toString());
+            }
+        };
+    }
+
+    @Override
+    public void logBeginTransaction(Handle h)
+    {
+    }
+
+    @Override
+    public void logCommitTransaction(long time, Handle h)
+    {
+    }
+
+    @Override
+    public void logRollbackTransaction(long time, Handle h)
+    {
+    }
+
+    @Override
+    public void logObtainHandle(long time, Handle h)
+    {
+    }
+
+    @Override
+    public void logReleaseHandle(Handle h)
+    {
+    }
+
+    @Override
+    public void logCheckpointTransaction(Handle h, String name)
+    {
+    }
+
+    @Override
+    public void logReleaseCheckpointTransaction(Handle h, String name)
+    {
+    }
+
+    @Override
+    public void logRollbackToCheckpoint(long time, Handle h, String checkpointName)
+    {
+    }
+
+    private boolean isSelected(long elapsedTime)
+    {
+        if (elapsedTime >= thresholdNanos) {
+            return out.isEnabled();
+        }
+        final int every = sampleEvery;
+        return every > 0 && sampleCounter.incrementAndGet() % every == 0 && out.isEnabled();
+    }
+
+    private String renderBinding(Binding binding)
+    {
+        if (!logBindings || binding == null) {
+            return null;
+        }
+        return binding.toString(redactedNames);
+    }
+
+    private void offer(Record record)
+    {
+        if (!buffer.offer(record)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    private void write(Record record)
+    {
+        try {
+            out.log(record.format());
+            logged.incrementAndGet();
+        }
+        catch (RuntimeException e) {
+            // keep the writer alive, there is nowhere else to report this
+            dropped.incrementAndGet();
+        }
+    }
+
+    private final class Writer implements Runnable
+    {
+        @Override
+        public void run()
+        {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    write(buffer.take());
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            Record record;
+            while ((record = buffer.poll()) != null) {
+                write(record);
+            }
+        }
+    }
+
+    private static final class Record
+    {
+        private final long     elapsedTime;
+        private final String   sql;
+        private final int      batchSize;
+        private final String   binding;
+        private final Class<?> sqlObjectType;
+        private final Method   sqlObjectMethod;
+
+        Record(long elapsedTime, String sql, int batchSize, String binding, Class<?> sqlObjectType, Method sqlObjectMethod)
+        {
+            this.elapsedTime = elapsedTime;
+            this.sql = sql;
+            this.batchSize = batchSize;
+            this.binding = binding;
+            this.sqlObjectType = sqlObjectType;
+            this.sqlObjectMethod = sqlObjectMethod;
+        }
+
+        String format()
+        {
+            final StringBuilder b = new StringBuilder();
+            if (batchSize >= 0) {
+                b.append("prepared batch with ").append(batchSize).append(" parts:[");
+            }
+            else {
+                b.append("statement:[");
+            }
+            b.append(sql).append("] took ").append(TimeUnit.NANOSECONDS.toMicros(elapsedTime)).append(" micros");
+            if (binding != null) {
+                b.append(" with arguments ").append(binding);
+            }
+            if (sqlObjectMethod != null) {
+                final Class<?> type = sqlObjectType != null ? sqlObjectType : sqlObjectMethod.getDeclaringClass();
+                b.append(" from ").append(type.getName()).append('.').append(sqlObjectMethod.getName());
+            }
+            return b.toString();
+        }
+    }
+}
@@ -171,6 +171,7 @@ class BatchHandler extends CustomizingStatementHandler
 
         //execute the rest
         rs_parts.add(executeBatch(handle, batch));
+        invalidateCaches(handle);
 
         // combine results
         int end_size = 0;
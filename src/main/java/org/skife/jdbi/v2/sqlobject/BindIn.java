@@ -0,0 +1,36 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2.sqlobject;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Binds a collection, array or iterable argument as a list, see
+ * {@link org.skife.jdbi.v2.SQLStatement#bindList(String, java.util.Collection)}:
+ * <pre>
+ * &#64;SqlQuery("select name from something where id in (:ids)")
+ * List&lt;String&gt; findNames(&#64;BindIn("ids") List&lt;Integer&gt; ids);
+ * </pre>
+ * Unlike {@link org.skife.jdbi.v2.unstable.BindIn} this needs no template engine.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.PARAMETER})
+@BindingAnnotation(BindInFactory.class)
+public @interface BindIn
+{
+    String value();
+}
@@ -0,0 +1,64 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2.sqlobject;
+
+import org.skife.jdbi.v2.SQLStatement;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+class BindInFactory implements BinderFactory<BindIn>
+{
+    @Override
+    public Binder build(BindIn annotation)
+    {
+        return new Binder<BindIn, Object>()
+        {
+            @Override
+            public void bind(SQLStatement<?> q, BindIn bind, Object arg)
+            {
+                q.bindList(bind.value(), toCollection(arg));
+            }
+        };
+    }
+
+    private static Collection<?> toCollection(Object arg)
+    {
+        if (arg instanceof Collection) {
+            return (Collection<?>) arg;
+        }
+        if (arg instanceof Iterable) {
+            List<Object> values = new ArrayList<Object>();
+            for (Object value : (Iterable<?>) arg) {
+                values.add(value);
+            }
+            return values;
+        }
+        if (arg instanceof Object[]) {
+            return Arrays.asList((Object[]) arg);
+        }
+        if (arg != null && arg.getClass().isArray()) {
+            int length = Array.getLength(arg);
+            List<Object> values = new ArrayList<Object>(length);
+            for (int i = 0; i < length; i++) {
+                values.add(Array.get(arg, i));
+            }
+            return values;
+        }
+        throw new IllegalArgumentException("@BindIn needs a collection, iterable or array, not " + arg);
+    }
+}
@@ -30,6 +30,11 @@ class Bindifier
         this.binder = binder;
     }
 
+    int getParameterIndex()
+    {
+        return param_idx;
+    }
+
     void bind(SQLStatement q, Object[] args)
     {
         binder.bind(q, annotation, args[param_idx]);
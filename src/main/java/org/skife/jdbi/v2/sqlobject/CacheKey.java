@@ -0,0 +1,49 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2.sqlobject;
+
+import java.util.Arrays;
+
+/**
+ * Identifies a call to a {@link CacheResult} method by its bound argument values
+ */
+final class CacheKey
+{
+    private final Object[] values;
+    private final int hash;
+
+    CacheKey(Object[] values)
+    {
+        this.values = values;
+        this.hash = Arrays.deepHashCode(values);
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        return this == o || (o instanceof CacheKey && Arrays.deepEquals(values, ((CacheKey) o).values));
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return hash;
+    }
+
+    @Override
+    public String toString()
+    {
+        return Arrays.deepToString(values);
+    }
+}
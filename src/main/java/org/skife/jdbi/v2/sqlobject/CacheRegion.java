@@ -0,0 +1,79 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2.sqlobject;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The settings shared by all results cached for one {@link CacheResult} method
+ */
+public final class CacheRegion
+{
+    private final String name;
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final Set<String> tables;
+
+    public CacheRegion(String name, long ttl, TimeUnit unit, int maxEntries, Set<String> tables)
+    {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.name = name;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.maxEntries = maxEntries;
+        this.tables = Collections.unmodifiableSet(new HashSet<String>(tables));
+    }
+
+    static CacheRegion of(String name, CacheResult cr)
+    {
+        return new CacheRegion(name, cr.ttl(), cr.unit(), cr.maxEntries(), new HashSet<String>(Arrays.asList(cr.tables())));
+    }
+
+    /**
+     * @return a name unique to the cached method
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    public long getTtlNanos()
+    {
+        return ttlNanos;
+    }
+
+    public int getMaxEntries()
+    {
+        return maxEntries;
+    }
+
+    /**
+     * @return the tables whose invalidation drops results of this region
+     */
+    public Set<String> getTables()
+    {
+        return tables;
+    }
+
+    @Override
+    public String toString()
+    {
+        return name;
+    }
+}
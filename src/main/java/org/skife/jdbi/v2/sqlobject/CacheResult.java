@@ -0,0 +1,52 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2.sqlobject;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache the result of a {@link SqlQuery} method, keyed by the method and its bound arguments.
+ * <p>
+ * Results are held by the {@link ResultCache} defined as the {@link ResultCache#ATTRIBUTE} statement
+ * attribute, or by the {@link InMemoryResultCache} of the DBI the handle was opened from if there is none.
+ * Cached results are shared between callers and must not be modified. Methods returning iterators or
+ * queries cannot be cached. Calls on a handle in a transaction bypass the cache, as they may see changes
+ * not committed yet.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD})
+public @interface CacheResult
+{
+    /**
+     * How long a result may be served from the cache
+     */
+    long ttl();
+
+    TimeUnit unit() default TimeUnit.SECONDS;
+
+    /**
+     * The maximum number of results cached for this method, least recently used ones are evicted first
+     */
+    int maxEntries() default 1000;
+
+    /**
+     * The tables the query reads; results are dropped when a method annotated with
+     * {@link InvalidatesCache} for any of them is invoked.
+     */
+    String[] tables() default {};
+}
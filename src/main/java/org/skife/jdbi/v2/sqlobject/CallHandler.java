@@ -54,6 +54,7 @@ class CallHandler extends CustomizingStatementHandler
         applyBinders(call, args);
 
         OutParameters ou = call.invoke();
+        invalidateCaches(h);
 
         if (returnOutParams) {
             return ou;
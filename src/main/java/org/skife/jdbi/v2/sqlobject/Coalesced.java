@@ -0,0 +1,40 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2.sqlobject;
+
+import org.skife.jdbi.v2.tweak.ResultCopier;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Share the execution of this {@link SqlQuery} method with identical concurrent calls, see
+ * {@link org.skife.jdbi.v2.Query#coalesced()}. A {@link org.skife.jdbi.v2.sqlobject.customizers.Mapper}
+ * on a coalesced method is instantiated once and shared between calls.
+ * <p>
+ * On an on-demand sql object, a call outside a transaction joins an identical call in flight before opening
+ * a handle, and shares its whole result. Methods returning an iterator, or a non-list collection with a
+ * {@link #copier()}, are coalesced only once their handle is open.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD})
+public @interface Coalesced
+{
+    /**
+     * Copies rows handed to callers which share another call's execution. The default does not copy.
+     */
+    Class<? extends ResultCopier> copier() default ResultCopier.class;
+}
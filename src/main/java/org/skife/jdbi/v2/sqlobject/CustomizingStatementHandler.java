@@ -15,6 +15,8 @@ package org.skife.jdbi.v2.sqlobject;
 
 import com.fasterxml.classmate.members.ResolvedMethod;
 import org.skife.jdbi.v2.ConcreteStatementContext;
+import org.skife.jdbi.v2.ExtendedHandle;
+import org.skife.jdbi.v2.Handle;
 import org.skife.jdbi.v2.SQLStatement;
 import org.skife.jdbi.v2.exceptions.UnableToCreateStatementException;
 
@@ -22,7 +24,11 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
 
 abstract class CustomizingStatementHandler implements Handler
 {
@@ -32,6 +38,8 @@ abstract class CustomizingStatementHandler implements Handler
     private final List<FactoryAnnotationIndexTriple> paramBasedCustomizerFactories  = new ArrayList<FactoryAnnotationIndexTriple>();
     private final Class<?> sqlObjectType;
     private final Method method;
+    private final List<String> invalidatedTables;
+    private final int[] keyParameters;
 
     CustomizingStatementHandler(Class<?> sqlObjectType, ResolvedMethod method)
     {
@@ -113,6 +121,79 @@ abstract class CustomizingStatementHandler implements Handler
                 binders.add(new Bindifier(null, param_idx, new PositionalBinder(param_idx)));
             }
         }
+
+        InvalidatesCache ic = this.method.getAnnotation(InvalidatesCache.class);
+        this.invalidatedTables = ic == null ? Collections.<String>emptyList() : Arrays.asList(ic.tables());
+
+        SortedSet<Integer> indexes = new TreeSet<Integer>();
+        for (Bindifier binder : binders) {
+            indexes.add(binder.getParameterIndex());
+        }
+        for (FactoryAnnotationIndexTriple triple : paramBasedCustomizerFactories) {
+            indexes.add(triple.index);
+        }
+        this.keyParameters = new int[indexes.size()];
+        int i = 0;
+        for (Integer index : indexes) {
+            keyParameters[i++] = index;
+        }
+    }
+
+    /**
+     * @return the key identifying a call with these arguments to a {@link CacheResult} method, made of
+     *         the values of all bound or customizing arguments
+     */
+    protected final Object cacheKey(Object[] args)
+    {
+        Object[] values = new Object[keyParameters.length];
+        for (int i = 0; i < keyParameters.length; i++) {
+            values[i] = args[keyParameters[i]];
+        }
+        return new CacheKey(values);
+    }
+
+    /**
+     * @return true if any parameter of this method customizes the statement rather than being bound
+     */
+    protected final boolean hasParameterCustomizers()
+    {
+        return !paramBasedCustomizerFactories.isEmpty();
+    }
+
+    /**
+     * Invalidate the tables named by {@link InvalidatesCache} on this method, if any. Inside a transaction they
+     * are invalidated again once it ends, as results read meanwhile by other handles predate the changes.
+     */
+    protected final void invalidateCaches(Handle handle)
+    {
+        if (invalidatedTables.isEmpty()) {
+            return;
+        }
+        final ResultCache cache = resultCache(handle);
+        if (cache == null) {
+            return;
+        }
+        cache.invalidate(invalidatedTables);
+        if (handle.isInTransaction()) {
+            ((ExtendedHandle) handle).afterTransaction(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    cache.invalidate(invalidatedTables);
+                }
+            });
+        }
+    }
+
+    /**
+     * @return the cache defined as the {@link ResultCache#ATTRIBUTE} or else the one of the DBI the handle was
+     *         opened from, or null for handles which were not opened from a DBI
+     */
+    static ResultCache resultCache(Handle handle)
+    {
+        Object cache = handle instanceof ExtendedHandle ? ((ExtendedHandle) handle).getAttribute(ResultCache.ATTRIBUTE) : null;
+        return cache instanceof ResultCache ? (ResultCache) cache : null;
     }
 
     protected final void populateSqlObjectData(ConcreteStatementContext q)
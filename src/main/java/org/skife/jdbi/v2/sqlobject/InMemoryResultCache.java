@@ -0,0 +1,213 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2.sqlobject;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link ResultCache} holding results on the heap, bounded per region by least recently used eviction.
+ * Concurrent misses on the same key wait for a single load.
+ */
+public class InMemoryResultCache implements ResultCache
+{
+    private final ConcurrentMap<String, Region> regions = new ConcurrentHashMap<String, Region>();
+    private final ConcurrentMap<String, Long> invalidatedAt = new ConcurrentHashMap<String, Long>();
+    private final AtomicLong clock = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    @Override
+    public Object get(CacheRegion region, Object key, Callable<Object> loader) throws Exception
+    {
+        Region r = regions.get(region.getName());
+        if (r == null) {
+            Region fresh = new Region(region);
+            r = regions.putIfAbsent(region.getName(), fresh);
+            if (r == null) {
+                r = fresh;
+            }
+        }
+
+        CachedResult e = r.lookup(key);
+        if (e != null) {
+            hits.incrementAndGet();
+            return e.value;
+        }
+        misses.incrementAndGet();
+
+        final long started = clock.get();
+        FutureTask<Object> load = new FutureTask<Object>(loader);
+        FutureTask<Object> running = r.loading.putIfAbsent(key, load);
+        if (running == null) {
+            loads.incrementAndGet();
+            try {
+                load.run();
+                Object value = unwrap(load);
+                if (!isStale(r.settings, started)) {
+                    r.store(key, new CachedResult(value, System.nanoTime() + r.settings.getTtlNanos(), started));
+                }
+                return value;
+            }
+            finally {
+                r.loading.remove(key, load);
+            }
+        }
+        return unwrap(running);
+    }
+
+    @Override
+    public void invalidate(Collection<String> tables)
+    {
+        final long now = clock.incrementAndGet();
+        for (String table : tables) {
+            invalidatedAt.put(table, now);
+        }
+    }
+
+    /**
+     * Drop all cached results
+     */
+    public void clear()
+    {
+        for (Region r : regions.values()) {
+            r.clear();
+        }
+    }
+
+    public long getHitCount()
+    {
+        return hits.get();
+    }
+
+    public long getMissCount()
+    {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of loads run, which is lower than the miss count when concurrent misses were coalesced
+     */
+    public long getLoadCount()
+    {
+        return loads.get();
+    }
+
+    /**
+     * @return the number of results evicted to stay within {@link CacheResult#maxEntries()}
+     */
+    public long getEvictionCount()
+    {
+        return evictions.get();
+    }
+
+    private boolean isStale(CacheRegion region, long loadedAt)
+    {
+        for (String table : region.getTables()) {
+            Long at = invalidatedAt.get(table);
+            if (at != null && at > loadedAt) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Object unwrap(FutureTask<Object> load) throws Exception
+    {
+        try {
+            return load.get();
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    private final class Region
+    {
+        private final CacheRegion settings;
+        private final ConcurrentMap<Object, FutureTask<Object>> loading = new ConcurrentHashMap<Object, FutureTask<Object>>();
+        private final Map<Object, CachedResult> entries;
+
+        Region(final CacheRegion settings)
+        {
+            this.settings = settings;
+            this.entries = new LinkedHashMap<Object, CachedResult>(16, 0.75f, true)
+            {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Object, CachedResult> eldest)
+                {
+                    if (size() > settings.getMaxEntries()) {
+                        evictions.incrementAndGet();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        synchronized CachedResult lookup(Object key)
+        {
+            CachedResult e = entries.get(key);
+            if (e == null) {
+                return null;
+            }
+            if (System.nanoTime() - e.expiresAt >= 0 || isStale(settings, e.loadedAt)) {
+                entries.remove(key);
+                return null;
+            }
+            return e;
+        }
+
+        synchronized void store(Object key, CachedResult e)
+        {
+            entries.put(key, e);
+        }
+
+        synchronized void clear()
+        {
+            entries.clear();
+        }
+    }
+
+    private static final class CachedResult
+    {
+        private final Object value;
+        private final long expiresAt;
+        private final long loadedAt;
+
+        CachedResult(Object value, long expiresAt, long loadedAt)
+        {
+            this.value = value;
+            this.expiresAt = expiresAt;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
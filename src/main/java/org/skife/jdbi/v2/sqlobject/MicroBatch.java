@@ -0,0 +1,45 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2.sqlobject;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Execute concurrent calls to this {@link SqlUpdate} method on an on-demand sql object as one
+ * {@link org.skife.jdbi.v2.PreparedBatch} on a single handle. The first caller waits up to
+ * {@link #maxDelayMicros()} for others to join before the batch is executed in a transaction; every
+ * caller then returns its own update count. If the batch fails it is rolled back and each call is
+ * executed on its own, so that only failing calls see an exception.
+ * <p>
+ * Calls made while the calling thread already holds the sql object's handle, such as in a transaction,
+ * are executed immediately. Methods with {@link GetGeneratedKeys} or statement customizing parameters
+ * cannot be batched, and batched methods must return <code>void</code> or <code>int</code>.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD})
+public @interface MicroBatch
+{
+    /**
+     * The most calls executed in one batch
+     */
+    int maxBatch() default 100;
+
+    /**
+     * How long the first call of a batch waits for others to join it
+     */
+    long maxDelayMicros() default 1000;
+}
@@ -15,20 +15,29 @@ package org.skife.jdbi.v2.sqlobject;
 
 import org.skife.jdbi.v2.Handle;
 import org.skife.jdbi.v2.IDBI;
+import org.skife.jdbi.v2.ReadWriteSplittingDBI;
 
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 class OnDemandHandleDing implements HandleDing
 {
     private final IDBI dbi;
     private final ThreadLocal<LocalDing> threadDing = new ThreadLocal<LocalDing>();
+    private final ConcurrentMap<UpdateHandler, UpdateBatcher> batchers = new ConcurrentHashMap<UpdateHandler, UpdateBatcher>();
 
     OnDemandHandleDing(IDBI dbi)
     {
         this.dbi = dbi;
     }
 
+    IDBI getDBI()
+    {
+        return dbi;
+    }
+
     @Override
     public Handle getHandle()
     {
@@ -45,6 +54,42 @@ class OnDemandHandleDing implements HandleDing
         threadDing.get().retain(name);
     }
 
+    /**
+     * Like {@link #retain(String)}, but if no handle is held by this thread yet and the dbi
+     * can provide one for read-only work, use that.
+     */
+    void retainReadOnly(String name)
+    {
+        if (threadDing.get() == null && dbi instanceof ReadWriteSplittingDBI) {
+            threadDing.set(new LocalDing(((ReadWriteSplittingDBI) dbi).openReadOnly()));
+        }
+        retain(name);
+    }
+
+    /**
+     * @return true if the calling thread holds a handle, for example while in a transaction
+     */
+    boolean isHoldingHandle()
+    {
+        return threadDing.get() != null;
+    }
+
+    /**
+     * @return the batcher queueing calls to a {@link MicroBatch} method of this sql object
+     */
+    UpdateBatcher batcher(UpdateHandler handler, MicroBatch config)
+    {
+        UpdateBatcher batcher = batchers.get(handler);
+        if (batcher == null) {
+            UpdateBatcher created = new UpdateBatcher(dbi, handler, config);
+            batcher = batchers.putIfAbsent(handler, created);
+            if (batcher == null) {
+                batcher = created;
+            }
+        }
+        return batcher;
+    }
+
     @Override
     public void release(String name)
     {
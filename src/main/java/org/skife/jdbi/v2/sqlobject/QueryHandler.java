@@ -16,30 +16,160 @@ package org.skife.jdbi.v2.sqlobject;
 import com.fasterxml.classmate.members.ResolvedMethod;
 import net.sf.cglib.proxy.MethodProxy;
 import org.skife.jdbi.v2.ConcreteStatementContext;
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.IDBI;
 import org.skife.jdbi.v2.Query;
+import org.skife.jdbi.v2.QueryCoalescer;
+import org.skife.jdbi.v2.ResultBearing;
+import org.skife.jdbi.v2.exceptions.CallbackFailedException;
+import org.skife.jdbi.v2.exceptions.UnableToCreateSqlObjectException;
+import org.skife.jdbi.v2.exceptions.UnableToCreateStatementException;
+import org.skife.jdbi.v2.tweak.ResultCopier;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
 
 class QueryHandler extends CustomizingStatementHandler
 {
     private final String            sql;
+    private final Class<?>          sqlObjectType;
     private final ResolvedMethod    method;
     private final ResultReturnThing magic;
+    private final CacheRegion       cacheRegion;
+    private final boolean           coalesced;
+    private final boolean           coalescedBeforeOpen;
+    private final ResultCopier      copier;
+    private final Hedged            hedged;
 
     QueryHandler(Class<?> sqlObjectType, ResolvedMethod method, ResultReturnThing magic)
     {
         super(sqlObjectType, method);
+        this.sqlObjectType = sqlObjectType;
         this.method = method;
         this.magic = magic;
         this.sql = SqlObject.getSql(method.getRawMember().getAnnotation(SqlQuery.class), method.getRawMember());
+
+        CacheResult cr = method.getRawMember().getAnnotation(CacheResult.class);
+        if (cr != null && (method.getReturnType().isInstanceOf(Iterator.class)
+                           || method.getReturnType().isInstanceOf(ResultBearing.class))) {
+            throw new UnableToCreateSqlObjectException(method + " is annotated with @CacheResult but returns "
+                                                       + method.getReturnType() + " which cannot be cached");
+        }
+        this.cacheRegion = cr == null ? null : CacheRegion.of(method.getRawMember().toGenericString(), cr);
+
+        Coalesced c = method.getRawMember().getAnnotation(Coalesced.class);
+        this.coalesced = c != null;
+        if (c != null && c.copier() != ResultCopier.class) {
+            try {
+                this.copier = c.copier().newInstance();
+            }
+            catch (Exception e) {
+                throw new UnableToCreateStatementException("unable to instantiate result copier", e);
+            }
+        }
+        else {
+            this.copier = null;
+        }
+
+        // whole results can be shared, and copied row by row for a list
+        this.coalescedBeforeOpen = coalesced
+                                   && !method.getReturnType().isInstanceOf(Iterator.class)
+                                   && !method.getReturnType().isInstanceOf(ResultBearing.class)
+                                   && (copier == null
+                                       || !method.getReturnType().isInstanceOf(Iterable.class)
+                                       || method.getReturnType().isInstanceOf(List.class));
+
+        this.hedged = method.getRawMember().getAnnotation(Hedged.class);
+    }
+
+    /**
+     * @return true if a call on demand can join an identical call in flight before opening a handle
+     */
+    boolean isCoalescedBeforeOpen(OnDemandHandleDing ding)
+    {
+        return coalescedBeforeOpen && QueryCoalescer.forDBI(ding.getDBI()) != null;
+    }
+
+    /**
+     * Run the call, or wait for an identical call of this method in flight on the same dbi and share its result.
+     */
+    @SuppressWarnings("unchecked")
+    Object invokeCoalesced(OnDemandHandleDing ding, Object[] args, Callable<Object> call)
+    {
+        IDBI dbi = ding.getDBI();
+        Object key = Arrays.asList(dbi, sqlObjectType, method.getRawMember(), cacheKey(args));
+        return QueryCoalescer.forDBI(dbi).share(key, call, copier);
+    }
+
+    /**
+     * @return a handler running the query of this method without coalescing it, for a call already coalesced
+     */
+    Handler uncoalesced()
+    {
+        return new Handler()
+        {
+            @Override
+            public Object invoke(HandleDing h, Object target, Object[] args, MethodProxy mp)
+            {
+                return query(h, args, false);
+            }
+        };
     }
 
     @Override
     public Object invoke(HandleDing h, Object target, Object[] args, MethodProxy mp)
     {
-        Query q = h.getHandle().createQuery(sql);
+        return query(h, args, coalesced);
+    }
+
+    private Object query(final HandleDing h, final Object[] args, final boolean coalesce)
+    {
+        final Handle handle = h.getHandle();
+        // a transaction may see its own uncommitted changes, which other handles must not be served
+        final ResultCache cache = cacheRegion == null || handle.isInTransaction() ? null : resultCache(handle);
+        if (cache == null) {
+            return execute(handle, h, args, coalesce);
+        }
+
+        try {
+            return cache.get(cacheRegion, cacheKey(args), new Callable<Object>()
+            {
+                @Override
+                public Object call() throws Exception
+                {
+                    return execute(handle, h, args, coalesce);
+                }
+            });
+        }
+        catch (RuntimeException e) {
+            throw e;
+        }
+        catch (Exception e) {
+            throw new CallbackFailedException(e);
+        }
+    }
+
+    private Object execute(Handle handle, HandleDing h, Object[] args, boolean coalesce)
+    {
+        Query q = handle.createQuery(sql);
         populateSqlObjectData((ConcreteStatementContext) q.getContext());
         applyCustomizers(q, args);
         applyBinders(q, args);
 
+        if (hedged != null) {
+            if (hedged.afterMillis() < 0) {
+                q.hedged();
+            }
+            else {
+                q.hedged(hedged.afterMillis());
+            }
+        }
+
+        if (coalesce) {
+            return magic.mapCoalesced(method, q, h, copier);
+        }
         return magic.map(method, q, h);
     }
 }
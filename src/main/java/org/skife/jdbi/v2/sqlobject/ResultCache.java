@@ -0,0 +1,46 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2.sqlobject;
+
+import java.util.Collection;
+import java.util.concurrent.Callable;
+
+/**
+ * Holds the results of {@link CacheResult} sql object methods. Define an instance as the
+ * {@link #ATTRIBUTE} statement attribute on a DBI or Handle to use it instead of the
+ * {@link InMemoryResultCache} each DBI creates on first use.
+ */
+public interface ResultCache
+{
+    /**
+     * The statement attribute under which the cache to use is looked up
+     */
+    String ATTRIBUTE = ResultCache.class.getName();
+
+    /**
+     * Return the result cached for the key, or obtain it from the loader, cache and return it.
+     * Implementations should not run more than one load per key at a time.
+     *
+     * @param region the settings of the cached method
+     * @param key    identifies the call; implements equals and hashCode
+     * @param loader runs the query
+     * @throws Exception as thrown by the loader
+     */
+    Object get(CacheRegion region, Object key, Callable<Object> loader) throws Exception;
+
+    /**
+     * Drop all results of regions depending on any of the tables, including those being loaded
+     */
+    void invalidate(Collection<String> tables);
+}
@@ -23,6 +23,7 @@ import org.skife.jdbi.v2.ResultIterator;
 import org.skife.jdbi.v2.exceptions.UnableToCreateStatementException;
 import org.skife.jdbi.v2.sqlobject.customizers.Mapper;
 import org.skife.jdbi.v2.sqlobject.customizers.SingleValueResult;
+import org.skife.jdbi.v2.tweak.ResultCopier;
 import org.skife.jdbi.v2.tweak.ResultSetMapper;
 
 import java.util.Iterator;
@@ -30,23 +31,45 @@ import java.util.List;
 
 abstract class ResultReturnThing
 {
+    private volatile ResultSetMapper sharedMapper;
+
     public Object map(ResolvedMethod method, Query q, HandleDing h)
     {
         if (method.getRawMember().isAnnotationPresent(Mapper.class)) {
-            final ResultSetMapper mapper;
-            try {
-                mapper = method.getRawMember().getAnnotation(Mapper.class).value().newInstance();
-            }
-            catch (Exception e) {
-                throw new UnableToCreateStatementException("unable to access mapper", e);
-            }
-            return result(q.map(mapper), h);
+            return result(q.map(createMapper(method)), h);
         }
         else {
             return result(q.mapTo(mapTo(method)), h);
         }
     }
 
+    /**
+     * Like {@link #map(ResolvedMethod, Query, HandleDing)} for a {@link Coalesced} method. A {@link Mapper}
+     * is created once and shared, so that concurrent calls map identically and can be coalesced.
+     */
+    public Object mapCoalesced(ResolvedMethod method, Query q, HandleDing h, ResultCopier copier)
+    {
+        if (method.getRawMember().isAnnotationPresent(Mapper.class)) {
+            if (sharedMapper == null) {
+                sharedMapper = createMapper(method);
+            }
+            return result(q.map(sharedMapper).coalesced(copier), h);
+        }
+        else {
+            return result(q.mapTo(mapTo(method)).coalesced(copier), h);
+        }
+    }
+
+    private static ResultSetMapper createMapper(ResolvedMethod method)
+    {
+        try {
+            return method.getRawMember().getAnnotation(Mapper.class).value().newInstance();
+        }
+        catch (Exception e) {
+            throw new UnableToCreateStatementException("unable to access mapper", e);
+        }
+    }
+
     static ResultReturnThing forType(ResolvedMethod method)
     {
         ResolvedType return_type = method.getReturnType();
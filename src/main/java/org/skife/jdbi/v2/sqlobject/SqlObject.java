@@ -28,10 +28,12 @@ import net.sf.cglib.proxy.NoOp;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -197,7 +199,7 @@ class SqlObject
         this.ding = ding;
     }
 
-    public Object invoke(Object proxy, Method method, Object[] args, MethodProxy mp) throws Throwable
+    public Object invoke(final Object proxy, final Method method, final Object[] args, final MethodProxy mp) throws Throwable
     {
         final Handler handler = handlers.get(method);
 
@@ -206,9 +208,50 @@ class SqlObject
             return mp.invokeSuper(proxy, args);
         }
 
+        if (handler instanceof UpdateHandler && ding instanceof OnDemandHandleDing
+            && ((UpdateHandler) handler).isMicroBatched() && !((OnDemandHandleDing) ding).isHoldingHandle()) {
+            return ((UpdateHandler) handler).invokeBatched((OnDemandHandleDing) ding, args);
+        }
+
+        if (handler instanceof QueryHandler && ding instanceof OnDemandHandleDing
+            && !((OnDemandHandleDing) ding).isHoldingHandle()
+            && ((QueryHandler) handler).isCoalescedBeforeOpen((OnDemandHandleDing) ding)) {
+            // join an identical call in flight before opening a handle, so that waiting callers hold no connection
+            final Handler uncoalesced = ((QueryHandler) handler).uncoalesced();
+            return ((QueryHandler) handler).invokeCoalesced((OnDemandHandleDing) ding, args, new Callable<Object>()
+            {
+                @Override
+                public Object call() throws Exception
+                {
+                    try {
+                        return invoke(uncoalesced, proxy, method, args, mp);
+                    }
+                    catch (Exception e) {
+                        throw e;
+                    }
+                    catch (Error e) {
+                        throw e;
+                    }
+                    catch (Throwable e) {
+                        throw new UndeclaredThrowableException(e);
+                    }
+                }
+            });
+        }
+
+        return invoke(handler, proxy, method, args, mp);
+    }
+
+    private Object invoke(Handler handler, Object proxy, Method method, Object[] args, MethodProxy mp) throws Throwable
+    {
         Throwable doNotMask = null;
         try {
-            ding.retain(method.toString());
+            if (handler instanceof QueryHandler && ding instanceof OnDemandHandleDing) {
+                ((OnDemandHandleDing) ding).retainReadOnly(method.toString());
+            }
+            else {
+                ding.retain(method.toString());
+            }
             return handler.invoke(ding, proxy, args, mp);
         }
         catch (Throwable e) {
@@ -0,0 +1,188 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2.sqlobject;
+
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.IDBI;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Queues calls to a {@link MicroBatch} update method. There is no background thread: the first waiting
+ * caller to find no batch in progress collects and executes the next batch on behalf of the others.
+ */
+class UpdateBatcher
+{
+    private final IDBI          dbi;
+    private final UpdateHandler handler;
+    private final int           maxBatch;
+    private final long          maxDelayNanos;
+
+    private final Lock          lock    = new ReentrantLock();
+    private final Condition     changed = lock.newCondition();
+    private final Queue<Call>   queue   = new ArrayDeque<Call>();
+    private boolean             flushing;
+
+    UpdateBatcher(IDBI dbi, UpdateHandler handler, MicroBatch config)
+    {
+        this.dbi = dbi;
+        this.handler = handler;
+        this.maxBatch = Math.max(1, config.maxBatch());
+        this.maxDelayNanos = TimeUnit.MICROSECONDS.toNanos(config.maxDelayMicros());
+    }
+
+    int call(Object[] args)
+    {
+        Call call = new Call(args);
+        boolean interrupted = false;
+        lock.lock();
+        try {
+            queue.add(call);
+            if (queue.size() >= maxBatch) {
+                changed.signalAll();
+            }
+            while (!call.done) {
+                if (flushing) {
+                    changed.awaitUninterruptibly();
+                    continue;
+                }
+                flushing = true;
+                try {
+                    long deadline = System.nanoTime() + maxDelayNanos;
+                    long remaining;
+                    while (queue.size() < maxBatch && (remaining = deadline - System.nanoTime()) > 0) {
+                        try {
+                            changed.awaitNanos(remaining);
+                        }
+                        catch (InterruptedException e) {
+                            interrupted = true;
+                        }
+                    }
+                    List<Call> batch = new ArrayList<Call>(Math.min(queue.size(), maxBatch));
+                    while (batch.size() < maxBatch && !queue.isEmpty()) {
+                        batch.add(queue.remove());
+                    }
+                    lock.unlock();
+                    try {
+                        execute(batch);
+                    }
+                    finally {
+                        lock.lock();
+                    }
+                }
+                finally {
+                    flushing = false;
+                    changed.signalAll();
+                }
+            }
+        }
+        finally {
+            lock.unlock();
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (call.failure != null) {
+            throw call.failure;
+        }
+        return call.count;
+    }
+
+    private void execute(List<Call> batch)
+    {
+        Handle handle;
+        try {
+            handle = dbi.open();
+        }
+        catch (RuntimeException e) {
+            for (Call call : batch) {
+                call.fail(e);
+            }
+            return;
+        }
+
+        try {
+            List<Object[]> args = new ArrayList<Object[]>(batch.size());
+            for (Call call : batch) {
+                args.add(call.args);
+            }
+            int[] counts = null;
+            if (batch.size() > 1) {
+                try {
+                    counts = handler.executeBatch(handle, args);
+                }
+                catch (RuntimeException e) {
+                    // fall through, run the calls one by one to find out which of them failed
+                }
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                Call call = batch.get(i);
+                if (counts != null) {
+                    call.complete(counts[i]);
+                    continue;
+                }
+                try {
+                    call.complete(handler.executeSingle(handle, call.args));
+                }
+                catch (RuntimeException e) {
+                    call.fail(e);
+                }
+            }
+        }
+        catch (Error e) {
+            for (Call call : batch) {
+                if (!call.done) {
+                    call.fail(new IllegalStateException("batch was aborted", e));
+                }
+            }
+            throw e;
+        }
+        finally {
+            handle.close();
+        }
+    }
+
+    private static class Call
+    {
+        private final Object[]   args;
+        private int              count;
+        private RuntimeException failure;
+        private volatile boolean done;
+
+        Call(Object[] args)
+        {
+            this.args = args;
+        }
+
+        void complete(int count)
+        {
+            this.count = count;
+            this.done = true;
+        }
+
+        void fail(RuntimeException failure)
+        {
+            this.failure = failure;
+            this.done = true;
+        }
+    }
+}
@@ -17,15 +17,22 @@ import com.fasterxml.classmate.members.ResolvedMethod;
 import net.sf.cglib.proxy.MethodProxy;
 import org.skife.jdbi.v2.ConcreteStatementContext;
 import org.skife.jdbi.v2.GeneratedKeys;
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.PreparedBatch;
+import org.skife.jdbi.v2.TransactionCallback;
+import org.skife.jdbi.v2.TransactionStatus;
 import org.skife.jdbi.v2.Update;
 import org.skife.jdbi.v2.exceptions.UnableToCreateSqlObjectException;
 import org.skife.jdbi.v2.exceptions.UnableToCreateStatementException;
 import org.skife.jdbi.v2.tweak.ResultSetMapper;
 
+import java.util.List;
+
 class UpdateHandler extends CustomizingStatementHandler
 {
     private final String sql;
     private final Returner returner;
+    private final MicroBatch microBatch;
 
     UpdateHandler(Class<?> sqlObjectType, ResolvedMethod method)
     {
@@ -37,6 +44,16 @@ class UpdateHandler extends CustomizingStatementHandler
             throw new UnableToCreateSqlObjectException(invalidReturnTypeMessage(method));
         }
         this.sql = SqlObject.getSql(method.getRawMember().getAnnotation(SqlUpdate.class), method.getRawMember());
+        this.microBatch = method.getRawMember().getAnnotation(MicroBatch.class);
+        if (microBatch != null && (isGetGeneratedKeys || hasParameterCustomizers())) {
+            throw new UnableToCreateSqlObjectException(method.getDeclaringType() + "." + method +
+                    " is annotated with @MicroBatch so cannot use @GetGeneratedKeys or customizing parameters");
+        }
+        if (microBatch != null && !isBatchedReturnType(method.getRawMember().getReturnType())) {
+            throw new UnableToCreateSqlObjectException(method.getDeclaringType() + "." + method +
+                    " is annotated with @MicroBatch so should return void or int but is returning: " +
+                    method.getReturnType());
+        }
 
         if (isGetGeneratedKeys) {
 
@@ -78,9 +95,53 @@ class UpdateHandler extends CustomizingStatementHandler
         populateSqlObjectData((ConcreteStatementContext)q.getContext());
         applyCustomizers(q, args);
         applyBinders(q, args);
-        return this.returner.value(q, h);
+        Object rs = this.returner.value(q, h);
+        invalidateCaches(h.getHandle());
+        return rs;
+    }
+
+
+    boolean isMicroBatched()
+    {
+        return microBatch != null;
     }
 
+    Object invokeBatched(OnDemandHandleDing h, Object[] args)
+    {
+        return h.batcher(this, microBatch).call(args);
+    }
+
+    int[] executeBatch(Handle handle, List<Object[]> calls)
+    {
+        final PreparedBatch batch = handle.prepareBatch(sql);
+        populateSqlObjectData((ConcreteStatementContext) batch.getContext());
+        applyCustomizers(batch, calls.get(0));
+        for (Object[] args : calls) {
+            applyBinders(batch.add(), args);
+        }
+        // the batch is executed on the handle it was prepared on, so it is safe to use it in the callback
+        int[] counts = handle.inTransaction(new TransactionCallback<int[]>()
+        {
+            @Override
+            public int[] inTransaction(Handle conn, TransactionStatus status) throws Exception
+            {
+                return batch.execute();
+            }
+        });
+        invalidateCaches(handle);
+        return counts;
+    }
+
+    int executeSingle(Handle handle, Object[] args)
+    {
+        Update q = handle.createStatement(sql);
+        populateSqlObjectData((ConcreteStatementContext)q.getContext());
+        applyCustomizers(q, args);
+        applyBinders(q, args);
+        int count = q.execute();
+        invalidateCaches(handle);
+        return count;
+    }
 
     private interface Returner
     {
@@ -94,6 +155,10 @@ class UpdateHandler extends CustomizingStatementHandler
                 !type.equals(Void.TYPE);
     }
 
+    private boolean isBatchedReturnType(Class<?> type) {
+        return type.equals(Integer.TYPE) || type.equals(Integer.class) || type.equals(Void.TYPE);
+    }
+
     private String invalidReturnTypeMessage(ResolvedMethod method) {
         return method.getDeclaringType() + "." + method +
                 " method is annotated with @SqlUpdate so should return void or Number but is returning: " +
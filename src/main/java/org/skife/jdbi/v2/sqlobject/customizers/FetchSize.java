@@ -34,6 +34,11 @@ public @interface FetchSize
 {
     int value() default 0;
 
+    /**
+     * Choose the fetch size from earlier executions instead, see {@link org.skife.jdbi.v2.AdaptiveFetchSize}
+     */
+    boolean adaptive() default false;
+
     class Factory implements SqlStatementCustomizerFactory
     {
         @Override
@@ -46,7 +51,12 @@ public @interface FetchSize
                 public void apply(SQLStatement q) throws SQLException
                 {
                     assert q instanceof Query;
-                    ((Query) q).setFetchSize(fs.value());
+                    if (fs.adaptive()) {
+                        ((Query) q).adaptFetchSize();
+                    }
+                    else {
+                        ((Query) q).setFetchSize(fs.value());
+                    }
                 }
             };
         }
@@ -61,7 +71,12 @@ public @interface FetchSize
                 public void apply(SQLStatement q) throws SQLException
                 {
                     assert q instanceof Query;
-                    ((Query) q).setFetchSize(fs.value());
+                    if (fs.adaptive()) {
+                        ((Query) q).adaptFetchSize();
+                    }
+                    else {
+                        ((Query) q).setFetchSize(fs.value());
+                    }
                 }
             };
         }
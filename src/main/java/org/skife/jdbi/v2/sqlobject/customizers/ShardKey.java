@@ -0,0 +1,66 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2.sqlobject.customizers;
+
+import org.skife.jdbi.v2.SQLStatement;
+import org.skife.jdbi.v2.sqlobject.SqlStatementCustomizer;
+import org.skife.jdbi.v2.sqlobject.SqlStatementCustomizerFactory;
+import org.skife.jdbi.v2.sqlobject.SqlStatementCustomizingAnnotation;
+
+import java.lang.annotation.Annotation;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.reflect.Method;
+
+/**
+ * Marks the argument used by {@link org.skife.jdbi.v2.ShardedDBI#onDemand(Class)} sql objects to choose
+ * the shard a call goes to. The argument is not bound to the statement unless the parameter also carries
+ * a binding annotation such as {@link org.skife.jdbi.v2.sqlobject.Bind}.
+ */
+@SqlStatementCustomizingAnnotation(ShardKey.Factory.class)
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ShardKey
+{
+    class Factory implements SqlStatementCustomizerFactory
+    {
+        private static final SqlStatementCustomizer NOP = new SqlStatementCustomizer()
+        {
+            @Override
+            public void apply(SQLStatement q)
+            {
+            }
+        };
+
+        @Override
+        public SqlStatementCustomizer createForType(Annotation annotation, Class sqlObjectType)
+        {
+            throw new UnsupportedOperationException("Not allowed on Type");
+        }
+
+        @Override
+        public SqlStatementCustomizer createForMethod(Annotation annotation, Class sqlObjectType, Method method)
+        {
+            throw new UnsupportedOperationException("Not allowed on Method");
+        }
+
+        @Override
+        public SqlStatementCustomizer createForParameter(Annotation annotation, Class sqlObjectType, Method method, Object arg)
+        {
+            return NOP;
+        }
+    }
+}
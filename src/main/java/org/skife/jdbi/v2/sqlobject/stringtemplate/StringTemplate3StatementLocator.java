@@ -24,16 +24,29 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class StringTemplate3StatementLocator implements StatementLocator
 {
     private static final Charset UTF_8 = Charset.forName("UTF-8");
     private static final ConcurrentMap<String, StringTemplateGroup> ANNOTATION_LOCATOR_CACHE;
     private static final String SUPER_SEPARATOR = " > ";
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+    private static final Pattern INVOCATION = Pattern.compile("([A-Za-z_][A-Za-z0-9_]*)\\s*\\(");
+    private static final String[] ALL_ATTRIBUTES = new String[0];
 
     public static final String TEMPLATE_GROUP_EXTENSION = ".sql.stg";
 
@@ -46,6 +59,10 @@ public class StringTemplate3StatementLocator implements StatementLocator
     private final StringTemplateGroup literals = new StringTemplateGroup("literals", AngleBracketTemplateLexer.class);
     private final StringTemplateGroup group;
     private final boolean treatLiteralsAsTemplates;
+    private final ConcurrentMap<String, String> literalNames = new ConcurrentHashMap<String, String>();
+    private final AtomicInteger literalCount = new AtomicInteger();
+    private final ConcurrentMap<String, String[]> referencedAttributes = new ConcurrentHashMap<String, String[]>();
+    private final RenderCache renderCache;
 
     public static final StringTemplate3StatementLocator.Builder builder(Class<?> baseClass)
     {
@@ -68,7 +85,8 @@ public class StringTemplate3StatementLocator implements StatementLocator
              null,
              false,
              false,
-             false);
+             false,
+             0);
     }
 
     /**
@@ -84,7 +102,8 @@ public class StringTemplate3StatementLocator implements StatementLocator
              null,
              allowImplicitTemplateGroup,
              treatLiteralsAsTemplates,
-             false);
+             false,
+             0);
     }
 
     /**
@@ -98,7 +117,8 @@ public class StringTemplate3StatementLocator implements StatementLocator
              null,
              false,
              false,
-             false);
+             false,
+             0);
     }
 
     /**
@@ -114,7 +134,8 @@ public class StringTemplate3StatementLocator implements StatementLocator
              null,
              allowImplicitTemplateGroup,
              treatLiteralsAsTemplates,
-             false);
+             false,
+             0);
     }
 
     /**
@@ -131,7 +152,8 @@ public class StringTemplate3StatementLocator implements StatementLocator
              null,
              allowImplicitTemplateGroup,
              treatLiteralsAsTemplates,
-             shouldCache);
+             shouldCache,
+             0);
     }
 
     /**
@@ -148,7 +170,8 @@ public class StringTemplate3StatementLocator implements StatementLocator
              null,
              allowImplicitTemplateGroup,
              treatLiteralsAsTemplates,
-             shouldCache);
+             shouldCache,
+             0);
     }
 
     private StringTemplate3StatementLocator(String templateGroupFilePathOnClasspath,
@@ -156,9 +179,11 @@ public class StringTemplate3StatementLocator implements StatementLocator
                                             StringTemplateErrorListener errorListener,
                                             boolean allowImplicitTemplateGroup,
                                             boolean treatLiteralsAsTemplates,
-                                            boolean shouldCache)
+                                            boolean shouldCache,
+                                            int renderCacheSize)
     {
         this.treatLiteralsAsTemplates = treatLiteralsAsTemplates;
+        this.renderCache = renderCacheSize > 0 ? new RenderCache(renderCacheSize) : null;
 
         final StringTemplateGroup superGroup;
 
@@ -244,31 +269,146 @@ public class StringTemplate3StatementLocator implements StatementLocator
     @Override
     public String locate(String name, StatementContext ctx) throws Exception
     {
+        final StringTemplateGroup templates;
+        final String templateName;
         if (group.isDefined(name)) {
             // yeah, found template for it!
-            StringTemplate t = group.getInstanceOf(name);
-            t.reset();
-            for (Map.Entry<String, Object> entry : ctx.getAttributes().entrySet()) {
-                t.setAttribute(entry.getKey(), entry.getValue());
-            }
-            return t.toString();
+            templates = group;
+            templateName = name;
         }
         else if (treatLiteralsAsTemplates) {
             // no template in the template group, but we want literals to be templates
-            final String key = new String(new Base64().encode(name.getBytes(UTF_8)), UTF_8);
-            if (!literals.isDefined(key)) {
-                literals.defineTemplate(key, name);
-            }
-            StringTemplate t = literals.lookupTemplate(key);
-            for (Map.Entry<String, Object> entry : ctx.getAttributes().entrySet()) {
-                t.setAttribute(entry.getKey(), entry.getValue());
-            }
-            return t.toString();
+            templates = literals;
+            templateName = literalName(name);
         }
         else {
             // no template, no literals as template, just use the literal as sql
             return name;
         }
+
+        if (renderCache == null) {
+            return render(templates, templateName, ctx);
+        }
+
+        final List<Object> key = renderKey(templates, templateName, ctx);
+        String sql = renderCache.get(key);
+        if (sql == null) {
+            sql = render(templates, templateName, ctx);
+            renderCache.put(key, sql);
+        }
+        return sql;
+    }
+
+    /**
+     * @return the number of statements served from the render cache, see {@link Builder#withRenderCache(int)}
+     */
+    public long getRenderCacheHits()
+    {
+        return renderCache == null ? 0 : renderCache.hits.get();
+    }
+
+    /**
+     * @return the number of statements rendered because the render cache did not hold them
+     */
+    public long getRenderCacheMisses()
+    {
+        return renderCache == null ? 0 : renderCache.misses.get();
+    }
+
+    private static String render(StringTemplateGroup templates, String templateName, StatementContext ctx)
+    {
+        StringTemplate t = templates.getInstanceOf(templateName);
+        for (Map.Entry<String, Object> entry : ctx.getAttributes().entrySet()) {
+            t.setAttribute(entry.getKey(), entry.getValue());
+        }
+        return t.toString();
+    }
+
+    private String literalName(String literal)
+    {
+        String templateName = literalNames.get(literal);
+        if (templateName == null) {
+            synchronized (literals) {
+                templateName = literalNames.get(literal);
+                if (templateName == null) {
+                    templateName = "literal#" + literalCount.incrementAndGet();
+                    literals.defineTemplate(templateName, literal);
+                    literalNames.put(literal, templateName);
+                }
+            }
+        }
+        return templateName;
+    }
+
+    /**
+     * The template name followed by the name and value of each attribute the template may refer to.
+     */
+    private List<Object> renderKey(StringTemplateGroup templates, String templateName, StatementContext ctx)
+    {
+        String[] names = referencedAttributes.get(templateName);
+        if (names == null) {
+            names = findReferencedAttributes(templates, templateName);
+            referencedAttributes.putIfAbsent(templateName, names);
+        }
+
+        final List<Object> key = new ArrayList<Object>();
+        key.add(templateName);
+        if (names == ALL_ATTRIBUTES) {
+            for (String attribute : new TreeSet<String>(ctx.getAttributes().keySet())) {
+                key.add(attribute);
+                key.add(ctx.getAttribute(attribute));
+            }
+        }
+        else {
+            for (String attribute : names) {
+                if (ctx.getAttributes().containsKey(attribute)) {
+                    key.add(attribute);
+                    key.add(ctx.getAttribute(attribute));
+                }
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Collects every identifier in the template and in the templates it invokes; attributes are looked up
+     * dynamically through invoked templates, so their text counts as well. Words of the sql itself only make
+     * the key larger, never wrong.
+     */
+    private static String[] findReferencedAttributes(StringTemplateGroup templates, String templateName)
+    {
+        final Set<String> identifiers = new TreeSet<String>();
+        final Set<String> visited = new HashSet<String>();
+        final List<String> pending = new ArrayList<String>(Arrays.asList(templateName));
+        while (!pending.isEmpty()) {
+            final String current = pending.remove(pending.size() - 1);
+            if (!visited.add(current)) {
+                continue;
+            }
+
+            final StringTemplate t;
+            try {
+                t = templates.lookupTemplate(current);
+            }
+            catch (IllegalArgumentException e) {
+                // not a template, most likely a sql function such as count(...)
+                continue;
+            }
+            final String text = t.getTemplate();
+            if (text == null) {
+                return ALL_ATTRIBUTES;
+            }
+
+            Matcher m = IDENTIFIER.matcher(text);
+            while (m.find()) {
+                identifiers.add(m.group());
+            }
+            m = INVOCATION.matcher(text);
+            while (m.find()) {
+                pending.add(m.group(1));
+            }
+        }
+        return identifiers.toArray(new String[identifiers.size()]);
     }
 
     private static final String sep = "/"; // *Not* System.getProperty("file.separator"), which breaks in jars
@@ -289,6 +429,42 @@ public class StringTemplate3StatementLocator implements StatementLocator
         return ANNOTATION_LOCATOR_CACHE.containsKey(sb.toString());
     }
 
+    private static final class RenderCache
+    {
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+        private final Map<List<Object>, String> rendered;
+
+        RenderCache(final int maxEntries)
+        {
+            this.rendered = new LinkedHashMap<List<Object>, String>(16, 0.75f, true)
+            {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<List<Object>, String> eldest)
+                {
+                    return size() > maxEntries;
+                }
+            };
+        }
+
+        synchronized String get(List<Object> key)
+        {
+            String sql = rendered.get(key);
+            if (sql == null) {
+                misses.incrementAndGet();
+            }
+            else {
+                hits.incrementAndGet();
+            }
+            return sql;
+        }
+
+        synchronized void put(List<Object> key, String sql)
+        {
+            rendered.put(key, sql);
+        }
+    }
+
     public static class Builder
     {
         private final String basePath;
@@ -297,6 +473,7 @@ public class StringTemplate3StatementLocator implements StatementLocator
         private boolean allowImplicitTemplateGroupEnabled = false;
         private boolean treatLiteralsAsTemplatesEnabled = false;
         private boolean shouldCacheEnabled = false;
+        private int renderCacheSize = 0;
 
         Builder(final Class<?> baseClass)
         {
@@ -344,6 +521,16 @@ public class StringTemplate3StatementLocator implements StatementLocator
             return this;
         }
 
+        /**
+         * Keep up to <code>maxEntries</code> rendered statements, keyed on the template and the values of
+         * the attributes it refers to. Attribute values must not change once they are set on a statement.
+         */
+        public Builder withRenderCache(final int maxEntries)
+        {
+            this.renderCacheSize = maxEntries;
+            return this;
+        }
+
         public StringTemplate3StatementLocator build()
         {
             return new StringTemplate3StatementLocator(basePath,
@@ -351,7 +538,8 @@ public class StringTemplate3StatementLocator implements StatementLocator
                                                        errorListener,
                                                        allowImplicitTemplateGroupEnabled,
                                                        treatLiteralsAsTemplatesEnabled,
-                                                       shouldCacheEnabled);
+                                                       shouldCacheEnabled,
+                                                       renderCacheSize);
         }
     }
 }
@@ -0,0 +1,42 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2.tweak;
+
+import org.skife.jdbi.v2.StatementContext;
+
+/**
+ * A {@link SQLLog} which wants the full statement context, and nanosecond timings, when
+ * statements are logged. If the log installed on a DBI or Handle implements this interface,
+ * {@link #logStatement(long, StatementContext)} and
+ * {@link #logBatchStatement(long, StatementContext, int)} are called instead of
+ * {@link SQLLog#logSQL(long, String)} and {@link SQLLog#logPreparedBatch(long, String, int)}.
+ */
+public interface ContextualSQLLog extends SQLLog
+{
+    /**
+     * Called to log typical sql statements
+     * @param elapsedTime the elapsed time of the execution in nanoseconds
+     * @param ctx the context of the statement, the rewritten sql, binding and sql object
+     * method are available from it
+     */
+    void logStatement(long elapsedTime, StatementContext ctx);
+
+    /**
+     * Called to log a prepared batch execution
+     * @param elapsedTime the elapsed time of the execution in nanoseconds
+     * @param ctx the context of the batch
+     * @param count the number of elements in the prepared batch
+     */
+    void logBatchStatement(long elapsedTime, StatementContext ctx, int count);
+}
@@ -0,0 +1,29 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2.tweak;
+
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.QueryMemo;
+
+/**
+ * A {@link TransactionHandler} which may keep a {@link QueryMemo} for the lifetime of each transaction.
+ */
+public interface MemoizingTransactionHandler extends TransactionHandler
+{
+    /**
+     * @return the memo for the transaction the handle is in, or null if it is not in one or
+     *         queries are not memoized
+     */
+    QueryMemo getQueryMemo(Handle handle);
+}
@@ -0,0 +1,27 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2.tweak;
+
+/**
+ * Chooses the shard of a {@link org.skife.jdbi.v2.ShardedDBI} which holds the data for a key
+ */
+public interface ShardSelector
+{
+    /**
+     * @param key        the shard key, never null
+     * @param shardCount the number of shards
+     * @return the index of the shard, from 0 to shardCount - 1
+     */
+    int select(Object key, int shardCount);
+}
@@ -14,11 +14,13 @@
 package org.skife.jdbi.v2.tweak.transactions;
 
 import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.QueryMemo;
 import org.skife.jdbi.v2.TransactionCallback;
 import org.skife.jdbi.v2.TransactionIsolationLevel;
+import org.skife.jdbi.v2.tweak.MemoizingTransactionHandler;
 import org.skife.jdbi.v2.tweak.TransactionHandler;
 
-public class DelegatingTransactionHandler implements TransactionHandler
+public class DelegatingTransactionHandler implements MemoizingTransactionHandler
 {
     private final TransactionHandler delegate;
 
@@ -56,6 +58,15 @@ public class DelegatingTransactionHandler implements TransactionHandler
         delegate.rollback(handle, name);
     }
 
+    @Override
+    public QueryMemo getQueryMemo(Handle handle)
+    {
+        if (delegate instanceof MemoizingTransactionHandler) {
+            return ((MemoizingTransactionHandler) delegate).getQueryMemo(handle);
+        }
+        return null;
+    }
+
     @Override
     public boolean isInTransaction(Handle handle)
     {
@@ -14,13 +14,14 @@
 package org.skife.jdbi.v2.tweak.transactions;
 
 import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.QueryMemo;
 import org.skife.jdbi.v2.TransactionCallback;
 import org.skife.jdbi.v2.TransactionIsolationLevel;
 import org.skife.jdbi.v2.TransactionStatus;
 import org.skife.jdbi.v2.exceptions.TransactionException;
 import org.skife.jdbi.v2.exceptions.TransactionFailedException;
 import org.skife.jdbi.v2.exceptions.UnableToRestoreAutoCommitStateException;
-import org.skife.jdbi.v2.tweak.TransactionHandler;
+import org.skife.jdbi.v2.tweak.MemoizingTransactionHandler;
 
 import java.lang.reflect.InvocationTargetException;
 import java.sql.Connection;
@@ -30,15 +31,32 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This <code>TransactionHandler</code> uses local JDBC transactions
  * demarcated explicitly on the handle and passed through to be handled
  * directly on the JDBC Connection instance.
  */
-public class LocalTransactionHandler implements TransactionHandler
+public class LocalTransactionHandler implements MemoizingTransactionHandler
 {
     private final ConcurrentHashMap<Handle, LocalStuff> localStuff = new ConcurrentHashMap<Handle, LocalStuff>();
+    private final AtomicLong savedRoundTrips = new AtomicLong();
+    private final boolean memoizeQueries;
+
+    public LocalTransactionHandler()
+    {
+        this(false);
+    }
+
+    /**
+     * @param memoizeQueries if true, keep a {@link QueryMemo} for each transaction so that identical
+     *                       queries within it are only run once
+     */
+    public LocalTransactionHandler(boolean memoizeQueries)
+    {
+        this.memoizeQueries = memoizeQueries;
+    }
 
     /**
      * Called when a transaction is started
@@ -49,7 +67,7 @@ public class LocalTransactionHandler implements TransactionHandler
         try {
             if (!localStuff.containsKey(handle)) {
                 boolean initial = handle.getConnection().getAutoCommit();
-                localStuff.putIfAbsent(handle, new LocalStuff(initial));
+                localStuff.putIfAbsent(handle, new LocalStuff(initial, memoizeQueries ? new QueryMemo() : null));
                 handle.getConnection().setAutoCommit(false);
             }
         }
@@ -145,12 +163,39 @@ public class LocalTransactionHandler implements TransactionHandler
                                                              name));
             }
             conn.rollback(savepoint);
+            invalidateQueryMemo(handle);
         }
         catch (SQLException e) {
             throw new TransactionException(String.format("Unable to create checkpoint %s", name), e);
         }
     }
 
+    @Override
+    public QueryMemo getQueryMemo(Handle handle)
+    {
+        if (!memoizeQueries) {
+            return null;
+        }
+        LocalStuff stuff = localStuff.get(handle);
+        return stuff == null ? null : stuff.getQueryMemo();
+    }
+
+    /**
+     * @return the number of queries answered from a {@link QueryMemo} in transactions which have ended
+     */
+    public long getSavedRoundTrips()
+    {
+        return savedRoundTrips.get();
+    }
+
+    private void invalidateQueryMemo(Handle handle)
+    {
+        QueryMemo memo = getQueryMemo(handle);
+        if (memo != null) {
+            memo.invalidate();
+        }
+    }
+
     /**
      * Called to test if a handle is in a transaction
      */
@@ -231,6 +276,9 @@ public class LocalTransactionHandler implements TransactionHandler
         try {
             final LocalStuff stuff = localStuff.remove(handle);
             if (stuff != null) {
+                if (stuff.getQueryMemo() != null) {
+                    savedRoundTrips.addAndGet(stuff.getQueryMemo().getSavedRoundTrips());
+                }
                 handle.getConnection().setAutoCommit(stuff.getInitialAutocommit());
                 stuff.getCheckpoints().clear();
             }
@@ -247,10 +295,17 @@ public class LocalTransactionHandler implements TransactionHandler
     {
         private final Map<String, Savepoint> checkpoints = new HashMap<String, Savepoint>();
         private final boolean initialAutocommit;
+        private final QueryMemo queryMemo;
 
-        LocalStuff(boolean initial)
+        LocalStuff(boolean initial, QueryMemo queryMemo)
         {
             this.initialAutocommit = initial;
+            this.queryMemo = queryMemo;
+        }
+
+        public QueryMemo getQueryMemo()
+        {
+            return queryMemo;
         }
 
         public Map<String, Savepoint> getCheckpoints()
@@ -0,0 +1,50 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2.tweak.transactions;
+
+/**
+ * A token bucket limiting the rate of transaction retries across all threads using a
+ * {@link SerializableTransactionRunner}, so that a hot row can not cause unbounded retries.
+ */
+class RetryBudget
+{
+    private final double tokensPerNano;
+    private final double maxTokens;
+
+    private double tokens;
+    private long   lastRefill;
+
+    RetryBudget(double retriesPerSecond, int burst)
+    {
+        this.tokensPerNano = retriesPerSecond / 1000000000.0;
+        this.maxTokens = burst;
+        this.tokens = burst;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * @return true if a retry may be attempted, false if the budget is used up
+     */
+    synchronized boolean tryAcquire()
+    {
+        final long now = System.nanoTime();
+        tokens = Math.min(maxTokens, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+        if (tokens < 1.0) {
+            return false;
+        }
+        tokens -= 1.0;
+        return true;
+    }
+}
@@ -14,6 +14,14 @@
 package org.skife.jdbi.v2.tweak.transactions;
 
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.skife.jdbi.v2.Handle;
 import org.skife.jdbi.v2.TransactionCallback;
@@ -25,13 +33,28 @@ import org.skife.jdbi.v2.tweak.TransactionHandler;
  * serialization failures, which can generally be resolved by automatically
  * retrying the transaction.  Any TransactionCallback used under this runner
  * should be aware that it may be invoked multiple times.
+ * <p/>
+ * By default serialization failures (SQLSTATE 40001) and deadlocks (SQLSTATE 40P01) are
+ * retried immediately, up to five attempts in total. The {@link Configuration} allows
+ * to retry on other SQL states or vendor error codes, to back off exponentially with full
+ * jitter between attempts, and to limit the rate of retries across all threads with a
+ * retry budget. Use one runner instance per DBI so that the budget and the counters are
+ * shared by all its handles.
  */
 public class SerializableTransactionRunner extends DelegatingTransactionHandler implements TransactionHandler
 {
     /* http://www.postgresql.org/docs/9.1/static/errcodes-appendix.html */
     private static final String SQLSTATE_TXN_SERIALIZATION_FAILED = "40001";
+    private static final String SQLSTATE_DEADLOCK_DETECTED = "40P01";
 
     private final Configuration configuration;
+    private final RetryBudget   retryBudget;
+    private final Random        random;
+
+    private final AtomicLong attempts            = new AtomicLong();
+    private final AtomicLong successesAfterRetry = new AtomicLong();
+    private final AtomicLong exhaustedRetries    = new AtomicLong();
+    private final AtomicLong budgetRejections    = new AtomicLong();
 
     public SerializableTransactionRunner()
     {
@@ -39,26 +62,52 @@ public class SerializableTransactionRunner extends DelegatingTransactionHandler
     }
 
     public SerializableTransactionRunner(Configuration configuration, TransactionHandler delegate)
+    {
+        this(configuration, delegate, new Random());
+    }
+
+    SerializableTransactionRunner(Configuration configuration, TransactionHandler delegate, Random random)
     {
         super(delegate);
         this.configuration = configuration;
+        this.random = random;
+        this.retryBudget = configuration.retriesPerSecond > 0
+                           ? new RetryBudget(configuration.retriesPerSecond, configuration.retryBurst)
+                           : null;
     }
 
     @Override
     public <ReturnType> ReturnType inTransaction(Handle handle, TransactionCallback<ReturnType> callback)
     {
         int retriesRemaining = configuration.maxRetries;
+        int retries = 0;
 
         while (true) {
+            attempts.incrementAndGet();
             try
             {
-                return getDelegate().inTransaction(handle, callback);
+                final ReturnType result = getDelegate().inTransaction(handle, callback);
+                if (retries > 0) {
+                    successesAfterRetry.incrementAndGet();
+                }
+                return result;
             } catch (RuntimeException e)
             {
-                if (!isSqlState(configuration.serializationFailureSqlState, e) || --retriesRemaining <= 0)
+                if (!isRetryable(e))
+                {
+                    throw e;
+                }
+                if (--retriesRemaining <= 0)
+                {
+                    exhaustedRetries.incrementAndGet();
+                    throw e;
+                }
+                if (retryBudget != null && !retryBudget.tryAcquire())
                 {
+                    budgetRejections.incrementAndGet();
                     throw e;
                 }
+                backoff(retries++, e);
             }
         }
     }
@@ -79,6 +128,64 @@ public class SerializableTransactionRunner extends DelegatingTransactionHandler
         }
     }
 
+    /**
+     * @return the number of times a transaction callback was attempted, including retries
+     */
+    public long getAttempts()
+    {
+        return attempts.get();
+    }
+
+    /**
+     * @return the number of transactions which succeeded after having been retried
+     */
+    public long getSuccessesAfterRetry()
+    {
+        return successesAfterRetry.get();
+    }
+
+    /**
+     * @return the number of transactions which failed because the maximum number of attempts was reached
+     */
+    public long getExhaustedRetries()
+    {
+        return exhaustedRetries.get();
+    }
+
+    /**
+     * @return the number of transactions which failed because the retry budget was used up
+     */
+    public long getBudgetRejections()
+    {
+        return budgetRejections.get();
+    }
+
+    /**
+     * Returns true iff the Throwable or one of its causes is an SQLException with one of the
+     * configured SQL states or vendor error codes.
+     */
+    protected boolean isRetryable(Throwable throwable)
+    {
+        for (String sqlState : configuration.retrySqlStates) {
+            if (isSqlState(sqlState, throwable)) {
+                return true;
+            }
+        }
+        if (configuration.retryVendorCodes.isEmpty()) {
+            return false;
+        }
+        do
+        {
+            if (throwable instanceof SQLException
+                && configuration.retryVendorCodes.contains(((SQLException) throwable).getErrorCode()))
+            {
+                return true;
+            }
+        } while ( (throwable = throwable.getCause()) != null);
+
+        return false;
+    }
+
     /**
      * Returns true iff the Throwable or one of its causes is an SQLException whose SQLState begins
      * with the passed state.
@@ -101,30 +208,127 @@ public class SerializableTransactionRunner extends DelegatingTransactionHandler
         return false;
     }
 
+    /**
+     * Sleep for a random time between zero and the exponentially growing backoff cap (full jitter).
+     */
+    private void backoff(int retry, RuntimeException failure)
+    {
+        long cap = configuration.initialBackoffNanos;
+        for (int i = 0; i < retry && cap < configuration.maxBackoffNanos; i++) {
+            cap <<= 1;
+        }
+        cap = Math.min(cap, configuration.maxBackoffNanos);
+        if (cap <= 0) {
+            return;
+        }
+
+        final long delay = (long) (random.nextDouble() * cap);
+        try {
+            sleep(delay);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw failure;
+        }
+    }
+
+    void sleep(long nanos) throws InterruptedException
+    {
+        TimeUnit.NANOSECONDS.sleep(nanos);
+    }
+
     public static class Configuration
     {
         private final int maxRetries;
-        private final String serializationFailureSqlState;
+        private final List<String> retrySqlStates;
+        private final Set<Integer> retryVendorCodes;
+        private final long initialBackoffNanos;
+        private final long maxBackoffNanos;
+        private final double retriesPerSecond;
+        private final int retryBurst;
 
         public Configuration()
         {
-            this(5, SQLSTATE_TXN_SERIALIZATION_FAILED);
+            this(5,
+                 Arrays.asList(SQLSTATE_TXN_SERIALIZATION_FAILED, SQLSTATE_DEADLOCK_DETECTED),
+                 Collections.<Integer>emptySet(),
+                 0, 0, 0, 0);
         }
 
-        private Configuration(int maxRetries, String serializationFailureSqlState)
+        private Configuration(int maxRetries,
+                              List<String> retrySqlStates,
+                              Set<Integer> retryVendorCodes,
+                              long initialBackoffNanos,
+                              long maxBackoffNanos,
+                              double retriesPerSecond,
+                              int retryBurst)
         {
             this.maxRetries = maxRetries;
-            this.serializationFailureSqlState = serializationFailureSqlState;
+            this.retrySqlStates = retrySqlStates;
+            this.retryVendorCodes = retryVendorCodes;
+            this.initialBackoffNanos = initialBackoffNanos;
+            this.maxBackoffNanos = maxBackoffNanos;
+            this.retriesPerSecond = retriesPerSecond;
+            this.retryBurst = retryBurst;
         }
 
         public Configuration withMaxRetries(int maxRetries)
         {
-            return new Configuration(maxRetries, serializationFailureSqlState);
+            return new Configuration(maxRetries, retrySqlStates, retryVendorCodes,
+                                     initialBackoffNanos, maxBackoffNanos, retriesPerSecond, retryBurst);
         }
 
+        /**
+         * Only retry on the given SQL state, replacing the default serialization failure and deadlock states.
+         */
         public Configuration withSerializationFailureSqlState(String serializationFailureSqlState)
         {
-            return new Configuration(maxRetries, serializationFailureSqlState);
+            return withRetrySqlStates(serializationFailureSqlState);
+        }
+
+        /**
+         * Retry on exceptions whose SQL state starts with any of the given states.
+         */
+        public Configuration withRetrySqlStates(String... sqlStates)
+        {
+            return new Configuration(maxRetries, Collections.unmodifiableList(Arrays.asList(sqlStates.clone())),
+                                     retryVendorCodes, initialBackoffNanos, maxBackoffNanos, retriesPerSecond, retryBurst);
+        }
+
+        /**
+         * Also retry on exceptions with any of the given vendor error codes, e.g. 1213 (deadlock) on
+         * MySQL, 60 (deadlock) and 8177 (can't serialize access) on Oracle or 1205 (deadlock victim)
+         * on SQL Server.
+         */
+        public Configuration withRetryVendorCodes(int... vendorCodes)
+        {
+            final Set<Integer> codes = new HashSet<Integer>();
+            for (int code : vendorCodes) {
+                codes.add(code);
+            }
+            return new Configuration(maxRetries, retrySqlStates, Collections.unmodifiableSet(codes),
+                                     initialBackoffNanos, maxBackoffNanos, retriesPerSecond, retryBurst);
+        }
+
+        /**
+         * Wait between attempts. Before the n-th retry the runner sleeps for a random time between
+         * zero and <code>min(maxDelay, initialDelay * 2^(n-1))</code>.
+         */
+        public Configuration withBackoff(long initialDelay, long maxDelay, TimeUnit unit)
+        {
+            return new Configuration(maxRetries, retrySqlStates, retryVendorCodes,
+                                     unit.toNanos(initialDelay), unit.toNanos(maxDelay), retriesPerSecond, retryBurst);
+        }
+
+        /**
+         * Limit the retries of all transactions run through the runner to <code>retriesPerSecond</code>,
+         * allowing bursts of up to <code>burst</code> retries. Transactions which could be retried while
+         * the budget is used up fail instead.
+         */
+        public Configuration withRetryBudget(double retriesPerSecond, int burst)
+        {
+            return new Configuration(maxRetries, retrySqlStates, retryVendorCodes,
+                                     initialBackoffNanos, maxBackoffNanos, retriesPerSecond, burst);
         }
     }
 }
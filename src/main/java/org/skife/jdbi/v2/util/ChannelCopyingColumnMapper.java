@@ -0,0 +1,97 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2.util;
+
+import org.skife.jdbi.v2.StatementContext;
+import org.skife.jdbi.v2.tweak.ResultColumnMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Copies the value of a binary or LOB column straight to a channel, for example a file, through a
+ * fixed size buffer, and maps the column to the number of bytes copied. The values of successive rows
+ * are appended to the channel. A null value copies nothing and maps to null.
+ */
+public class ChannelCopyingColumnMapper implements ResultColumnMapper<Long>
+{
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final WritableByteChannel target;
+
+    public ChannelCopyingColumnMapper(WritableByteChannel target)
+    {
+        this.target = target;
+    }
+
+    @Override
+    public Long mapColumn(ResultSet r, int columnNumber, StatementContext ctx) throws SQLException
+    {
+        return copy(r.getBinaryStream(columnNumber));
+    }
+
+    @Override
+    public Long mapColumn(ResultSet r, String columnLabel, StatementContext ctx) throws SQLException
+    {
+        return copy(r.getBinaryStream(columnLabel));
+    }
+
+    private Long copy(InputStream in) throws SQLException
+    {
+        if (in == null) {
+            return null;
+        }
+        ReadableByteChannel source = Channels.newChannel(in);
+        try {
+            try {
+                if (target instanceof FileChannel) {
+                    return transfer(source, (FileChannel) target);
+                }
+                long copied = 0;
+                ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+                while (source.read(buffer) >= 0 || buffer.position() > 0) {
+                    buffer.flip();
+                    copied += target.write(buffer);
+                    buffer.compact();
+                }
+                return copied;
+            }
+            finally {
+                source.close();
+            }
+        }
+        catch (IOException e) {
+            throw new SQLException("unable to copy column value", e);
+        }
+    }
+
+    private static long transfer(ReadableByteChannel source, FileChannel target) throws IOException
+    {
+        long start = target.position();
+        long position = start;
+        long n;
+        while ((n = target.transferFrom(source, position, BUFFER_SIZE)) > 0) {
+            position += n;
+        }
+        target.position(position);
+        return position - start;
+    }
+}
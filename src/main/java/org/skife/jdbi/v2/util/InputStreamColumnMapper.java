@@ -0,0 +1,40 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2.util;
+
+import org.skife.jdbi.v2.StatementContext;
+import org.skife.jdbi.v2.tweak.ResultColumnMapper;
+
+import java.io.InputStream;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Maps a binary or LOB column to a stream over its value, without reading the value into memory.
+ * The stream is only valid until the result set moves to the next row or is closed, so use it with
+ * {@link org.skife.jdbi.v2.Query#iterator()} or a fold rather than collecting rows into a list.
+ */
+public enum InputStreamColumnMapper implements ResultColumnMapper<InputStream> {
+    INSTANCE;
+
+    @Override
+    public InputStream mapColumn(ResultSet r, int columnNumber, StatementContext ctx) throws SQLException {
+        return r.getBinaryStream(columnNumber);
+    }
+
+    @Override
+    public InputStream mapColumn(ResultSet r, String columnLabel, StatementContext ctx) throws SQLException {
+        return r.getBinaryStream(columnLabel);
+    }
+}
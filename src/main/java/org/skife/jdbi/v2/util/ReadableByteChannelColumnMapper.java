@@ -0,0 +1,45 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2.util;
+
+import org.skife.jdbi.v2.StatementContext;
+import org.skife.jdbi.v2.tweak.ResultColumnMapper;
+
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Maps a binary or LOB column to a channel over its value. Like {@link InputStreamColumnMapper}, the
+ * channel is only valid until the result set moves to the next row or is closed.
+ */
+public enum ReadableByteChannelColumnMapper implements ResultColumnMapper<ReadableByteChannel> {
+    INSTANCE;
+
+    @Override
+    public ReadableByteChannel mapColumn(ResultSet r, int columnNumber, StatementContext ctx) throws SQLException {
+        return channel(r.getBinaryStream(columnNumber));
+    }
+
+    @Override
+    public ReadableByteChannel mapColumn(ResultSet r, String columnLabel, StatementContext ctx) throws SQLException {
+        return channel(r.getBinaryStream(columnLabel));
+    }
+
+    private static ReadableByteChannel channel(InputStream in) {
+        return in == null ? null : Channels.newChannel(in);
+    }
+}
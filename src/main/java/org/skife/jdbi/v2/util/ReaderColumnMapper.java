@@ -0,0 +1,39 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2.util;
+
+import org.skife.jdbi.v2.StatementContext;
+import org.skife.jdbi.v2.tweak.ResultColumnMapper;
+
+import java.io.Reader;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Maps a character or CLOB column to a reader over its value, without reading the value into memory.
+ * The reader is only valid until the result set moves to the next row or is closed.
+ */
+public enum ReaderColumnMapper implements ResultColumnMapper<Reader> {
+    INSTANCE;
+
+    @Override
+    public Reader mapColumn(ResultSet r, int columnNumber, StatementContext ctx) throws SQLException {
+        return r.getCharacterStream(columnNumber);
+    }
+
+    @Override
+    public Reader mapColumn(ResultSet r, String columnLabel, StatementContext ctx) throws SQLException {
+        return r.getCharacterStream(columnLabel);
+    }
+}
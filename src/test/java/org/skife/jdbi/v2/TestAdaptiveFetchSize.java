@@ -0,0 +1,145 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.junit.Test;
+import org.skife.jdbi.v2.sqlobject.SqlQuery;
+import org.skife.jdbi.v2.sqlobject.customizers.FetchSize;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class TestAdaptiveFetchSize extends DBITestCase
+{
+    private static final String QUERY = "select id, name from something";
+
+    private Handle open(AdaptiveFetchSize tuner) throws Exception
+    {
+        Handle h = openHandle();
+        h.define(AdaptiveFetchSize.ATTRIBUTE, tuner);
+        for (int i = 1; i <= 50; i++) {
+            h.insert("insert into something (id, name) values (?, ?)", i, "name " + i);
+        }
+        return h;
+    }
+
+    @Test
+    public void testFetchSizeFollowsRowCount() throws Exception
+    {
+        AdaptiveFetchSize tuner = new AdaptiveFetchSize();
+        Handle h = open(tuner);
+
+        h.createQuery(QUERY).adaptFetchSize().list();
+        AdaptiveFetchSize.Statistics s = tuner.getStatistics().get(QUERY);
+        assertThat(s.getExecutions(), equalTo(1L));
+        assertThat(s.getFetchSize(), equalTo(0));
+
+        h.createQuery(QUERY).adaptFetchSize().list();
+        assertThat(s.getExecutions(), equalTo(2L));
+        assertThat(s.getMeanRows(), equalTo(50.0));
+        assertThat(s.getFetchSize(), equalTo(51));
+    }
+
+    @Test
+    public void testFetchSizeIsLimitedByMemoryBudget() throws Exception
+    {
+        AdaptiveFetchSize tuner = new AdaptiveFetchSize(1, 5, 100);
+        Handle h = open(tuner);
+
+        h.createQuery(QUERY).adaptFetchSize().list();
+        h.createQuery(QUERY).adaptFetchSize().list();
+
+        assertThat(tuner.getStatistics().get(QUERY).getFetchSize(), equalTo(5));
+    }
+
+    @Test
+    public void testIteratedRowsAreCounted() throws Exception
+    {
+        AdaptiveFetchSize tuner = new AdaptiveFetchSize();
+        Handle h = open(tuner);
+
+        ResultIterator<Map<String, Object>> it = h.createQuery(QUERY).adaptFetchSize().iterator();
+        int rows = 0;
+        while (rows < 10 && it.hasNext()) {
+            it.next();
+            rows++;
+        }
+        it.close();
+
+        assertThat(tuner.getStatistics().get(QUERY).getMeanRows(), equalTo(10.0));
+    }
+
+    @Test
+    public void testStatementsDifferingInLiteralsShareStatistics() throws Exception
+    {
+        AdaptiveFetchSize tuner = new AdaptiveFetchSize();
+        Handle h = open(tuner);
+
+        h.createQuery("select id, name from something where id > 10 and name <> 'x'").adaptFetchSize().list();
+        h.createQuery("select id, name from something where id > 20 and name <> 'y'").adaptFetchSize().list();
+
+        assertThat(tuner.getStatistics().size(), equalTo(1));
+        AdaptiveFetchSize.Statistics s = tuner.getStatistics().get("select id, name from something where id > ? and name <> ?");
+        assertThat(s.getExecutions(), equalTo(2L));
+    }
+
+    @Test
+    public void testFingerprintCollapsesInLists() throws Exception
+    {
+        assertThat(AdaptiveFetchSize.fingerprint("select *  from t where id in (1, 2,3) and x = ?"),
+                   equalTo("select * from t where id in (?) and x = ?"));
+        assertThat(AdaptiveFetchSize.fingerprint("select * from t where id in (?, ?)"),
+                   equalTo("select * from t where id in (?)"));
+    }
+
+    @Test
+    public void testStatisticsAreKeptForRecentStatements() throws Exception
+    {
+        AdaptiveFetchSize tuner = new AdaptiveFetchSize(4 * 1024 * 1024, 1, 10000, 2);
+        Handle h = open(tuner);
+
+        h.createQuery("select id from something").adaptFetchSize().list();
+        h.createQuery("select name from something").adaptFetchSize().list();
+        h.createQuery("select id from something").adaptFetchSize().list();
+        h.createQuery(QUERY).adaptFetchSize().list();
+
+        Map<String, AdaptiveFetchSize.Statistics> statistics = tuner.getStatistics();
+        assertThat(statistics.size(), equalTo(2));
+        assertThat(statistics.containsKey("select id from something"), equalTo(true));
+        assertThat(statistics.containsKey(QUERY), equalTo(true));
+    }
+
+    @Test
+    public void testSqlObjectMethodsAreIdentifiedByMethod() throws Exception
+    {
+        AdaptiveFetchSize tuner = new AdaptiveFetchSize();
+        Dao dao = open(tuner).attach(Dao.class);
+
+        dao.findNames();
+        dao.findNames();
+
+        String identity = Dao.class.getMethod("findNames").toGenericString();
+        assertThat(tuner.getStatistics().get(identity).getFetchSize(), equalTo(51));
+    }
+
+    public interface Dao
+    {
+        @SqlQuery("select name from something")
+        @FetchSize(adaptive = true)
+        List<String> findNames();
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class TestBatchLoader extends DBITestCase
+{
+    private static final BatchLoader.KeyFunction<Integer, Something> ID = new BatchLoader.KeyFunction<Integer, Something>()
+    {
+        @Override
+        public Integer keyOf(Something value)
+        {
+            return value.getId();
+        }
+    };
+
+    private BatchLoader<Integer, Something> loader(Handle h)
+    {
+        return new BatchLoader<Integer, Something>(h, "select id, name from something where id in (:ids)", "ids",
+                                                   new BeanMapper<Something>(Something.class), ID);
+    }
+
+    private Handle open() throws Exception
+    {
+        Handle h = openHandle();
+        for (int i = 1; i <= 10; i++) {
+            h.insert("insert into something (id, name) values (?, ?)", i, "name " + i);
+        }
+        return h;
+    }
+
+    @Test
+    public void testQueuedLookupsShareOneQuery() throws Exception
+    {
+        BatchLoader<Integer, Something> loader = loader(open());
+
+        List<BatchLoader<Integer, Something>.Value> values = new ArrayList<BatchLoader<Integer, Something>.Value>();
+        for (int id = 1; id <= 5; id++) {
+            values.add(loader.load(id));
+        }
+        for (BatchLoader<Integer, Something>.Value value : values) {
+            assertThat(value.get().getName(), equalTo("name " + value.getKey()));
+        }
+        assertThat(loader.getQueryCount(), equalTo(1));
+    }
+
+    @Test
+    public void testResultsAreKeptForTheLoader() throws Exception
+    {
+        BatchLoader<Integer, Something> loader = loader(open());
+
+        assertThat(loader.get(1).getName(), equalTo("name 1"));
+        assertThat(loader.get(1).getName(), equalTo("name 1"));
+        assertThat(loader.get(42), nullValue());
+        assertThat(loader.get(42), nullValue());
+        assertThat(loader.getQueryCount(), equalTo(2));
+
+        loader.clear();
+        assertThat(loader.get(1).getName(), equalTo("name 1"));
+        assertThat(loader.getQueryCount(), equalTo(3));
+    }
+
+    @Test
+    public void testLargeKeySetsAreSplit() throws Exception
+    {
+        BatchLoader<Integer, Something> loader = loader(open()).setMaxBatchSize(3);
+
+        Map<Integer, Something> found = loader.getAll(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 42));
+
+        assertThat(found.size(), equalTo(7));
+        assertThat(found.get(7).getName(), equalTo("name 7"));
+        assertThat(loader.getQueryCount(), equalTo(3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testQueryMustNameKeyList() throws Exception
+    {
+        new BatchLoader<Integer, Something>(openHandle(), "select id, name from something where id = :id", "ids",
+                                            new BeanMapper<Something>(Something.class), ID);
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.junit.Test;
+import org.skife.jdbi.v2.sqlobject.BindIn;
+import org.skife.jdbi.v2.sqlobject.SqlQuery;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class TestBindList extends DBITestCase
+{
+    private Handle open() throws Exception
+    {
+        Handle h = openHandle();
+        for (int i = 1; i <= 6; i++) {
+            h.insert("insert into something (id, name) values (?, ?)", i, "name " + i);
+        }
+        return h;
+    }
+
+    private static int placeholders(String sql)
+    {
+        int count = 0;
+        for (char c : sql.toCharArray()) {
+            if (c == '?') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void testListIsExpanded() throws Exception
+    {
+        Handle h = open();
+        Query<String> q = h.createQuery("select name from something where id in (:ids) order by id")
+                           .bindList("ids", Arrays.asList(1, 3, 5))
+                           .mapTo(String.class);
+
+        assertThat(q.list(), equalTo(Arrays.asList("name 1", "name 3", "name 5")));
+        assertThat(placeholders(q.getContext().getRewrittenSql()), equalTo(4));
+    }
+
+    @Test
+    public void testListsOfSimilarLengthShareAShape() throws Exception
+    {
+        Handle h = open();
+        Query<String> five = h.createQuery("select name from something where id in (:ids)")
+                              .bindList("ids", Arrays.asList(1, 2, 3, 4, 5))
+                              .mapTo(String.class);
+        Query<String> seven = h.createQuery("select name from something where id in (:ids)")
+                               .bindList("ids", Arrays.asList(1, 2, 3, 4, 5, 6, 7))
+                               .mapTo(String.class);
+
+        assertThat(five.list().size(), equalTo(5));
+        assertThat(seven.list().size(), equalTo(6));
+        assertThat(five.getContext().getRewrittenSql(), equalTo(seven.getContext().getRewrittenSql()));
+    }
+
+    @Test
+    public void testOtherParametersFollowTheList() throws Exception
+    {
+        Handle h = open();
+        List<String> names = h.createQuery("select name from something where id in (:ids) and name <> :name order by id")
+                              .bindList("ids", Arrays.asList(1, 2, 3))
+                              .bind("name", "name 2")
+                              .mapTo(String.class)
+                              .list();
+
+        assertThat(names, equalTo(Arrays.asList("name 1", "name 3")));
+    }
+
+    @Test
+    public void testEmptyListMatchesNothing() throws Exception
+    {
+        // derby does not accept an untyped NULL in an IN list
+        Handle h = new DBI("jdbc:h2:mem:" + UUID.randomUUID()).open();
+        try {
+            h.execute("create table something (id int primary key, name varchar(100))");
+            h.insert("insert into something (id, name) values (1, 'Brian')");
+            List<String> names = h.createQuery("select name from something where id in (:ids)")
+                                  .bindList("ids", Collections.emptyList())
+                                  .mapTo(String.class)
+                                  .list();
+
+            assertThat(names.size(), equalTo(0));
+        }
+        finally {
+            h.close();
+        }
+    }
+
+    @Test
+    public void testOversizedListIsExecutedInParts() throws Exception
+    {
+        Handle h = open();
+        h.define(SQLStatement.MAX_LIST_SIZE_ATTRIBUTE, 2);
+
+        List<String> names = h.createQuery("select name from something where id in (:ids)")
+                              .bindList("ids", Arrays.asList(1, 2, 3, 4, 5))
+                              .mapTo(String.class)
+                              .list();
+        int updated = h.createStatement("update something set name = 'x' where id in (:ids)")
+                       .bindList("ids", Arrays.asList(2, 3, 4, 5, 6))
+                       .execute();
+
+        assertThat(names.size(), equalTo(5));
+        assertThat(updated, equalTo(5));
+    }
+
+    @Test
+    public void testBindIn() throws Exception
+    {
+        Dao dao = open().attach(Dao.class);
+
+        assertThat(dao.findNames(Arrays.asList(2, 4)), equalTo(Arrays.asList("name 2", "name 4")));
+        assertThat(dao.findNames(new int[] { 6 }), equalTo(Arrays.asList("name 6")));
+    }
+
+    public interface Dao
+    {
+        @SqlQuery("select name from something where id in (:ids) order by id")
+        List<String> findNames(@BindIn("ids") List<Integer> ids);
+
+        @SqlQuery("select name from something where id in (:ids) order by id")
+        List<String> findNames(@BindIn("ids") int[] ids);
+    }
+}
@@ -17,7 +17,11 @@ import org.junit.Test;
 import org.skife.jdbi.v2.exceptions.StatementException;
 import org.skife.jdbi.v2.exceptions.UnableToCreateStatementException;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
 import java.util.HashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -148,4 +152,71 @@ public class TestClasspathStatementLocator extends DBITestCase
 
         assertEquals(input, located); // second time reads from cache
     }
+
+    @Test
+    public void testPreloadedResourcesSkipClasspathSearch() throws Exception
+    {
+        ClassLoader ctx_loader = Thread.currentThread().getContextClassLoader();
+        final AtomicInteger load_count = new AtomicInteger(0);
+        final StatementLocator locator = ClasspathStatementLocator.preload();
+        Thread.currentThread().setContextClassLoader(new AbstractClassLoader(ctx_loader, ctx_loader, null)
+        {
+            @Override
+            public InputStream getResourceAsStream(String s)
+            {
+                load_count.incrementAndGet();
+                return super.getResourceAsStream(s);
+            }
+        });
+        try {
+            final StatementContext ctx = new TestingStatementContext(new HashMap<String, Object>());
+            assertTrue(locator.locate("insert-keith", ctx).contains("insert into something (id, name) values (1, 'keith')"));
+            assertTrue(locator.locate("insert-keith.sql", ctx).contains("'keith'"));
+            assertThat(load_count.get(), equalTo(0));
+        }
+        finally {
+            Thread.currentThread().setContextClassLoader(ctx_loader);
+        }
+    }
+
+    @Test
+    public void testWatchedResourcesAreReloaded() throws Exception
+    {
+        final File root = File.createTempFile("jdbi", "sql");
+        assertTrue(root.delete() && root.mkdir());
+        final File dir = new File(root, "watched");
+        assertTrue(dir.mkdir());
+        final File sql = new File(dir, "find-things.sql");
+        write(sql, "select 1 from something");
+
+        ClassLoader ctx_loader = Thread.currentThread().getContextClassLoader();
+        Thread.currentThread().setContextClassLoader(new URLClassLoader(new URL[] { root.toURI().toURL() }, ctx_loader));
+        try {
+            final StatementLocator locator = ClasspathStatementLocator.preloadAndWatch("watched");
+            final StatementContext ctx = new TestingStatementContext(new HashMap<String, Object>());
+            assertThat(locator.locate("watched/find-things", ctx), equalTo("select 1 from something"));
+
+            write(sql, "select 2 from something");
+            assertTrue(sql.setLastModified(System.currentTimeMillis() + 10000));
+            Thread.sleep(SqlResourceIndex.WATCH_INTERVAL_MILLIS + 100);
+            assertThat(locator.locate("watched/find-things", ctx), equalTo("select 2 from something"));
+        }
+        finally {
+            Thread.currentThread().setContextClassLoader(ctx_loader);
+            sql.delete();
+            dir.delete();
+            root.delete();
+        }
+    }
+
+    private static void write(File file, String text) throws Exception
+    {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(text.getBytes("UTF-8"));
+        }
+        finally {
+            out.close();
+        }
+    }
 }
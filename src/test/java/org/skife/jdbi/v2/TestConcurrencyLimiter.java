@@ -0,0 +1,193 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.skife.jdbi.v2.exceptions.ConcurrencyLimitExceededException;
+import org.skife.jdbi.v2.util.IntegerMapper;
+
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class TestConcurrencyLimiter
+{
+    private DBI dbi;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        dbi = new DBI("jdbc:h2:mem:" + UUID.randomUUID());
+    }
+
+    @Test
+    public void testRejectsHandlesBeyondLimit() throws Exception
+    {
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter(2, 1, 10, 1000, 0);
+        dbi.setConcurrencyLimiter(limiter);
+
+        final Handle first = dbi.open();
+        final Handle second = dbi.open();
+        assertThat(limiter.getInFlight(), equalTo(2));
+        try {
+            dbi.open();
+            fail("should have been rejected");
+        }
+        catch (ConcurrencyLimitExceededException e) {
+            // expected
+        }
+        assertThat(limiter.getRejectedCount(), equalTo(1L));
+
+        first.close();
+        assertThat(limiter.getInFlight(), equalTo(1));
+        dbi.open().close();
+        second.close();
+        assertThat(limiter.getInFlight(), equalTo(0));
+    }
+
+    @Test
+    public void testWaitsForReleasedHandle() throws Exception
+    {
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1, 1, 1000, 5000);
+        dbi.setConcurrencyLimiter(limiter);
+
+        final Handle held = dbi.open();
+        final Thread closer = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try {
+                    Thread.sleep(100);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                held.close();
+            }
+        };
+        closer.start();
+
+        final Handle h = dbi.open();
+        assertThat(h.createQuery("select 1").map(IntegerMapper.FIRST).first(), equalTo(1));
+        h.close();
+        closer.join();
+        assertThat(limiter.getRejectedCount(), equalTo(0L));
+    }
+
+    @Test
+    public void testAssistingHandlesAreAdmitted() throws Exception
+    {
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1, 1, 1000, 0);
+        dbi.setConcurrencyLimiter(limiter);
+
+        final Handle h = dbi.open();
+        final Handle sibling = ((BasicHandle) h).openSibling();
+        assertThat(limiter.getInFlight(), equalTo(2));
+        assertThat(limiter.getRejectedCount(), equalTo(0L));
+
+        sibling.close();
+        h.close();
+        assertThat(limiter.getInFlight(), equalTo(0));
+    }
+
+    @Test
+    public void testPartitionIsShedBeforeLimit() throws Exception
+    {
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter(4, 1, 10, 1000, 0).partition("batch", 0.25);
+        dbi.setConcurrencyLimiter(limiter);
+
+        final Handle batch = ConcurrencyLimiter.callInPartition("batch", new Callable<Handle>()
+        {
+            @Override
+            public Handle call() throws Exception
+            {
+                return dbi.open();
+            }
+        });
+        assertThat(limiter.getInFlight("batch"), equalTo(1));
+        try {
+            ConcurrencyLimiter.callInPartition("batch", new Callable<Handle>()
+            {
+                @Override
+                public Handle call() throws Exception
+                {
+                    return dbi.open();
+                }
+            });
+            fail("batch partition should have been shed");
+        }
+        catch (ConcurrencyLimitExceededException e) {
+            // expected
+        }
+
+        final Handle interactive = dbi.open();
+        assertThat(limiter.getInFlight(), equalTo(2));
+        interactive.close();
+        batch.close();
+        assertThat(limiter.getInFlight("batch"), equalTo(0));
+    }
+
+    @Test
+    public void testPhaseTimingsAreCollectedUnderLimiter() throws Exception
+    {
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1, 10, 1000, 0);
+        dbi.setConcurrencyLimiter(limiter);
+        final AtomicInteger phases = new AtomicInteger();
+        dbi.setTimingCollector(new PhaseTimingCollector()
+        {
+            @Override
+            public void collectPhases(StatementPhaseTimings timings, StatementContext ctx)
+            {
+                phases.incrementAndGet();
+            }
+
+            @Override
+            public void collect(long elapsedTime, StatementContext ctx)
+            {
+            }
+        });
+
+        final Handle h = dbi.open();
+        assertThat(h.createQuery("select 1").map(IntegerMapper.FIRST).first(), equalTo(1));
+        h.close();
+
+        assertThat(phases.get(), equalTo(1));
+        assertThat(limiter.getLimit(), equalTo(2));
+    }
+
+    @Test
+    public void testLimitAdaptsToLatency() throws Exception
+    {
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter(10, 2, 20, 50, 0);
+
+        limiter.observe(1000000000L);
+        assertThat(limiter.getLimit(), equalTo(9));
+        limiter.observe(1000000000L);
+        assertThat(limiter.getLimit(), equalTo(9));
+
+        for (int i = 0; i < 5; i++) {
+            limiter.acquire();
+        }
+        for (int i = 0; i < 10; i++) {
+            limiter.observe(1000000L);
+        }
+        assertThat(limiter.getLimit(), equalTo(10));
+    }
+}
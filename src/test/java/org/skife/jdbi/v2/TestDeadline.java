@@ -0,0 +1,131 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.skife.jdbi.v2.exceptions.DeadlineExceededException;
+import org.skife.jdbi.v2.tweak.ResultSetMapper;
+import org.skife.jdbi.v2.util.IntegerMapper;
+import org.skife.jdbi.v2.util.LongMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestDeadline
+{
+    private ExtendedHandle h;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        h = (ExtendedHandle) new DBI("jdbc:h2:mem:" + UUID.randomUUID()).open();
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        h.close();
+    }
+
+    @Test
+    public void testStatementsRunWithinDeadline() throws Exception
+    {
+        h.setDeadline(Deadline.after(1, TimeUnit.MINUTES));
+        h.execute("create table something (id int primary key, name varchar(50))");
+        h.insert("insert into something (id, name) values (1, 'eric')");
+        assertThat(h.createQuery("select count(*) from something").map(IntegerMapper.FIRST).first(), equalTo(1));
+    }
+
+    @Test
+    public void testExpiredDeadlineRefusesStatements() throws Exception
+    {
+        h.setDeadline(Deadline.after(-1, TimeUnit.SECONDS));
+        try {
+            h.createQuery("select 1").map(IntegerMapper.FIRST).first();
+            fail("should have refused to execute");
+        }
+        catch (DeadlineExceededException e) {
+            // expected
+        }
+
+        h.setDeadline(null);
+        assertThat(h.createQuery("select 1").map(IntegerMapper.FIRST).first(), equalTo(1));
+    }
+
+    @Test
+    public void testRunningStatementIsCancelledAtDeadline() throws Exception
+    {
+        h.setDeadline(Deadline.after(200, TimeUnit.MILLISECONDS));
+        final long start = System.nanoTime();
+        try {
+            h.createQuery("select sum(a.x * b.x) from system_range(1, 100000) a, system_range(1, 100000) b")
+             .map(LongMapper.FIRST)
+             .first();
+            fail("should have been cancelled");
+        }
+        catch (DeadlineExceededException e) {
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        }
+    }
+
+    @Test
+    public void testExpiredDeadlineRefusesBatches() throws Exception
+    {
+        h.execute("create table something (id int primary key, name varchar(50))");
+        h.setDeadline(Deadline.after(-1, TimeUnit.SECONDS));
+        try {
+            h.createBatch().add("insert into something (id, name) values (1, 'eric')").execute();
+            fail("should have refused to execute");
+        }
+        catch (DeadlineExceededException e) {
+            // expected
+        }
+
+        h.setDeadline(null);
+        assertThat(h.createQuery("select count(*) from something").map(IntegerMapper.FIRST).first(), equalTo(0));
+    }
+
+    @Test
+    public void testIteratorStaysUnderDeadlineUntilClosed() throws Exception
+    {
+        h.setDeadline(Deadline.after(1, TimeUnit.MINUTES));
+        ResultIterator<Integer> timeouts = h.createQuery("select x from system_range(1, 3)")
+                                            .map(new ResultSetMapper<Integer>()
+                                            {
+                                                @Override
+                                                public Integer map(int index, ResultSet r, StatementContext ctx) throws SQLException
+                                                {
+                                                    return ctx.getStatement().getQueryTimeout();
+                                                }
+                                            })
+                                            .iterator();
+        try {
+            while (timeouts.hasNext()) {
+                assertTrue(timeouts.next() > 0);
+            }
+        }
+        finally {
+            timeouts.close();
+        }
+    }
+}
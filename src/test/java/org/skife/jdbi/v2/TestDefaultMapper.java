@@ -0,0 +1,76 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class TestDefaultMapper extends DBITestCase
+{
+    @Test
+    public void testLookupsIgnoreCase() throws Exception
+    {
+        Handle h = openHandle();
+        h.insert("insert into something (id, name) values (1, 'eric')");
+
+        Map<String, Object> row = h.select("select id, name from something").get(0);
+        assertThat(row.get("name"), equalTo((Object) "eric"));
+        assertThat(row.get("NAME"), equalTo((Object) "eric"));
+        assertThat(row.containsKey("Id"), equalTo(true));
+        assertThat(row.containsKey("missing"), equalTo(false));
+        assertThat(row.get("missing"), nullValue());
+        assertThat(row.size(), equalTo(2));
+    }
+
+    @Test
+    public void testRowsOfOneResultSet() throws Exception
+    {
+        Handle h = openHandle();
+        h.insert("insert into something (id, name) values (1, 'eric')");
+        h.insert("insert into something (id, name) values (2, 'brian')");
+
+        List<Map<String, Object>> rows = h.select("select id, name from something order by id");
+        Map<String, Object> expected = new HashMap<String, Object>();
+        expected.put("id", 2);
+        expected.put("name", "brian");
+        assertThat(rows.get(1), equalTo(expected));
+        assertThat(rows.get(0).get("name"), equalTo((Object) "eric"));
+
+        List<Map<String, Object>> labelled = h.select("select name as who from something order by id");
+        assertThat(labelled.get(1).get("who"), equalTo((Object) "brian"));
+        assertThat(labelled.get(1).containsKey("name"), equalTo(false));
+    }
+
+    @Test
+    public void testRowsMayBeModified() throws Exception
+    {
+        Handle h = openHandle();
+        h.insert("insert into something (id, name) values (1, 'eric')");
+
+        Map<String, Object> row = h.select("select id, name from something").get(0);
+        row.put("Extra", "value");
+        row.remove("ID");
+        assertThat(row.get("extra"), equalTo((Object) "value"));
+        assertThat(row.containsKey("id"), equalTo(false));
+        assertThat(row.get("name"), equalTo((Object) "eric"));
+        assertThat(row.size(), equalTo(2));
+    }
+}
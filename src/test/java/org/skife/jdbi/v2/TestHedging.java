@@ -0,0 +1,139 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.skife.jdbi.v2.util.StringMapper;
+
+import java.util.UUID;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class TestHedging
+{
+    private DBI primary;
+    private DBI replica;
+    private Handle h;
+    private Hedging hedging;
+
+    public static int slow(int id) throws InterruptedException
+    {
+        Thread.sleep(500);
+        return id;
+    }
+
+    public static int fast(int id)
+    {
+        return id;
+    }
+
+    @Before
+    public void setUp() throws Exception
+    {
+        primary = new DBI("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        replica = new DBI("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        // pause() only takes its time on the primary
+        create(primary, "primary", "slow");
+        create(replica, "replica", "fast");
+        h = primary.open();
+    }
+
+    private static void create(DBI dbi, String name, String pause)
+    {
+        Handle handle = dbi.open();
+        try {
+            handle.execute("create table something (id int primary key, name varchar(50))");
+            handle.insert("insert into something (id, name) values (1, ?)", name);
+            handle.execute("create alias pause for \"" + TestHedging.class.getName() + "." + pause + "\"");
+        }
+        finally {
+            handle.close();
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        h.close();
+        hedging.close();
+        for (DBI dbi : new DBI[] { primary, replica }) {
+            Handle handle = dbi.open();
+            handle.execute("shutdown");
+            handle.close();
+        }
+    }
+
+    @Test
+    public void testReplicaWinsWhenPrimaryIsSlow() throws Exception
+    {
+        hedging = new Hedging(replica, 50);
+        String name = h.createQuery("select name from something where id = pause(1)")
+                       .map(StringMapper.FIRST)
+                       .hedged(hedging)
+                       .first();
+
+        assertThat(name, equalTo("replica"));
+        assertThat(hedging.getHedgeCount(), equalTo(1L));
+        assertThat(hedging.getWinCount(), equalTo(1L));
+        assertThat(hedging.getWinRate(), equalTo(1.0));
+    }
+
+    @Test
+    public void testFastQueriesAreNotHedged() throws Exception
+    {
+        hedging = new Hedging(replica, 1000);
+        for (int i = 0; i < 3; i++) {
+            String name = h.createQuery("select name from something where id = 1")
+                           .map(StringMapper.FIRST)
+                           .hedged(hedging)
+                           .first();
+            assertThat(name, equalTo("primary"));
+        }
+        assertThat(hedging.getQueryCount(), equalTo(3L));
+        assertThat(hedging.getHedgeCount(), equalTo(0L));
+        assertThat(hedging.getHedgeRate(), equalTo(0.0));
+    }
+
+    @Test
+    public void testHedgingDefinedAsAttribute() throws Exception
+    {
+        hedging = new Hedging(replica, 1000);
+        h.define(Hedging.ATTRIBUTE, hedging);
+        assertThat(h.createQuery("select name from something").map(StringMapper.FIRST).hedged().list().size(),
+                   equalTo(1));
+        assertThat(hedging.getQueryCount(), equalTo(1L));
+    }
+
+    @Test
+    public void testQueriesInTransactionAreNotHedged() throws Exception
+    {
+        hedging = new Hedging(replica, 50);
+        h.begin();
+        try {
+            String name = h.createQuery("select name from something where id = pause(1)")
+                           .map(StringMapper.FIRST)
+                           .hedged(hedging)
+                           .first();
+            assertThat(name, equalTo("primary"));
+        }
+        finally {
+            h.rollback();
+        }
+        assertThat(hedging.getQueryCount(), equalTo(0L));
+        assertThat(hedging.getHedgeCount(), equalTo(0L));
+    }
+}
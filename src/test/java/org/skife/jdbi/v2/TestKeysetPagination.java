@@ -0,0 +1,200 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.skife.jdbi.v2.tweak.StatementLocator;
+import org.skife.jdbi.v2.util.IntegerMapper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class TestKeysetPagination
+{
+    private DBI dbi;
+    private Handle h;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        dbi = new DBI("jdbc:h2:mem:" + UUID.randomUUID());
+        h = dbi.open();
+        h.execute("create table something (id int primary key, name varchar(50))");
+        PreparedBatch batch = h.prepareBatch("insert into something (id, name) values (:id, :name)");
+        for (int i = 25; i > 0; i--) {
+            batch.add().bind("id", i).bind("name", i % 2 == 0 ? "even" : "odd");
+        }
+        batch.execute();
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        h.close();
+    }
+
+    @Test
+    public void testIteratesAllPagesInKeyOrder() throws Exception
+    {
+        final KeysetPagination<Integer> pages = h.createQuery("select id from something")
+                                                 .map(IntegerMapper.FIRST)
+                                                 .paginateByKey(10, "id");
+        final List<Integer> ids = new ArrayList<Integer>();
+        while (pages.hasNext()) {
+            ids.add(pages.next());
+        }
+        assertThat(ids.size(), equalTo(25));
+        for (int i = 0; i < ids.size(); i++) {
+            assertThat(ids.get(i), equalTo(i + 1));
+        }
+        assertFalse(pages.hasNext());
+    }
+
+    @Test
+    public void testPaginatesWithNamedParameters() throws Exception
+    {
+        final KeysetPagination<Integer> pages = h.createQuery("select id from something where name = :name")
+                                                 .bind("name", "even")
+                                                 .map(IntegerMapper.FIRST)
+                                                 .paginateByKey(5, "id");
+        int expected = 2;
+        while (pages.hasNext()) {
+            assertThat(pages.next(), equalTo(expected));
+            expected += 2;
+        }
+        assertThat(expected, equalTo(26));
+    }
+
+    @Test
+    public void testResumesFromCursor() throws Exception
+    {
+        final KeysetPagination<Integer> first = h.createQuery("select id, name from something")
+                                                 .map(IntegerMapper.FIRST)
+                                                 .paginateByKey(4, "name", "id");
+        for (int i = 0; i < 6; i++) {
+            first.next();
+        }
+        final String cursor = first.getCursor();
+        first.close();
+
+        final KeysetPagination<Integer> rest = h.createQuery("select id, name from something")
+                                                .map(IntegerMapper.FIRST)
+                                                .paginateByKey(4, "name", "id")
+                                                .resumeFrom(cursor);
+        // even 2..24 sort before odd, so the seventh row is even 14
+        assertThat(rest.next(), equalTo(14));
+        int count = 1;
+        while (rest.hasNext()) {
+            rest.next();
+            count++;
+        }
+        assertThat(count, equalTo(19));
+    }
+
+    @Test
+    public void testRejectsTamperedCursor() throws Exception
+    {
+        final KeysetPagination<Integer> pages = h.createQuery("select id from something")
+                                                 .map(IntegerMapper.FIRST)
+                                                 .paginateByKey(4, "id");
+        pages.next();
+        final String cursor = pages.getCursor();
+        pages.close();
+
+        // a java serialization stream, an unknown type tag and trailing garbage
+        final String[] tampered = {"aced0005757200135b4c6a6176612e6c616e672e4f626a6563743b",
+                                   cursor.substring(0, cursor.length() - 10) + "7f" + cursor.substring(cursor.length() - 8),
+                                   cursor + "00"};
+        for (String bad : tampered) {
+            try {
+                h.createQuery("select id from something")
+                 .map(IntegerMapper.FIRST)
+                 .paginateByKey(4, "id")
+                 .resumeFrom(bad);
+                fail("should have rejected " + bad);
+            }
+            catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testPagesOnOwnHandleWithoutDBI() throws Exception
+    {
+        final Handle raw = DBI.open(h.getConnection());
+        final KeysetPagination<Integer> pages = raw.createQuery("select id from something")
+                                                   .map(IntegerMapper.FIRST)
+                                                   .paginateByKey(7, "id");
+        int count = 0;
+        while (pages.hasNext()) {
+            assertThat(pages.next(), equalTo(++count));
+        }
+        assertThat(count, equalTo(25));
+    }
+
+    @Test
+    public void testSeesUncommittedRowsInTransaction() throws Exception
+    {
+        h.begin();
+        try {
+            for (int i = 26; i <= 30; i++) {
+                h.insert("insert into something (id, name) values (?, 'new')", i);
+            }
+            final KeysetPagination<Integer> pages = h.createQuery("select id from something")
+                                                     .map(IntegerMapper.FIRST)
+                                                     .paginateByKey(10, "id");
+            int count = 0;
+            while (pages.hasNext()) {
+                assertThat(pages.next(), equalTo(++count));
+            }
+            assertThat(count, equalTo(30));
+        }
+        finally {
+            h.rollback();
+        }
+    }
+
+    @Test
+    public void testNamedStatementIsLocatedOnce() throws Exception
+    {
+        h.setStatementLocator(new StatementLocator()
+        {
+            @Override
+            public String locate(String name, StatementContext ctx)
+            {
+                if (!"all-ids".equals(name)) {
+                    throw new IllegalArgumentException("no statement named " + name);
+                }
+                return "select id from something";
+            }
+        });
+        final KeysetPagination<Integer> pages = h.createQuery("all-ids")
+                                                 .map(IntegerMapper.FIRST)
+                                                 .paginateByKey(10, "id");
+        int count = 0;
+        while (pages.hasNext()) {
+            assertThat(pages.next(), equalTo(++count));
+        }
+        assertThat(count, equalTo(25));
+    }
+}
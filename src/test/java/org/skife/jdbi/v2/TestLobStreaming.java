@@ -0,0 +1,149 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.skife.jdbi.v2.util.ChannelCopyingColumnMapper;
+import org.skife.jdbi.v2.util.InputStreamColumnMapper;
+import org.skife.jdbi.v2.util.ReaderColumnMapper;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class TestLobStreaming
+{
+    private final byte[] content = new byte[3 * 1024 * 1024 + 17];
+    private Handle h;
+    private File file;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        new Random(42).nextBytes(content);
+        h = new DBI("jdbc:h2:mem:" + UUID.randomUUID()).open();
+        h.execute("create table docs (id int primary key, body blob, text clob)");
+        file = File.createTempFile("jdbi-lob", ".bin");
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content);
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        h.close();
+        file.delete();
+    }
+
+    private byte[] read(int id) throws Exception
+    {
+        ResultIterator<InputStream> it = h.createQuery("select body from docs where id = :id")
+                                          .bind("id", id)
+                                          .map(InputStreamColumnMapper.INSTANCE)
+                                          .iterator();
+        try {
+            InputStream in = it.next();
+            byte[] bytes = new byte[content.length];
+            int read = 0;
+            int n;
+            while ((n = in.read(bytes, read, bytes.length - read)) > 0) {
+                read += n;
+            }
+            assertThat(in.read(), equalTo(-1));
+            return bytes;
+        }
+        finally {
+            it.close();
+        }
+    }
+
+    @Test
+    public void testBindFileAndReadStream() throws Exception
+    {
+        h.createStatement("insert into docs (id, body) values (1, :body)").bindBinaryStream("body", file).execute();
+
+        assertThat(Arrays.equals(read(1), content), equalTo(true));
+    }
+
+    @Test
+    public void testBindByteBuffers() throws Exception
+    {
+        ByteBuffer heap = ByteBuffer.wrap(content);
+        ByteBuffer direct = ByteBuffer.allocateDirect(content.length);
+        direct.put(content).flip();
+
+        h.createStatement("insert into docs (id, body) values (1, :body)").bindBinaryStream("body", heap).execute();
+        h.createStatement("insert into docs (id, body) values (2, :body)").bindBinaryStream("body", direct).execute();
+
+        assertThat(Arrays.equals(read(1), content), equalTo(true));
+        assertThat(Arrays.equals(read(2), content), equalTo(true));
+        assertThat(direct.remaining(), equalTo(content.length));
+    }
+
+    @Test
+    public void testCopyToFileChannel() throws Exception
+    {
+        h.createStatement("insert into docs (id, body) values (1, :body)").bindBinaryStream("body", file).execute();
+        File copy = File.createTempFile("jdbi-lob", ".copy");
+        RandomAccessFile raf = new RandomAccessFile(copy, "rw");
+        try {
+            FileChannel channel = raf.getChannel();
+            Long copied = h.createQuery("select body from docs where id = 1")
+                           .map(new ChannelCopyingColumnMapper(channel))
+                           .first();
+
+            assertThat(copied, equalTo((long) content.length));
+            byte[] bytes = new byte[content.length];
+            raf.seek(0);
+            raf.readFully(bytes);
+            assertThat(Arrays.equals(bytes, content), equalTo(true));
+        }
+        finally {
+            raf.close();
+            copy.delete();
+        }
+    }
+
+    @Test
+    public void testReadClobAsReader() throws Exception
+    {
+        h.insert("insert into docs (id, text) values (1, 'hello')");
+
+        ResultIterator<Reader> it = h.createQuery("select text from docs").map(ReaderColumnMapper.INSTANCE).iterator();
+        try {
+            char[] chars = new char[16];
+            assertThat(new String(chars, 0, it.next().read(chars)), equalTo("hello"));
+        }
+        finally {
+            it.close();
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.skife.jdbi.v2.exceptions.StatementException;
+import org.skife.jdbi.v2.tweak.ResultSetMapper;
+import org.skife.jdbi.v2.util.IntegerMapper;
+import org.skife.jdbi.v2.util.LongMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestParallelScan
+{
+    private static final String SCAN = "select id from something where id >= :lo and id <= :hi order by id";
+
+    private DBI dbi;
+    private Handle h;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        dbi = new DBI("jdbc:h2:mem:" + UUID.randomUUID());
+        h = dbi.open();
+        h.execute("create table something (id int primary key, name varchar(50))");
+        PreparedBatch batch = h.prepareBatch("insert into something (id, name) values (:id, :name)");
+        for (int i = 1; i <= 100; i++) {
+            batch.add().bind("id", i).bind("name", "name" + i);
+        }
+        batch.execute();
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        h.close();
+    }
+
+    @Test
+    public void testOrderedScanReturnsRowsInKeyOrder() throws Exception
+    {
+        final ParallelScan<Integer> scan = new ParallelScan<Integer>(dbi, SCAN, "id", IntegerMapper.FIRST)
+            .partitions(4)
+            .parallelism(2)
+            .bufferSize(5)
+            .ordered();
+        final List<Integer> ids = drain(scan.iterator());
+
+        assertThat(ids.size(), equalTo(100));
+        for (int i = 0; i < ids.size(); i++) {
+            assertThat(ids.get(i), equalTo(i + 1));
+        }
+
+        assertThat(scan.getPartitions().size(), equalTo(4));
+        assertThat(scan.getPartitions().get(0).getLow(), equalTo(1L));
+        assertThat(scan.getPartitions().get(3).getHigh(), equalTo(100L));
+        long rows = 0;
+        for (ParallelScan.Partition partition : scan.getPartitions()) {
+            assertTrue(partition.isFinished());
+            rows += partition.getRowCount();
+        }
+        assertThat(rows, equalTo(100L));
+    }
+
+    @Test
+    public void testUnorderedScanWithSplitPoints() throws Exception
+    {
+        final ParallelScan<Integer> scan = new ParallelScan<Integer>(dbi, SCAN + " and name <> :skip", "id", IntegerMapper.FIRST)
+            .bind("skip", "name50")
+            .splitAt(30, 10, 90)
+            .bufferSize(3);
+        final List<Integer> ids = drain(scan.iterator());
+        Collections.sort(ids);
+
+        assertThat(ids.size(), equalTo(99));
+        assertThat(ids.get(48), equalTo(49));
+        assertThat(ids.get(49), equalTo(51));
+        assertThat(scan.getPartitions().size(), equalTo(4));
+        assertThat(scan.getPartitions().get(1).getRowCount(), equalTo(20L));
+    }
+
+    @Test
+    public void testClosingEarlyStopsPartitions() throws Exception
+    {
+        final ParallelScan<Integer> scan = new ParallelScan<Integer>(dbi, SCAN, "id", IntegerMapper.FIRST)
+            .partitions(3)
+            .bufferSize(1);
+        final ResultIterator<Integer> rows = scan.iterator();
+        rows.next();
+        rows.close();
+        assertFalse(rows.hasNext());
+    }
+
+    @Test
+    public void testEmptyRangeHasNoPartitions() throws Exception
+    {
+        final ParallelScan<Integer> scan =
+            new ParallelScan<Integer>(dbi, SCAN + " and id > 1000", "id", IntegerMapper.FIRST);
+        assertFalse(scan.iterator().hasNext());
+        assertTrue(scan.getPartitions().isEmpty());
+    }
+
+    @Test
+    public void testPartitionFailureIsRaised() throws Exception
+    {
+        final ParallelScan<Integer> scan =
+            new ParallelScan<Integer>(dbi, "select nope from something where id >= :lo and id <= :hi", "id", IntegerMapper.FIRST)
+                .splitAt(50);
+        try {
+            drain(scan.iterator());
+            fail("should have failed");
+        }
+        catch (StatementException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testExtremeValuesAreScanned() throws Exception
+    {
+        h.execute("create table extremes (id bigint primary key)");
+        h.insert("insert into extremes (id) values (?)", Long.MIN_VALUE);
+        h.insert("insert into extremes (id) values (?)", 0L);
+        h.insert("insert into extremes (id) values (?)", Long.MAX_VALUE);
+        final String sql = "select id from extremes where id >= :lo and id <= :hi order by id";
+
+        final ParallelScan<Long> even = new ParallelScan<Long>(dbi, sql, "id", LongMapper.FIRST).partitions(4).ordered();
+        assertThat(drainLongs(even.iterator()), equalTo(Arrays.asList(Long.MIN_VALUE, 0L, Long.MAX_VALUE)));
+        assertThat(even.getPartitions().get(3).getHigh(), equalTo(Long.MAX_VALUE));
+
+        final ParallelScan<Long> split = new ParallelScan<Long>(dbi, sql, "id", LongMapper.FIRST).splitAt(0).ordered();
+        assertThat(drainLongs(split.iterator()), equalTo(Arrays.asList(Long.MIN_VALUE, 0L, Long.MAX_VALUE)));
+    }
+
+    @Test(timeout = 10000)
+    public void testPartitionErrorIsRaised() throws Exception
+    {
+        final ParallelScan<Integer> scan = new ParallelScan<Integer>(dbi, SCAN, "id", new ResultSetMapper<Integer>()
+        {
+            @Override
+            public Integer map(int index, ResultSet r, StatementContext ctx) throws SQLException
+            {
+                throw new AssertionError("mapper failed");
+            }
+        }).partitions(2);
+        try {
+            drain(scan.iterator());
+            fail("should have failed");
+        }
+        catch (AssertionError e) {
+            assertThat(e.getMessage(), equalTo("mapper failed"));
+        }
+    }
+
+    private static List<Long> drainLongs(ResultIterator<Long> rows)
+    {
+        final List<Long> result = new ArrayList<Long>();
+        while (rows.hasNext()) {
+            result.add(rows.next());
+        }
+        return result;
+    }
+
+    private static List<Integer> drain(ResultIterator<Integer> rows)
+    {
+        final List<Integer> result = new ArrayList<Integer>();
+        while (rows.hasNext()) {
+            result.add(rows.next());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.junit.Test;
+import org.skife.jdbi.v2.util.StringMapper;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class TestPreparedTemplates extends DBITestCase
+{
+    @Test
+    public void testUpdateAndQueryRepeatedly() throws Exception
+    {
+        ExtendedHandle h = openHandle();
+        PreparedUpdate insert = h.prepareUpdate("insert into something (id, name) values (:id, :name)");
+        for (int i = 1; i <= 5; i++) {
+            assertThat(insert.bind("id", i).bind("name", "name " + i).execute(), equalTo(1));
+        }
+        insert.close();
+
+        PreparedQuery<String> byId = h.prepareQuery("select name from something where id = :id", StringMapper.FIRST);
+        for (int i = 1; i <= 5; i++) {
+            assertThat(byId.bind("id", i).first(), equalTo("name " + i));
+        }
+        assertThat(byId.bind("id", 6).first(), nullValue());
+        byId.close();
+    }
+
+    @Test
+    public void testValuesStayBound() throws Exception
+    {
+        ExtendedHandle h = openHandle();
+        h.insert("insert into something (id, name) values (1, 'eric')");
+        h.insert("insert into something (id, name) values (2, 'eric')");
+        h.insert("insert into something (id, name) values (3, 'brian')");
+
+        PreparedQuery<Map<String, Object>> q = h.prepareQuery("select id from something where name = ? and id > ? order by id");
+        q.bind(0, "eric").bind(1, 0);
+        assertThat(q.list().size(), equalTo(2));
+
+        List<Map<String, Object>> rows = q.bind(1, 1).list();
+        assertThat(rows.size(), equalTo(1));
+        assertThat(rows.get(0).get("id"), equalTo((Object) 2));
+        q.close();
+    }
+
+    @Test
+    public void testClosedTemplateRefusesToExecute() throws Exception
+    {
+        ExtendedHandle h = openHandle();
+        PreparedUpdate delete = h.prepareUpdate("delete from something where id = :id");
+        delete.close();
+        try {
+            delete.bind("id", 1).execute();
+            fail("should have refused to execute");
+        }
+        catch (IllegalStateException e) {
+            // expected
+        }
+    }
+}
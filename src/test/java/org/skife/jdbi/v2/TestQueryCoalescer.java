@@ -0,0 +1,183 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.skife.jdbi.v2.tweak.ResultCopier;
+import org.skife.jdbi.v2.tweak.ResultSetMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class TestQueryCoalescer
+{
+    private static final int CALLERS = 4;
+
+    private final QueryCoalescer coalescer = new QueryCoalescer();
+    private ExecutorService executor;
+    private DBI dbi;
+    private Handle keepAlive;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        dbi = new DBI("jdbc:h2:mem:" + UUID.randomUUID());
+        dbi.define(QueryCoalescer.ATTRIBUTE, coalescer);
+        keepAlive = dbi.open();
+        keepAlive.execute("create table something (id int primary key, name varchar(100))");
+        keepAlive.insert("insert into something (id, name) values (1, 'Brian')");
+        executor = Executors.newFixedThreadPool(CALLERS);
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        executor.shutdownNow();
+        keepAlive.close();
+    }
+
+    /**
+     * Holds the leading execution until every other caller has joined it
+     */
+    private class WaitingMapper implements ResultSetMapper<Something>
+    {
+        @Override
+        public Something map(int index, ResultSet r, StatementContext ctx) throws SQLException
+        {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (coalescer.getCoalescedCount() < CALLERS - 1 && System.currentTimeMillis() < deadline) {
+                Thread.yield();
+            }
+            return new Something(r.getInt("id"), r.getString("name"));
+        }
+    }
+
+    private List<List<Something>> callConcurrently(final ResultSetMapper<Something> mapper,
+                                                   final ResultCopier<Something> copier) throws Exception
+    {
+        List<Future<List<Something>>> futures = new ArrayList<Future<List<Something>>>();
+        for (int i = 0; i < CALLERS; i++) {
+            futures.add(executor.submit(new Callable<List<Something>>()
+            {
+                @Override
+                public List<Something> call() throws Exception
+                {
+                    Handle h = dbi.open();
+                    try {
+                        return h.createQuery("select id, name from something where id = :id")
+                                .bind("id", 1)
+                                .map(mapper)
+                                .coalesced(copier)
+                                .list();
+                    }
+                    finally {
+                        h.close();
+                    }
+                }
+            }));
+        }
+        List<List<Something>> results = new ArrayList<List<Something>>();
+        for (Future<List<Something>> future : futures) {
+            results.add(future.get());
+        }
+        return results;
+    }
+
+    @Test
+    public void testConcurrentIdenticalQueriesShareOneExecution() throws Exception
+    {
+        List<List<Something>> results = callConcurrently(new WaitingMapper(), null);
+
+        for (List<Something> rows : results) {
+            assertThat(rows.size(), equalTo(1));
+            assertThat(rows.get(0).getName(), equalTo("Brian"));
+        }
+        assertThat(coalescer.getExecutionCount(), equalTo(1L));
+        assertThat(coalescer.getCoalescedCount(), equalTo((long) CALLERS - 1));
+    }
+
+    @Test
+    public void testFollowersReceiveCopies() throws Exception
+    {
+        List<List<Something>> results = callConcurrently(new WaitingMapper(), new ResultCopier<Something>()
+        {
+            @Override
+            public Something copy(Something row)
+            {
+                return new Something(row.getId(), row.getName());
+            }
+        });
+
+        assertThat(coalescer.getExecutionCount(), equalTo(1L));
+        for (int i = 0; i < results.size(); i++) {
+            for (int j = i + 1; j < results.size(); j++) {
+                assertThat(results.get(i).get(0), not(sameInstance(results.get(j).get(0))));
+            }
+        }
+    }
+
+    @Test
+    public void testSequentialQueriesAreNotCoalesced() throws Exception
+    {
+        for (int i = 0; i < 2; i++) {
+            keepAlive.createQuery("select name from something where id = 1").mapTo(String.class).coalesced().first();
+        }
+        assertThat(coalescer.getExecutionCount(), equalTo(2L));
+        assertThat(coalescer.getCoalescedCount(), equalTo(0L));
+    }
+
+    @Test
+    public void testQueriesInTransactionAreNotCoalesced() throws Exception
+    {
+        keepAlive.begin();
+        try {
+            keepAlive.createQuery("select name from something where id = 1").mapTo(String.class).coalesced().first();
+        }
+        finally {
+            keepAlive.rollback();
+        }
+        assertThat(coalescer.getExecutionCount(), equalTo(0L));
+    }
+
+    @Test
+    public void testEachDBICoalescesWithItsOwnDefault() throws Exception
+    {
+        DBI first = new DBI("jdbc:h2:mem:" + UUID.randomUUID());
+        DBI second = new DBI("jdbc:h2:mem:" + UUID.randomUUID());
+        Handle h = first.open();
+        try {
+            h.createQuery("select 1").mapTo(Integer.class).coalesced().first();
+        }
+        finally {
+            h.close();
+        }
+        assertThat(QueryCoalescer.forDBI(first), sameInstance(QueryCoalescer.forDBI(first)));
+        assertThat(QueryCoalescer.forDBI(first).getExecutionCount(), equalTo(1L));
+        assertThat(QueryCoalescer.forDBI(second).getExecutionCount(), equalTo(0L));
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.junit.Test;
+import org.skife.jdbi.v2.tweak.Argument;
+import org.skife.jdbi.v2.tweak.TransactionHandler;
+import org.skife.jdbi.v2.tweak.transactions.LocalTransactionHandler;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class TestQueryMemo extends DBITestCase
+{
+    private final LocalTransactionHandler transactions = new LocalTransactionHandler(true);
+    private final AtomicInteger executions = new AtomicInteger();
+
+    @Override
+    protected TransactionHandler getTransactionHandler()
+    {
+        return transactions;
+    }
+
+    private Handle open() throws Exception
+    {
+        Handle h = openHandle();
+        h.setTimingCollector(new TimingCollector()
+        {
+            @Override
+            public void collect(long elapsedTime, StatementContext ctx)
+            {
+                executions.incrementAndGet();
+            }
+        });
+        h.insert("insert into something (id, name) values (1, 'Brian')");
+        h.insert("insert into something (id, name) values (2, 'Keith')");
+        executions.set(0);
+        return h;
+    }
+
+    private static String name(Handle h, int id)
+    {
+        return h.createQuery("select name from something where id = :id").bind("id", id).mapTo(String.class).first();
+    }
+
+    @Test
+    public void testRepeatedQueryIsAnsweredFromMemo() throws Exception
+    {
+        final Handle h = open();
+        h.inTransaction(new TransactionCallback<Object>()
+        {
+            @Override
+            public Object inTransaction(Handle conn, TransactionStatus status) throws Exception
+            {
+                assertThat(name(conn, 1), equalTo("Brian"));
+                assertThat(name(conn, 1), equalTo("Brian"));
+                assertThat(name(conn, 2), equalTo("Keith"));
+                assertThat(executions.get(), equalTo(2));
+                return null;
+            }
+        });
+        assertThat(transactions.getSavedRoundTrips(), equalTo(1L));
+    }
+
+    @Test
+    public void testListsAreCopied() throws Exception
+    {
+        final Handle h = open();
+        h.inTransaction(new TransactionCallback<Object>()
+        {
+            @Override
+            public Object inTransaction(Handle conn, TransactionStatus status) throws Exception
+            {
+                List<String> first = conn.createQuery("select name from something order by id").mapTo(String.class).list();
+                first.clear();
+                List<String> second = conn.createQuery("select name from something order by id").mapTo(String.class).list();
+                assertThat(second, equalTo(Arrays.asList("Brian", "Keith")));
+                assertThat(executions.get(), equalTo(1));
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testUpdateInvalidates() throws Exception
+    {
+        final Handle h = open();
+        h.inTransaction(new TransactionCallback<Object>()
+        {
+            @Override
+            public Object inTransaction(Handle conn, TransactionStatus status) throws Exception
+            {
+                assertThat(name(conn, 1), equalTo("Brian"));
+                conn.execute("update something set name = 'Eric' where id = 1");
+                assertThat(name(conn, 1), equalTo("Eric"));
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testBatchInvalidates() throws Exception
+    {
+        final Handle h = open();
+        h.inTransaction(new TransactionCallback<Object>()
+        {
+            @Override
+            public Object inTransaction(Handle conn, TransactionStatus status) throws Exception
+            {
+                assertThat(name(conn, 1), equalTo("Brian"));
+                conn.prepareBatch("update something set name = :name where id = :id")
+                    .add().bind("id", 1).bind("name", "Eric")
+                    .submit()
+                    .execute();
+                assertThat(name(conn, 1), equalTo("Eric"));
+                conn.createBatch().add("update something set name = 'Sean' where id = 1").execute();
+                assertThat(name(conn, 1), equalTo("Sean"));
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testQueriesNotMemoizedInvalidate() throws Exception
+    {
+        final Handle h = open();
+        h.inTransaction(new TransactionCallback<Object>()
+        {
+            @Override
+            public Object inTransaction(Handle conn, TransactionStatus status) throws Exception
+            {
+                name(conn, 1);
+                ResultIterator<String> names = conn.createQuery("select name from something").mapTo(String.class).iterator();
+                names.close();
+                name(conn, 1);
+                assertThat(executions.get(), equalTo(3));
+
+                conn.createQuery("select name from something").fold(0, new Folder2<Integer>()
+                {
+                    @Override
+                    public Integer fold(Integer count, ResultSet rs, StatementContext ctx)
+                    {
+                        return count + 1;
+                    }
+                });
+                name(conn, 1);
+                assertThat(executions.get(), equalTo(5));
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testDifferentMappersAreNotShared() throws Exception
+    {
+        final Handle h = open();
+        h.inTransaction(new TransactionCallback<Object>()
+        {
+            @Override
+            public Object inTransaction(Handle conn, TransactionStatus status) throws Exception
+            {
+                Query<java.util.Map<String, Object>> q = conn.createQuery("select id, name from something where id = 1");
+                Something bean = q.map(Something.class).first();
+                assertThat(bean.getName(), equalTo("Brian"));
+                Something again = conn.createQuery("select id, name from something where id = 1").map(Something.class).first();
+                assertThat(again.getName(), equalTo("Brian"));
+                assertThat(executions.get(), equalTo(1));
+
+                Integer id = conn.createQuery("select id, name from something where id = 1").mapTo(Integer.class).first();
+                assertThat(id, equalTo(1));
+                assertThat(executions.get(), equalTo(2));
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testOtherArgumentsAreNotAppliedToRecordThem() throws Exception
+    {
+        final AtomicInteger applied = new AtomicInteger();
+        final Argument id = new Argument()
+        {
+            @Override
+            public void apply(int position, PreparedStatement statement, StatementContext ctx) throws SQLException
+            {
+                applied.incrementAndGet();
+                statement.setInt(position, 1);
+            }
+        };
+        final Handle h = open();
+        h.inTransaction(new TransactionCallback<Object>()
+        {
+            @Override
+            public Object inTransaction(Handle conn, TransactionStatus status) throws Exception
+            {
+                for (int i = 0; i < 2; i++) {
+                    assertThat(conn.createQuery("select name from something where id = :id")
+                                   .bind("id", id)
+                                   .mapTo(String.class)
+                                   .first(), equalTo("Brian"));
+                }
+                return null;
+            }
+        });
+        assertThat(executions.get(), equalTo(2));
+        assertThat(applied.get(), equalTo(2));
+    }
+
+    @Test
+    public void testNoMemoOutsideTransaction() throws Exception
+    {
+        Handle h = open();
+        name(h, 1);
+        name(h, 1);
+        assertThat(executions.get(), equalTo(2));
+    }
+
+    @Test
+    public void testMemoDoesNotOutliveTransaction() throws Exception
+    {
+        Handle h = open();
+        h.begin();
+        name(h, 1);
+        h.commit();
+        h.begin();
+        name(h, 1);
+        h.commit();
+        assertThat(executions.get(), equalTo(2));
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.skife.jdbi.v2.sqlobject.Bind;
+import org.skife.jdbi.v2.sqlobject.SqlQuery;
+import org.skife.jdbi.v2.sqlobject.SqlUpdate;
+import org.skife.jdbi.v2.tweak.ConnectionFactory;
+import org.skife.jdbi.v2.tweak.HandleCallback;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class TestReadWriteSplittingDBI
+{
+    private final List<Handle> keepAlive = new ArrayList<Handle>();
+
+    private ConnectionFactory primary;
+    private ConnectionFactory replicaA;
+    private ConnectionFactory replicaB;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        primary = database("primary");
+        replicaA = database("replica-a");
+        replicaB = database("replica-b");
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        for (Handle handle : keepAlive) {
+            handle.close();
+        }
+    }
+
+    private ConnectionFactory database(String name)
+    {
+        final String url = "jdbc:h2:mem:" + UUID.randomUUID();
+        ConnectionFactory factory = new ConnectionFactory()
+        {
+            @Override
+            public Connection openConnection() throws SQLException
+            {
+                return DriverManager.getConnection(url);
+            }
+        };
+        Handle h = new DBI(factory).open();
+        h.execute("create table something (id int primary key, name varchar(100))");
+        h.execute("insert into something (id, name) values (1, ?)", name);
+        keepAlive.add(h);
+        return factory;
+    }
+
+    private static String whereAmI(Handle h)
+    {
+        return h.createQuery("select name from something where id = 1").mapTo(String.class).first();
+    }
+
+    private static final HandleCallback<String> WHERE_AM_I = new HandleCallback<String>()
+    {
+        @Override
+        public String withHandle(Handle handle) throws Exception
+        {
+            return whereAmI(handle);
+        }
+    };
+
+    @Test
+    public void testWritesGoToPrimaryAndReadsToReplica() throws Exception
+    {
+        ReadWriteSplittingDBI dbi = new ReadWriteSplittingDBI(primary, Arrays.asList(replicaA));
+
+        assertThat(dbi.withHandle(WHERE_AM_I), equalTo("primary"));
+        assertThat(dbi.withReadOnlyHandle(WHERE_AM_I), equalTo("replica-a"));
+        assertThat(dbi.inTransaction(new TransactionCallback<String>()
+        {
+            @Override
+            public String inTransaction(Handle conn, TransactionStatus status) throws Exception
+            {
+                return whereAmI(conn);
+            }
+        }), equalTo("primary"));
+    }
+
+    @Test
+    public void testReadOnlyTransactionUsesReplica() throws Exception
+    {
+        ReadWriteSplittingDBI dbi = new ReadWriteSplittingDBI(primary, Arrays.asList(replicaA));
+
+        String name = dbi.inReadOnlyTransaction(new TransactionCallback<String>()
+        {
+            @Override
+            public String inTransaction(Handle conn, TransactionStatus status) throws Exception
+            {
+                assertThat(conn.getConnection().isReadOnly(), equalTo(true));
+                return whereAmI(conn);
+            }
+        });
+        assertThat(name, equalTo("replica-a"));
+    }
+
+    @Test
+    public void testNoReplicasUsesPrimary() throws Exception
+    {
+        ReadWriteSplittingDBI dbi = new ReadWriteSplittingDBI(primary, new ArrayList<ConnectionFactory>());
+
+        assertThat(dbi.withReadOnlyHandle(WHERE_AM_I), equalTo("primary"));
+    }
+
+    @Test
+    public void testOnDemandQueriesGoToReplica() throws Exception
+    {
+        ReadWriteSplittingDBI dbi = new ReadWriteSplittingDBI(primary, Arrays.asList(replicaA));
+        Dao dao = dbi.onDemand(Dao.class);
+
+        dao.insert(2, "written");
+
+        assertThat(dao.findName(1), equalTo("replica-a"));
+        assertThat(dao.findName(2), equalTo(null));
+        assertThat(dbi.withHandle(new HandleCallback<String>()
+        {
+            @Override
+            public String withHandle(Handle handle) throws Exception
+            {
+                return handle.createQuery("select name from something where id = 2").mapTo(String.class).first();
+            }
+        }), equalTo("written"));
+    }
+
+    @Test
+    public void testRoundRobin() throws Exception
+    {
+        ReadWriteSplittingDBI dbi = new ReadWriteSplittingDBI(primary, Arrays.asList(replicaA, replicaB));
+
+        List<String> seen = new ArrayList<String>();
+        for (int i = 0; i < 4; i++) {
+            seen.add(dbi.withReadOnlyHandle(WHERE_AM_I));
+        }
+        assertThat(seen, equalTo(Arrays.asList("replica-a", "replica-b", "replica-a", "replica-b")));
+    }
+
+    @Test
+    public void testLeastOutstanding() throws Exception
+    {
+        ReadWriteSplittingDBI dbi = new ReadWriteSplittingDBI(primary,
+                                                              Arrays.asList(replicaA, replicaB),
+                                                              ReadWriteSplittingDBI.Selection.LEAST_OUTSTANDING);
+
+        Handle held = dbi.openReadOnly();
+        try {
+            assertThat(whereAmI(held), equalTo("replica-a"));
+            assertThat(dbi.getOutstandingReplicaConnections(), equalTo(Arrays.asList(1, 0)));
+            for (int i = 0; i < 3; i++) {
+                assertThat(dbi.withReadOnlyHandle(WHERE_AM_I), equalTo("replica-b"));
+            }
+        }
+        finally {
+            held.close();
+        }
+        assertThat(dbi.getOutstandingReplicaConnections(), equalTo(Arrays.asList(0, 0)));
+    }
+
+    @Test
+    public void testReadYourWritesScope() throws Exception
+    {
+        final ReadWriteSplittingDBI dbi = new ReadWriteSplittingDBI(primary, Arrays.asList(replicaA));
+
+        List<String> seen = dbi.withReadYourWrites(new Callable<List<String>>()
+        {
+            @Override
+            public List<String> call() throws Exception
+            {
+                List<String> seen = new ArrayList<String>();
+                seen.add(dbi.withReadOnlyHandle(WHERE_AM_I));
+                dbi.withHandle(WHERE_AM_I);
+                seen.add(dbi.withReadOnlyHandle(WHERE_AM_I));
+                return seen;
+            }
+        });
+
+        assertThat(seen, equalTo(Arrays.asList("replica-a", "primary")));
+        assertThat(dbi.withReadOnlyHandle(WHERE_AM_I), equalTo("replica-a"));
+    }
+
+    @Test
+    public void testReadYourWritesWindow() throws Exception
+    {
+        ReadWriteSplittingDBI dbi = new ReadWriteSplittingDBI(primary, Arrays.asList(replicaA));
+        dbi.setReadYourWritesWindow(1, TimeUnit.HOURS);
+
+        assertThat(dbi.withReadOnlyHandle(WHERE_AM_I), equalTo("replica-a"));
+        dbi.withHandle(WHERE_AM_I);
+        assertThat(dbi.withReadOnlyHandle(WHERE_AM_I), equalTo("primary"));
+
+        dbi.setReadYourWritesWindow(0, TimeUnit.HOURS);
+        assertThat(dbi.withReadOnlyHandle(WHERE_AM_I), equalTo("replica-a"));
+    }
+
+    public interface Dao
+    {
+        @SqlUpdate("insert into something (id, name) values (:id, :name)")
+        void insert(@Bind("id") int id, @Bind("name") String name);
+
+        @SqlQuery("select name from something where id = :id")
+        String findName(@Bind("id") int id);
+    }
+}
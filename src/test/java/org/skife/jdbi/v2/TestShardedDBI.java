@@ -0,0 +1,235 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.skife.jdbi.v2.exceptions.CallbackFailedException;
+import org.skife.jdbi.v2.exceptions.UnableToExecuteStatementException;
+import org.skife.jdbi.v2.sqlobject.Bind;
+import org.skife.jdbi.v2.sqlobject.SqlQuery;
+import org.skife.jdbi.v2.sqlobject.SqlUpdate;
+import org.skife.jdbi.v2.sqlobject.customizers.ShardKey;
+import org.skife.jdbi.v2.tweak.HandleCallback;
+import org.skife.jdbi.v2.tweak.ShardSelector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class TestShardedDBI
+{
+    private static final ShardSelector MODULO = new ShardSelector()
+    {
+        @Override
+        public int select(Object key, int shardCount)
+        {
+            return ((Integer) key) % shardCount;
+        }
+    };
+
+    private static final HandleCallback<List<Integer>> ALL_IDS = new HandleCallback<List<Integer>>()
+    {
+        @Override
+        public List<Integer> withHandle(Handle handle) throws Exception
+        {
+            return handle.createQuery("select id from something order by id").mapTo(Integer.class).list();
+        }
+    };
+
+    private final List<Handle> keepAlive = new ArrayList<Handle>();
+    private ShardedDBI dbi;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        List<DBI> shards = new ArrayList<DBI>();
+        for (int i = 0; i < 3; i++) {
+            DBI shard = new DBI("jdbc:h2:mem:" + UUID.randomUUID());
+            Handle h = shard.open();
+            h.execute("create table something (id int primary key, name varchar(100))");
+            keepAlive.add(h);
+            shards.add(shard);
+        }
+        dbi = new ShardedDBI(shards, MODULO, null);
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        dbi.close();
+        for (Handle handle : keepAlive) {
+            handle.close();
+        }
+    }
+
+    private void insert(final int id)
+    {
+        dbi.withHandle(id, new HandleCallback<Object>()
+        {
+            @Override
+            public Object withHandle(Handle handle) throws Exception
+            {
+                return handle.insert("insert into something (id, name) values (?, ?)", id, "name " + id);
+            }
+        });
+    }
+
+    @Test
+    public void testRoutesByKey() throws Exception
+    {
+        for (int id = 0; id < 7; id++) {
+            insert(id);
+        }
+
+        assertThat(keepAlive.get(0).createQuery("select id from something order by id").mapTo(Integer.class).list(),
+                   equalTo(Arrays.asList(0, 3, 6)));
+        assertThat(keepAlive.get(1).createQuery("select id from something order by id").mapTo(Integer.class).list(),
+                   equalTo(Arrays.asList(1, 4)));
+        assertThat(dbi.getMetrics().get(0).getCalls(), equalTo(3L));
+        assertThat(dbi.getMetrics().get(2).getCalls(), equalTo(2L));
+    }
+
+    @Test
+    public void testTransactionRoutesByKey() throws Exception
+    {
+        dbi.inTransaction(5, new TransactionCallback<Object>()
+        {
+            @Override
+            public Object inTransaction(Handle conn, TransactionStatus status) throws Exception
+            {
+                return conn.insert("insert into something (id, name) values (5, 'five')");
+            }
+        });
+        assertThat(keepAlive.get(2).createQuery("select name from something where id = 5").mapTo(String.class).first(),
+                   equalTo("five"));
+    }
+
+    @Test
+    public void testOnDemandSqlObject() throws Exception
+    {
+        Dao dao = dbi.onDemand(Dao.class);
+        for (int id = 0; id < 6; id++) {
+            dao.insert(id, "name " + id);
+        }
+
+        assertThat(dao.findName(4), equalTo("name 4"));
+        assertThat(dao.count(1), equalTo(2));
+        assertThat(dbi.scatter(ALL_IDS).onShards(Arrays.asList(1)).concat(), equalTo(Arrays.asList(1, 4)));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testOnDemandWithoutShardKey() throws Exception
+    {
+        dbi.onDemand(Dao.class).countAll();
+    }
+
+    @Test
+    public void testScatterGather() throws Exception
+    {
+        for (int id = 0; id < 9; id++) {
+            insert(id);
+        }
+
+        assertThat(dbi.scatter(ALL_IDS).concat(), equalTo(Arrays.asList(0, 3, 6, 1, 4, 7, 2, 5, 8)));
+        assertThat(dbi.scatter(ALL_IDS).mergeSorted(new Comparator<Integer>()
+        {
+            @Override
+            public int compare(Integer a, Integer b)
+            {
+                return a.compareTo(b);
+            }
+        }), equalTo(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8)));
+        assertThat(dbi.scatter(ALL_IDS).onKeys(Arrays.asList(4, 7)).concat(), equalTo(Arrays.asList(1, 4, 7)));
+
+        int sum = dbi.scatter(ALL_IDS).fold(0, new ShardFolder<Integer, Integer>()
+        {
+            @Override
+            public Integer fold(Integer accumulator, int shard, List<Integer> results) throws Exception
+            {
+                for (Integer id : results) {
+                    accumulator += id;
+                }
+                return accumulator;
+            }
+        });
+        assertThat(sum, equalTo(36));
+    }
+
+    @Test
+    public void testScatterGatherFailure() throws Exception
+    {
+        keepAlive.get(1).execute("drop table something");
+        try {
+            dbi.scatter(ALL_IDS).concat();
+            fail("expected an exception");
+        }
+        catch (CallbackFailedException e) {
+            assertThat(e.getCause() instanceof UnableToExecuteStatementException, equalTo(true));
+        }
+        assertThat(dbi.getMetrics().get(1).getErrors(), equalTo(1L));
+        assertThat(dbi.getMetrics().get(0).getErrors(), equalTo(0L));
+    }
+
+    @Test
+    public void testScatterGatherFailsFast() throws Exception
+    {
+        keepAlive.get(0).execute("create table slow (id int)");
+        keepAlive.get(1).execute("drop table something");
+        final long start = System.nanoTime();
+        try {
+            dbi.scatter(new HandleCallback<List<Integer>>()
+            {
+                @Override
+                public List<Integer> withHandle(Handle handle) throws Exception
+                {
+                    if (handle.createQuery("select count(*) from information_schema.tables where table_name = 'SLOW'")
+                              .mapTo(Integer.class)
+                              .first() > 0) {
+                        Thread.sleep(2000);
+                    }
+                    return ALL_IDS.withHandle(handle);
+                }
+            }).concat();
+            fail("expected an exception");
+        }
+        catch (CallbackFailedException e) {
+            assertThat(e.getCause() instanceof UnableToExecuteStatementException, equalTo(true));
+        }
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1500, equalTo(true));
+    }
+
+    public interface Dao
+    {
+        @SqlUpdate("insert into something (id, name) values (:id, :name)")
+        void insert(@ShardKey @Bind("id") int id, @Bind("name") String name);
+
+        @SqlQuery("select name from something where id = :id")
+        String findName(@ShardKey @Bind("id") int id);
+
+        @SqlQuery("select count(*) from something")
+        int count(@ShardKey int shardKey);
+
+        @SqlQuery("select count(*) from something")
+        int countAll();
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.junit.Test;
+import org.skife.jdbi.v2.logging.PrintStreamLog;
+import org.skife.jdbi.v2.logging.SlowQueryLog;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestSlowQueryLog extends DBITestCase
+{
+    private Handle h;
+    private ByteArrayOutputStream bout;
+
+    @Override
+    public void doSetUp() throws Exception
+    {
+        h = openHandle();
+        bout = new ByteArrayOutputStream();
+    }
+
+    @Override
+    public void doTearDown() throws Exception
+    {
+        if (h != null) h.close();
+    }
+
+    @Test
+    public void testLogsStatementsAboveThreshold() throws Exception
+    {
+        SlowQueryLog log = new SlowQueryLog(new PrintStreamLog(new PrintStream(bout)), 0, TimeUnit.MILLISECONDS);
+        h.setSQLLog(log);
+
+        h.createStatement("insert into something (id, name) values (:id, :name)")
+         .bind("id", 1)
+         .bind("name", "eric")
+         .execute();
+        log.close();
+
+        String logged = new String(bout.toByteArray());
+        assertTrue(logged.contains("statement:[insert into something (id, name) values (?, ?)] took "));
+        assertTrue(logged.contains(" micros"));
+        assertFalse(logged.contains("eric"));
+        assertEquals(1, log.getLoggedCount());
+    }
+
+    @Test
+    public void testSkipsFastStatements() throws Exception
+    {
+        SlowQueryLog log = new SlowQueryLog(new PrintStreamLog(new PrintStream(bout)), 1, TimeUnit.HOURS);
+        h.setSQLLog(log);
+
+        h.insert("insert into something (id, name) values (1, 'eric')");
+        h.createQuery("select * from something").list();
+        log.close();
+
+        assertEquals(0, bout.size());
+        assertEquals(0, log.getLoggedCount());
+    }
+
+    @Test
+    public void testSampling() throws Exception
+    {
+        SlowQueryLog log = new SlowQueryLog(new PrintStreamLog(new PrintStream(bout)), 1, TimeUnit.HOURS)
+            .setSampleEvery(2);
+        h.setSQLLog(log);
+
+        for (int i = 0; i < 4; i++) {
+            h.createQuery("select * from something").list();
+        }
+        log.close();
+
+        assertEquals(2, log.getLoggedCount());
+    }
+
+    @Test
+    public void testRedactedBindings() throws Exception
+    {
+        SlowQueryLog log = new SlowQueryLog(new PrintStreamLog(new PrintStream(bout)), 0, TimeUnit.MILLISECONDS)
+            .setLogBindings(true)
+            .setRedactedNames("name");
+        h.setSQLLog(log);
+
+        h.createStatement("insert into something (id, name) values (:id, :name)")
+         .bind("id", 1)
+         .bind("name", "secret")
+         .execute();
+        log.close();
+
+        String logged = new String(bout.toByteArray());
+        assertTrue(logged.contains("id:1"));
+        assertTrue(logged.contains("name:***"));
+        assertFalse(logged.contains("secret"));
+    }
+}
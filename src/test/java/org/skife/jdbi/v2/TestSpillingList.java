@@ -0,0 +1,141 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.skife.jdbi.v2.tweak.RowCodec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.UUID;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class TestSpillingList
+{
+    private static final RowCodec<Long> LONGS = new RowCodec<Long>()
+    {
+        @Override
+        public void write(Long row, DataOutput out) throws IOException
+        {
+            out.writeLong(row);
+        }
+
+        @Override
+        public Long read(DataInput in) throws IOException
+        {
+            return in.readLong();
+        }
+    };
+
+    private Handle h;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        h = new DBI("jdbc:h2:mem:" + UUID.randomUUID()).open();
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        h.close();
+    }
+
+    private Query<Long> range(int count)
+    {
+        return h.createQuery("select x from system_range(1, " + count + ")").mapTo(Long.class);
+    }
+
+    @Test
+    public void testSmallResultStaysInMemory() throws Exception
+    {
+        SpillingList<Long> rows = range(5).spillingList(10, LONGS);
+        try {
+            assertThat(rows.size(), equalTo(5));
+            assertThat(rows.isSpilled(), equalTo(false));
+            assertThat(rows.get(4), equalTo(5L));
+        }
+        finally {
+            rows.close();
+        }
+    }
+
+    @Test
+    public void testRowsBeyondTheLimitAreSpilled() throws Exception
+    {
+        SpillingList<Long> rows = range(10000).spillingList(100, LONGS);
+        try {
+            assertThat(rows.size(), equalTo(10000));
+            assertThat(rows.isSpilled(), equalTo(true));
+            assertThat(rows.getSpilledBytes(), equalTo(9900L * 8));
+            for (int i = 0; i < rows.size(); i += 997) {
+                assertThat(rows.get(i), equalTo(i + 1L));
+            }
+            assertThat(rows.get(9999), equalTo(10000L));
+
+            long sum = 0;
+            for (Long row : rows) {
+                sum += row;
+            }
+            assertThat(sum, equalTo(10000L * 10001 / 2));
+        }
+        finally {
+            rows.close();
+        }
+    }
+
+    @Test
+    public void testLargeRowsAreSpilled() throws Exception
+    {
+        SpillingList<String> rows = h.createQuery("select repeat('a', 10000) || x from system_range(1, 2000)")
+                                     .mapTo(String.class)
+                                     .spillingList(0);
+        try {
+            assertThat(rows.size(), equalTo(2000));
+            assertThat(rows.getSpilledBytes() > 2000L * 10000, equalTo(true));
+            assertThat(rows.get(1999).endsWith("2000"), equalTo(true));
+            assertThat(rows.get(0).length(), equalTo(10001));
+        }
+        finally {
+            rows.close();
+        }
+    }
+
+    @Test
+    public void testListIsReadOnlyAndUnreadableWhenClosed() throws Exception
+    {
+        SpillingList<Long> rows = range(10).spillingList(2, LONGS);
+        try {
+            rows.add(11L);
+            fail("spilling lists are read only");
+        }
+        catch (UnsupportedOperationException e) {
+            // expected
+        }
+        rows.close();
+        try {
+            rows.get(5);
+            fail("closed list should not be readable");
+        }
+        catch (IllegalStateException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs in its own surefire execution with a small heap, see the pom.
+ */
+public class TestSpillingListInSmallHeap
+{
+    private static final long MAX_HEAP = 64L * 1024 * 1024;
+    private static final int ROW_LENGTH = 50000;
+    private static final int ROWS = 4000;
+
+    private File dir;
+    private Handle h;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        Assume.assumeTrue(Runtime.getRuntime().maxMemory() <= MAX_HEAP);
+
+        dir = File.createTempFile("jdbi-spill", "");
+        assertTrue(dir.delete() && dir.mkdir());
+        // a file database, so that h2 buffers large results on disk rather than on the heap
+        h = new DBI("jdbc:h2:" + new File(dir, "db").getAbsolutePath() + ";MAX_MEMORY_ROWS=100;CACHE_SIZE=1024").open();
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        if (h != null) {
+            h.close();
+        }
+        if (dir != null) {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void testRowsLargerThanTheHeapAreSpilled() throws Exception
+    {
+        SpillingList<String> rows = h.createQuery("select repeat('a', " + ROW_LENGTH + ") || x from system_range(1, " + ROWS + ")")
+                                     .mapTo(String.class)
+                                     .spillingList(10);
+        try {
+            assertThat(rows.size(), equalTo(ROWS));
+            assertTrue(rows.getSpilledBytes() > 4 * Runtime.getRuntime().maxMemory());
+
+            int index = 0;
+            for (String row : rows) {
+                index++;
+                assertTrue(row.endsWith(String.valueOf(index)));
+                assertThat(row.length(), equalTo(ROW_LENGTH + String.valueOf(index).length()));
+            }
+            assertThat(index, equalTo(ROWS));
+        }
+        finally {
+            rows.close();
+        }
+    }
+
+    private static void delete(File file)
+    {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -17,6 +17,7 @@ import org.junit.Test;
 import org.skife.jdbi.v2.tweak.StatementLocator;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 /**
  *
@@ -43,4 +44,30 @@ public class TestStatementContext extends DBITestCase
         assertEquals(1, inserted);
 
     }
+
+    @Test
+    public void testStatementDefinesDoNotLeakIntoHandle() throws Exception
+    {
+        Handle h = openHandle();
+        h.define("table", "something");
+
+        Query<?> first = h.createQuery("select * from <table>").define("table", "other");
+        assertEquals("other", first.getContext().getAttribute("table"));
+
+        Query<?> second = h.createQuery("select * from <table>");
+        assertEquals("something", second.getContext().getAttribute("table"));
+        assertEquals(1, second.getContext().getAttributes().size());
+    }
+
+    @Test
+    public void testStatementsKeepTheDefinesTheyWereCreatedWith() throws Exception
+    {
+        Handle h = openHandle();
+        Query<?> before = h.createQuery("select * from <table>");
+        h.define("table", "something");
+        Query<?> after = h.createQuery("select * from <table>");
+
+        assertNull(before.getContext().getAttribute("table"));
+        assertEquals("something", after.getContext().getAttribute("table"));
+    }
 }
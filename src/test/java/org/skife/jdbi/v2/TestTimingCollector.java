@@ -19,10 +19,14 @@ import org.skife.jdbi.v2.logging.NoOpLog;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  *
@@ -124,6 +128,69 @@ public class TestTimingCollector extends DBITestCase
         assertEquals(stmt3, statements.get(2));
     }
 
+    @Test
+    public void testPhaseTimings() throws Exception
+    {
+        PTC ptc = new PTC();
+        h.setTimingCollector(ptc);
+
+        h.insert("insert into something (id, name) values (1, 'eric')");
+        h.createQuery("select * from something where id = :id").bind("id", 1).map(Something.class).list();
+
+        final List<Map<StatementPhase, Long>> timings = ptc.getTimings();
+        assertEquals(2, timings.size());
+        for (Map<StatementPhase, Long> t : timings) {
+            assertTrue(t.get(StatementPhase.PREPARE) > 0);
+            assertTrue(t.get(StatementPhase.EXECUTE) > 0);
+            assertTrue(t.get(StatementPhase.CLEANUP) > 0);
+        }
+        assertTrue(timings.get(1).get(StatementPhase.MAP) > 0);
+        assertEquals(2, ptc.getStatements().size());
+    }
+
+    @Test
+    public void testPhaseTimingsForPreparedBatch() throws Exception
+    {
+        PTC ptc = new PTC();
+        h.setTimingCollector(ptc);
+
+        PreparedBatch b = h.prepareBatch("insert into something (id, name) values (:id, :name)");
+        b.add().bind("id", 1).bind("name", "eric");
+        b.add().bind("id", 2).bind("name", "brian");
+        b.execute();
+
+        assertEquals(1, ptc.getTimings().size());
+        assertTrue(ptc.getTimings().get(0).get(StatementPhase.BIND) > 0);
+    }
+
+    @Test
+    public void testNoPhaseTimingsWithPlainCollector() throws Exception
+    {
+        Query<Something> q = h.createQuery("select * from something").map(Something.class);
+        q.list();
+        assertNull(((ConcreteStatementContext) q.getContext()).getPhaseTimings());
+    }
+
+    private static class PTC extends TTC implements PhaseTimingCollector
+    {
+        private List<Map<StatementPhase, Long>> timings = new ArrayList<Map<StatementPhase, Long>>();
+
+        @Override
+        public synchronized void collectPhases(final StatementPhaseTimings phaseTimings, final StatementContext ctx)
+        {
+            final Map<StatementPhase, Long> copy = new EnumMap<StatementPhase, Long>(StatementPhase.class);
+            for (StatementPhase phase : StatementPhase.values()) {
+                copy.put(phase, phaseTimings.getElapsedTime(phase));
+            }
+            timings.add(copy);
+        }
+
+        public synchronized List<Map<StatementPhase, Long>> getTimings()
+        {
+            return timings;
+        }
+    }
+
     private static class TTC implements TimingCollector
     {
         private List<String> statements = new ArrayList<String>();
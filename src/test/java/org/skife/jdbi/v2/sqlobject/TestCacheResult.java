@@ -0,0 +1,316 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2.sqlobject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.skife.jdbi.v2.DBI;
+import org.skife.jdbi.v2.ExtendedHandle;
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.exceptions.UnableToCreateSqlObjectException;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class TestCacheResult
+{
+    private DBI dbi;
+    private Handle handle;
+    private InMemoryResultCache cache;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        dbi = new DBI("jdbc:h2:mem:" + UUID.randomUUID());
+        cache = new InMemoryResultCache();
+        dbi.define(ResultCache.ATTRIBUTE, cache);
+        handle = dbi.open();
+        handle.execute("create table something (id int primary key, name varchar(100))");
+        handle.execute("insert into something (id, name) values (1, 'Brian')");
+        handle.execute("insert into something (id, name) values (2, 'Keith')");
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        handle.execute("drop table something");
+        handle.close();
+    }
+
+    @Test
+    public void testRepeatedCallsHitTheCache() throws Exception
+    {
+        Dao dao = dbi.onDemand(Dao.class);
+
+        assertThat(dao.findName(1), equalTo("Brian"));
+        handle.execute("update something set name = 'Eric' where id = 1");
+
+        assertThat(dao.findName(1), equalTo("Brian"));
+        assertThat(dao.findName(2), equalTo("Keith"));
+        assertThat(cache.getHitCount(), equalTo(1L));
+        assertThat(cache.getMissCount(), equalTo(2L));
+    }
+
+    @Test
+    public void testInvalidatedByUpdate() throws Exception
+    {
+        Dao dao = dbi.onDemand(Dao.class);
+
+        assertThat(dao.findName(1), equalTo("Brian"));
+        assertThat(dao.findAll(), equalTo(Arrays.asList("Brian", "Keith")));
+
+        dao.rename(1, "Eric");
+
+        assertThat(dao.findName(1), equalTo("Eric"));
+        assertThat(dao.findAll(), equalTo(Arrays.asList("Eric", "Keith")));
+        assertThat(cache.getHitCount(), equalTo(0L));
+    }
+
+    @Test
+    public void testUnrelatedTableDoesNotInvalidate() throws Exception
+    {
+        Dao dao = dbi.onDemand(Dao.class);
+
+        assertThat(dao.findName(1), equalTo("Brian"));
+        cache.invalidate(Collections.singleton("something_else"));
+        assertThat(dao.findName(1), equalTo("Brian"));
+        assertThat(cache.getHitCount(), equalTo(1L));
+    }
+
+    @Test
+    public void testEviction() throws Exception
+    {
+        Dao dao = dbi.onDemand(Dao.class);
+
+        dao.findNameSmallCache(1);
+        dao.findNameSmallCache(2);
+        dao.findNameSmallCache(1);
+        assertThat(cache.getEvictionCount(), equalTo(1L));
+        assertThat(cache.getMissCount(), equalTo(3L));
+    }
+
+    @Test
+    public void testExpiry() throws Exception
+    {
+        Dao dao = dbi.onDemand(Dao.class);
+
+        dao.findNameShortTtl(1);
+        Thread.sleep(20);
+        dao.findNameShortTtl(1);
+        assertThat(cache.getMissCount(), equalTo(2L));
+    }
+
+    @Test
+    public void testDefaultCacheIsPerDBI() throws Exception
+    {
+        final DBI first = new DBI("jdbc:h2:mem:" + UUID.randomUUID());
+        final DBI second = new DBI("jdbc:h2:mem:" + UUID.randomUUID());
+        final Handle h1 = first.open();
+        final Handle h2 = second.open();
+        try {
+            h1.execute("create table something (id int primary key, name varchar(100))");
+            h1.execute("insert into something (id, name) values (1, 'first')");
+            h2.execute("create table something (id int primary key, name varchar(100))");
+            h2.execute("insert into something (id, name) values (1, 'second')");
+
+            assertThat(first.onDemand(Dao.class).findName(1), equalTo("first"));
+            assertThat(second.onDemand(Dao.class).findName(1), equalTo("second"));
+            assertThat(first.onDemand(Dao.class).findName(1), equalTo("first"));
+            assertThat(((InMemoryResultCache) ((ExtendedHandle) h1).getAttribute(ResultCache.ATTRIBUTE)).getHitCount(), equalTo(1L));
+            assertThat(((InMemoryResultCache) ((ExtendedHandle) h2).getAttribute(ResultCache.ATTRIBUTE)).getMissCount(), equalTo(1L));
+        }
+        finally {
+            h1.close();
+            h2.close();
+        }
+    }
+
+    @Test
+    public void testInvalidatedAgainWhenTransactionEnds() throws Exception
+    {
+        final DBI mvcc = new DBI("jdbc:h2:mem:" + UUID.randomUUID() + ";MVCC=TRUE");
+        final Handle writer = mvcc.open();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            writer.execute("create table something (id int primary key, name varchar(100))");
+            writer.execute("insert into something (id, name) values (1, 'Brian')");
+            final Dao reader = mvcc.onDemand(Dao.class);
+
+            writer.begin();
+            writer.attach(Dao.class).rename(1, "Eric");
+            // another handle caches the committed row while the rename is not committed yet
+            Future<String> before = executor.submit(new Callable<String>()
+            {
+                @Override
+                public String call() throws Exception
+                {
+                    return reader.findName(1);
+                }
+            });
+            assertThat(before.get(), equalTo("Brian"));
+            writer.commit();
+
+            assertThat(reader.findName(1), equalTo("Eric"));
+        }
+        finally {
+            executor.shutdownNow();
+            writer.close();
+        }
+    }
+
+    @Test
+    public void testBypassedInTransaction() throws Exception
+    {
+        final DBI mvcc = new DBI("jdbc:h2:mem:" + UUID.randomUUID() + ";MVCC=TRUE");
+        final Handle writer = mvcc.open();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            writer.execute("create table something (id int primary key, name varchar(100))");
+            writer.execute("insert into something (id, name) values (1, 'Brian')");
+            final Dao reader = mvcc.onDemand(Dao.class);
+
+            writer.begin();
+            writer.execute("insert into something (id, name) values (2, 'Keith')");
+            // the transaction sees its own insert, which must not reach the cache
+            assertThat(writer.attach(Dao.class).findAll(), equalTo(Arrays.asList("Brian", "Keith")));
+            Future<List<String>> other = executor.submit(new Callable<List<String>>()
+            {
+                @Override
+                public List<String> call() throws Exception
+                {
+                    return reader.findAll();
+                }
+            });
+            assertThat(other.get(), equalTo(Arrays.asList("Brian")));
+            writer.rollback();
+
+            assertThat(reader.findAll(), equalTo(Arrays.asList("Brian")));
+        }
+        finally {
+            executor.shutdownNow();
+            writer.close();
+        }
+    }
+
+    @Test(expected = UnableToCreateSqlObjectException.class)
+    public void testIteratorsCannotBeCached() throws Exception
+    {
+        handle.attach(BadDao.class);
+    }
+
+    @Test
+    public void testConcurrentMissesLoadOnce() throws Exception
+    {
+        final CacheRegion region = new CacheRegion("test", 1, TimeUnit.MINUTES, 10, Collections.<String>emptySet());
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger loads = new AtomicInteger();
+        final Callable<Object> loader = new Callable<Object>()
+        {
+            @Override
+            public Object call() throws Exception
+            {
+                loads.incrementAndGet();
+                started.countDown();
+                release.await();
+                return "loaded";
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<Object> first = executor.submit(new Callable<Object>()
+            {
+                @Override
+                public Object call() throws Exception
+                {
+                    return cache.get(region, "key", loader);
+                }
+            });
+            started.await();
+            List<Future<Object>> others = executor.invokeAll(Arrays.asList(
+                new Callable<Object>()
+                {
+                    @Override
+                    public Object call() throws Exception
+                    {
+                        release.countDown();
+                        return cache.get(region, "key", loader);
+                    }
+                },
+                new Callable<Object>()
+                {
+                    @Override
+                    public Object call() throws Exception
+                    {
+                        return cache.get(region, "key", loader);
+                    }
+                }));
+
+            assertThat(first.get(), equalTo((Object) "loaded"));
+            for (Future<Object> other : others) {
+                assertThat(other.get(), equalTo((Object) "loaded"));
+            }
+            assertThat(loads.get(), equalTo(1));
+            assertThat(cache.getLoadCount(), equalTo(1L));
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public interface Dao
+    {
+        @SqlQuery("select name from something where id = :id")
+        @CacheResult(ttl = 1, unit = TimeUnit.MINUTES, tables = "something")
+        String findName(@Bind("id") int id);
+
+        @SqlQuery("select name from something order by id")
+        @CacheResult(ttl = 1, unit = TimeUnit.MINUTES, tables = "something")
+        List<String> findAll();
+
+        @SqlQuery("select name from something where id = :id")
+        @CacheResult(ttl = 1, unit = TimeUnit.MINUTES, maxEntries = 1)
+        String findNameSmallCache(@Bind("id") int id);
+
+        @SqlQuery("select name from something where id = :id")
+        @CacheResult(ttl = 1, unit = TimeUnit.MILLISECONDS)
+        String findNameShortTtl(@Bind("id") int id);
+
+        @SqlUpdate("update something set name = :name where id = :id")
+        @InvalidatesCache(tables = "something")
+        void rename(@Bind("id") int id, @Bind("name") String name);
+    }
+
+    public interface BadDao
+    {
+        @SqlQuery("select name from something")
+        @CacheResult(ttl = 1)
+        Iterator<String> iterate();
+    }
+}
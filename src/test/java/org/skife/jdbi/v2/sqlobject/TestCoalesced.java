@@ -0,0 +1,134 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2.sqlobject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.skife.jdbi.v2.DBI;
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.QueryCoalescer;
+import org.skife.jdbi.v2.Something;
+import org.skife.jdbi.v2.StatementContext;
+import org.skife.jdbi.v2.sqlobject.customizers.Mapper;
+import org.skife.jdbi.v2.tweak.ConnectionFactory;
+import org.skife.jdbi.v2.tweak.ResultSetMapper;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class TestCoalesced
+{
+    private static final int CALLERS = 4;
+
+    private static volatile QueryCoalescer coalescer;
+
+    private final AtomicInteger opened = new AtomicInteger();
+    private ExecutorService executor;
+    private DBI dbi;
+    private Handle keepAlive;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        final String url = "jdbc:h2:mem:" + UUID.randomUUID();
+        dbi = new DBI(new ConnectionFactory()
+        {
+            @Override
+            public Connection openConnection() throws SQLException
+            {
+                opened.incrementAndGet();
+                return DriverManager.getConnection(url);
+            }
+        });
+        coalescer = new QueryCoalescer();
+        dbi.define(QueryCoalescer.ATTRIBUTE, coalescer);
+        keepAlive = dbi.open();
+        keepAlive.execute("create table something (id int primary key, name varchar(100))");
+        keepAlive.insert("insert into something (id, name) values (1, 'Brian')");
+        executor = Executors.newFixedThreadPool(CALLERS);
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        executor.shutdownNow();
+        keepAlive.close();
+    }
+
+    /**
+     * Holds the leading call until every other caller has joined it
+     */
+    public static class WaitingMapper implements ResultSetMapper<Something>
+    {
+        @Override
+        public Something map(int index, ResultSet r, StatementContext ctx) throws SQLException
+        {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (coalescer.getCoalescedCount() < CALLERS - 1 && System.currentTimeMillis() < deadline) {
+                Thread.yield();
+            }
+            return new Something(r.getInt("id"), r.getString("name"));
+        }
+    }
+
+    public interface Dao
+    {
+        @SqlQuery("select id, name from something where id = :id")
+        @Mapper(WaitingMapper.class)
+        @Coalesced
+        List<Something> findById(@Bind("id") int id);
+    }
+
+    @Test
+    public void testFollowersOnDemandDoNotOpenHandles() throws Exception
+    {
+        final Dao dao = dbi.onDemand(Dao.class);
+        opened.set(0);
+
+        List<Future<List<Something>>> futures = new ArrayList<Future<List<Something>>>();
+        for (int i = 0; i < CALLERS; i++) {
+            futures.add(executor.submit(new Callable<List<Something>>()
+            {
+                @Override
+                public List<Something> call() throws Exception
+                {
+                    return dao.findById(1);
+                }
+            }));
+        }
+        for (Future<List<Something>> future : futures) {
+            List<Something> rows = future.get();
+            assertThat(rows.size(), equalTo(1));
+            assertThat(rows.get(0).getName(), equalTo("Brian"));
+        }
+
+        assertThat(coalescer.getExecutionCount(), equalTo(1L));
+        assertThat(coalescer.getCoalescedCount(), equalTo((long) CALLERS - 1));
+        assertThat(opened.get(), equalTo(1));
+    }
+}
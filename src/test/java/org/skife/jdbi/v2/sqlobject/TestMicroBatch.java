@@ -0,0 +1,200 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2.sqlobject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.skife.jdbi.v2.DBI;
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.StatementContext;
+import org.skife.jdbi.v2.TimingCollector;
+import org.skife.jdbi.v2.exceptions.UnableToCreateSqlObjectException;
+import org.skife.jdbi.v2.exceptions.UnableToExecuteStatementException;
+import org.skife.jdbi.v2.sqlobject.customizers.Define;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class TestMicroBatch
+{
+    private static final int CALLERS = 4;
+
+    private final AtomicInteger inserts = new AtomicInteger();
+    private ExecutorService executor;
+    private DBI dbi;
+    private Handle handle;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        dbi = new DBI("jdbc:h2:mem:" + UUID.randomUUID());
+        dbi.setTimingCollector(new TimingCollector()
+        {
+            @Override
+            public void collect(long elapsedTime, StatementContext ctx)
+            {
+                if (ctx.getRawSql().startsWith("insert")) {
+                    inserts.incrementAndGet();
+                }
+            }
+        });
+        handle = dbi.open();
+        handle.execute("create table something (id int primary key, name varchar(100))");
+        executor = Executors.newFixedThreadPool(CALLERS);
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        executor.shutdownNow();
+        handle.execute("drop table something");
+        handle.close();
+    }
+
+    private List<Future<Integer>> insertConcurrently(final Dao dao, int... ids)
+    {
+        List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+        for (final int id : ids) {
+            futures.add(executor.submit(new Callable<Integer>()
+            {
+                @Override
+                public Integer call() throws Exception
+                {
+                    return dao.insert(id, "name " + id);
+                }
+            }));
+        }
+        return futures;
+    }
+
+    @Test
+    public void testConcurrentCallsShareOneBatch() throws Exception
+    {
+        Dao dao = dbi.onDemand(Dao.class);
+        inserts.set(0);
+
+        for (Future<Integer> future : insertConcurrently(dao, 1, 2, 3, 4)) {
+            assertThat(future.get(), equalTo(1));
+        }
+
+        assertThat(inserts.get(), equalTo(1));
+        assertThat(handle.createQuery("select count(*) from something").mapTo(Integer.class).first(), equalTo(4));
+    }
+
+    @Test
+    public void testOnlyTheFailingCallFails() throws Exception
+    {
+        handle.execute("insert into something (id, name) values (3, 'Brian')");
+        Dao dao = dbi.onDemand(Dao.class);
+
+        List<Future<Integer>> futures = insertConcurrently(dao, 1, 2, 3, 4);
+        for (int i = 0; i < futures.size(); i++) {
+            if (i == 2) {
+                try {
+                    futures.get(i).get();
+                    fail("duplicate key should have failed");
+                }
+                catch (ExecutionException e) {
+                    assertThat(e.getCause(), instanceOf(UnableToExecuteStatementException.class));
+                }
+            }
+            else {
+                assertThat(futures.get(i).get(), equalTo(1));
+            }
+        }
+        assertThat(handle.createQuery("select count(*) from something").mapTo(Integer.class).first(), equalTo(4));
+    }
+
+    @Test
+    public void testFailedBatchIsRolledBackAndRunSingly() throws Exception
+    {
+        Dao dao = dbi.onDemand(Dao.class);
+        inserts.set(0);
+
+        int failures = 0;
+        for (Future<Integer> future : insertConcurrently(dao, 5, 6, 7, 5)) {
+            try {
+                assertThat(future.get(), equalTo(1));
+            }
+            catch (ExecutionException e) {
+                assertThat(e.getCause(), instanceOf(UnableToExecuteStatementException.class));
+                failures++;
+            }
+        }
+
+        // the rows the batch inserted before failing were rolled back, or no single insert would succeed
+        assertThat(failures, equalTo(1));
+        assertThat(inserts.get(), equalTo(3));
+        assertThat(handle.createQuery("select count(*) from something").mapTo(Integer.class).first(), equalTo(3));
+    }
+
+    @Test
+    public void testLoneCallIsExecutedAfterTheDelay() throws Exception
+    {
+        Dao dao = dbi.onDemand(Dao.class);
+        assertThat(dao.insertSoon(1, "Brian"), equalTo(1));
+        assertThat(handle.createQuery("select name from something where id = 1").mapTo(String.class).first(),
+                   equalTo("Brian"));
+    }
+
+    @Test(expected = UnableToCreateSqlObjectException.class)
+    public void testCustomizingParametersAreRejected() throws Exception
+    {
+        dbi.onDemand(BadDao.class).insert("something", 1);
+    }
+
+    @Test(expected = UnableToCreateSqlObjectException.class)
+    public void testOtherReturnTypesAreRejected() throws Exception
+    {
+        dbi.onDemand(LongDao.class).insert(1);
+    }
+
+    public interface Dao
+    {
+        @SqlUpdate("insert into something (id, name) values (:id, :name)")
+        @MicroBatch(maxBatch = CALLERS, maxDelayMicros = 5000000)
+        int insert(@Bind("id") int id, @Bind("name") String name);
+
+        @SqlUpdate("insert into something (id, name) values (:id, :name)")
+        @MicroBatch
+        int insertSoon(@Bind("id") int id, @Bind("name") String name);
+    }
+
+    public interface BadDao
+    {
+        @SqlUpdate("insert into <table> (id) values (:id)")
+        @MicroBatch
+        int insert(@Define("table") String table, @Bind("id") int id);
+    }
+
+    public interface LongDao
+    {
+        @SqlUpdate("insert into something (id) values (:id)")
+        @MicroBatch
+        long insert(@Bind("id") int id);
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2.sqlobject.stringtemplate;
+
+import org.junit.Test;
+import org.skife.jdbi.v2.StatementContext;
+
+import java.util.HashMap;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class TestStringTemplate3StatementLocatorRenderCache
+{
+    private static StringTemplate3StatementLocator locator()
+    {
+        return StringTemplate3StatementLocator.builder(Kombucha.class)
+                                              .withSuperGroup(SuperDrink.class)
+                                              .treatLiteralsAsTemplates()
+                                              .withRenderCache(16)
+                                              .build();
+    }
+
+    @Test
+    public void testRenderedOnceForSameAttributes() throws Exception
+    {
+        final StringTemplate3StatementLocator locator = locator();
+        final StatementContext ctx = new TestingStatementContext(new HashMap<String, Object>());
+        ctx.setAttribute("historyTableName", "superDrink");
+
+        final String first = locator.locate("getFromHistoryTableName", ctx);
+        final String second = locator.locate("getFromHistoryTableName", ctx);
+        assertThat(first, equalTo("select tea\n, mushroom\n, sugar from superDrink;"));
+        assertThat(second, equalTo(first));
+        assertThat(locator.getRenderCacheMisses(), equalTo(1L));
+        assertThat(locator.getRenderCacheHits(), equalTo(1L));
+    }
+
+    @Test
+    public void testOnlyReferencedAttributesAreKeyed() throws Exception
+    {
+        final StringTemplate3StatementLocator locator = locator();
+        final StatementContext ctx = new TestingStatementContext(new HashMap<String, Object>());
+        ctx.setAttribute("historyTableName", "superDrink");
+        ctx.setAttribute("unrelated", 1);
+        locator.locate("getFromHistoryTableName", ctx);
+
+        ctx.setAttribute("unrelated", 2);
+        locator.locate("getFromHistoryTableName", ctx);
+        assertThat(locator.getRenderCacheHits(), equalTo(1L));
+
+        ctx.setAttribute("historyTableName", "oldDrink");
+        assertThat(locator.locate("getFromHistoryTableName", ctx),
+                   equalTo("select tea\n, mushroom\n, sugar from oldDrink;"));
+        assertThat(locator.getRenderCacheMisses(), equalTo(2L));
+    }
+
+    @Test
+    public void testLiteralTemplates() throws Exception
+    {
+        final StringTemplate3StatementLocator locator = locator();
+        final StatementContext ctx = new TestingStatementContext(new HashMap<String, Object>());
+        ctx.setAttribute("table", "kombucha");
+
+        assertThat(locator.locate("select * from <table>", ctx), equalTo("select * from kombucha"));
+        assertThat(locator.locate("select * from <table>", ctx), equalTo("select * from kombucha"));
+        assertThat(locator.getRenderCacheHits(), equalTo(1L));
+
+        ctx.setAttribute("table", "superDrink");
+        assertThat(locator.locate("select * from <table>", ctx), equalTo("select * from superDrink"));
+    }
+}
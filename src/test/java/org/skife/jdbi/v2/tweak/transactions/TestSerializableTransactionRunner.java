@@ -24,14 +24,21 @@ import org.skife.jdbi.v2.exceptions.TransactionFailedException;
 import org.skife.jdbi.v2.tweak.TransactionHandler;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class TestSerializableTransactionRunner extends DBITestCase
 {
+    private SerializableTransactionRunner runner = new SerializableTransactionRunner();
+
     @Override
     protected TransactionHandler getTransactionHandler()
     {
-        return new SerializableTransactionRunner();
+        return runner;
     }
 
     @Test
@@ -76,4 +83,149 @@ public class TestSerializableTransactionRunner extends DBITestCase
 
         Assert.assertEquals(0, tries.get());
     }
+
+    @Test
+    public void testRetriesDeadlocksAndVendorCodes() throws Exception
+    {
+        runner = new SerializableTransactionRunner(new SerializableTransactionRunner.Configuration().withRetryVendorCodes(1213),
+                                                   new LocalTransactionHandler());
+        final AtomicInteger tries = new AtomicInteger(0);
+        Handle handle = openHandle();
+
+        handle.inTransaction(new TransactionCallback<Void>() {
+            @Override
+            public Void inTransaction(Handle conn, TransactionStatus status) throws Exception
+            {
+                switch (tries.incrementAndGet()) {
+                    case 1:
+                        throw new SQLException("deadlock", "40P01");
+                    case 2:
+                        throw new SQLException("deadlock", "HY000", 1213);
+                    default:
+                        return null;
+                }
+            }
+        });
+
+        Assert.assertEquals(3, tries.get());
+        Assert.assertEquals(3, runner.getAttempts());
+        Assert.assertEquals(1, runner.getSuccessesAfterRetry());
+        Assert.assertEquals(0, runner.getExhaustedRetries());
+    }
+
+    @Test
+    public void testDoesNotRetryOtherFailures() throws Exception
+    {
+        final AtomicInteger tries = new AtomicInteger(0);
+        Handle handle = openHandle();
+
+        try {
+            handle.inTransaction(new TransactionCallback<Void>() {
+                @Override
+                public Void inTransaction(Handle conn, TransactionStatus status) throws Exception
+                {
+                    tries.incrementAndGet();
+                    throw new SQLException("constraint violation", "23505");
+                }
+            });
+            Assert.fail("expected the transaction to fail");
+        } catch (TransactionFailedException e)
+        {
+            Assert.assertEquals(1, tries.get());
+        }
+    }
+
+    @Test
+    public void testCountsExhaustedRetries() throws Exception
+    {
+        Handle handle = openHandle();
+
+        try {
+            handle.inTransaction(new TransactionCallback<Void>() {
+                @Override
+                public Void inTransaction(Handle conn, TransactionStatus status) throws Exception
+                {
+                    throw new SQLException("serialization", "40001");
+                }
+            });
+            Assert.fail("expected the transaction to fail");
+        } catch (TransactionFailedException e)
+        {
+            Assert.assertEquals(5, runner.getAttempts());
+            Assert.assertEquals(1, runner.getExhaustedRetries());
+        }
+    }
+
+    @Test
+    public void testRetryBudget() throws Exception
+    {
+        runner = new SerializableTransactionRunner(new SerializableTransactionRunner.Configuration().withRetryBudget(0.001, 2),
+                                                   new LocalTransactionHandler());
+        final AtomicInteger tries = new AtomicInteger(0);
+        Handle handle = openHandle();
+
+        try {
+            handle.inTransaction(new TransactionCallback<Void>() {
+                @Override
+                public Void inTransaction(Handle conn, TransactionStatus status) throws Exception
+                {
+                    tries.incrementAndGet();
+                    throw new SQLException("serialization", "40001");
+                }
+            });
+            Assert.fail("expected the transaction to fail");
+        } catch (TransactionFailedException e)
+        {
+            // first attempt plus the two retries in the budget
+            Assert.assertEquals(3, tries.get());
+            Assert.assertEquals(1, runner.getBudgetRejections());
+            Assert.assertEquals(0, runner.getExhaustedRetries());
+        }
+    }
+
+    @Test
+    public void testBackoff() throws Exception
+    {
+        final List<Long> sleeps = new ArrayList<Long>();
+        // always jitter to half of the cap, so the delays are exactly half the backoff schedule
+        final Random halfway = new Random()
+        {
+            @Override
+            public double nextDouble()
+            {
+                return 0.5;
+            }
+        };
+        runner = new SerializableTransactionRunner(new SerializableTransactionRunner.Configuration()
+                                                       .withBackoff(1, 5, TimeUnit.MILLISECONDS),
+                                                   new LocalTransactionHandler(), halfway)
+        {
+            @Override
+            void sleep(long nanos)
+            {
+                sleeps.add(nanos);
+            }
+        };
+        Handle handle = openHandle();
+
+        try {
+            handle.inTransaction(new TransactionCallback<Void>() {
+                @Override
+                public Void inTransaction(Handle conn, TransactionStatus status) throws Exception
+                {
+                    throw new SQLException("serialization", "40001");
+                }
+            });
+            Assert.fail("expected the transaction to fail");
+        } catch (TransactionFailedException e)
+        {
+            // caps of 1, 2 and 4 ms, then held at the 5 ms maximum; none after the last attempt
+            Assert.assertEquals(Arrays.asList(TimeUnit.MICROSECONDS.toNanos(500),
+                                              TimeUnit.MILLISECONDS.toNanos(1),
+                                              TimeUnit.MILLISECONDS.toNanos(2),
+                                              TimeUnit.MICROSECONDS.toNanos(2500)),
+                                sleeps);
+            Assert.assertEquals(5, runner.getAttempts());
+        }
+    }
 }